@@ -0,0 +1,501 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * <p>
+ * A mutable matrix of bits, with arithmetic over GF(2): addition is
+ * exclusive-or and multiplication is conjunction. The bits of the matrix are
+ * stored row by row, each row starting on a fresh 64-bit word, in the same
+ * layout as {@link BitVector}. This allows each row to be exposed as a
+ * {@link BitVector} view (see {@link #row(int)}) through which the full
+ * {@link BitStore} API may be applied to the matrix.
+ *
+ * <p>
+ * Bulk operations work directly on the words of the matrix: transposition
+ * is performed in blocks of 64 by 64 bits, matrix multiplication uses the
+ * Method of Four Russians, combining the rows of the right-hand matrix in
+ * groups of eight, and Gaussian elimination adds whole rows a word at a time.
+ *
+ * @author Tom Gibara
+ */
+
+public final class BitMatrix {
+
+	// statics
+
+	private static final int ADDRESS_BITS = 6;
+	private static final int ADDRESS_SIZE = 1 << ADDRESS_BITS;
+	private static final int ADDRESS_MASK = ADDRESS_SIZE - 1;
+
+	// the number of rows combined into each table during multiplication
+	private static final int GROUP_BITS = 8;
+
+	/**
+	 * Creates a new square matrix in which only the bits on the leading
+	 * diagonal are set.
+	 *
+	 * @param size
+	 *            the number of rows and columns in the matrix
+	 * @return a new identity matrix
+	 */
+
+	public static BitMatrix identity(int size) {
+		BitMatrix matrix = new BitMatrix(size, size);
+		for (int i = 0; i < size; i++) {
+			matrix.words[i * matrix.stride + (i >>> ADDRESS_BITS)] |= 1L << i;
+		}
+		return matrix;
+	}
+
+	/**
+	 * Creates a new matrix with rows copied from the supplied stores, all of
+	 * which must be of the same size.
+	 *
+	 * @param rows
+	 *            the rows of the matrix
+	 * @return a new matrix containing the rows
+	 */
+
+	public static BitMatrix fromRows(BitStore... rows) {
+		if (rows == null) throw new IllegalArgumentException("null rows");
+		if (rows.length == 0) throw new IllegalArgumentException("no rows");
+		for (BitStore row : rows) {
+			if (row == null) throw new IllegalArgumentException("null row");
+		}
+		int columns = rows[0].size();
+		BitMatrix matrix = new BitMatrix(rows.length, columns);
+		for (int i = 0; i < rows.length; i++) {
+			BitStore row = rows[i];
+			if (row.size() != columns) throw new IllegalArgumentException("mismatched row size");
+			matrix.row(i).setStore(0, row);
+		}
+		return matrix;
+	}
+
+	// transposes 64 words in place so that bit j of word i becomes bit i of word j
+	private static void transpose(long[] a) {
+		long m = 0x00000000ffffffffL;
+		for (int j = 32; j != 0; j >>= 1, m ^= m << j) {
+			for (int k = 0; k < ADDRESS_SIZE; k = (k + j + 1) & ~j) {
+				long t = (a[k] >>> j ^ a[k + j]) & m;
+				a[k] ^= t << j;
+				a[k + j] ^= t;
+			}
+		}
+	}
+
+	// fields
+
+	private final int rows;
+	private final int columns;
+	// words per row
+	private final int stride;
+	private final long[] words;
+
+	// constructors
+
+	/**
+	 * Creates a new matrix in which every bit is zero.
+	 *
+	 * @param rows
+	 *            the number of rows in the matrix
+	 * @param columns
+	 *            the number of columns in the matrix
+	 */
+
+	public BitMatrix(int rows, int columns) {
+		if (rows < 0) throw new IllegalArgumentException("negative rows");
+		if (columns < 0) throw new IllegalArgumentException("negative columns");
+		int stride = (columns + ADDRESS_MASK) >>> ADDRESS_BITS;
+		// row views must be addressable by int
+		if (((long) rows * stride << ADDRESS_BITS) > Integer.MAX_VALUE) throw new IllegalArgumentException("matrix too large");
+		this.rows = rows;
+		this.columns = columns;
+		this.stride = stride;
+		words = new long[rows * stride];
+	}
+
+	/**
+	 * Creates a new matrix in which every bit is chosen uniformly at random.
+	 *
+	 * @param random
+	 *            a source of randomness
+	 * @param rows
+	 *            the number of rows in the matrix
+	 * @param columns
+	 *            the number of columns in the matrix
+	 */
+
+	public BitMatrix(Random random, int rows, int columns) {
+		this(rows, columns);
+		if (random == null) throw new IllegalArgumentException("null random");
+		long mask = -1L >>> (-columns & ADDRESS_MASK);
+		for (int i = 0; i < words.length; i++) {
+			long word = random.nextLong();
+			words[i] = (i + 1) % stride == 0 ? word & mask : word;
+		}
+	}
+
+	private BitMatrix(BitMatrix that) {
+		rows = that.rows;
+		columns = that.columns;
+		stride = that.stride;
+		words = that.words.clone();
+	}
+
+	// accessors
+
+	/**
+	 * The number of rows in the matrix.
+	 *
+	 * @return the row count
+	 */
+
+	public int rows() {
+		return rows;
+	}
+
+	/**
+	 * The number of columns in the matrix.
+	 *
+	 * @return the column count
+	 */
+
+	public int columns() {
+		return columns;
+	}
+
+	// bits
+
+	/**
+	 * Gets the bit at the specified row and column.
+	 *
+	 * @param row
+	 *            the row index
+	 * @param column
+	 *            the column index
+	 * @return the value of the bit
+	 */
+
+	public boolean getBit(int row, int column) {
+		return (words[index(row, column)] & (1L << column)) != 0L;
+	}
+
+	/**
+	 * Sets the bit at the specified row and column.
+	 *
+	 * @param row
+	 *            the row index
+	 * @param column
+	 *            the column index
+	 * @param value
+	 *            the value to assign to the bit
+	 */
+
+	public void setBit(int row, int column, boolean value) {
+		int i = index(row, column);
+		if (value) {
+			words[i] |= 1L << column;
+		} else {
+			words[i] &= ~(1L << column);
+		}
+	}
+
+	/**
+	 * Flips the bit at the specified row and column.
+	 *
+	 * @param row
+	 *            the row index
+	 * @param column
+	 *            the column index
+	 */
+
+	public void flipBit(int row, int column) {
+		words[index(row, column)] ^= 1L << column;
+	}
+
+	/**
+	 * Sets every bit of the matrix to zero.
+	 */
+
+	public void clear() {
+		Arrays.fill(words, 0L);
+	}
+
+	// views
+
+	/**
+	 * A mutable view of a row of the matrix. The bit at index <i>i</i> of the
+	 * returned vector is the bit in column <i>i</i> of the row. Changes made
+	 * via the view are reflected in the matrix and vice versa.
+	 *
+	 * @param row
+	 *            the row index
+	 * @return a vector over the bits of the row
+	 */
+
+	public BitVector row(int row) {
+		checkRow(row);
+		int from = row * stride << ADDRESS_BITS;
+		return BitVector.wrap(words, from, from + columns);
+	}
+
+	/**
+	 * A copy of a column of the matrix. The bit at index <i>i</i> of the
+	 * returned vector is the bit in row <i>i</i> of the column.
+	 *
+	 * @param column
+	 *            the column index
+	 * @return a new vector containing the bits of the column
+	 */
+
+	public BitVector column(int column) {
+		checkColumn(column);
+		BitVector vector = new BitVector(rows);
+		int w = column >>> ADDRESS_BITS;
+		long m = 1L << column;
+		for (int r = 0; r < rows; r++) {
+			if ((words[r * stride + w] & m) != 0L) vector.setBit(r, true);
+		}
+		return vector;
+	}
+
+	// algebra
+
+	/**
+	 * Creates the transpose of this matrix. The bits are transposed in
+	 * blocks of 64 by 64 bits.
+	 *
+	 * @return a new matrix with the rows and columns of this matrix exchanged
+	 */
+
+	public BitMatrix transpose() {
+		BitMatrix result = new BitMatrix(columns, rows);
+		long[] block = new long[ADDRESS_SIZE];
+		for (int r = 0; r < rows; r += ADDRESS_SIZE) {
+			int count = Math.min(ADDRESS_SIZE, rows - r);
+			for (int w = 0; w < stride; w++) {
+				for (int i = 0; i < count; i++) {
+					block[i] = words[(r + i) * stride + w];
+				}
+				Arrays.fill(block, count, ADDRESS_SIZE, 0L);
+				transpose(block);
+				int c = w << ADDRESS_BITS;
+				int limit = Math.min(ADDRESS_SIZE, columns - c);
+				for (int j = 0; j < limit; j++) {
+					result.words[(c + j) * result.stride + (r >>> ADDRESS_BITS)] = block[j];
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Multiplies a column vector by this matrix.
+	 *
+	 * @param vector
+	 *            a vector with as many bits as the matrix has columns
+	 * @return a new vector with as many bits as the matrix has rows
+	 */
+
+	public BitVector multiply(BitStore vector) {
+		if (vector == null) throw new IllegalArgumentException("null vector");
+		if (vector.size() != columns) throw new IllegalArgumentException("vector size does not match columns");
+		long[] v = new long[stride];
+		for (int i = 0; i < stride; i++) {
+			int position = i << ADDRESS_BITS;
+			int length = Math.min(ADDRESS_SIZE, columns - position);
+			long bits = vector.getBits(position, length);
+			v[i] = length == ADDRESS_SIZE ? bits : bits & ~(-1L << length);
+		}
+		BitVector result = new BitVector(rows);
+		for (int r = 0, o = 0; r < rows; r++, o += stride) {
+			long acc = 0L;
+			for (int i = 0; i < stride; i++) {
+				acc ^= words[o + i] & v[i];
+			}
+			if ((Long.bitCount(acc) & 1) != 0) result.setBit(r, true);
+		}
+		return result;
+	}
+
+	/**
+	 * Multiplies this matrix by another. The product is computed using the
+	 * Method of Four Russians: the sums of every combination of eight
+	 * consecutive rows of the supplied matrix are tabulated, and each row of
+	 * the product accumulates one tabulated sum per eight columns of this
+	 * matrix.
+	 *
+	 * @param matrix
+	 *            a matrix with as many rows as this matrix has columns
+	 * @return a new matrix, the product of this matrix and the supplied matrix
+	 */
+
+	public BitMatrix multiply(BitMatrix matrix) {
+		if (matrix == null) throw new IllegalArgumentException("null matrix");
+		if (matrix.rows != columns) throw new IllegalArgumentException("matrix rows do not match columns");
+		BitMatrix result = new BitMatrix(rows, matrix.columns);
+		final int s = matrix.stride;
+		if (s == 0) return result;
+		final long[] that = matrix.words;
+		final long[] product = result.words;
+		final long[] table = new long[s << GROUP_BITS];
+		for (int g = 0; g < columns; g += GROUP_BITS) {
+			int t = Math.min(GROUP_BITS, columns - g);
+			// each entry sums the rows identified by its bits
+			for (int x = 1; x < 1 << t; x++) {
+				int to = x * s;
+				int from = (x & (x - 1)) * s;
+				int row = (g + Integer.numberOfTrailingZeros(x)) * s;
+				for (int i = 0; i < s; i++) {
+					table[to + i] = table[from + i] ^ that[row + i];
+				}
+			}
+			// groups never straddle words since they divide the word size
+			int w = g >>> ADDRESS_BITS;
+			long mask = (1L << t) - 1L;
+			for (int r = 0; r < rows; r++) {
+				int x = (int) (words[r * stride + w] >>> g & mask);
+				if (x == 0) continue;
+				int from = x * s;
+				int to = r * s;
+				for (int i = 0; i < s; i++) {
+					product[to + i] ^= table[from + i];
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reduces this matrix, in place, to reduced row echelon form by Gaussian
+	 * elimination.
+	 *
+	 * @return the rank of the matrix
+	 */
+
+	public int eliminate() {
+		int rank = 0;
+		for (int c = 0; c < columns && rank < rows; c++) {
+			final int w = c >>> ADDRESS_BITS;
+			final long m = 1L << c;
+			int pivot = -1;
+			for (int r = rank; r < rows; r++) {
+				if ((words[r * stride + w] & m) != 0L) {
+					pivot = r;
+					break;
+				}
+			}
+			if (pivot == -1) continue;
+			if (pivot != rank) swapRows(pivot, rank);
+			final int p = rank * stride;
+			for (int r = 0, o = 0; r < rows; r++, o += stride) {
+				// words before the pivot word are zero in the pivot row
+				if (r != rank && (words[o + w] & m) != 0L) {
+					for (int i = w; i < stride; i++) {
+						words[o + i] ^= words[p + i];
+					}
+				}
+			}
+			rank ++;
+		}
+		return rank;
+	}
+
+	/**
+	 * The rank of the matrix over GF(2); the number of linearly independent
+	 * rows. The matrix is not modified.
+	 *
+	 * @return the rank of the matrix
+	 * @see #eliminate()
+	 */
+
+	public int rank() {
+		return copy().eliminate();
+	}
+
+	// copying
+
+	/**
+	 * Creates a copy of the matrix.
+	 *
+	 * @return a new matrix containing the same bits
+	 */
+
+	public BitMatrix copy() {
+		return new BitMatrix(this);
+	}
+
+	// object methods
+
+	@Override
+	public int hashCode() {
+		return (rows * 31 + columns) * 31 + Arrays.hashCode(words);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (!(obj instanceof BitMatrix)) return false;
+		BitMatrix that = (BitMatrix) obj;
+		return this.rows == that.rows && this.columns == that.columns && Arrays.equals(this.words, that.words);
+	}
+
+	// rows are separated by newlines, each formatted as a BitStore
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int r = 0; r < rows; r++) {
+			if (r > 0) sb.append('\n');
+			sb.append(row(r));
+		}
+		return sb.toString();
+	}
+
+	// private utility methods
+
+	private void checkRow(int row) {
+		if (row < 0) throw new IllegalArgumentException("negative row");
+		if (row >= rows) throw new IllegalArgumentException("row too large");
+	}
+
+	private void checkColumn(int column) {
+		if (column < 0) throw new IllegalArgumentException("negative column");
+		if (column >= columns) throw new IllegalArgumentException("column too large");
+	}
+
+	private int index(int row, int column) {
+		checkRow(row);
+		checkColumn(column);
+		return row * stride + (column >>> ADDRESS_BITS);
+	}
+
+	private void swapRows(int a, int b) {
+		int i = a * stride;
+		int j = b * stride;
+		for (int k = 0; k < stride; k++, i++, j++) {
+			long t = words[i];
+			words[i] = words[j];
+			words[j] = t;
+		}
+	}
+
+}
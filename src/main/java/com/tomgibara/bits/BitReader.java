@@ -110,9 +110,15 @@ public interface BitReader extends BitStream {
 	 */
 
 	default BigInteger readBigInt(int count) throws BitStreamException {
-		BitStore bits = Bits.store(count);
-		bits.readFrom(this);
-		return bits.toBigInteger();
+		if (count < 0) throw new IllegalArgumentException("negative count");
+		if (count == 0) return BigInteger.ZERO;
+		byte[] bytes = new byte[(count + 7) >> 3];
+		// any partial byte is the most significant
+		int offset = 0;
+		int remainder = count & 7;
+		if (remainder != 0) bytes[offset++] = (byte) read(remainder);
+		readBytes(bytes, offset, bytes.length - offset);
+		return new BigInteger(1, bytes);
 	}
 
 	/**
@@ -124,9 +130,7 @@ public interface BitReader extends BitStream {
 	 */
 
 	default byte readByte() {
-		BitStore bits = Bits.store(8);
-		bits.readFrom(this);
-		return bits.toByteArray()[0];
+		return (byte) read(8);
 	}
 
 	/**
@@ -140,9 +144,68 @@ public interface BitReader extends BitStream {
 	 */
 
 	default byte[] readBytes(int numberOfBytes) {
-		BitStore bits = Bits.store(numberOfBytes * Byte.SIZE);
-		bits.readFrom(this);
-		return bits.toByteArray();
+		if (numberOfBytes < 0) throw new IllegalArgumentException("negative numberOfBytes");
+		byte[] bytes = new byte[numberOfBytes];
+		readBytes(bytes, 0, numberOfBytes);
+		return bytes;
+	}
+
+	/**
+	 * Reads bytes from a stream of bits into a range of an array. Each byte
+	 * is formed from eight consecutive bits, the first being the most
+	 * significant. Implementations may read bytes more efficiently when the
+	 * stream is positioned on a byte boundary.
+	 *
+	 * @param bytes
+	 *            the array into which bytes are read
+	 * @param offset
+	 *            the index in the array of the first byte read
+	 * @param length
+	 *            the number of bytes to read
+	 * @throws BitStreamException
+	 *             if an exception occurs when reading the stream
+	 */
+
+	default void readBytes(byte[] bytes, int offset, int length) throws BitStreamException {
+		if (bytes == null) throw new IllegalArgumentException("null bytes");
+		BitStreams.checkRange(bytes.length, offset, length);
+		int finish = offset + length;
+		// read eight bytes at a time
+		for (; finish - offset >= 8; offset += 8) {
+			long value = readLong(64);
+			for (int i = offset + 7; i >= offset; i--) {
+				bytes[i] = (byte) value;
+				value >>= 8;
+			}
+		}
+		for (; offset < finish; offset++) {
+			bytes[offset] = (byte) read(8);
+		}
+	}
+
+	/**
+	 * Reads values of a fixed number of bits from a stream of bits into a
+	 * range of an array. Each value is read as per {@link #readLong(int)}.
+	 *
+	 * @param longs
+	 *            the array into which values are read
+	 * @param offset
+	 *            the index in the array of the first value read
+	 * @param length
+	 *            the number of values to read
+	 * @param width
+	 *            the number of bits in each value, between 0 and 64
+	 * @throws BitStreamException
+	 *             if an exception occurs when reading the stream
+	 */
+
+	default void readLongs(long[] longs, int offset, int length, int width) throws BitStreamException {
+		if (longs == null) throw new IllegalArgumentException("null longs");
+		BitStreams.checkRange(longs.length, offset, length);
+		BitStreams.checkWidth(width);
+		for (int finish = offset + length; offset < finish; offset++) {
+			longs[offset] = readLong(width);
+		}
 	}
 
 	/**
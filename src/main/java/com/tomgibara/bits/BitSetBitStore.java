@@ -63,6 +63,31 @@ final class BitSetBitStore extends AbstractBitStore {
 		return previous;
 	}
 
+	@Override
+	public long getBits(int position, int length) {
+		Bits.checkBitsLength(length);
+		int from = adjPosition(position, length);
+		int to = from + length;
+		// visits only the set bits, without copying the bit set
+		long bits = 0L;
+		for (int i = set.nextSetBit(from); i >= 0 && i < to; i = set.nextSetBit(i + 1)) {
+			bits |= 1L << (i - from);
+		}
+		return bits;
+	}
+
+	@Override
+	public void setBits(int position, long value, int length) {
+		Bits.checkBitsLength(length);
+		checkMutable();
+		int from = adjPosition(position, length);
+		if (length < 64) value &= ~(-1L << length);
+		set.clear(from, from + length);
+		for (; value != 0L; value &= value - 1L) {
+			set.set(from + Long.numberOfTrailingZeros(value));
+		}
+	}
+
 //  TODO reimplement using a sparse variant?
 //	@Override
 //	public int countOnes() {
@@ -131,6 +156,12 @@ final class BitSetBitStore extends AbstractBitStore {
 		if (!mutable) throw new IllegalStateException("immutable");
 	}
 
+	private int adjPosition(int position, int length) {
+		position = Bits.adjPosition(position, start, finish);
+		if (position + length > finish) throw new IllegalArgumentException("length too great");
+		return position;
+	}
+
 	private int adjIndex(int index) {
 		if (index < 0) throw new IllegalArgumentException();
 		index += start;
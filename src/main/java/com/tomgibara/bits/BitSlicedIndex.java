@@ -0,0 +1,359 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import com.tomgibara.bits.BitStore.BitMatches;
+import com.tomgibara.bits.BitStore.Positions;
+
+/**
+ * <p>
+ * An immutable bit-sliced index over a column of int values. Each value is
+ * recorded, relative to the smallest value in the column, as a binary number
+ * spread over a number of {@link BitVector} slices: the bit at index
+ * <i>r</i> of slice <i>i</i> is bit <i>i</i> of the value in row <i>r</i>. An
+ * existence bitmap records which rows have values.
+ *
+ * <p>
+ * Comparisons are evaluated with the algorithm of O'Neil and Quass: the
+ * slices are visited from the most significant, narrowing the rows that
+ * remain equal to the bound while accumulating those that are strictly
+ * greater or less. Every comparison is treated as a range, and the slices are
+ * combined a word at a time in a single pass, without creating intermediate
+ * bitmaps. Results are returned as a new {@link BitVector}, or counted
+ * without being materialized.
+ *
+ * <p>
+ * Instances are obtained from {@link #fromValues(int[])} and
+ * {@link #fromValues(int[], BitStore)}.
+ *
+ * @author Tom Gibara
+ */
+
+public final class BitSlicedIndex {
+
+	// statics
+
+	/**
+	 * Creates an index over values that are present in every row.
+	 *
+	 * @param values
+	 *            the value of each row
+	 * @return an index over the values
+	 */
+
+	public static BitSlicedIndex fromValues(int[] values) {
+		if (values == null) throw new IllegalArgumentException("null values");
+		return fromValues(values, Bits.oneBits(values.length));
+	}
+
+	/**
+	 * Creates an index over values that are present only in some rows.
+	 *
+	 * @param values
+	 *            the value of each row; the values of rows that are not
+	 *            present are ignored
+	 * @param existence
+	 *            identifies the rows that have values, of the same size as
+	 *            the values array
+	 * @return an index over the values
+	 */
+
+	public static BitSlicedIndex fromValues(int[] values, BitStore existence) {
+		if (values == null) throw new IllegalArgumentException("null values");
+		if (existence == null) throw new IllegalArgumentException("null existence");
+		if (existence.size() != values.length) throw new IllegalArgumentException("mismatched existence size");
+		return new BitSlicedIndex(values, existence.immutableCopy());
+	}
+
+	// fields
+
+	private final int size;
+	// the value that is recorded as zero
+	private final int base;
+	// the largest value that can be recorded relative to the base
+	private final long max;
+	private final BitStore existence;
+	private final BitVector[] slices;
+
+	// constructors
+
+	private BitSlicedIndex(int[] values, BitStore existence) {
+		size = values.length;
+		this.existence = existence;
+		int min = Integer.MAX_VALUE;
+		int largest = Integer.MIN_VALUE;
+		BitMatches rows = existence.ones();
+		for (Positions ps = rows.positions(); ps.hasNext(); ) {
+			int value = values[ps.nextPosition()];
+			if (value < min) min = value;
+			if (value > largest) largest = value;
+		}
+		base = rows.isNone() ? 0 : min;
+		long range = rows.isNone() ? 0L : (long) largest - min;
+		int count = 64 - Long.numberOfLeadingZeros(range);
+		max = count == 0 ? 0L : (1L << count) - 1L;
+		long[][] words = new long[count][(size + 63) >>> 6];
+		for (Positions ps = rows.positions(); ps.hasNext(); ) {
+			int row = ps.nextPosition();
+			long value = (long) values[row] - base;
+			for (long v = value; v != 0L; v &= v - 1L) {
+				words[Long.numberOfTrailingZeros(v)][row >>> 6] |= 1L << row;
+			}
+		}
+		slices = new BitVector[count];
+		for (int i = 0; i < count; i++) {
+			slices[i] = BitVector.wrap(words[i], 0, size).immutable();
+		}
+	}
+
+	// accessors
+
+	/**
+	 * The number of rows indexed.
+	 *
+	 * @return the number of rows
+	 */
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * The number of slices over which values are recorded.
+	 *
+	 * @return the number of slices
+	 */
+
+	public int sliceCount() {
+		return slices.length;
+	}
+
+	/**
+	 * The rows that have values.
+	 *
+	 * @return an immutable bitmap of the rows with values
+	 */
+
+	public BitStore existence() {
+		return existence;
+	}
+
+	/**
+	 * The value of a row.
+	 *
+	 * @param row
+	 *            the index of the row
+	 * @return the value of the row
+	 * @throws IllegalArgumentException
+	 *             if the row has no value
+	 */
+
+	public int value(int row) {
+		if (!existence.getBit(row)) throw new IllegalArgumentException("no value");
+		long value = 0L;
+		for (int i = 0; i < slices.length; i++) {
+			if (slices[i].getBit(row)) value |= 1L << i;
+		}
+		return (int) (base + value);
+	}
+
+	// comparisons
+
+	/**
+	 * The rows with values equal to the specified value.
+	 *
+	 * @param value
+	 *            the value to compare
+	 * @return a new bitmap of the matching rows
+	 */
+
+	public BitVector equalTo(int value) {
+		return select(value, value);
+	}
+
+	/**
+	 * The rows with values less than the specified value.
+	 *
+	 * @param value
+	 *            the value to compare
+	 * @return a new bitmap of the matching rows
+	 */
+
+	public BitVector lessThan(int value) {
+		return select(Integer.MIN_VALUE, value - 1L);
+	}
+
+	/**
+	 * The rows with values less than or equal to the specified value.
+	 *
+	 * @param value
+	 *            the value to compare
+	 * @return a new bitmap of the matching rows
+	 */
+
+	public BitVector lessThanOrEqualTo(int value) {
+		return select(Integer.MIN_VALUE, value);
+	}
+
+	/**
+	 * The rows with values greater than the specified value.
+	 *
+	 * @param value
+	 *            the value to compare
+	 * @return a new bitmap of the matching rows
+	 */
+
+	public BitVector greaterThan(int value) {
+		return select(value + 1L, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * The rows with values greater than or equal to the specified value.
+	 *
+	 * @param value
+	 *            the value to compare
+	 * @return a new bitmap of the matching rows
+	 */
+
+	public BitVector greaterThanOrEqualTo(int value) {
+		return select(value, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * The rows with values in the specified range.
+	 *
+	 * @param from
+	 *            the smallest matching value
+	 * @param to
+	 *            the largest matching value
+	 * @return a new bitmap of the matching rows
+	 */
+
+	public BitVector between(int from, int to) {
+		return select(from, to);
+	}
+
+	/**
+	 * Counts the rows with values in the specified range, without creating a
+	 * bitmap. Any comparison can be counted in this way, for example the
+	 * rows less than <code>c</code> are counted by
+	 * <code>countBetween(Integer.MIN_VALUE, c - 1)</code>.
+	 *
+	 * @param from
+	 *            the smallest matching value
+	 * @param to
+	 *            the largest matching value
+	 * @return the number of matching rows
+	 */
+
+	public int countBetween(int from, int to) {
+		long lo = Math.max((long) from - base, 0L);
+		long hi = Math.min((long) to - base, max);
+		if (lo > hi) return 0;
+		int count = 0;
+		for (int position = 0; position < size; position += 64) {
+			count += Long.bitCount(word(position, lo, hi));
+		}
+		return count;
+	}
+
+	// aggregation
+
+	/**
+	 * Sums the values of every row.
+	 *
+	 * @return the sum of all values
+	 */
+
+	public long sum() {
+		long sum = (long) base * existence.ones().count();
+		for (int i = 0; i < slices.length; i++) {
+			sum += (long) slices[i].ones().count() << i;
+		}
+		return sum;
+	}
+
+	/**
+	 * Sums the values of the rows identified by a filter, typically the result
+	 * of a comparison.
+	 *
+	 * @param filter
+	 *            a bitmap of the rows to be summed, of the same size as the
+	 *            index
+	 * @return the sum of the filtered values
+	 */
+
+	public long sum(BitStore filter) {
+		if (filter == null) throw new IllegalArgumentException("null filter");
+		if (filter.size() != size) throw new IllegalArgumentException("mismatched filter size");
+		long sum = (long) base * existence.count(Operation.AND, filter);
+		for (int i = 0; i < slices.length; i++) {
+			sum += (long) slices[i].count(Operation.AND, filter) << i;
+		}
+		return sum;
+	}
+
+	// object methods
+
+	@Override
+	public String toString() {
+		return "BitSlicedIndex of " + size + " rows with " + slices.length + " slices from " + base;
+	}
+
+	// private utility methods
+
+	private BitVector select(long from, long to) {
+		BitVector result = new BitVector(size);
+		long lo = Math.max(from - base, 0L);
+		long hi = Math.min(to - base, max);
+		if (lo > hi) return result;
+		for (int position = 0; position < size; position += 64) {
+			long bits = word(position, lo, hi);
+			if (bits != 0L) result.setBits(position, bits, Math.min(64, size - position));
+		}
+		return result;
+	}
+
+	// the rows in a word with (relative) values in the range [lo, hi]
+	private long word(int position, long lo, long hi) {
+		int length = Math.min(64, size - position);
+		long exists = existence.getBits(position, length);
+		if (length < 64) exists &= ~(-1L << length);
+		if (exists == 0L) return 0L;
+		long gt = 0L;
+		long lt = 0L;
+		long eqLo = exists;
+		long eqHi = exists;
+		for (int i = slices.length - 1; i >= 0 && (eqLo | eqHi) != 0L; i--) {
+			long bits = slices[i].getBits(position, length);
+			if ((lo >>> i & 1L) == 0L) {
+				gt |= eqLo & bits;
+				eqLo &= ~bits;
+			} else {
+				eqLo &= bits;
+			}
+			if ((hi >>> i & 1L) == 0L) {
+				eqHi &= ~bits;
+			} else {
+				lt |= eqHi & ~bits;
+				eqHi &= bits;
+			}
+		}
+		return (gt | eqLo) & (lt | eqHi);
+	}
+
+}
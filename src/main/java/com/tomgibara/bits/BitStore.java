@@ -22,6 +22,9 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Random;
 import java.util.SortedSet;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 import com.tomgibara.fundament.Mutability;
 import com.tomgibara.fundament.Transposable;
@@ -57,12 +60,17 @@ import com.tomgibara.streams.WriteStream;
  * <dt>Accelerating methods
  * <dd>These methods provide functions that higher-level functions depend on for
  * basic data access. Replace default implementations of these methods to make
- * easy performance improvements.
+ * easy performance improvements. In particular, the default implementations of
+ * almost all other methods access bits up to 64 at a time via
+ * {@link #getBits(int, int)}, so an efficient implementation of that method
+ * provides most of the benefit.
  *
  * <dt>Accelerating mutation methods
  * <dd>These methods provide functions that higher-level functions depend on for
  * performing basic operations. Replace default implementations of these methods
- * to make easy performance improvements.
+ * to make easy performance improvements. As with data access, other default
+ * methods modify bits up to 64 at a time via
+ * {@link #setBits(int, long, int)}.
  *
  * <dt>Operations
  * <dd>These methods provide {@link Op} implementations for performing logical
@@ -749,6 +757,34 @@ public interface BitStore extends Mutability<BitStore>, Comparable<BitStore> {
 
 		SortedSet<Integer> asSet();
 
+		/**
+		 * The matched bit positions as a stream of primitive ints, in
+		 * ascending order. The stream is not backed by boxed values and its
+		 * spliterator splits at word boundaries, so it can be processed in
+		 * parallel. The store should not be modified while the stream is
+		 * consumed.
+		 *
+		 * @return a stream of the matched bit positions
+		 */
+
+		default IntStream stream() {
+			return StreamSupport.intStream(new BitStoreSpliterator(store(), bit()), false);
+		}
+
+		/**
+		 * Supplies each matched bit position, in ascending order, to the given
+		 * consumer. No boxed values are created. The store should not be
+		 * modified by the consumer.
+		 *
+		 * @param action
+		 *            the consumer of the matched positions
+		 */
+
+		default void forEach(IntConsumer action) {
+			if (action == null) throw new IllegalArgumentException("null action");
+			new BitStoreSpliterator(store(), bit()).forEachRemaining(action);
+		}
+
 	}
 
 	/**
@@ -957,12 +993,7 @@ public interface BitStore extends Mutability<BitStore>, Comparable<BitStore> {
 
 	default int getBitsAsInt(int position, int length) {
 		Bits.checkIntBitsLength(length);
-		int bits = 0;
-		for (int i = position + length - 1; i >= position; i--) {
-			bits <<= 1;
-			if (getBit(i)) bits |= 1L;
-		}
-		return bits;
+		return (int) getBits(position, length);
 	}
 
 	// accelerating mutation methods
@@ -1052,11 +1083,7 @@ public interface BitStore extends Mutability<BitStore>, Comparable<BitStore> {
 
 	default void setBitsAsInt(int position, int value, int length) {
 		Bits.checkIntBitsLength(length);
-		int to = position + length;
-		if (to > size()) throw new IllegalArgumentException("length too great");
-		for (int i = position; i < to; i++, value >>= 1) {
-			setBit(i, (value & 1) != 0);
-		}
+		setBits(position, value, length);
 	}
 
 	/**
@@ -1074,10 +1101,11 @@ public interface BitStore extends Mutability<BitStore>, Comparable<BitStore> {
 
 	default void setStore(int position, BitStore store) {
 		if (store == null) throw new IllegalArgumentException("null store");
-		int to = position + store.size();
-		if (to > size()) throw new IllegalArgumentException("store size too great");
-		for (int i = position; i < to; i++) {
-			setBit(i, store.getBit(i - position));
+		int size = store.size();
+		if (position + size > size()) throw new IllegalArgumentException("store size too great");
+		for (int i = 0; i < size; i += 64) {
+			int length = Math.min(64, size - i);
+			setBits(position + i, store.getBits(i, length), length);
 		}
 	}
 
@@ -1092,8 +1120,8 @@ public interface BitStore extends Mutability<BitStore>, Comparable<BitStore> {
 
 	default void fill() {
 		int size = size();
-		for (int i = 0; i < size; i++) {
-			setBit(i, true);
+		for (int i = 0; i < size; i += 64) {
+			setBits(i, -1L, Math.min(64, size - i));
 		}
 	}
 
@@ -1108,8 +1136,8 @@ public interface BitStore extends Mutability<BitStore>, Comparable<BitStore> {
 
 	default void clear() {
 		int size = size();
-		for (int i = 0; i < size; i++) {
-			setBit(i, false);
+		for (int i = 0; i < size; i += 64) {
+			setBits(i, 0L, Math.min(64, size - i));
 		}
 	}
 
@@ -1127,8 +1155,9 @@ public interface BitStore extends Mutability<BitStore>, Comparable<BitStore> {
 
 	default void flip() {
 		int size = size();
-		for (int i = 0; i < size; i++) {
-			flipBit(i);
+		for (int i = 0; i < size; i += 64) {
+			int length = Math.min(64, size - i);
+			setBits(i, ~getBits(i, length), length);
 		}
 	}
 
@@ -1228,20 +1257,23 @@ public interface BitStore extends Mutability<BitStore>, Comparable<BitStore> {
 		if (size == 0) return;
 		if (distance == 0) return;
 
-		//TODO have separate methods for true/false fill?
-		//TODO this capable of optimization in some cases
-		if (distance > 0) {
-			int j = size - 1;
-			for (int i = j - distance; i >= 0; i--, j--) {
-				setBit(j, getBit(i));
+		if (distance >= size || distance <= -size) {
+			setAll(fill);
+		} else if (distance > 0) {
+			// copy from the top down so that no bits are overwritten before they are read
+			for (int to = size; to > distance; ) {
+				int length = Math.min(64, to - distance);
+				to -= length;
+				setBits(to, getBits(to - distance, length), length);
 			}
-			range(0, j + 1).setAll(fill);
+			range(0, distance).setAll(fill);
 		} else {
-			int j = 0;
-			for (int i = j - distance; i < size; i++, j++) {
-				setBit(j, getBit(i));
+			int limit = size + distance;
+			for (int to = 0; to < limit; to += 64) {
+				int length = Math.min(64, limit - to);
+				setBits(to, getBits(to - distance, length), length);
 			}
-			range(j, size).setAll(fill);
+			range(limit, size).setAll(fill);
 		}
 	}
 
@@ -1369,6 +1401,69 @@ public interface BitStore extends Mutability<BitStore>, Comparable<BitStore> {
 		return new BitStoreTests.Complements(this);
 	}
 
+	/**
+	 * <p>
+	 * Counts the ones that would result from combining the bits of this store
+	 * with those of another store of the same size using the specified
+	 * operation. Neither store is modified and the combined bits are not
+	 * materialized. For example, the number of ones shared by two stores may
+	 * be obtained with <code>a.count(Operation.AND, b)</code>.
+	 *
+	 * <p>
+	 * This is a <b>tests method</b>.
+	 *
+	 * @param operation
+	 *            the operation by which the bits would be combined
+	 * @param store
+	 *            a store of the same size as this store
+	 * @return the number of ones in the combined bits
+	 * @see #hammingDistance(BitStore)
+	 * @see #jaccardSimilarity(BitStore)
+	 */
+
+	default int count(Operation operation, BitStore store) {
+		return Bits.count(this, operation, store);
+	}
+
+	/**
+	 * <p>
+	 * The number of positions at which the bits of this store differ from those
+	 * of another store of the same size.
+	 *
+	 * <p>
+	 * This is a <b>tests method</b>.
+	 *
+	 * @param store
+	 *            a store of the same size as this store
+	 * @return the Hamming distance between the stores
+	 * @see #count(Operation, BitStore)
+	 */
+
+	default int hammingDistance(BitStore store) {
+		return count(Operation.XOR, store);
+	}
+
+	/**
+	 * <p>
+	 * The Jaccard similarity of this store and another store of the same size;
+	 * the number of ones they share divided by the number of positions at which
+	 * either has a one. Two stores without any ones have a similarity of one.
+	 *
+	 * <p>
+	 * This is a <b>tests method</b>.
+	 *
+	 * @param store
+	 *            a store of the same size as this store
+	 * @return the Jaccard similarity of the stores, between zero and one
+	 * @see #count(Operation, BitStore)
+	 */
+
+	default double jaccardSimilarity(BitStore store) {
+		int intersection = count(Operation.AND, store);
+		int union = ones().count() + store.ones().count() - intersection;
+		return union == 0 ? 1.0 : (double) intersection / union;
+	}
+
 	// I/O
 
 	/**
@@ -1671,14 +1766,15 @@ public interface BitStore extends Mutability<BitStore>, Comparable<BitStore> {
 	 */
 
 	default BitSet toBitSet() {
-		BitMatches ones = ones();
-		int previous = ones.last();
-		final BitSet bitSet = new BitSet(previous + 1);
-		while (previous > -1) {
-			bitSet.set(previous);
-			previous = ones.previous(previous);
+		int size = size();
+		long[] words = new long[(size + 63) >> 6];
+		for (int i = 0; i < words.length; i++) {
+			int position = i << 6;
+			int length = Math.min(64, size - position);
+			long bits = getBits(position, length);
+			words[i] = length == 64 ? bits : bits & ~(-1L << length);
 		}
-		return bitSet;
+		return BitSet.valueOf(words);
 	}
 
 	/**
@@ -25,6 +25,48 @@ import com.tomgibara.bits.ImmutableBit.ImmutableZero;
 
 abstract class BitStoreBitMatches extends AbstractBitMatches {
 
+	// counts a word at a time so that stores which compute their bits (such as
+	// the fused stores returned by Bits.and()) do so efficiently
+	static int countOnesIn(BitStore s) {
+		int size = s.size();
+		int limit = size & ~63;
+		int count = 0;
+		for (int i = 0; i < limit; i += 64) {
+			count += Long.bitCount(s.getBits(i, 64));
+		}
+		int length = size - limit;
+		if (length > 0) {
+			count += Long.bitCount(s.getBits(limit, length) & ~(-1L << length));
+		}
+		return count;
+	}
+
+	// like countOnesIn, these search a word at a time; the size is returned if
+	// there is no such first bit, and -1 if there is no such last bit
+	static int firstIn(BitStore s, boolean bit) {
+		int size = s.size();
+		for (int i = 0; i < size; i += 64) {
+			int length = Math.min(64, size - i);
+			long bits = s.getBits(i, length);
+			if (!bit) bits = ~bits;
+			if (length < 64) bits &= ~(-1L << length);
+			if (bits != 0L) return i + Long.numberOfTrailingZeros(bits);
+		}
+		return size;
+	}
+
+	static int lastIn(BitStore s, boolean bit) {
+		for (int i = s.size(); i > 0; ) {
+			int length = Math.min(64, i);
+			i -= length;
+			long bits = s.getBits(i, length);
+			if (!bit) bits = ~bits;
+			if (length < 64) bits &= ~(-1L << length);
+			if (bits != 0L) return i + 63 - Long.numberOfLeadingZeros(bits);
+		}
+		return -1;
+	}
+
 	final BitStore s;
 
 	BitStoreBitMatches(BitStore s) {
@@ -82,29 +124,17 @@ abstract class BitStoreBitMatches extends AbstractBitMatches {
 
 		@Override
 		public int count() {
-			//TODO could use a reader?
-			int size = s.size();
-			int count = 0;
-			for (int i = 0; i < size; i++) {
-				if (s.getBit(i)) count++;
-			}
-			return count;
+			return countOnesIn(s);
 		}
 
 		@Override
 		public int first() {
-			int size = s.size();
-			int i;
-			for (i = 0; i < size && !s.getBit(i); i++);
-			return i;
+			return firstIn(s, true);
 		}
 
 		@Override
 		public int last() {
-			int size = s.size();
-			int i;
-			for (i = size - 1; i >= 0 && !s.getBit(i); i--);
-			return i;
+			return lastIn(s, true);
 		}
 
 		@Override
@@ -157,29 +187,17 @@ abstract class BitStoreBitMatches extends AbstractBitMatches {
 
 		@Override
 		public int count() {
-			//TODO could use a reader?
-			int size = s.size();
-			int count = 0;
-			for (int i = 0; i < size; i++) {
-				if (!s.getBit(i)) count++;
-			}
-			return count;
+			return s.size() - countOnesIn(s);
 		}
 
 		@Override
 		public int first() {
-			int size = s.size();
-			int i;
-			for (i = 0; i < size && s.getBit(i); i++);
-			return i;
+			return firstIn(s, false);
 		}
 
 		@Override
 		public int last() {
-			int size = s.size();
-			int i;
-			for (i = size - 1; i >= 0 && s.getBit(i); i--);
-			return i;
+			return lastIn(s, false);
 		}
 
 		@Override
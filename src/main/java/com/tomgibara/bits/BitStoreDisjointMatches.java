@@ -50,6 +50,7 @@ class BitStoreDisjointMatches extends AbstractDisjointMatches {
 			while (true) {
 				int p = next(position + tSize);
 				if (p == sSize) return position;
+				position = p;
 			}
 		}
 		return -1;
@@ -57,31 +58,16 @@ class BitStoreDisjointMatches extends AbstractDisjointMatches {
 
 	@Override
 	public int next(int position) {
-		position = Math.max(position, 0);
-		int limit = sSize - tSize;
-		while (position <= limit) {
-			if (matchesAt(position)) return position;
-			position ++;
-		}
-		return sSize;
+		return matches.next(position);
 	}
 
 	@Override
 	public int previous(int position) {
-		position = Math.min(position, sSize - tSize + 1);
-		while (position > 0) {
-			position --;
-			if (matchesAt(position)) return position;
-		}
-		return -1;
+		return matches.previous(position);
 	}
 
 	@Override
 	public boolean isAll() {
 		return tSize * count() == sSize;
 	}
-
-	boolean matchesAt(int position) {
-		return s.range(position, position + tSize).equals().store(t);
-	}
 }
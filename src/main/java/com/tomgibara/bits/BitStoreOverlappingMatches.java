@@ -16,15 +16,39 @@
  */
 package com.tomgibara.bits;
 
+import java.util.Arrays;
+
 import com.tomgibara.bits.BitStore.DisjointMatches;
 import com.tomgibara.bits.BitStore.OverlappingMatches;
 import com.tomgibara.bits.BitStore.Positions;
 
-//TODO could use better search algorithm
+// sequences of up to 64 bits are located by testing 64 candidate positions at
+// once (shift-and over a sliding window of two words); longer sequences are
+// located by a Horspool search that skips over the store using 12 bit grams
 class BitStoreOverlappingMatches extends AbstractMatches implements OverlappingMatches {
 
+	private static final int WORD_SIZE = 64;
+	private static final int GRAM_BITS = 12;
+	private static final int GRAM_MASK = (1 << GRAM_BITS) - 1;
+
+	private static long mask(int length) {
+		return length == WORD_SIZE ? -1L : ~(-1L << length);
+	}
+
+	// the sequence, a word at a time
+	private final long[] words;
+	// skip tables for long sequences, created on demand
+	private int[] forwardSkips = null;
+	private int[] backwardSkips = null;
+
 	BitStoreOverlappingMatches(BitStore store, BitStore sequence) {
 		super(store, sequence);
+		words = new long[(tSize + WORD_SIZE - 1) / WORD_SIZE];
+		for (int i = 0; i < words.length; i++) {
+			int offset = i * WORD_SIZE;
+			int length = Math.min(WORD_SIZE, tSize - offset);
+			words[i] = t.getBits(offset, length) & mask(length);
+		}
 	}
 
 	@Override
@@ -39,13 +63,20 @@ class BitStoreOverlappingMatches extends AbstractMatches implements OverlappingM
 
 	@Override
 	public int count() {
+		int limit = sSize - tSize;
+		if (limit < 0) return 0;
 		int count = 0;
-		int previous = last();
-		while (previous != -1) {
-			count ++;
-			previous = previous(previous);
+		if (tSize > WORD_SIZE) {
+			for (int p = next(0); p != sSize; p = next(p + 1)) count ++;
+			return count;
+		}
+		long a = window(0);
+		for (int base = 0; ; base += WORD_SIZE) {
+			long b = window(base + WORD_SIZE);
+			count += Long.bitCount(matchesFrom(a, b, candidates(base, limit)));
+			if (limit - base < WORD_SIZE) return count;
+			a = b;
 		}
-		return count;
 	}
 
 	@Override
@@ -62,21 +93,38 @@ class BitStoreOverlappingMatches extends AbstractMatches implements OverlappingM
 	public int next(int position) {
 		position = Math.max(position, 0);
 		int limit = sSize - tSize;
-		while (position <= limit) {
-			if (matchesAt(position)) return position;
-			position ++;
+		if (position > limit) return sSize;
+		if (tSize > WORD_SIZE) return nextSkipping(position, limit);
+		long a = window(position);
+		for (int base = position; ; base += WORD_SIZE) {
+			long b = window(base + WORD_SIZE);
+			long d = matchesFrom(a, b, candidates(base, limit));
+			if (d != 0L) return base + Long.numberOfTrailingZeros(d);
+			if (limit - base < WORD_SIZE) return sSize;
+			a = b;
 		}
-		return sSize;
 	}
 
 	@Override
 	public int previous(int position) {
-		position = Math.min(position, sSize - tSize + 1);
-		while (position > 0) {
-			position --;
-			if (matchesAt(position)) return position;
+		if (position <= 0) return -1;
+		int limit = Math.min(position - 1, sSize - tSize);
+		if (limit < 0) return -1;
+		if (tSize > WORD_SIZE) return previousSkipping(limit);
+		int next = -1;
+		long b = 0L;
+		while (true) {
+			int base = Math.max(limit - WORD_SIZE + 1, 0);
+			long a = window(base);
+			// the window that follows may already have been read
+			if (next != base + WORD_SIZE) b = window(base + WORD_SIZE);
+			long d = matchesFrom(a, b, candidates(base, limit));
+			if (d != 0L) return base + WORD_SIZE - 1 - Long.numberOfLeadingZeros(d);
+			if (base == 0) return -1;
+			limit = base - 1;
+			next = base;
+			b = a;
 		}
-		return -1;
 	}
 
 	@Override
@@ -90,6 +138,89 @@ class BitStoreOverlappingMatches extends AbstractMatches implements OverlappingM
 	}
 
 	boolean matchesAt(int position) {
-		return s.range(position, position + tSize).equals().store(t);
+		for (int i = 0, offset = 0; offset < tSize; i++, offset += WORD_SIZE) {
+			int length = Math.min(WORD_SIZE, tSize - offset);
+			if ((s.getBits(position + offset, length) & mask(length)) != words[i]) return false;
+		}
+		return true;
 	}
+
+	// word-parallel search
+
+	// the (zero padded) bits of the store from the given position
+	private long window(int position) {
+		// negative positions arise from overflow, beyond any store
+		if (position < 0 || position >= sSize) return 0L;
+		int length = Math.min(WORD_SIZE, sSize - position);
+		return s.getBits(position, length) & mask(length);
+	}
+
+	// identifies the candidate positions from base up to and including limit
+	private static long candidates(int base, int limit) {
+		int count = limit - base;
+		return count >= WORD_SIZE - 1 ? -1L : ~(-1L << count + 1);
+	}
+
+	// a and b are consecutive windows of the store, the candidates are
+	// narrowed by each bit of the sequence in turn until none remain
+	private long matchesFrom(long a, long b, long d) {
+		long w = words.length == 0 ? 0L : words[0];
+		for (int j = 0; j < tSize && d != 0L; j++) {
+			long bits = j == 0 ? a : a >>> j | b << -j;
+			d &= (w >>> j & 1L) == 0L ? ~bits : bits;
+		}
+		return d;
+	}
+
+	// skipping search
+
+	private int gram(int position) {
+		int i = position >>> 6;
+		int o = position & 63;
+		long bits = words[i] >>> o;
+		if (o > WORD_SIZE - GRAM_BITS) bits |= words[i + 1] << -o;
+		return (int) bits & GRAM_MASK;
+	}
+
+	private int nextSkipping(int position, int limit) {
+		if (forwardSkips == null) {
+			// distance to the last occurrence of a gram before the final gram
+			int offset = tSize - GRAM_BITS;
+			int[] skips = new int[1 << GRAM_BITS];
+			Arrays.fill(skips, offset + 1);
+			for (int i = 0; i < offset; i++) {
+				skips[gram(i)] = offset - i;
+			}
+			forwardSkips = skips;
+		}
+		int offset = tSize - GRAM_BITS;
+		int last = gram(offset);
+		while (position <= limit) {
+			int g = s.getBitsAsInt(position + offset, GRAM_BITS) & GRAM_MASK;
+			if (g == last && matchesAt(position)) return position;
+			position += forwardSkips[g];
+		}
+		return sSize;
+	}
+
+	private int previousSkipping(int position) {
+		if (backwardSkips == null) {
+			// distance to the first occurrence of a gram after the initial gram
+			int offset = tSize - GRAM_BITS;
+			int[] skips = new int[1 << GRAM_BITS];
+			Arrays.fill(skips, offset + 1);
+			for (int i = offset; i > 0; i--) {
+				skips[gram(i)] = i;
+			}
+			backwardSkips = skips;
+		}
+		int first = gram(0);
+		while (position >= 0) {
+			int g = s.getBitsAsInt(position, GRAM_BITS) & GRAM_MASK;
+			if (g == first && matchesAt(position)) return position;
+			position -= backwardSkips[g];
+		}
+		return -1;
+	}
+
 }
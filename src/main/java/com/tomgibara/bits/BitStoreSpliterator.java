@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+// reports the positions of matching bits, reading 64 bits at a time from the store;
+// splits are made at multiples of 64 bits from the starting position
+final class BitStoreSpliterator implements Spliterator.OfInt {
+
+	static final int CHARACTERISTICS = ORDERED | DISTINCT | SORTED | NONNULL;
+
+	// the smallest range that will be split
+	private static final int MIN_SPLIT = 128;
+
+	private final BitStore store;
+	private final boolean bit;
+	private final int limit;
+	// position of the lowest bit in the word
+	private int base;
+	// matching bits that have not yet been reported
+	private long word;
+
+	BitStoreSpliterator(BitStore store, boolean bit) {
+		this(store, bit, 0, store.size());
+	}
+
+	BitStoreSpliterator(BitStore store, boolean bit, int position, int limit) {
+		this.store = store;
+		this.bit = bit;
+		this.limit = limit;
+		base = position;
+		word = load(position);
+	}
+
+	private BitStoreSpliterator(BitStoreSpliterator that, int limit) {
+		store = that.store;
+		bit = that.bit;
+		this.limit = limit;
+		base = that.base;
+		word = that.word;
+	}
+
+	@Override
+	public boolean tryAdvance(IntConsumer action) {
+		if (action == null) throw new NullPointerException("null action");
+		while (word == 0L) {
+			base += 64;
+			if (base >= limit) {
+				base = limit;
+				return false;
+			}
+			word = load(base);
+		}
+		int position = base + Long.numberOfTrailingZeros(word);
+		word &= word - 1L;
+		action.accept(position);
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(IntConsumer action) {
+		if (action == null) throw new NullPointerException("null action");
+		while (true) {
+			for (long w = word; w != 0L; w &= w - 1L) {
+				action.accept(base + Long.numberOfTrailingZeros(w));
+			}
+			word = 0L;
+			base += 64;
+			if (base >= limit) break;
+			word = load(base);
+		}
+		base = limit;
+	}
+
+	@Override
+	public OfInt trySplit() {
+		int remaining = limit - base;
+		if (remaining < MIN_SPLIT) return null;
+		int mid = base + (remaining >> 1 & ~63);
+		BitStoreSpliterator prefix = new BitStoreSpliterator(this, mid);
+		base = mid;
+		word = load(mid);
+		return prefix;
+	}
+
+	@Override
+	public long estimateSize() {
+		return limit - base;
+	}
+
+	@Override
+	public int characteristics() {
+		return CHARACTERISTICS;
+	}
+
+	@Override
+	public Comparator<? super Integer> getComparator() {
+		return null;
+	}
+
+	private long load(int position) {
+		int length = Math.min(limit - position, 64);
+		if (length <= 0) return 0L;
+		long bits = store.getBits(position, length);
+		if (!bit) bits = ~bits;
+		return length == 64 ? bits : bits & ~(-1L << length);
+	}
+
+}
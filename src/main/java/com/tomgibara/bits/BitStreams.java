@@ -72,4 +72,17 @@ class BitStreams {
 	static void checkPosition(long position) {
 		if (position < 0) throw new IllegalArgumentException("negative position");
 	}
+
+	static void checkRange(int arrayLength, int offset, int length) {
+		if (offset < 0) throw new IllegalArgumentException("negative offset");
+		if (length < 0) throw new IllegalArgumentException("negative length");
+		int finish = offset + length;
+		if (finish < 0) throw new IllegalArgumentException("index overflow");
+		if (finish > arrayLength) throw new IllegalArgumentException("exceeds array length");
+	}
+
+	static void checkWidth(int width) {
+		if (width < 0) throw new IllegalArgumentException("negative width");
+		if (width > 64) throw new IllegalArgumentException("width too great");
+	}
 }
@@ -38,6 +38,10 @@ import java.util.ListIterator;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 import com.tomgibara.bits.ImmutableBit.ImmutableOne;
 import com.tomgibara.bits.ImmutableBit.ImmutableZero;
@@ -344,6 +348,8 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 	private final int finish;
 	private final long[] bits;
 	private final boolean mutable;
+	// only ever present on immutable vectors with unshared bits
+	private final RankSelectIndex index;
 
 	// public constructors
 
@@ -357,6 +363,7 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 		this.start = 0;
 		this.finish = size;
 		this.mutable = true;
+		this.index = null;
 	}
 
 	//TODO consider changing String constructors to static methods
@@ -404,10 +411,15 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 	// private constructors
 
 	private BitVector(int start, int finish, long[] bits, boolean mutable) {
+		this(start, finish, bits, mutable, null);
+	}
+
+	private BitVector(int start, int finish, long[] bits, boolean mutable, RankSelectIndex index) {
 		this.start = start;
 		this.finish = finish;
 		this.bits = bits;
 		this.mutable = mutable;
+		this.index = index;
 	}
 
 	private BitVector(Serial serial) {
@@ -701,7 +713,7 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 		from += start;
 		to += start;
 		if (to > finish) throw new IllegalArgumentException();
-		return new BitVector(from, to, bits, mutable);
+		return new BitVector(from, to, bits, mutable, indexRange(from, to));
 	}
 
 	@Override
@@ -839,6 +851,15 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 		return new VectorTests(test.ordinal());
 	}
 
+	@Override
+	public int count(Operation operation, BitStore store) {
+		if (!(store instanceof BitVector)) return BitStore.super.count(operation, store);
+		if (operation == null) throw new IllegalArgumentException("null operation");
+		BitVector that = (BitVector) store;
+		if (that.finish - that.start != finish - start) throw new IllegalArgumentException("mismatched size");
+		return countAdj(operation.ordinal(), that);
+	}
+
 	@Override
 	public BitWriter openWriter() {
 		return new VectorWriter();
@@ -851,12 +872,14 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 
 	@Override
 	public BitVector rangeFrom(int from) {
-		return new BitVector(adjPosition(from), finish, bits, mutable);
+		from = adjPosition(from);
+		return new BitVector(from, finish, bits, mutable, indexRange(from, finish));
 	}
 
 	@Override
 	public BitVector rangeTo(int to) {
-		return new BitVector(start, adjPosition(to), bits, mutable);
+		to = adjPosition(to);
+		return new BitVector(start, to, bits, mutable, indexRange(start, to));
 	}
 
 	// alignment methods
@@ -957,6 +980,48 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 		return copy;
 	}
 
+	/**
+	 * Creates an immutable copy of this {@link BitVector} to which a
+	 * {@link RankSelectIndex} is attached. The index is shared by all ranges
+	 * and immutable views of the returned vector and is used to accelerate
+	 * counting and searching their bits. If this vector is already indexed, it
+	 * is returned.
+	 *
+	 * @return an indexed immutable copy of this {@link BitVector}
+	 * @see #rankSelect()
+	 */
+
+	public BitVector indexedCopy() {
+		if (index != null) return this;
+		// the copy guarantees that no mutable view shares the indexed bits
+		BitVector copy = duplicateAdj(start, finish, true, false);
+		return new BitVector(copy.start, copy.finish, copy.bits, false, new RankSelectIndex(copy.bits, copy.start, copy.finish));
+	}
+
+	/**
+	 * Whether a {@link RankSelectIndex} is attached to this vector.
+	 *
+	 * @return true if the vector is indexed, false otherwise
+	 * @see #indexedCopy()
+	 */
+
+	public boolean isIndexed() {
+		return index != null;
+	}
+
+	/**
+	 * A rank/select index over the bits of this vector. If the vector is not
+	 * indexed, an index is created over an indexed copy; callers that will make
+	 * repeated queries should retain the index, or retain an
+	 * {@link #indexedCopy()} of the vector.
+	 *
+	 * @return a rank/select index over the vector's bits
+	 */
+
+	public RankSelectIndex rankSelect() {
+		return indexedCopy().index;
+	}
+
 	// object methods
 
 	public boolean equals(Object obj) {
@@ -1043,6 +1108,23 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 		return to - from - countOnes(from, to);
 	}
 
+	// package methods
+
+	// a mutable vector over a range of the supplied words, which are shared
+	static BitVector wrap(long[] bits, int from, int to) {
+		return new BitVector(from, to, bits, true);
+	}
+
+	// the position of the first bit within its word, used to split at word boundaries
+	int wordOffset() {
+		return start & ADDRESS_MASK;
+	}
+
+	// true if the vectors share bit data over some range
+	boolean overlaps(BitVector that) {
+		return bits == that.bits && overlapping(start, finish, that.start, that.finish);
+	}
+
 	//NOTE: preserved for performance testing
 	int firstOneInRange(int from, int to) {
 		if (from < 0) throw new IllegalArgumentException();
@@ -1370,6 +1452,10 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 		performAdj(operation, adjPosition(position), bytes, offset, length);
 	}
 
+	private RankSelectIndex indexRange(int from, int to) {
+		return index == null ? null : index.range(from, to);
+	}
+
 	private BitVector duplicateAdj(int from, int to, boolean copy, boolean mutable) {
 		if (copy) {
 			int f = from >> ADDRESS_BITS;
@@ -1378,7 +1464,7 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 			to -= f << ADDRESS_BITS;
 			return new BitVector(from, to, Arrays.copyOfRange(bits, f, t), mutable);
 		} else {
-			return new BitVector(from, to, bits, mutable);
+			return new BitVector(from, to, bits, mutable, mutable ? null : indexRange(from, to));
 		}
 	}
 
@@ -1430,65 +1516,31 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 				}
 			}
 		}
-		//TODO an additional optimization is possible when their starts differ by 64
-		//partially optimal case - both are address aligned
-		if ((this.start & ADDRESS_MASK) == 0 && (that.start & ADDRESS_MASK) == 0 && (this.finish & ADDRESS_MASK) == 0) {
+		//general case - compare a word at a time
+		final int size = finish - start;
+		final int thatStart = that.start;
+		final int body = size & ~ADDRESS_MASK;
+		{
 			final long[] thisBits = this.bits;
 			final long[] thatBits = that.bits;
-			final int f = this.start >> ADDRESS_BITS;
-			final int t = this.finish >> ADDRESS_BITS;
-			final int d = (that.start - this.start) >> ADDRESS_BITS;
-			switch (test) {
-			case EQUALS :
-				for (int i = f; i < t; i++) {
-					if (thisBits[i] != thatBits[i+d]) return false;
-				}
-				return true;
-			case EXCLUDES :
-				for (int i = f; i < t; i++) {
-					if ((thisBits[i] & thatBits[i+d]) == 0) return true;
-				}
-				return true;
-			case CONTAINS :
-				for (int i = f; i < t; i++) {
-					final long bits = thisBits[i];
-					if ((bits | thatBits[i+d]) != bits) return false;
-				}
-				return true;
-			case COMPLEMENTS :
-				for (int i = f; i < t; i++) {
-					if (~thisBits[i] != thatBits[i+d]) return false;
-				}
-				return true;
-			default : throw new IllegalArgumentException("Unexpected comparison constant: " + test);
+			final int words = body >> ADDRESS_BITS;
+			final int f = start >> ADDRESS_BITS;
+			final int g = thatStart >> ADDRESS_BITS;
+			final int r = start & ADDRESS_MASK;
+			final int s = thatStart & ADDRESS_MASK;
+			for (int i = 0; i < words; i++) {
+				long thisB = r == 0 ? thisBits[f + i] : (thisBits[f + i] >>> r) | (thisBits[f + i + 1] << -r);
+				long thatB = s == 0 ? thatBits[g + i] : (thatBits[g + i] >>> s) | (thatBits[g + i + 1] << -s);
+				if (!test(test, thisB, thatB)) return false;
 			}
 		}
-		//non-optimized case
-		//TODO could be optimized with long comparisions
-		final int size = finish - start;
-		switch (test) {
-		case EQUALS :
-			for (int i = 0; i < size; i++) {
-				if (that.getBitAdj(that.start + i) != this.getBitAdj(this.start + i)) return false;
-			}
-			return true;
-		case EXCLUDES :
-			for (int i = 0; i < size; i++) {
-				if (that.getBitAdj(that.start + i) && this.getBitAdj(this.start + i)) return false;
-			}
-			return true;
-		case CONTAINS :
-			for (int i = 0; i < size; i++) {
-				if (that.getBitAdj(that.start + i) && !this.getBitAdj(this.start + i)) return false;
-			}
-			return true;
-		case COMPLEMENTS :
-			for (int i = 0; i < size; i++) {
-				if (that.getBitAdj(that.start + i) == this.getBitAdj(this.start + i)) return false;
-			}
-			return true;
-		default : throw new IllegalArgumentException("Unexpected comparison constant: " + test);
-		}
+		final int tail = size - body;
+		if (tail == 0) return true;
+		long thisB = this.getBitsAdj(start + body, tail);
+		long thatB = that.getBitsAdj(thatStart + body, tail);
+		// pad the bits of the other vector so that complements are detected
+		if (test == COMPLEMENTS) thatB |= -1L << tail;
+		return test(test, thisB, thatB);
 	}
 
 	// size cannot exceed 64
@@ -1496,10 +1548,10 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 		switch (size) {
 		case 0 : return true;
 		case 1 : return test(test, getBitAdj(start), (bits & 1L) != 0L);
-		case 64: return test(test, getBitsAdj(0, 64), bits);
+		case 64: return test(test, getBitsAdj(start, 64), bits);
 		default :
 			long m = -1L << size;
-			long value = getBitsAdj(0, size);
+			long value = getBitsAdj(start, size);
 			if (test == COMPLEMENTS) {
 				bits |= m;
 			} else {
@@ -1524,7 +1576,7 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 		case EQUALS :      return a  ==  b;
 		case EXCLUDES :    return (a  &  b) ==  0L;
 		case CONTAINS :    return (a  | ~b) == -1L;
-		case COMPLEMENTS : return a  !=  b;
+		case COMPLEMENTS : return a  == ~b;
 		default : throw new IllegalArgumentException("Unexpected comparison constant: " + test);
 		}
 	}
@@ -1611,6 +1663,37 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 		return count;
 	}
 
+	// counts the ones in the combined words of two equally sized vectors
+	private int countAdj(int operation, BitVector that) {
+		if (operation == SET) return that.countOnesAdj(that.start, that.finish);
+		final int size = finish - start;
+		final int limit = size & ~ADDRESS_MASK;
+		int count = 0;
+		if ((start & ADDRESS_MASK) == 0 && (that.start & ADDRESS_MASK) == 0) {
+			// both aligned, combine words directly
+			final long[] these = bits;
+			final long[] those = that.bits;
+			final int f = start >> ADDRESS_BITS;
+			final int g = that.start >> ADDRESS_BITS;
+			final int n = limit >> ADDRESS_BITS;
+			switch (operation) {
+			case AND: for (int i = 0; i < n; i++) count += Long.bitCount(these[f + i] & those[g + i]); break;
+			case OR : for (int i = 0; i < n; i++) count += Long.bitCount(these[f + i] | those[g + i]); break;
+			case XOR: for (int i = 0; i < n; i++) count += Long.bitCount(these[f + i] ^ those[g + i]); break;
+			}
+		} else {
+			final Operation op = Operation.values[operation];
+			for (int i = 0; i < limit; i += ADDRESS_SIZE) {
+				count += Long.bitCount(op.longs(getBitsAdj(start + i, ADDRESS_SIZE), that.getBitsAdj(that.start + i, ADDRESS_SIZE)));
+			}
+		}
+		final int rem = size - limit;
+		if (rem > 0) {
+			count += Long.bitCount(Operation.values[operation].longs(getBitsAdj(start + limit, rem), that.getBitsAdj(that.start + limit, rem)));
+		}
+		return count;
+	}
+
 	private boolean isAllOnesAdj(int from, int to) {
 		if (from == to) return true;
 		final int f = from >> ADDRESS_BITS;
@@ -1717,9 +1800,48 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 		if (thatSize <= ADDRESS_SIZE) {
 			performAdj(operation, position, that.getBitsAdj(that.start, thatSize), thatSize);
 		} else {
-			// TODO would like not to depend on writer here
-			// a direct implementation would be faster
-			that.writeTo( new VectorWriter(operation, position, position + thatSize) );
+			performAdjWords(operation, position, that, that.start, thatSize);
+		}
+	}
+
+	// length guaranteed to exceed the address size
+	// loops are kept free of calls and branches so that they may be vectorized
+	private void performAdjWords(int operation, int position, BitVector that, int from, int length) {
+		final int to = position + length;
+		// process the head so that the body starts on a word boundary
+		final int head = -position & ADDRESS_MASK;
+		if (head != 0) {
+			performAdj(operation, position, that.getBitsAdj(from, head), head);
+			position += head;
+			from += head;
+		}
+		// process the body a whole word at a time
+		final long[] src = that.bits;
+		final int f = position >> ADDRESS_BITS;
+		final int t = to >> ADDRESS_BITS;
+		final int s = from & ADDRESS_MASK;
+		final int j = (from >> ADDRESS_BITS) - f;
+		if (s == 0) {
+			switch (operation) {
+			case SET: System.arraycopy(src, f + j, bits, f, t - f); break;
+			case AND: for (int i = f; i < t; i++) bits[i] &= src[i + j]; break;
+			case OR : for (int i = f; i < t; i++) bits[i] |= src[i + j]; break;
+			case XOR: for (int i = f; i < t; i++) bits[i] ^= src[i + j]; break;
+			}
+		} else {
+			final int r = ADDRESS_SIZE - s;
+			switch (operation) {
+			case SET: for (int i = f; i < t; i++) bits[i]  = (src[i + j] >>> s) | (src[i + j + 1] << r); break;
+			case AND: for (int i = f; i < t; i++) bits[i] &= (src[i + j] >>> s) | (src[i + j + 1] << r); break;
+			case OR : for (int i = f; i < t; i++) bits[i] |= (src[i + j] >>> s) | (src[i + j + 1] << r); break;
+			case XOR: for (int i = f; i < t; i++) bits[i] ^= (src[i + j] >>> s) | (src[i + j + 1] << r); break;
+			}
+		}
+		// process the tail
+		final int tail = to & ADDRESS_MASK;
+		if (tail != 0) {
+			final int p = t << ADDRESS_BITS;
+			performAdj(operation, p, that.getBitsAdj(from + p - position, tail), tail);
 		}
 	}
 
@@ -1961,8 +2083,8 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 		}
 		// check body
 		final int a = from & ADDRESS_MASK;
-		final int f = from + (ADDRESS_SIZE - a);
-		while (i >= f) {
+		final int f = a == 0 ? from : from + (ADDRESS_SIZE - a);
+		while (i > f) {
 			i -= ADDRESS_SIZE;
 			final int j = Long.numberOfLeadingZeros( bits[i >> ADDRESS_BITS] );
 			if (j != ADDRESS_SIZE) return i + ADDRESS_SIZE - (j + 1);
@@ -1995,8 +2117,8 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 		}
 		// check body
 		final int a = from & ADDRESS_MASK;
-		final int f = from + (ADDRESS_SIZE - a);
-		while (i >= f) {
+		final int f = a == 0 ? from : from + (ADDRESS_SIZE - a);
+		while (i > f) {
 			i -= ADDRESS_SIZE;
 			final int j = Long.numberOfLeadingZeros( ~bits[i >> ADDRESS_BITS] );
 			if (j != ADDRESS_SIZE) return i + ADDRESS_SIZE - (j + 1);
@@ -2382,7 +2504,7 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 
 		@Override
 		public int count() {
-			return countOnesAdj(start, finish);
+			return index == null ? countOnesAdj(start, finish) : index.countOnes();
 		}
 
 		@Override
@@ -2400,14 +2522,14 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 			if (position < 0) throw new IllegalArgumentException();
 			position += start;
 			if (position > finish) throw new IllegalArgumentException();
-			return firstOneInRangeAdj(position, finish) - start;
+			return (index == null ? firstOneInRangeAdj(position, finish) : index.nextOneAdj(position)) - start;
 		}
 
 		public int previous(int position) {
 			if (position < 0) throw new IllegalArgumentException();
 			position += start;
 			if (position - 1 > finish) throw new IllegalArgumentException();
-			return lastOneInRangeAdj(start, position) - start;
+			return (index == null ? lastOneInRangeAdj(start, position) : index.previousOneAdj(position)) - start;
 		}
 
 		public Positions positions() {
@@ -2425,6 +2547,17 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 		public SortedSet<Integer> asSet() {
 			return new IntSet(true, start);
 		}
+
+		@Override
+		public IntStream stream() {
+			return StreamSupport.intStream(new VectorSpliterator(true), false);
+		}
+
+		@Override
+		public void forEach(IntConsumer action) {
+			if (action == null) throw new IllegalArgumentException("null action");
+			new VectorSpliterator(true).forEachRemaining(action);
+		}
 	}
 
 	private final class MatchesZeros extends AbstractBitMatches {
@@ -2461,7 +2594,7 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 
 		@Override
 		public int count() {
-			return finish - start - countOnesAdj(start, finish);
+			return index == null ? finish - start - countOnesAdj(start, finish) : index.countZeros();
 		}
 
 		@Override
@@ -2479,7 +2612,7 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 			if (position < 0) throw new IllegalArgumentException();
 			position += start;
 			if (position > finish) throw new IllegalArgumentException();
-			return firstZeroInRangeAdj(position, finish) - start;
+			return (index == null ? firstZeroInRangeAdj(position, finish) : index.nextZeroAdj(position)) - start;
 		}
 
 		@Override
@@ -2487,7 +2620,7 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 			if (position < 0) throw new IllegalArgumentException();
 			position += start;
 			if (position - 1 > finish) throw new IllegalArgumentException();
-			return lastZeroInRangeAdj(start, position) - start;
+			return (index == null ? lastZeroInRangeAdj(start, position) : index.previousZeroAdj(position)) - start;
 		}
 
 		@Override
@@ -2508,6 +2641,108 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 			return new IntSet(false, start);
 		}
 
+		@Override
+		public IntStream stream() {
+			return StreamSupport.intStream(new VectorSpliterator(false), false);
+		}
+
+		@Override
+		public void forEach(IntConsumer action) {
+			if (action == null) throw new IllegalArgumentException("null action");
+			new VectorSpliterator(false).forEachRemaining(action);
+		}
+
+	}
+
+	// reports positions a word at a time directly from the bits, splitting at word boundaries
+	private final class VectorSpliterator implements Spliterator.OfInt {
+
+		private final boolean bit;
+		// the index of the word after the last
+		private final int limit;
+		// the index of the current word
+		private int index;
+		// matching bits of the current word that have not been reported
+		private long word;
+
+		VectorSpliterator(boolean bit) {
+			this.bit = bit;
+			limit = (finish + ADDRESS_MASK) >> ADDRESS_BITS;
+			index = start >> ADDRESS_BITS;
+			word = load(index);
+		}
+
+		private VectorSpliterator(VectorSpliterator that, int limit) {
+			this.bit = that.bit;
+			this.limit = limit;
+			this.index = that.index;
+			this.word = that.word;
+		}
+
+		@Override
+		public boolean tryAdvance(IntConsumer action) {
+			if (action == null) throw new NullPointerException("null action");
+			while (word == 0L) {
+				if (++index >= limit) {
+					index = limit;
+					return false;
+				}
+				word = load(index);
+			}
+			int position = (index << ADDRESS_BITS) + Long.numberOfTrailingZeros(word) - start;
+			word &= word - 1L;
+			action.accept(position);
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(IntConsumer action) {
+			if (action == null) throw new NullPointerException("null action");
+			while (index < limit) {
+				final int offset = (index << ADDRESS_BITS) - start;
+				for (long w = word; w != 0L; w &= w - 1L) {
+					action.accept(offset + Long.numberOfTrailingZeros(w));
+				}
+				word = load(++index);
+			}
+		}
+
+		@Override
+		public OfInt trySplit() {
+			int remaining = limit - index;
+			if (remaining < 2) return null;
+			int mid = index + (remaining >> 1);
+			VectorSpliterator prefix = new VectorSpliterator(this, mid);
+			index = mid;
+			word = load(mid);
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return (long) (limit - index) << ADDRESS_BITS;
+		}
+
+		@Override
+		public int characteristics() {
+			return BitStoreSpliterator.CHARACTERISTICS;
+		}
+
+		@Override
+		public Comparator<? super Integer> getComparator() {
+			return null;
+		}
+
+		private long load(int i) {
+			if (i >= limit) return 0L;
+			long w = bit ? bits[i] : ~bits[i];
+			if (i == start >> ADDRESS_BITS) w &= -1L << (start & ADDRESS_MASK);
+			if (i == (finish - 1) >> ADDRESS_BITS) {
+				final int r = finish & ADDRESS_MASK;
+				if (r != 0) w &= ~(-1L << r);
+			}
+			return w;
+		}
 	}
 
 	private final class VectorTests implements Tests {
@@ -2528,12 +2763,11 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 				if (finish - start != vector.finish - vector.start) throw new IllegalArgumentException();
 				return test(test, vector);
 			}
-			//TODO needs to be optimized
 			switch (test) {
 			case EQUALS : return new BitStoreTests.Equals(BitVector.this).store(store);
 			case EXCLUDES : return new BitStoreTests.Excludes(BitVector.this).store(store);
 			case CONTAINS : return new BitStoreTests.Contains(BitVector.this).store(store);
-			case COMPLEMENTS : new BitStoreTests.Complements(BitVector.this).store(store);
+			case COMPLEMENTS : return new BitStoreTests.Complements(BitVector.this).store(store);
 			default : throw new IllegalStateException();
 			}
 		}
@@ -3198,6 +3432,41 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 			}
 		}
 
+		@Override
+		public void readBytes(byte[] bytes, int offset, int length) {
+			if (bytes == null) throw new IllegalArgumentException("null bytes");
+			BitStreams.checkRange(bytes.length, offset, length);
+			if (position - ((long) length << 3) < finalPos) throw new EndOfBitStreamException();
+			int finish = offset + length;
+			// eight bytes per word
+			for (; finish - offset >= 8; offset += 8) {
+				long value = getBitsAdj(position -= 64, 64);
+				for (int i = offset + 7; i >= offset; i--) {
+					bytes[i] = (byte) value;
+					value >>= 8;
+				}
+			}
+			for (; offset < finish; offset++) {
+				bytes[offset] = (byte) getBitsAdj(position -= 8, 8);
+			}
+		}
+
+		@Override
+		public void readLongs(long[] longs, int offset, int length, int width) {
+			if (longs == null) throw new IllegalArgumentException("null longs");
+			BitStreams.checkRange(longs.length, offset, length);
+			BitStreams.checkWidth(width);
+			if (position - (long) length * width < finalPos) throw new EndOfBitStreamException();
+			int finish = offset + length;
+			if (width == 0) {
+				Arrays.fill(longs, offset, finish, 0L);
+				return;
+			}
+			for (; offset < finish; offset++) {
+				longs[offset] = getBitsAdj(position -= width, width);
+			}
+		}
+
 		@Override
 		public boolean readBoolean() {
 			if (position == finalPos) throw new EndOfBitStreamException();
@@ -3273,6 +3542,41 @@ public final class BitVector implements BitStore, Alignable<BitVector>, Cloneabl
 			return count;
 		}
 
+		@Override
+		public long writeBytes(byte[] bytes, int offset, int length) {
+			if (bytes == null) throw new IllegalArgumentException("null bytes");
+			BitStreams.checkRange(bytes.length, offset, length);
+			long c = (long) length << 3;
+			if (position - c < finalPos) throw new EndOfBitStreamException();
+			int finish = offset + length;
+			// eight bytes per word
+			for (; finish - offset >= 8; offset += 8) {
+				long value = 0L;
+				for (int i = offset; i < offset + 8; i++) {
+					value = value << 8 | bytes[i] & 0xff;
+				}
+				performAdj(operation, position -= 64, value, 64);
+			}
+			for (; offset < finish; offset++) {
+				performAdj(operation, position -= 8, bytes[offset], 8);
+			}
+			return c;
+		}
+
+		@Override
+		public long writeLongs(long[] longs, int offset, int length, int width) {
+			if (longs == null) throw new IllegalArgumentException("null longs");
+			BitStreams.checkRange(longs.length, offset, length);
+			BitStreams.checkWidth(width);
+			long c = (long) length * width;
+			if (position - c < finalPos) throw new EndOfBitStreamException();
+			if (width == 0) return 0L;
+			for (int finish = offset + length; offset < finish; offset++) {
+				performAdj(operation, position -= width, longs[offset], width);
+			}
+			return c;
+		}
+
 		@Override
 		public int write(BigInteger bits, int count) {
 			if (bits == null) throw new IllegalArgumentException("null bits");
@@ -135,6 +135,18 @@ class BitVectorWriter implements BitWriter {
 		return writer.write(bits, count);
 	}
 
+	@Override
+	public long writeBytes(byte[] bytes, int offset, int length) throws BitStreamException {
+		ensureAvailable(Math.max((long) length << 3, 0L)); // guard against bad length
+		return writer.writeBytes(bytes, offset, length);
+	}
+
+	@Override
+	public long writeLongs(long[] longs, int offset, int length, int width) throws BitStreamException {
+		ensureAvailable(Math.max((long) length * width, 0L)); // guard against bad length or width
+		return writer.writeLongs(longs, offset, length, width);
+	}
+
 	@Override
 	public int flush() throws BitStreamException {
 		return writer.flush();
@@ -164,6 +164,69 @@ public interface BitWriter extends BitStream {
 		return c;
 	}
 
+	/**
+	 * Writes a range of bytes from an array, each byte as eight bits, most
+	 * significant bit first. Implementations may write bytes more efficiently
+	 * when the stream is positioned on a byte boundary.
+	 *
+	 * @param bytes
+	 *            the array containing the bytes to write
+	 * @param offset
+	 *            the index in the array of the first byte to write
+	 * @param length
+	 *            the number of bytes to write
+	 * @return the number of bits written
+	 * @throws BitStreamException
+	 *             if an exception occurs when writing
+	 */
+
+	default long writeBytes(byte[] bytes, int offset, int length) throws BitStreamException {
+		if (bytes == null) throw new IllegalArgumentException("null bytes");
+		BitStreams.checkRange(bytes.length, offset, length);
+		int finish = offset + length;
+		long c = 0L;
+		// write eight bytes at a time
+		for (; finish - offset >= 8; offset += 8) {
+			long value = 0L;
+			for (int i = offset; i < offset + 8; i++) {
+				value = value << 8 | bytes[i] & 0xff;
+			}
+			c += write(value, 64);
+		}
+		for (; offset < finish; offset++) {
+			c += write(bytes[offset], 8);
+		}
+		return c;
+	}
+
+	/**
+	 * Writes a range of values from an array, each with the same number of
+	 * bits. Each value is written as per {@link #write(long, int)}.
+	 *
+	 * @param longs
+	 *            the array containing the values to write
+	 * @param offset
+	 *            the index in the array of the first value to write
+	 * @param length
+	 *            the number of values to write
+	 * @param width
+	 *            the number of bits in each value, between 0 and 64
+	 * @return the number of bits written
+	 * @throws BitStreamException
+	 *             if an exception occurs when writing
+	 */
+
+	default long writeLongs(long[] longs, int offset, int length, int width) throws BitStreamException {
+		if (longs == null) throw new IllegalArgumentException("null longs");
+		BitStreams.checkRange(longs.length, offset, length);
+		BitStreams.checkWidth(width);
+		long c = 0L;
+		for (int finish = offset + length; offset < finish; offset++) {
+			c += write(longs[offset], width);
+		}
+		return c;
+	}
+
 	/**
 	 * Flushes this output stream and forces any buffered output bits to be
 	 * written out to an underlying stream. This DOES NOT necessarily flush an
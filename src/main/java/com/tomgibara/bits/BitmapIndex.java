@@ -0,0 +1,517 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.tomgibara.bits.BitStore.Positions;
+
+/**
+ * <p>
+ * Associates keys with bitmaps over a fixed number of rows: the bit at index
+ * <i>r</i> of a key's bitmap is set if row <i>r</i> has that key. Bitmaps may
+ * be supplied, or accumulated row by row with {@link #set(Object, int)}.
+ *
+ * <p>
+ * Bitmaps are combined by building {@link Query} instances; these are
+ * immutable expression trees of conjunctions, disjunctions and negations that
+ * are evaluated lazily. On evaluation a query is compiled into a single
+ * {@link BitStore} view (see {@link Bits#and(BitStore...)}) that computes its
+ * bits a word at a time, so that counting the rows that match a query, or
+ * finding the first of them, requires no intermediate bitmaps. When a query
+ * is counted or materialized, the operands of each node are first reordered
+ * by their cardinality, so that conjunctions meet their sparsest operands
+ * first, and any sub-expression that is known to be empty or full is replaced
+ * by a constant. The cardinality of each bitmap is obtained at most once per
+ * evaluation, and not at all by methods that may stop before reading every
+ * row, such as {@link Query#first()}.
+ *
+ * <p>
+ * Bitmaps are referenced and not copied by the index, and a query references
+ * the bitmaps its keys had when it was created, so changes to those bitmaps
+ * are reflected in any subsequent evaluation of the query.
+ *
+ * @author Tom Gibara
+ *
+ * @param <K>
+ *            the type of key
+ */
+
+public final class BitmapIndex<K> {
+
+	// statics
+
+	private static final int LEAF = 0;
+	private static final int NOT = 1;
+	private static final int AND = 2;
+	private static final int OR = 3;
+
+	// fields
+
+	private final int size;
+	private final Map<K, BitStore> bitmaps = new HashMap<>();
+
+	// constructors
+
+	/**
+	 * Creates an empty index over the specified number of rows.
+	 *
+	 * @param size
+	 *            the number of rows
+	 */
+
+	public BitmapIndex(int size) {
+		if (size < 0) throw new IllegalArgumentException("negative size");
+		this.size = size;
+	}
+
+	// accessors
+
+	/**
+	 * The number of rows indexed; this is the size of every bitmap.
+	 *
+	 * @return the number of rows
+	 */
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * The keys which have bitmaps.
+	 *
+	 * @return an unmodifiable set of keys
+	 */
+
+	public Set<K> keys() {
+		return Collections.unmodifiableSet(bitmaps.keySet());
+	}
+
+	/**
+	 * The bitmap of a key.
+	 *
+	 * @param key
+	 *            a key
+	 * @return the bitmap of the key, or null if the key has no bitmap
+	 */
+
+	public BitStore bitmap(K key) {
+		return bitmaps.get(key);
+	}
+
+	// mutation
+
+	/**
+	 * Records the bitmap of a key, replacing any existing bitmap.
+	 *
+	 * @param key
+	 *            a key
+	 * @param bitmap
+	 *            the rows that have the key, of the same size as the index
+	 * @return the bitmap previously recorded for the key, or null
+	 */
+
+	public BitStore put(K key, BitStore bitmap) {
+		if (bitmap == null) throw new IllegalArgumentException("null bitmap");
+		if (bitmap.size() != size) throw new IllegalArgumentException("mismatched bitmap size");
+		return bitmaps.put(key, bitmap);
+	}
+
+	/**
+	 * Removes the bitmap of a key.
+	 *
+	 * @param key
+	 *            a key
+	 * @return the bitmap that was removed, or null
+	 */
+
+	public BitStore remove(K key) {
+		return bitmaps.remove(key);
+	}
+
+	/**
+	 * Records that a row has a key. A {@link BitVector} is created for the key
+	 * if it does not already have a bitmap.
+	 *
+	 * @param key
+	 *            a key
+	 * @param row
+	 *            the index of a row
+	 * @return true if the row did not previously have the key
+	 */
+
+	public boolean set(K key, int row) {
+		if (row < 0) throw new IllegalArgumentException("negative row");
+		if (row >= size) throw new IllegalArgumentException("row too large");
+		BitStore bitmap = bitmaps.get(key);
+		if (bitmap == null) {
+			bitmap = new BitVector(size);
+			bitmaps.put(key, bitmap);
+		}
+		return !bitmap.getThenSetBit(row, true);
+	}
+
+	// queries
+
+	/**
+	 * A query that matches the rows with a key. A key without a bitmap matches
+	 * no rows.
+	 *
+	 * @param key
+	 *            a key
+	 * @return a query for the key
+	 */
+
+	public Query query(K key) {
+		BitStore bitmap = bitmaps.get(key);
+		return new Query(this, LEAF, bitmap == null ? Bits.zeroBits(size) : bitmap, null);
+	}
+
+	/**
+	 * A query that matches every row.
+	 *
+	 * @return a query matching all rows
+	 */
+
+	public Query all() {
+		return new Query(this, LEAF, Bits.oneBits(size), null);
+	}
+
+	/**
+	 * A query that matches no rows.
+	 *
+	 * @return a query matching no rows
+	 */
+
+	public Query none() {
+		return new Query(this, LEAF, Bits.zeroBits(size), null);
+	}
+
+	/**
+	 * A query that matches the rows matched by every one of the supplied
+	 * queries.
+	 *
+	 * @param queries
+	 *            queries over this index
+	 * @return the conjunction of the queries
+	 */
+
+	public Query and(Query... queries) {
+		return combine(this, AND, queries);
+	}
+
+	/**
+	 * A query that matches the rows matched by any one of the supplied
+	 * queries.
+	 *
+	 * @param queries
+	 *            queries over this index
+	 * @return the disjunction of the queries
+	 */
+
+	public Query or(Query... queries) {
+		return combine(this, OR, queries);
+	}
+
+	// object methods
+
+	@Override
+	public String toString() {
+		return "BitmapIndex of " + size + " rows with " + bitmaps.size() + " keys";
+	}
+
+	// private utility methods
+
+	private static BitStore[] stores(List<Compiled> cs) {
+		BitStore[] stores = new BitStore[cs.size()];
+		for (int i = 0; i < stores.length; i++) {
+			stores[i] = cs.get(i).store;
+		}
+		return stores;
+	}
+
+	private static Query combine(BitmapIndex<?> index, int type, Query... queries) {
+		if (queries == null) throw new IllegalArgumentException("null queries");
+		if (queries.length == 0) return type == AND ? index.all() : index.none();
+		List<Query> operands = new ArrayList<>(queries.length);
+		for (Query query : queries) {
+			if (query == null) throw new IllegalArgumentException("null query");
+			if (query.index != index) throw new IllegalArgumentException("query from different index");
+			// flatten nested operations of the same type
+			if (query.type == type) {
+				Collections.addAll(operands, query.operands);
+			} else {
+				operands.add(query);
+			}
+		}
+		if (operands.size() == 1) return operands.get(0);
+		return new Query(index, type, null, operands.toArray(new Query[operands.size()]));
+	}
+
+	// inner classes
+
+	/**
+	 * <p>
+	 * An immutable boolean expression over the bitmaps of a
+	 * {@link BitmapIndex}. Queries are obtained from the index and combined
+	 * with {@link #and(Query)}, {@link #or(Query)}, {@link #andNot(Query)} and
+	 * {@link #not()}. Nothing is evaluated until one of the methods
+	 * {@link #bits()}, {@link #count()}, {@link #first()} or
+	 * {@link #evaluate()} is called.
+	 */
+
+	public static final class Query {
+
+		private final BitmapIndex<?> index;
+		private final int type;
+		private final BitStore bitmap;
+		private final Query[] operands;
+
+		private Query(BitmapIndex<?> index, int type, BitStore bitmap, Query[] operands) {
+			this.index = index;
+			this.type = type;
+			this.bitmap = bitmap;
+			this.operands = operands;
+		}
+
+		// combination
+
+		/**
+		 * A query matching the rows matched by both this and another query.
+		 *
+		 * @param query
+		 *            a query over the same index
+		 * @return the conjunction of the queries
+		 */
+
+		public Query and(Query query) {
+			return combine(index, AND, this, query);
+		}
+
+		/**
+		 * A query matching the rows matched by either this or another query.
+		 *
+		 * @param query
+		 *            a query over the same index
+		 * @return the disjunction of the queries
+		 */
+
+		public Query or(Query query) {
+			return combine(index, OR, this, query);
+		}
+
+		/**
+		 * A query matching the rows matched by this query but not by another.
+		 *
+		 * @param query
+		 *            a query over the same index
+		 * @return the difference of the queries
+		 */
+
+		public Query andNot(Query query) {
+			if (query == null) throw new IllegalArgumentException("null query");
+			return combine(index, AND, this, query.not());
+		}
+
+		/**
+		 * A query matching the rows that are not matched by this query.
+		 *
+		 * @return the negation of this query
+		 */
+
+		public Query not() {
+			return type == NOT ? operands[0] : new Query(index, NOT, null, new Query[] { this });
+		}
+
+		// evaluation
+
+		/**
+		 * The rows matched by this query, as an immutable view which computes
+		 * its bits from the bitmaps of the index a word at a time. Since the
+		 * view may be only partly read, its operands are not reordered by
+		 * cardinality and it reflects later changes to the bitmaps.
+		 *
+		 * @return the matched rows
+		 */
+
+		public BitStore bits() {
+			return compile(null).store;
+		}
+
+		/**
+		 * The number of rows matched by this query.
+		 *
+		 * @return the number of matching rows
+		 */
+
+		public int count() {
+			Compiled compiled = compile(new IdentityHashMap<>());
+			// the bounds meet when the count is already known
+			return compiled.min == compiled.max ? compiled.min : compiled.store.ones().count();
+		}
+
+		/**
+		 * Whether this query matches no rows.
+		 *
+		 * @return true if there are no matching rows, false otherwise
+		 */
+
+		public boolean isEmpty() {
+			return first() == index.size;
+		}
+
+		/**
+		 * The index of the first row matched by this query.
+		 *
+		 * @return the first matching row, or the size of the index if there
+		 *         is none
+		 */
+
+		public int first() {
+			return compile(null).store.ones().first();
+		}
+
+		/**
+		 * The rows matched by this query.
+		 *
+		 * @return the positions of the matching rows
+		 */
+
+		public Positions positions() {
+			return compile(null).store.ones().positions();
+		}
+
+		/**
+		 * The rows matched by this query, materialized in a single pass.
+		 *
+		 * @return a new vector of the matching rows
+		 */
+
+		public BitVector evaluate() {
+			return Bits.evaluate(compile(new IdentityHashMap<>()).store);
+		}
+
+		// object methods
+
+		@Override
+		public String toString() {
+			switch (type) {
+			case LEAF: return "[" + bitmap.ones().count() + "]";
+			case NOT: return "!" + operands[0];
+			default:
+				StringBuilder sb = new StringBuilder("(");
+				for (int i = 0; i < operands.length; i++) {
+					if (i > 0) sb.append(type == AND ? " & " : " | ");
+					sb.append(operands[i]);
+				}
+				return sb.append(')').toString();
+			}
+		}
+
+		// private utility methods
+
+		// counts caches bitmap cardinalities, if null operands are left unordered
+		private Compiled compile(Map<BitStore, Integer> counts) {
+			int size = index.size;
+			switch (type) {
+			case LEAF: {
+				if (counts == null) return new Compiled(bitmap.immutableView(), 0, size);
+				int count = counts.computeIfAbsent(bitmap, b -> b.ones().count());
+				return new Compiled(bitmap.immutableView(), count, count);
+			}
+			case NOT: {
+				Compiled c = operands[0].compile(counts);
+				return constant(size - c.max, size - c.min, c.store.flipped());
+			}
+			case AND: {
+				List<Compiled> cs = new ArrayList<>(operands.length);
+				// the conjunction is missing at most the rows missing from its operands
+				long missing = 0L;
+				int max = size;
+				for (Query operand : operands) {
+					Compiled c = operand.compile(counts);
+					// an empty operand empties the conjunction
+					if (c.max == 0) return new Compiled(Bits.zeroBits(size), 0, 0);
+					// a full operand has no effect
+					if (c.min == size) continue;
+					missing += size - c.min;
+					max = Math.min(max, c.max);
+					cs.add(c);
+				}
+				if (cs.isEmpty()) return new Compiled(Bits.oneBits(size), size, size);
+				if (cs.size() == 1) return cs.get(0);
+				// sparsest first so that words are eliminated as early as possible
+				cs.sort((a, b) -> Integer.compare(a.max, b.max));
+				return constant((int) Math.max(size - missing, 0L), max, Bits.and(stores(cs)));
+			}
+			case OR: {
+				List<Compiled> cs = new ArrayList<>(operands.length);
+				int min = 0;
+				long max = 0L;
+				for (Query operand : operands) {
+					Compiled c = operand.compile(counts);
+					// a full operand fills the disjunction
+					if (c.min == size) return new Compiled(Bits.oneBits(size), size, size);
+					// an empty operand has no effect
+					if (c.max == 0) continue;
+					min = Math.max(min, c.min);
+					max += c.max;
+					cs.add(c);
+				}
+				if (cs.isEmpty()) return new Compiled(Bits.zeroBits(size), 0, 0);
+				if (cs.size() == 1) return cs.get(0);
+				// densest first so that words are filled as early as possible
+				cs.sort((a, b) -> Integer.compare(b.min, a.min));
+				return constant(min, (int) Math.min(max, size), Bits.or(stores(cs)));
+			}
+			default:
+				throw new IllegalStateException("unexpected type");
+			}
+		}
+
+		// substitutes a constant store if the bounds show that one exists
+		private Compiled constant(int min, int max, BitStore store) {
+			int size = index.size;
+			if (max == 0) return new Compiled(Bits.zeroBits(size), 0, 0);
+			if (min == size) return new Compiled(Bits.oneBits(size), size, size);
+			return new Compiled(store, min, max);
+		}
+
+	}
+
+	// a compiled query, with bounds on the number of rows it matches
+	private static final class Compiled {
+
+		final BitStore store;
+		final int min;
+		final int max;
+
+		Compiled(BitStore store, int min, int max) {
+			this.store = store;
+			this.min = min;
+			this.max = max;
+		}
+
+	}
+
+}
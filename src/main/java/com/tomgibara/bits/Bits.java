@@ -16,6 +16,7 @@
  */
 package com.tomgibara.bits;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
@@ -26,9 +27,9 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.BitSet;
 import java.util.Comparator;
-import java.util.ListIterator;
 import java.util.Random;
 import java.util.SortedSet;
+import java.util.concurrent.ForkJoinPool;
 
 import com.tomgibara.bits.BitStore.Matches;
 import com.tomgibara.bits.BitStore.Positions;
@@ -263,6 +264,108 @@ public final class Bits {
 		}
 	}
 
+	/**
+	 * Creates a new mutable {@link LargeBitStore} instance with the specified
+	 * size. Unlike {@link #store(int)}, the size may exceed
+	 * <code>Integer.MAX_VALUE</code>.
+	 *
+	 * @param size
+	 *            the capacity, in bits, of the new {@link LargeBitStore}
+	 *
+	 * @return a new mutable {@link LargeBitStore} of the specified size.
+	 * @see LargeBitVector
+	 */
+
+	public static LargeBitStore largeStore(long size) {
+		if (size < 0L) throw new IllegalArgumentException("negative size");
+		return new LargeBitVector(size);
+	}
+
+	/**
+	 * Creates a new mutable {@link BitStore} that stores its bits in a
+	 * compressed form. The bits are partitioned into chunks, each of which is
+	 * held in the most compact of a sorted array of positions, a bitmap or a
+	 * list of runs. This makes the store well suited to bits that are sparse
+	 * or that cluster, while operations between such stores (and with
+	 * {@link BitVector}) are performed chunk-by-chunk without decompression.
+	 * An 'and-not' operation is performed natively by applying
+	 * {@link BitStore#and()} with a {@link BitStore#flipped()} compressed store.
+	 *
+	 * @param size
+	 *            the capacity, in bits, of the new {@link BitStore}
+	 *
+	 * @return a new mutable compressed {@link BitStore} of the specified size.
+	 */
+
+	public static BitStore compressedStore(int size) {
+		checkSize(size);
+		return new CompressedBitStore(size);
+	}
+
+	/**
+	 * Creates a new mutable {@link BufferBitStore} with the specified size.
+	 * The bits of the store are held off-heap in directly allocated memory
+	 * which may be freed explicitly via {@link BufferBitStore#release()}.
+	 *
+	 * @param size
+	 *            the capacity, in bits, of the new store
+	 *
+	 * @return a new mutable {@link BitStore} backed by off-heap memory
+	 * @see #asStore(ByteBuffer)
+	 */
+
+	public static BufferBitStore directStore(int size) {
+		checkSize(size);
+		return BufferBitStore.allocate(size);
+	}
+
+	/**
+	 * Creates a new {@link ConcurrentBitStore} with the specified size. The
+	 * store may be modified by multiple threads without synchronization;
+	 * single bit operations are linearizable and operations over ranges of
+	 * bits are applied atomically to each underlying 64-bit word.
+	 *
+	 * @param size
+	 *            the capacity, in bits, of the new store
+	 *
+	 * @return a new mutable {@link BitStore} that is safe for concurrent use
+	 */
+
+	public static ConcurrentBitStore concurrentStore(int size) {
+		checkSize(size);
+		return ConcurrentBitStore.allocate(size);
+	}
+
+	/**
+	 * Creates a {@link MappedBitStore} that persists its bits in a file via
+	 * memory mapping. The file is extended if it is not large enough to
+	 * accommodate the requested number of bits. Any existing content of the
+	 * file is exposed by the store, so that a store may be reopened by
+	 * supplying the same size.
+	 *
+	 * @param channel
+	 *            a channel to the file, this must be writable if the store is
+	 *            mutable; the channel may be closed without affecting the
+	 *            store
+	 * @param size
+	 *            the capacity, in bits, of the store
+	 * @param mutable
+	 *            whether the returned store should be mutable
+	 * @return a store backed by the file
+	 * @throws BitStreamException
+	 *             if the file could not be mapped
+	 */
+
+	public static MappedBitStore mappedStore(FileChannel channel, long size, boolean mutable) throws BitStreamException {
+		if (channel == null) throw new IllegalArgumentException("null channel");
+		if (size < 0L) throw new IllegalArgumentException("negative size");
+		try {
+			return new MappedBitStore(channel, size, mutable, MappedBitStore.DEFAULT_MAPPING_BITS);
+		} catch (IOException e) {
+			throw new BitStreamException(e);
+		}
+	}
+
 	/**
 	 * Creates a mutable {@link BitStore} initialized with a binary string of
 	 * characters. The size of store will equal the number of characters. The
@@ -543,6 +646,31 @@ public final class Bits {
 		return new BytesBitStore(bytes, offset, finish, true);
 	}
 
+	/**
+	 * Exposes the remaining bytes of a <code>ByteBuffer</code> as a
+	 * {@link BitStore}. The returned bit store is a live view over the buffer's
+	 * content; changes made to the buffer are reflected in bit store and vice
+	 * versa. The bit ordering is the same as that of {@link #asStore(byte[])},
+	 * with the zeroth indexed bit of the store taking its value from the least
+	 * significant bit of the byte at the buffer's position. Neither the
+	 * position nor the limit of the supplied buffer are modified, and the
+	 * store is immutable if the buffer is read-only.
+	 *
+	 * <p>
+	 * Direct buffers are supported, allowing bits to be held off-heap.
+	 *
+	 * @param buffer
+	 *            the buffer containing the bit data
+	 * @return a {@link BitStore} over the buffer
+	 * @see #directStore(int)
+	 */
+
+	public static BufferBitStore asStore(ByteBuffer buffer) {
+		if (buffer == null) throw new IllegalArgumentException("null buffer");
+		if (buffer.remaining() * 8L > Integer.MAX_VALUE) throw new IllegalArgumentException("index overflow");
+		return BufferBitStore.wrap(buffer);
+	}
+
 	/**
 	 * Exposes an array of booleans as a {@link BitStore}. The returned bit
 	 * store is a live view over the booleans; changes made to the array are
@@ -675,6 +803,109 @@ public final class Bits {
 		return new CharsBitStore(chars);
 	}
 
+	// bitwise expressions
+
+	/**
+	 * <p>
+	 * An immutable view of the bitwise conjunction of any number of
+	 * {@link BitStore} instances, all of which must be of the same size. Bits
+	 * are computed on demand, a word at a time, directly from the supplied
+	 * stores; no intermediate stores are created.
+	 *
+	 * <p>
+	 * Views returned by this method, {@link #or(BitStore...)} and
+	 * {@link #xor(BitStore...)} may be nested, and flipped via
+	 * {@link BitStore#flipped()}, to form arbitrary expressions. An expression
+	 * can be materialized in a single pass with {@link #evaluate(BitStore)}, or
+	 * its ones counted without being materialized via
+	 * <code>ones().count()</code>.
+	 *
+	 * @param stores
+	 *            the stores to be combined
+	 * @return a view of the bits that are set in every store
+	 * @see Operation#AND
+	 */
+
+	public static BitStore and(BitStore... stores) {
+		return new FusedBitStore(Operation.AND, stores);
+	}
+
+	/**
+	 * An immutable view of the bitwise disjunction of any number of
+	 * {@link BitStore} instances, all of which must be of the same size.
+	 *
+	 * @param stores
+	 *            the stores to be combined
+	 * @return a view of the bits that are set in any store
+	 * @see #and(BitStore...)
+	 * @see Operation#OR
+	 */
+
+	public static BitStore or(BitStore... stores) {
+		return new FusedBitStore(Operation.OR, stores);
+	}
+
+	/**
+	 * An immutable view of the bitwise exclusive-or of any number of
+	 * {@link BitStore} instances, all of which must be of the same size.
+	 *
+	 * @param stores
+	 *            the stores to be combined
+	 * @return a view of the bits that are set in an odd number of stores
+	 * @see #and(BitStore...)
+	 * @see Operation#XOR
+	 */
+
+	public static BitStore xor(BitStore... stores) {
+		return new FusedBitStore(Operation.XOR, stores);
+	}
+
+	/**
+	 * Evaluates an expression into a new mutable {@link BitVector}. Every word
+	 * of the returned vector is computed from the expression and written
+	 * exactly once.
+	 *
+	 * @param expression
+	 *            the bits to be copied, typically formed by combining stores
+	 *            with {@link #and(BitStore...)}, {@link #or(BitStore...)} and
+	 *            {@link #xor(BitStore...)}
+	 * @return a new vector containing the evaluated bits
+	 */
+
+	public static BitVector evaluate(BitStore expression) {
+		if (expression == null) throw new IllegalArgumentException("null expression");
+		int size = expression.size();
+		BitVector vector = new BitVector(size);
+		int limit = size & ~63;
+		for (int i = 0; i < limit; i += 64) {
+			vector.setBits(i, expression.getBits(i, 64), 64);
+		}
+		int length = size - limit;
+		if (length > 0) {
+			vector.setBits(limit, expression.getBits(limit, length), length);
+		}
+		return vector;
+	}
+
+	// sequence matching
+
+	/**
+	 * Creates a {@link SequenceMatcher} that locates occurrences of any of the
+	 * supplied sequences in a single pass over a {@link BitStore} or
+	 * {@link BitReader}. Each sequence is identified by its index in the
+	 * supplied array. The sequences are copied and may be subsequently
+	 * modified without affecting the matcher.
+	 *
+	 * @param sequences
+	 *            non-empty sequences of bits
+	 * @return a matcher for the sequences
+	 * @see BitStore#match(BitStore)
+	 */
+
+	public static SequenceMatcher sequenceMatcher(BitStore... sequences) {
+		return new SequenceMatcher(sequences);
+	}
+
 	// bit streams
 
 	/**
@@ -787,7 +1018,9 @@ public final class Bits {
 
 	/**
 	 * A {@link BitReader} that sources its bits from an
-	 * <code>InputStream</code>.
+	 * <code>InputStream</code>. Bytes are read from the stream in blocks, so
+	 * the stream may be read beyond the last bit returned by the reader; there
+	 * is no need to supply a buffered stream.
 	 *
 	 * @param in
 	 *            the source input stream
@@ -877,6 +1110,35 @@ public final class Bits {
 		return new IntArrayBitWriter(ints);
 	}
 
+	/**
+	 * A {@link BitWriter} that writes bits to a <code>FileChannel</code>,
+	 * starting from the beginning of the file. Bits are accumulated in a byte
+	 * buffer that is written to the channel when the writer is flushed, or
+	 * when it is positioned outside the range of the file held in the buffer.
+	 * The writer may be positioned anywhere in the file; bits are merged with
+	 * the existing contents of the file so that surrounding bits are
+	 * preserved.
+	 *
+	 * Note that the writer must be flushed to ensure that all bits have been
+	 * written to the channel, and that the file is not truncated. Using a
+	 * direct ByteBuffer should generally yield better performance.
+	 *
+	 * @param channel
+	 *            the file channel to which bits are to be written
+	 * @param buffer
+	 *            the buffer used to store file data, with a capacity of at
+	 *            least 16 bytes
+	 * @return a bit writer over the channel
+	 * @see FileBitWriterFactory
+	 */
+
+	public static BitWriter writerTo(FileChannel channel, ByteBuffer buffer) {
+		if (channel == null) throw new IllegalArgumentException("null channel");
+		if (buffer == null) throw new IllegalArgumentException("null buffer");
+		if (buffer.capacity() < 16) throw new IllegalArgumentException("buffer too small");
+		return new FileChannelBitWriter(channel, buffer);
+	}
+
 	/**
 	 * A {@link BitWriter} that writes its bits to an <code>OutputStream</code>.
 	 *
@@ -1039,6 +1301,24 @@ public final class Bits {
 		return copy;
 	}
 
+	/**
+	 * Creates an immutable run-length encoded copy of a {@link BitStore}. The
+	 * copy is likely to be very much smaller than the original if its bits
+	 * contain long runs of zeros or ones. Logical operations between such
+	 * copies are performed directly on the compressed form.
+	 *
+	 * @param store
+	 *            a BitStore
+	 * @return an immutable run-length encoded copy of the store
+	 * @see RunLengthBitStore
+	 */
+
+	public static RunLengthBitStore runLengthCopyOf(BitStore store) {
+		if (store == null) throw new IllegalArgumentException("null store");
+		if (store instanceof RunLengthBitStore) return (RunLengthBitStore) store;
+		return RunLengthBitStore.encode(store);
+	}
+
 	/**
 	 * <p>
 	 * An immutable reindexed view of the supplied {@link BitStore}. The
@@ -1121,6 +1401,34 @@ public final class Bits {
 		return new GrowableBits(new BitVectorWriter());
 	}
 
+	/**
+	 * Parallel operations over {@link BitVector} instances that execute in the
+	 * supplied pool. Vectors smaller than a default threshold of around one
+	 * million bits are processed sequentially.
+	 *
+	 * @param pool
+	 *            the pool in which parallel operations execute
+	 * @return parallel operations
+	 * @see ParallelBitOps#withThreshold(int)
+	 */
+
+	public static ParallelBitOps parallelOps(ForkJoinPool pool) {
+		if (pool == null) throw new IllegalArgumentException("null pool");
+		return new ParallelBitOps(pool, ParallelBitOps.DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * Parallel operations over {@link BitVector} instances that execute in the
+	 * common fork-join pool.
+	 *
+	 * @return parallel operations
+	 * @see #parallelOps(ForkJoinPool)
+	 */
+
+	public static ParallelBitOps parallelOps() {
+		return parallelOps(ForkJoinPool.commonPool());
+	}
+
 	public static void transfer(BitReader reader, BitWriter writer, long count) {
 		if (reader == null) throw new IllegalArgumentException("null reader");
 		if (writer == null) throw new IllegalArgumentException("null writer");
@@ -1164,12 +1472,17 @@ public final class Bits {
 
 			@Override
 			public long getBits(int position, int length) {
-				return store.getBits(adjPosition(position), length);
+				return store.getBits(adjPosition(position, length), length);
 			}
 
 			@Override
 			public int getBitsAsInt(int position, int length) {
-				return store.getBitsAsInt(adjPosition(position), length);
+				return store.getBitsAsInt(adjPosition(position, length), length);
+			}
+
+			@Override
+			public void setBits(int position, long value, int length) {
+				store.setBits(adjPosition(position, length), value, length);
 			}
 
 			@Override
@@ -1220,6 +1533,12 @@ public final class Bits {
 				if (position > to) throw new IllegalArgumentException("position too large");
 				return position;
 			}
+
+			private int adjPosition(int position, int length) {
+				position = adjPosition(position);
+				if (position + length > to) throw new IllegalArgumentException("length too great");
+				return position;
+			}
 		};
 	}
 
@@ -1264,6 +1583,26 @@ public final class Bits {
 		};
 	}
 
+	// available via default BitStore method
+	static int count(BitStore a, Operation operation, BitStore b) {
+		if (operation == null) throw new IllegalArgumentException("null operation");
+		if (b == null) throw new IllegalArgumentException("null store");
+		int size = a.size();
+		if (b.size() != size) throw new IllegalArgumentException("mismatched size");
+		if (operation == Operation.SET) return b.ones().count();
+		int limit = size & ~63;
+		int count = 0;
+		for (int i = 0; i < limit; i += 64) {
+			count += Long.bitCount(operation.longs(a.getBits(i, 64), b.getBits(i, 64)));
+		}
+		int rem = size - limit;
+		if (rem > 0) {
+			long bits = operation.longs(a.getBits(limit, rem), b.getBits(limit, rem));
+			count += Long.bitCount(bits & ~(-1L << rem));
+		}
+		return count;
+	}
+
 	//TODO further optimizations possible
 	// available via default BitStore method
 	static BitWriter newBitWriter(BitStore store, int finalPos, int initialPos) {
@@ -1286,13 +1625,11 @@ public final class Bits {
 
 			@Override
 			public long setPosition(long newPosition) {
-				if (newPosition < finalPos) {
-					pos = finalPos - initialPos;
-					return finalPos;
-				}
-				if (newPosition >= initialPos) {
-					pos = 0;
-					return initialPos;
+				BitStreams.checkPosition(newPosition);
+				long length = initialPos - finalPos;
+				if (newPosition >= length) {
+					pos = finalPos;
+					return length;
 				}
 				pos = initialPos - (int) newPosition;
 				return newPosition;
@@ -1300,7 +1637,7 @@ public final class Bits {
 
 			@Override
 			public boolean readBoolean() throws BitStreamException {
-				if (pos <= 0) throw new EndOfBitStreamException();
+				if (pos <= finalPos) throw new EndOfBitStreamException();
 				return store.getBit(--pos);
 			}
 
@@ -1314,7 +1651,7 @@ public final class Bits {
 				if (count < 0) throw new IllegalArgumentException();
 				if (count > 64) throw new IllegalArgumentException();
 				pos -= count;
-				if (pos < 0) throw new EndOfBitStreamException();
+				if (pos < finalPos) throw new EndOfBitStreamException();
 				return store.getBits(pos, count);
 			}
 
@@ -1323,7 +1660,7 @@ public final class Bits {
 				if (count < 0) throw new IllegalArgumentException();
 				if (count > 32) throw new IllegalArgumentException();
 				pos -= count;
-				if (pos < 0) throw new EndOfBitStreamException();
+				if (pos < finalPos) throw new EndOfBitStreamException();
 				return (int) store.getBits(pos, count);
 			}
 
@@ -1340,7 +1677,7 @@ public final class Bits {
 				case 1 : return readBoolean() ? BigInteger.ONE : BigInteger.ZERO;
 				default :
 					final int from = pos - count;
-					if (from < 0) throw new EndOfBitStreamException();
+					if (from < finalPos) throw new EndOfBitStreamException();
 					final int to = pos;
 					pos = from;
 					return store.range(from, to).toBigInteger();
@@ -1384,62 +1721,41 @@ public final class Bits {
 		return new BitStorePositions(matches, true, p);
 	}
 
+	// compares a word at a time, from the most significant
 	static int compareNumeric(BitStore a, BitStore b) {
-		ListIterator<Integer> as = a.ones().positions(a.size());
-		ListIterator<Integer> bs = b.ones().positions(b.size());
-		while (true) {
-			boolean ap = as.hasPrevious();
-			boolean bp = bs.hasPrevious();
-			if (ap && bp) {
-				int ai = as.previous();
-				int bi = bs.previous();
-				if (ai == bi) continue;
-				return ai > bi ? 1 : -1;
-			} else {
-				if (ap) return  1;
-				if (bp) return -1;
-				return 0;
-			}
+		int aSize = a.size();
+		int bSize = b.size();
+		for (int i = (Math.max(aSize, bSize) - 1) & ~63; i >= 0; i -= 64) {
+			int c = Long.compareUnsigned(word(a, i, aSize), word(b, i, bSize));
+			if (c != 0) return c;
 		}
-
+		return 0;
 	}
 
 	// expects a strictly longer than b
 	static int compareLexical(BitStore a, BitStore b) {
 		int aSize = a.size();
-		int bSize = b.size();
-		int diff = a.size() - b.size();
-		ListIterator<Integer> as = a.ones().positions(aSize);
-		ListIterator<Integer> bs = b.ones().positions(bSize);
-		while (true) {
-			boolean ap = as.hasPrevious();
-			boolean bp = bs.hasPrevious();
-			if (ap && bp) {
-				int ai = as.previous();
-				int bi = bs.previous() + diff;
-				if (ai == bi) continue;
-				return ai > bi ? 1 : -1;
-			} else {
-				return bp ? -1 : 1;
-			}
-		}
-
+		int c = compareNumeric(a.range(aSize - b.size(), aSize), b);
+		// the longer store is greater if it begins with the shorter
+		return c == 0 ? 1 : c;
 	}
 
 	static boolean isAllOnes(BitStore s) {
-		//TODO could use a reader?
 		int size = s.size();
-		for (int i = 0; i < size; i++) {
-			if (!s.getBit(i)) return false;
+		for (int i = 0; i < size; i += 64) {
+			int length = Math.min(64, size - i);
+			long mask = length == 64 ? -1L : ~(-1L << length);
+			if ((s.getBits(i, length) & mask) != mask) return false;
 		}
 		return true;
 	}
 
 	static boolean isAllZeros(BitStore s) {
-		//TODO could use a reader?
 		int size = s.size();
-		for (int i = 0; i < size; i++) {
-			if (s.getBit(i)) return false;
+		for (int i = 0; i < size; i += 64) {
+			int length = Math.min(64, size - i);
+			long mask = length == 64 ? -1L : ~(-1L << length);
+			if ((s.getBits(i, length) & mask) != 0L) return false;
 		}
 		return true;
 	}
@@ -1522,6 +1838,14 @@ public final class Bits {
 		if (size < 0) throw new IllegalArgumentException("negative size");
 	}
 
+	// the masked bits of a store from a word aligned position, or zero beyond its size
+	private static long word(BitStore s, int position, int size) {
+		if (position >= size) return 0L;
+		int length = Math.min(64, size - position);
+		long bits = s.getBits(position, length);
+		return length == 64 ? bits : bits & ~(-1L << length);
+	}
+
 	private static void checkSize(long size, long maxSize) {
 		if (size < 0L) throw new IllegalArgumentException("negative size");
 		if (size > maxSize) throw new IllegalArgumentException("size exceeds maximum permitted");
@@ -0,0 +1,433 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.Iterator;
+
+import com.tomgibara.hashing.Hasher;
+import com.tomgibara.streams.ReadStream;
+import com.tomgibara.streams.WriteStream;
+
+/**
+ * <p>
+ * A Bloom filter: a set membership test that may report false positives but
+ * never false negatives. The bits of the filter are held in a
+ * {@link BitVector} and the positions of a value's bits are derived from a
+ * single hash supplied by a {@link Hasher}.
+ *
+ * <p>
+ * A standard filter ({@link #standard(Hasher, int, int)}) distributes the
+ * bits of each value over the whole filter. A blocked filter
+ * ({@link #blocked(Hasher, int, int)}) places all of the bits for a value
+ * within a single block of 512 bits, which spans at most two cache lines, so
+ * that each value is added or tested with very few cache misses. This comes at
+ * the cost of a slightly greater false positive rate for a filter of the same
+ * size.
+ *
+ * <p>
+ * The bits of a filter are exposed by {@link #bits()}. Filters with the same
+ * configuration (and hasher) may be combined through the {@link BitStore.Op}
+ * API: <code>a.bits().or().withStore(b.bits())</code> forms the union of two
+ * filters and <code>a.bits().and().withStore(b.bits())</code> approximates
+ * their intersection. The filter may be persisted with
+ * {@link #writeTo(WriteStream)}, which records its configuration before
+ * delegating to {@link BitStore#writeTo(WriteStream)}.
+ *
+ * <p>
+ * Filters are not safe for concurrent modification.
+ *
+ * @author Tom Gibara
+ *
+ * @param <T>
+ *            the type of values recorded in the filter
+ */
+
+public final class BloomFilter<T> {
+
+	// statics
+
+	private static final int BLOCK_BITS = 9;
+	private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+	private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+	// the number of values hashed before any bits are accessed by bulk methods
+	private static final int BATCH_SIZE = 64;
+
+	/**
+	 * Creates an empty filter in which the bits of each value may lie
+	 * anywhere in the filter.
+	 *
+	 * @param hasher
+	 *            hashes the values recorded in the filter
+	 * @param size
+	 *            the number of bits in the filter
+	 * @param hashCount
+	 *            the number of bits set for each value
+	 * @param <T>
+	 *            the type of values recorded in the filter
+	 * @return a new filter
+	 */
+
+	public static <T> BloomFilter<T> standard(Hasher<? super T> hasher, int size, int hashCount) {
+		if (size < 1) throw new IllegalArgumentException("non-positive size");
+		return new BloomFilter<>(hasher, false, hashCount, new BitVector(size));
+	}
+
+	/**
+	 * Creates an empty filter in which the bits of each value lie within a
+	 * single block of 512 bits.
+	 *
+	 * @param hasher
+	 *            hashes the values recorded in the filter
+	 * @param blockCount
+	 *            the number of blocks in the filter
+	 * @param hashCount
+	 *            the number of bits set for each value
+	 * @param <T>
+	 *            the type of values recorded in the filter
+	 * @return a new filter
+	 */
+
+	public static <T> BloomFilter<T> blocked(Hasher<? super T> hasher, int blockCount, int hashCount) {
+		if (blockCount < 1) throw new IllegalArgumentException("non-positive block count");
+		if (blockCount > Integer.MAX_VALUE / 8 >> BLOCK_BITS) throw new IllegalArgumentException("block count too large");
+		return new BloomFilter<>(hasher, true, hashCount, new BitVector(blockCount << BLOCK_BITS));
+	}
+
+	/**
+	 * Reads a filter previously written with {@link #writeTo(WriteStream)}.
+	 *
+	 * @param reader
+	 *            the stream from which the filter is read
+	 * @param hasher
+	 *            the hasher with which the filter was populated
+	 * @param <T>
+	 *            the type of values recorded in the filter
+	 * @return a filter containing the bits read
+	 */
+
+	public static <T> BloomFilter<T> readFrom(ReadStream reader, Hasher<? super T> hasher) {
+		if (reader == null) throw new IllegalArgumentException("null reader");
+		boolean blocked = reader.readBoolean();
+		int hashCount = reader.readInt();
+		int size = reader.readInt();
+		BloomFilter<T> filter = blocked ?
+				blocked(hasher, size >> BLOCK_BITS, hashCount) :
+				standard(hasher, size, hashCount);
+		if (filter.bits.size() != size) throw new IllegalArgumentException("invalid size");
+		filter.bits.readFrom(reader);
+		return filter;
+	}
+
+	// the murmur3 finalizer, spreads the hash over all 64 bits
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	// maps 32 bits uniformly onto [0, range)
+	private static int reduce(int bits, int range) {
+		return (int) (((bits & 0xffffffffL) * range) >>> 32);
+	}
+
+	// fields
+
+	private final Hasher<? super T> hasher;
+	private final boolean blocked;
+	private final int hashCount;
+	private final BitVector bits;
+
+	// constructors
+
+	private BloomFilter(Hasher<? super T> hasher, boolean blocked, int hashCount, BitVector bits) {
+		if (hasher == null) throw new IllegalArgumentException("null hasher");
+		if (hashCount < 1) throw new IllegalArgumentException("non-positive hash count");
+		this.hasher = hasher;
+		this.blocked = blocked;
+		this.hashCount = hashCount;
+		this.bits = bits;
+	}
+
+	// accessors
+
+	/**
+	 * The hasher used to position the bits of each value.
+	 *
+	 * @return the hasher
+	 */
+
+	public Hasher<? super T> hasher() {
+		return hasher;
+	}
+
+	/**
+	 * Whether the bits of each value are confined to a single block.
+	 *
+	 * @return true if the filter is blocked, false otherwise
+	 */
+
+	public boolean isBlocked() {
+		return blocked;
+	}
+
+	/**
+	 * The number of bits that are set for each value.
+	 *
+	 * @return the number of hashes per value
+	 */
+
+	public int hashCount() {
+		return hashCount;
+	}
+
+	/**
+	 * The bits of the filter. The store is a live, mutable view of the
+	 * filter's state and may be used to combine filters that share the same
+	 * configuration, or to clear the filter.
+	 *
+	 * @return the bits of the filter
+	 */
+
+	public BitStore bits() {
+		return bits;
+	}
+
+	/**
+	 * Whether no value has been added to the filter.
+	 *
+	 * @return true if every bit of the filter is zero
+	 */
+
+	public boolean isEmpty() {
+		return bits.zeros().isAll();
+	}
+
+	/**
+	 * Estimates the probability that a value which has not been added to the
+	 * filter will be reported as possibly present, based on the proportion of
+	 * bits that are set.
+	 *
+	 * @return the estimated false positive probability
+	 */
+
+	public double falsePositiveProbability() {
+		return Math.pow((double) bits.ones().count() / bits.size(), hashCount);
+	}
+
+	// membership
+
+	/**
+	 * Records a value in the filter.
+	 *
+	 * @param value
+	 *            the value to add
+	 * @return true if the filter was modified, false if the value was
+	 *         possibly already present
+	 */
+
+	public boolean add(T value) {
+		return add(hash(value));
+	}
+
+	/**
+	 * Tests whether a value may have been added to the filter.
+	 *
+	 * @param value
+	 *            the value to test
+	 * @return false if the value was definitely not added, true if it may
+	 *         have been
+	 */
+
+	public boolean mightContain(T value) {
+		return mightContain(hash(value));
+	}
+
+	/**
+	 * Records many values in the filter. The values are hashed in batches
+	 * before the bits of the filter are accessed.
+	 *
+	 * @param values
+	 *            the values to add
+	 * @return true if the filter was modified
+	 */
+
+	public boolean addAll(Iterable<? extends T> values) {
+		if (values == null) throw new IllegalArgumentException("null values");
+		long[] hashes = new long[BATCH_SIZE];
+		boolean modified = false;
+		for (Iterator<? extends T> it = values.iterator(); it.hasNext(); ) {
+			int count = batch(it, hashes);
+			for (int i = 0; i < count; i++) {
+				if (add(hashes[i])) modified = true;
+			}
+		}
+		return modified;
+	}
+
+	/**
+	 * Tests whether every one of many values may have been added to the
+	 * filter. The values are hashed in batches before the bits of the filter
+	 * are accessed.
+	 *
+	 * @param values
+	 *            the values to test
+	 * @return false if some value was definitely not added, true if every
+	 *         value may have been
+	 */
+
+	public boolean mightContainAll(Iterable<? extends T> values) {
+		if (values == null) throw new IllegalArgumentException("null values");
+		long[] hashes = new long[BATCH_SIZE];
+		for (Iterator<? extends T> it = values.iterator(); it.hasNext(); ) {
+			int count = batch(it, hashes);
+			for (int i = 0; i < count; i++) {
+				if (!mightContain(hashes[i])) return false;
+			}
+		}
+		return true;
+	}
+
+	// combination
+
+	/**
+	 * Adds every value recorded in another filter to this filter.
+	 *
+	 * @param filter
+	 *            a filter with the same configuration as this filter
+	 */
+
+	public void addAll(BloomFilter<? extends T> filter) {
+		checkCompatible(filter);
+		bits.or().withStore(filter.bits);
+	}
+
+	/**
+	 * Retains only the bits that are also set in another filter. The result
+	 * reports every value that may have been added to both filters.
+	 *
+	 * @param filter
+	 *            a filter with the same configuration as this filter
+	 */
+
+	public void retainAll(BloomFilter<? extends T> filter) {
+		checkCompatible(filter);
+		bits.and().withStore(filter.bits);
+	}
+
+	// persistence
+
+	/**
+	 * Writes the configuration and bits of the filter to a stream. The hasher
+	 * is not recorded.
+	 *
+	 * @param writer
+	 *            the stream to which the filter is written
+	 * @see #readFrom(ReadStream, Hasher)
+	 */
+
+	public void writeTo(WriteStream writer) {
+		if (writer == null) throw new IllegalArgumentException("null writer");
+		writer.writeBoolean(blocked);
+		writer.writeInt(hashCount);
+		writer.writeInt(bits.size());
+		bits.writeTo(writer);
+	}
+
+	// object methods
+
+	@Override
+	public String toString() {
+		return (blocked ? "Blocked" : "Standard") + " Bloom filter of " + bits.size() + " bits with " + hashCount + " hashes";
+	}
+
+	// private utility methods
+
+	private long hash(T value) {
+		return mix(hasher.hash(value).longValue());
+	}
+
+	private int batch(Iterator<? extends T> it, long[] hashes) {
+		int count = 0;
+		while (count < hashes.length && it.hasNext()) {
+			hashes[count++] = hash(it.next());
+		}
+		return count;
+	}
+
+	private void checkCompatible(BloomFilter<?> filter) {
+		if (filter == null) throw new IllegalArgumentException("null filter");
+		if (filter.blocked != blocked || filter.hashCount != hashCount || filter.bits.size() != bits.size()) {
+			throw new IllegalArgumentException("incompatible filter");
+		}
+	}
+
+	private boolean add(long hash) {
+		boolean modified = false;
+		if (blocked) {
+			int base = block(hash);
+			long h = 0L;
+			for (int i = 0, available = 0; i < hashCount; i++, available -= BLOCK_BITS, h >>>= BLOCK_BITS) {
+				if (available < BLOCK_BITS) {
+					h = hash = mix(hash);
+					available = 64;
+				}
+				if (!bits.getThenSetBit(base + ((int) h & BLOCK_MASK), true)) modified = true;
+			}
+		} else {
+			int size = bits.size();
+			int h1 = (int) hash;
+			int h2 = (int) (hash >>> 32) | 1;
+			for (int i = 0; i < hashCount; i++, h1 += h2) {
+				if (!bits.getThenSetBit(reduce(h1, size), true)) modified = true;
+			}
+		}
+		return modified;
+	}
+
+	private boolean mightContain(long hash) {
+		if (blocked) {
+			int base = block(hash);
+			long h = 0L;
+			for (int i = 0, available = 0; i < hashCount; i++, available -= BLOCK_BITS, h >>>= BLOCK_BITS) {
+				if (available < BLOCK_BITS) {
+					h = hash = mix(hash);
+					available = 64;
+				}
+				if (!bits.getBit(base + ((int) h & BLOCK_MASK))) return false;
+			}
+		} else {
+			int size = bits.size();
+			int h1 = (int) hash;
+			int h2 = (int) (hash >>> 32) | 1;
+			for (int i = 0; i < hashCount; i++, h1 += h2) {
+				if (!bits.getBit(reduce(h1, size))) return false;
+			}
+		}
+		return true;
+	}
+
+	// the position of the block in which the bits for the hash lie; the
+	// positions within the block are drawn from successive remixes of the hash
+	private int block(long hash) {
+		return reduce((int) (hash >>> 32), bits.size() >> BLOCK_BITS) << BLOCK_BITS;
+	}
+
+}
@@ -69,6 +69,22 @@ class BooleansBitStore extends AbstractBitStore implements BitStore {
 		return previous;
 	}
 
+	@Override
+	public long getBits(int position, int length) {
+		if (position < 0) throw new IllegalArgumentException();
+		if (length < 0) throw new IllegalArgumentException();
+		if (length > 64) throw new IllegalArgumentException();
+		int from = start + position;
+		int to = from + length;
+		if (to > finish) throw new IllegalArgumentException();
+		long value = 0L;
+		for (int i = to - 1; i >= from; i--) {
+			value <<= 1;
+			if (bits[i]) value |= 1L;
+		}
+		return value;
+	}
+
 	@Override
 	public void setBits(int position, long value, int length) {
 		if (position < 0) throw new IllegalArgumentException();
@@ -105,8 +121,12 @@ class BooleansBitStore extends AbstractBitStore implements BitStore {
 		int to = from + store.size();
 		if (to > finish) throw new IllegalArgumentException();
 		checkMutability();
-		for (int i = from; i < to; i++) {
-			bits[i] =  store.getBit(i - from);
+		for (int i = from; i < to; i += 64) {
+			int length = Math.min(64, to - i);
+			long value = store.getBits(i - from, length);
+			for (int j = i; j < i + length; j++, value >>= 1) {
+				bits[j] = (value & 1) != 0;
+			}
 		}
 	}
 
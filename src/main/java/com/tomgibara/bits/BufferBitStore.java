@@ -0,0 +1,621 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import static com.tomgibara.bits.Bits.checkBitsLength;
+import static com.tomgibara.bits.Bits.checkIntBitsLength;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.tomgibara.bits.ImmutableBit.ImmutableOne;
+import com.tomgibara.bits.ImmutableBit.ImmutableZero;
+
+/**
+ * <p>
+ * A {@link BitStore} that holds its bits in a {@link ByteBuffer}. When the
+ * buffer is direct, the bits are stored off-heap, which allows very large bit
+ * stores to be maintained without burdening the garbage collector. The layout
+ * of bits matches that of {@link Bits#asStore(byte[])}: the zeroth indexed bit
+ * of the store takes its value from the least significant bit of the first
+ * byte.
+ *
+ * <p>
+ * Instances are obtained from {@link Bits#directStore(int)}, which allocates
+ * new off-heap memory, or from {@link Bits#asStore(ByteBuffer)}, which exposes
+ * an existing buffer. In both cases the memory may be released explicitly via
+ * {@link #release()} (or equivalently {@link #close()}) after which any
+ * attempt to access the store, or any range derived from it, will fail with an
+ * <code>IllegalStateException</code>. Memory allocated by
+ * {@link Bits#directStore(int)} is freed immediately where the platform
+ * permits; buffers supplied by the caller are simply relinquished.
+ *
+ * <p>
+ * A store must not be released while other threads may be accessing it.
+ *
+ * @author Tom Gibara
+ */
+
+public final class BufferBitStore extends AbstractBitStore implements AutoCloseable {
+
+	// statics
+
+	private static final int ADDRESS_BITS = 6;
+	private static final int ADDRESS_SIZE = 1 << ADDRESS_BITS;
+	private static final int ADDRESS_MASK = ADDRESS_SIZE - 1;
+
+	private static final int SET = 0;
+	private static final int AND = 1;
+	private static final int OR  = 2;
+	private static final int XOR = 3;
+
+	static BufferBitStore allocate(int size) {
+		// round up to whole words so that every word access is a single read
+		int bytes = ((size + ADDRESS_MASK) >>> ADDRESS_BITS) << 3;
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		return new BufferBitStore(new Memory(buffer, true), 0, size, true);
+	}
+
+	static BufferBitStore wrap(ByteBuffer buffer) {
+		ByteBuffer slice = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		return new BufferBitStore(new Memory(slice, false), 0, slice.capacity() << 3, !slice.isReadOnly());
+	}
+
+	// frees the memory of a direct or mapped buffer which must not be accessed subsequently
+	static void unmap(ByteBuffer buffer) {
+		// best effort - if this fails the memory is reclaimed by the garbage collector
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			invokeCleaner.invoke(field.get(null), buffer);
+			return;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			/* fall through to pre Java 9 mechanism */
+		}
+		try {
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			/* left to the garbage collector */
+		}
+	}
+
+	// fields
+
+	private final Memory memory;
+	private final int start;
+	private final int finish;
+	private final boolean mutable;
+
+	// constructors
+
+	private BufferBitStore(Memory memory, int start, int finish, boolean mutable) {
+		this.memory = memory;
+		this.start = start;
+		this.finish = finish;
+		this.mutable = mutable;
+	}
+
+	// methods
+
+	/**
+	 * Whether the memory underlying this store has been released.
+	 *
+	 * @return true if the store has been released, false otherwise
+	 * @see #release()
+	 */
+
+	public boolean isReleased() {
+		return memory.buffer == null;
+	}
+
+	/**
+	 * Releases the memory underlying the store. The memory is shared with any
+	 * views of the store (including ranges), and these become unusable too.
+	 * Calling this method on a store that has already been released has no
+	 * effect.
+	 */
+
+	public void release() {
+		memory.release();
+	}
+
+	/**
+	 * Equivalent to {@link #release()}, allowing stores to be used in
+	 * try-with-resources statements.
+	 */
+
+	@Override
+	public void close() {
+		release();
+	}
+
+	// fundamental methods
+
+	@Override
+	public int size() {
+		return finish - start;
+	}
+
+	@Override
+	public boolean getBit(int index) {
+		return words().getBitAdj(adjIndex(index));
+	}
+
+	@Override
+	public void setBit(int index, boolean value) {
+		index = adjIndex(index);
+		checkMutable();
+		words().performAdj(SET, index, value);
+	}
+
+	// accelerating methods
+
+	@Override
+	public long getBits(int position, int length) {
+		checkBitsLength(length);
+		return words().getBitsAdj(adjPosition(position, length), length);
+	}
+
+	@Override
+	public int getBitsAsInt(int position, int length) {
+		checkIntBitsLength(length);
+		return (int) words().getBitsAdj(adjPosition(position, length), length);
+	}
+
+	@Override
+	public void flipBit(int index) {
+		index = adjIndex(index);
+		checkMutable();
+		words().performAdj(XOR, index, true);
+	}
+
+	@Override
+	public boolean getThenSetBit(int index, boolean value) {
+		index = adjIndex(index);
+		checkMutable();
+		return words().performAdj(SET, index, value);
+	}
+
+	@Override
+	public void setBits(int position, long value, int length) {
+		checkBitsLength(length);
+		position = adjPosition(position, length);
+		checkMutable();
+		words().performAdj(SET, position, value, length);
+	}
+
+	@Override
+	public void setStore(int position, BitStore store) {
+		set().withStore(position, store);
+	}
+
+	@Override
+	public void fill() {
+		checkMutable();
+		words().performAdj(SET, start, finish, true);
+	}
+
+	@Override
+	public void clear() {
+		checkMutable();
+		words().performAdj(SET, start, finish, false);
+	}
+
+	@Override
+	public void flip() {
+		checkMutable();
+		words().performAdj(XOR, start, finish, true);
+	}
+
+	@Override
+	public void setAll(boolean value) {
+		checkMutable();
+		words().performAdj(SET, start, finish, value);
+	}
+
+	// operations
+
+	@Override
+	public Op set() {
+		return new BufferOp(SET);
+	}
+
+	@Override
+	public Op and() {
+		return new BufferOp(AND);
+	}
+
+	@Override
+	public Op or() {
+		return new BufferOp(OR);
+	}
+
+	@Override
+	public Op xor() {
+		return new BufferOp(XOR);
+	}
+
+	@Override
+	public Op op(Operation operation) {
+		if (operation == null) throw new IllegalArgumentException("null operation");
+		return new BufferOp(operation.ordinal());
+	}
+
+	// matching
+
+	@Override
+	public BitMatches ones() {
+		return new BufferOnes();
+	}
+
+	@Override
+	public BitMatches zeros() {
+		return new BufferZeros();
+	}
+
+	// views
+
+	@Override
+	public BitStore range(int from, int to) {
+		if (from < 0) throw new IllegalArgumentException();
+		if (from > to) throw new IllegalArgumentException();
+		from += start;
+		to += start;
+		if (to > finish) throw new IllegalArgumentException();
+		return new BufferBitStore(memory, from, to, mutable);
+	}
+
+	// mutability
+
+	@Override
+	public boolean isMutable() {
+		return mutable;
+	}
+
+	@Override
+	public BitStore mutableCopy() {
+		return copy(true);
+	}
+
+	@Override
+	public BitStore immutableCopy() {
+		return copy(false);
+	}
+
+	@Override
+	public BitStore immutableView() {
+		return new BufferBitStore(memory, start, finish, false);
+	}
+
+	// private utility methods
+
+	private Memory words() {
+		if (memory.buffer == null) throw new IllegalStateException("released");
+		return memory;
+	}
+
+	private int adjIndex(int index) {
+		return Bits.adjIndex(index, start, finish);
+	}
+
+	private int adjPosition(int position, int length) {
+		if (position < 0) throw new IllegalArgumentException("negative position");
+		position += start;
+		if (position + length > finish) throw new IllegalArgumentException("length too great");
+		return position;
+	}
+
+	private void checkMutable() {
+		if (!mutable) throw new IllegalStateException("immutable");
+	}
+
+	private BufferBitStore copy(boolean mutable) {
+		int size = finish - start;
+		BufferBitStore copy = allocate(size);
+		copy.set().withStore(0, this);
+		return mutable ? copy : new BufferBitStore(copy.memory, 0, size, false);
+	}
+
+	private void performAdj(Memory words, int operation, int position, BitStore store) {
+		if (store instanceof BufferBitStore) {
+			BufferBitStore that = (BufferBitStore) store;
+			if (that.memory == this.memory && position < that.finish && position + store.size() > that.start) {
+				// avoid overwriting the source as it is read
+				store = BitVector.fromStore(store);
+			}
+		}
+		words.performAdj(operation, position, store);
+	}
+
+	// inner classes
+
+	// shared between a store and its views so that release is observed by all
+	private static final class Memory extends WordKernel {
+
+		ByteBuffer buffer;
+		private final boolean owned;
+
+		Memory(ByteBuffer buffer, boolean owned) {
+			this.buffer = buffer;
+			this.owned = owned;
+		}
+
+		// bytes beyond the buffer read as zero
+		@Override
+		long word(long i) {
+			final ByteBuffer b = buffer;
+			final int p = (int) i << 3;
+			final int capacity = b.capacity();
+			if (p + 8 <= capacity) return b.getLong(p);
+			long w = 0L;
+			for (int j = capacity - 1; j >= p; j--) {
+				w = (w << 8) | (b.get(j) & 0xff);
+			}
+			return w;
+		}
+
+		// bytes beyond the buffer are discarded
+		@Override
+		void setWord(long i, long w) {
+			final ByteBuffer b = buffer;
+			final int p = (int) i << 3;
+			final int capacity = b.capacity();
+			if (p + 8 <= capacity) {
+				b.putLong(p, w);
+			} else {
+				for (int j = p; j < capacity; j++, w >>>= 8) {
+					b.put(j, (byte) w);
+				}
+			}
+		}
+
+		// single bits are accessed via their byte
+
+		@Override
+		boolean getBitAdj(long index) {
+			return (buffer.get((int) (index >>> 3)) & (1 << (index & 7))) != 0;
+		}
+
+		@Override
+		boolean performAdj(int operation, long index, boolean value) {
+			final ByteBuffer b = buffer;
+			final int i = (int) (index >>> 3);
+			final int m = 1 << (index & 7);
+			final int v = b.get(i);
+			switch (operation) {
+			case SET: b.put(i, (byte) (value ? v | m : v & ~m)); break;
+			case AND: if (!value) b.put(i, (byte) (v & ~m)); break;
+			case OR : if ( value) b.put(i, (byte) (v |  m)); break;
+			case XOR: if ( value) b.put(i, (byte) (v ^  m)); break;
+			}
+			return (v & m) != 0;
+		}
+
+		void release() {
+			ByteBuffer buffer = this.buffer;
+			if (buffer == null) return;
+			this.buffer = null;
+			if (owned) unmap(buffer);
+		}
+	}
+
+	private final class BufferOp implements Op {
+
+		private final int operation;
+
+		BufferOp(int operation) {
+			this.operation = operation;
+		}
+
+		@Override
+		public Operation getOperation() {
+			return Operation.values[operation];
+		}
+
+		@Override
+		public void with(boolean value) {
+			checkMutable();
+			words().performAdj(operation, start, finish, value);
+		}
+
+		@Override
+		public void withBit(int position, boolean value) {
+			position = adjIndex(position);
+			checkMutable();
+			words().performAdj(operation, position, value);
+		}
+
+		@Override
+		public boolean getThenWithBit(int position, boolean value) {
+			position = adjIndex(position);
+			checkMutable();
+			return words().performAdj(operation, position, value);
+		}
+
+		@Override
+		public void withByte(int position, byte value) {
+			withBits(position, value, 8);
+		}
+
+		@Override
+		public void withShort(int position, short value) {
+			withBits(position, value, 16);
+		}
+
+		@Override
+		public void withInt(int position, int value) {
+			withBits(position, value, 32);
+		}
+
+		@Override
+		public void withLong(int position, long value) {
+			withBits(position, value, 64);
+		}
+
+		@Override
+		public void withBits(int position, long value, int length) {
+			checkBitsLength(length);
+			position = adjPosition(position, length);
+			checkMutable();
+			words().performAdj(operation, position, value, length);
+		}
+
+		@Override
+		public void withStore(BitStore store) {
+			if (store == null) throw new IllegalArgumentException("null store");
+			if (store.size() != size()) throw new IllegalArgumentException("different sizes");
+			checkMutable();
+			performAdj(words(), operation, start, store);
+		}
+
+		@Override
+		public void withStore(int position, BitStore store) {
+			if (store == null) throw new IllegalArgumentException("null store");
+			position = adjPosition(position, store.size());
+			checkMutable();
+			performAdj(words(), operation, position, store);
+		}
+
+		@Override
+		public void withBytes(int position, byte[] bytes, int offset, int length) {
+			generic().withBytes(position, bytes, offset, length);
+		}
+
+		@Override
+		public BitWriter openWriter(int finalPos, int initialPos) {
+			return generic().openWriter(finalPos, initialPos);
+		}
+
+		private Op generic() {
+			BitStore s = BufferBitStore.this;
+			switch (operation) {
+			case SET: return new BitStoreOp.Set(s);
+			case AND: return new BitStoreOp.And(s);
+			case OR : return new BitStoreOp.Or(s);
+			case XOR: return new BitStoreOp.Xor(s);
+			default: throw new IllegalStateException("Unexpected operation constant: " + operation);
+			}
+		}
+
+	}
+
+	private abstract class BufferMatches extends BitStoreBitMatches {
+
+		BufferMatches() {
+			super(BufferBitStore.this);
+		}
+
+		@Override
+		public BitMatches range(int from, int to) {
+			return s.range(from, to).match(bit());
+		}
+
+		@Override
+		public boolean isAll() {
+			return words().firstInRangeAdj(!bit(), start, finish) == finish;
+		}
+
+		@Override
+		public boolean isNone() {
+			return words().firstInRangeAdj(bit(), start, finish) == finish;
+		}
+
+		@Override
+		public int count() {
+			int count = (int) words().countOnesAdj(start, finish);
+			return bit() ? count : finish - start - count;
+		}
+
+		@Override
+		public int first() {
+			return (int) words().firstInRangeAdj(bit(), start, finish) - start;
+		}
+
+		@Override
+		public int last() {
+			return last(start, finish);
+		}
+
+		@Override
+		public int next(int position) {
+			if (position < 0) throw new IllegalArgumentException("negative position");
+			position += start;
+			if (position > finish) throw new IllegalArgumentException("position exceeds size");
+			return (int) words().firstInRangeAdj(bit(), position, finish) - start;
+		}
+
+		@Override
+		public int previous(int position) {
+			if (position < 0) throw new IllegalArgumentException("negative position");
+			position += start;
+			if (position > finish) throw new IllegalArgumentException("position exceeds size");
+			return last(start, position);
+		}
+
+		private int last(int from, int to) {
+			int last = (int) words().lastInRangeAdj(bit(), from, to);
+			return last < 0 ? -1 : last - start;
+		}
+
+	}
+
+	private final class BufferOnes extends BufferMatches {
+
+		@Override
+		public boolean bit() {
+			return true;
+		}
+
+		@Override
+		public ImmutableOne sequence() {
+			return ImmutableOne.INSTANCE;
+		}
+
+		@Override
+		public void replaceAll(boolean bits) {
+			if (!bits) clear();
+		}
+
+	}
+
+	private final class BufferZeros extends BufferMatches {
+
+		@Override
+		public boolean bit() {
+			return false;
+		}
+
+		@Override
+		public ImmutableZero sequence() {
+			return ImmutableZero.INSTANCE;
+		}
+
+		@Override
+		public void replaceAll(boolean bits) {
+			if (bits) fill();
+		}
+
+	}
+
+}
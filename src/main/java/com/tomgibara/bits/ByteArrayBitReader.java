@@ -16,19 +16,25 @@
  */
 package com.tomgibara.bits;
 
+import java.nio.ByteBuffer;
+
 class ByteArrayBitReader extends ByteBasedBitReader {
 
 	private final byte[] bytes;
+	// a view for reading longs
+	private final ByteBuffer buffer;
 	private int index;
 
 	ByteArrayBitReader(byte[] bytes) {
 		this.bytes = bytes;
+		buffer = ByteBuffer.wrap(bytes);
 		index = 0;
 	}
 
 	ByteArrayBitReader(byte[] bytes, long size) {
 		super(size);
 		this.bytes = bytes;
+		buffer = ByteBuffer.wrap(bytes);
 		index = 0;
 	}
 
@@ -37,6 +43,26 @@ class ByteArrayBitReader extends ByteBasedBitReader {
 		return index == bytes.length ? -1 : bytes[index++] & 0xff;
 	}
 
+	@Override
+	protected int availableSourceBytes() {
+		return bytes.length - index;
+	}
+
+	@Override
+	protected long readSourceLong() throws BitStreamException {
+		long value = buffer.getLong(index);
+		index += 8;
+		return value;
+	}
+
+	@Override
+	protected int readSourceBytes(byte[] bytes, int offset, int length) throws BitStreamException {
+		length = Math.min(length, this.bytes.length - index);
+		System.arraycopy(this.bytes, index, bytes, offset, length);
+		index += length;
+		return length;
+	}
+
 	@Override
 	protected long skipSourceBytes(long count) throws BitStreamException {
 		long limit = bytes.length - index;
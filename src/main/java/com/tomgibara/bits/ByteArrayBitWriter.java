@@ -47,6 +47,13 @@ class ByteArrayBitWriter extends ByteBasedBitWriter {
 		bytes[index++] = (byte) value;
 	}
 
+	@Override
+	protected void copyBytes(byte[] bytes, int offset, int length) throws BitStreamException {
+		if (length > this.bytes.length - index) throw new EndOfBitStreamException();
+		System.arraycopy(bytes, offset, this.bytes, index, length);
+		index += length;
+	}
+
 	@Override
 	protected void fillBytes(int value, long count) throws BitStreamException {
 		count = Math.min(count, bytes.length - index);
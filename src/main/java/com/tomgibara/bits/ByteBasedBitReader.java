@@ -16,42 +16,31 @@
  */
 package com.tomgibara.bits;
 
+import java.util.Arrays;
+
 /**
  * A convenient base class for creating {@link BitReader} implementations that
  * source their bits from a sequence of bytes.
  *
+ * <p>
+ * Bits are buffered in a single long, so that most reads are satisfied with a
+ * few shifts, and runs are counted a word at a time. Sources that hold bytes
+ * in memory can override {@link #availableSourceBytes()} and
+ * {@link #readSourceLong()} to refill the buffer eight bytes at a time.
+ *
  * @author Tom Gibara
  *
  */
 
 abstract class ByteBasedBitReader implements BitReader {
 
-	// statics
-
-	private static final int[] ZERO_COUNT_LOOKUP = new int[256 * 8];
-	private static final int[] ONE_COUNT_LOOKUP = new int[256 * 8];
-
-	private static int countBits(int buffer, int position, boolean ones) {
-		final int e = ones ? 1 : 0;
-		int i;
-		for (i = position; i < 8 && ((buffer >> (7 - i)) & 1) == e; i++);
-		return i - position;
-	}
-
-	static {
-		for (int buffer = 0; buffer < 256; buffer++) {
-			for (int position = 0; position < 8; position++) {
-				int index = (buffer << 3) | position;
-				ZERO_COUNT_LOOKUP[index] = countBits(buffer, position, false);
-				ONE_COUNT_LOOKUP[index] = countBits(buffer, position, true);
-			}
-		}
-	}
-
 	// fields
 
 	private final long size;
-	private int buffer = 0;
+	// unread bits, most significant first, followed by zeros
+	private long word = 0L;
+	// the number of unread bits in the word, never extends beyond size
+	private int bits = 0;
 	private long position = 0;
 
 	// constructors
@@ -116,20 +105,85 @@ abstract class ByteBasedBitReader implements BitReader {
 
 	protected abstract long seekSourceByte(long index) throws BitStreamException;
 
+	/**
+	 * The number of bytes that the source can supply without blocking or
+	 * refilling a buffer. While eight or more bytes are available, bits are
+	 * obtained with {@link #readSourceLong()}; otherwise available bytes are
+	 * read individually. The default implementation returns zero, so that the
+	 * source is read one byte at a time.
+	 *
+	 * @return the number of bytes that can be read immediately
+	 */
+
+	protected int availableSourceBytes() {
+		return 0;
+	}
+
+	/**
+	 * The next eight bytes in the source stream, combined into a big-endian
+	 * long. This method is only called when {@link #availableSourceBytes()}
+	 * reports that at least eight bytes are available. The default
+	 * implementation combines eight calls to {@link #readSourceByte()}.
+	 *
+	 * @return the next eight bytes in the stream
+	 * @throws BitStreamException
+	 *             if an exception occurs when reading
+	 */
+
+	protected long readSourceLong() throws BitStreamException {
+		long value = 0L;
+		for (int i = 0; i < 8; i++) {
+			value = value << 8 | readSourceByte();
+		}
+		return value;
+	}
+
+	/**
+	 * Reads bytes from the source stream into a range of an array. Fewer
+	 * bytes than requested are read only if the end of the stream is reached.
+	 * The default implementation makes repeated calls to
+	 * {@link #readSourceByte()}.
+	 *
+	 * @param bytes
+	 *            the array into which bytes are read
+	 * @param offset
+	 *            the index of the first byte read into the array
+	 * @param length
+	 *            the number of bytes to read, never zero
+	 * @return the number of bytes read
+	 * @throws BitStreamException
+	 *             if an exception occurs when reading
+	 */
+
+	protected int readSourceBytes(byte[] bytes, int offset, int length) throws BitStreamException {
+		for (int i = 0; i < length; i++) {
+			int b = readSourceByte();
+			if (b < 0) return i;
+			bytes[offset + i] = (byte) b;
+		}
+		return length;
+	}
+
 	// public methods
 
 	public long setPosition(long position) {
 		BitStreams.checkPosition(position);
-		if (position != this.position) {
-			// is this necessary? preferable? position = Math.min(position, size);
-			long index = seekSourceByte(position >> 3);
-			if (index < 0L) { // seeking not supported - skip whole distance
-				long count = position - this.position;
-				if (count > 0L) skipBits(count);
-			} else { // seeking is supported - skip remaining distance
-				this.position = index << 3;
-				skipBits(position - this.position);
-			}
+		if (position > size) position = size;
+		long count = position - this.position;
+		if (count == 0L) return position;
+		// forward positions within the buffered bits don't involve the source
+		if (count > 0L && count <= bits) {
+			consume((int) count);
+			return position;
+		}
+		long index = seekSourceByte(position >> 3);
+		if (index < 0L) { // seeking not supported - skip whole distance
+			if (count > 0L) skipBits(count);
+		} else { // seeking is supported - skip remaining distance
+			word = 0L;
+			bits = 0;
+			this.position = index << 3;
+			skipBits(position - this.position);
 		}
 		return this.position;
 	}
@@ -138,16 +192,12 @@ abstract class ByteBasedBitReader implements BitReader {
 
 	@Override
 	public int readBit() {
-		if (position == size) throw new EndOfBitStreamException();
-		int count = (int) position & 7;
-		if (count == 0) { // need new bits
-			buffer = readSourceByte();
-			if (buffer == -1) throw new EndOfBitStreamException();
-		}
-		position++;
-		// other endian
-		// return (buffer >> count) & 1;
-		return (buffer >> (7 - count)) & 1;
+		if (bits == 0 && !refill()) throw new EndOfBitStreamException();
+		int bit = (int) (word >>> 63);
+		word <<= 1;
+		bits --;
+		position ++;
+		return bit;
 	}
 
 	@Override
@@ -155,70 +205,63 @@ abstract class ByteBasedBitReader implements BitReader {
 		if (count < 0) throw new IllegalArgumentException("negative count");
 		if (count > 32) throw new IllegalArgumentException("count too great");
 		if (count == 0) return 0;
-		if (position + count > size) throw new EndOfBitStreamException();
-
-		int value;
-		int remainder = (8 - (int)position) & 7;
-		if (remainder == 0) {
-			value = 0;
-		} else if (count > remainder) {
-			// other endian
-			// value = buffer >> (8 - remainder);
-			value = buffer & ((1 << remainder) - 1);
-			count -= remainder;
-			position += remainder;
-		} else {
-			position += count;
-			// other endian
-			// return buffer & ((1 << count) - 1);
-			return (buffer >> (remainder - count)) & ((1 << count) - 1);
+		return (int) readBits(count);
+	}
+
+	@Override
+	public long readLong(int count) {
+		if (count < 0) throw new IllegalArgumentException("negative count");
+		if (count > 64) throw new IllegalArgumentException("count too great");
+		if (count == 0) return 0L;
+		return readBits(count);
+	}
+
+	@Override
+	public void readBytes(byte[] bytes, int offset, int length) {
+		if (bytes == null) throw new IllegalArgumentException("null bytes");
+		BitStreams.checkRange(bytes.length, offset, length);
+		if (position + ((long) length << 3) > size) throw new EndOfBitStreamException();
+		if ((position & 7) != 0) {
+			BitReader.super.readBytes(bytes, offset, length);
+			return;
+		}
+		// aligned, so buffered bits are whole bytes and the rest come directly from the source
+		for (; length > 0 && bits >= 8; length--) {
+			bytes[offset++] = (byte) take(8);
 		}
+		if (length == 0) return;
+		int count = readSourceBytes(bytes, offset, length);
+		position += (long) count << 3;
+		if (count < length) throw new EndOfBitStreamException();
+	}
 
-		while (true) {
-			buffer = readSourceByte();
-			if (buffer == -1) throw new EndOfBitStreamException();
-			if (count >= 8) {
-				value = (value << 8) | buffer;
-				count -= 8;
-				position += 8;
-				if (count == 0) return value;
-			} else {
-				// other endian
-				// value = (value << count) | (buffer & ((1 << count) - 1));
-				value = (value << count) | (buffer >> (8 - count));
-				position += count;
-				return value;
-			}
+	@Override
+	public void readLongs(long[] longs, int offset, int length, int width) {
+		if (longs == null) throw new IllegalArgumentException("null longs");
+		BitStreams.checkRange(longs.length, offset, length);
+		BitStreams.checkWidth(width);
+		if (width == 0) {
+			Arrays.fill(longs, offset, offset + length, 0L);
+			return;
+		}
+		for (int finish = offset + length; offset < finish; offset++) {
+			longs[offset] = readBits(width);
 		}
 	}
 
 	@Override
 	public int readUntil(boolean one) {
 		int total = 0;
-		final int[] lookup = one ? ZERO_COUNT_LOOKUP : ONE_COUNT_LOOKUP;
-		int count = (int) position & 7;
 		while (true) {
-			if (count == 0) { // need new bits
-				buffer = readSourceByte();
-				if (buffer == -1) throw new EndOfBitStreamException();
-			}
-			int t = lookup[(buffer << 3) | count];
-			if (count + t == 8) {
-				position += t;
-				if (position > size) {
-					position = size;
-					throw new EndOfBitStreamException();
-				}
-				total += t;
-				count = 0;
-			} else {
-				position += t + 1;
-				if (position > size) {
-					position = size;
-					throw new EndOfBitStreamException();
-				}
+			if (bits == 0 && !refill()) throw new EndOfBitStreamException();
+			// the zeros that pad the word must not be counted
+			int t = Math.min(Long.numberOfLeadingZeros(one ? word : ~word), bits);
+			if (t < bits) {
+				consume(t + 1);
 				return total + t;
 			}
+			total += t;
+			consume(t);
 		}
 	}
 
@@ -226,26 +269,27 @@ abstract class ByteBasedBitReader implements BitReader {
 	public long skipBits(long count) {
 		if (count < 0L) return BitReader.super.skipBits(count);
 		count = Math.min(count, size - position);
-		int boundary = BitBoundary.BYTE.bitsFrom(position);
-		if (count <= boundary) {
-			position += count;
+		if (count <= bits) {
+			if (count > 0L) consume((int) count);
 			return count;
 		}
 
-		position += boundary;
-		long bytes = (count - boundary) >> 3;
-		long skipped = skipFully(bytes);
-		long bits = skipped << 3;
-		if (skipped < bytes) return boundary + bits;
-
-		for (int remainder = (int)(count - boundary - bits); remainder > 0; remainder--) {
-			try {
-				readBit();
-			} catch (EndOfBitStreamException e) {
-				return count - remainder;
-			}
+		long skipped = bits;
+		position += bits;
+		word = 0L;
+		bits = 0;
+		long bytes = (count - skipped) >> 3;
+		long skippedBytes = skipFully(bytes);
+		skipped += skippedBytes << 3;
+		if (skippedBytes < bytes) return skipped;
+
+		int remainder = (int) (count - skipped);
+		if (remainder > 0 && refill()) {
+			int c = Math.min(remainder, bits);
+			consume(c);
+			skipped += c;
 		}
-		return count;
+		return skipped;
 	}
 
 	@Override
@@ -255,10 +299,68 @@ abstract class ByteBasedBitReader implements BitReader {
 
 	// private utility methods
 
+	// count is between 1 and 64
+	private long readBits(int count) {
+		if (count <= bits) return take(count);
+		// the value spans refills, which may supply fewer bits than a word
+		long value = 0L;
+		while (count > bits) {
+			if (bits > 0) {
+				count -= bits;
+				value = value << bits | take(bits);
+			}
+			if (!refill()) throw new EndOfBitStreamException();
+		}
+		return value << count | take(count);
+	}
+
+	// count is between 1 and bits
+	private long take(int count) {
+		long value = word >>> (64 - count);
+		consume(count);
+		return value;
+	}
+
+	// count is between 0 and bits
+	private void consume(int count) {
+		word = count == 64 ? 0L : word << count;
+		bits -= count;
+		position += count;
+	}
+
+	// called only when no bits are buffered, returns false at the end of the stream
+	private boolean refill() {
+		if (position >= size) return false;
+		long w;
+		int n;
+		if (availableSourceBytes() >= 8) {
+			w = readSourceLong();
+			n = 64;
+		} else {
+			// the first byte may block, but no more than are available are read
+			int b = readSourceByte();
+			if (b < 0) return false;
+			w = (long) b << 56;
+			n = 8;
+			while (n < 64 && availableSourceBytes() > 0) {
+				w |= (long) readSourceByte() << (56 - n);
+				n += 8;
+			}
+		}
+		long limit = size - position;
+		if (n > limit) {
+			n = (int) limit;
+			w = n == 0 ? 0L : w & (-1L << (64 - n));
+		}
+		word = w;
+		bits = n;
+		return n > 0;
+	}
+
 	private long skipFully(long count) {
 		long total = 0L;
 		while (total < count) {
-			long skipped = skipSourceBytes(count);
+			long skipped = skipSourceBytes(count - total);
 			if (skipped == 0L) {
 				if (readSourceByte() < 0) {
 					break;
@@ -71,7 +71,21 @@ abstract class ByteBasedBitWriter implements BitWriter {
 
 	protected abstract void writeByte(int value) throws BitStreamException;
 
-	protected void writeBytes(byte[] bytes, int offset, int length) throws BitStreamException {
+	/**
+	 * Writes a range of bytes into the sequence. The default implementation
+	 * makes repeated calls to {@link #writeByte(int)}.
+	 *
+	 * @param bytes
+	 *            the array containing the bytes
+	 * @param offset
+	 *            the index of the first byte to write
+	 * @param length
+	 *            the number of bytes to write
+	 * @throws BitStreamException
+	 *             if an exception occurs when writing
+	 */
+
+	protected void copyBytes(byte[] bytes, int offset, int length) throws BitStreamException {
 		for (int i = 0; i < length; i++) {
 			writeByte(bytes[offset + i]);
 		}
@@ -110,17 +124,17 @@ abstract class ByteBasedBitWriter implements BitWriter {
 
 		// if we can, just do it with a single buffer
 		if (count <= len) {
-			writeBytes(buffer, 0, (int) count);
+			copyBytes(buffer, 0, (int) count);
 			return;
 		}
 
 		// write the buffer as many times as we need to
 		long limit = count / len;
 		for (long i = 0; i < limit; i++) {
-			writeBytes(buffer, 0, len);
+			copyBytes(buffer, 0, len);
 		}
 		int r = (int) (count - limit * len);
-		if (r != 0) writeBytes(buffer, 0, r);
+		if (r != 0) copyBytes(buffer, 0, r);
 	}
 
 	// bit writer methods
@@ -185,6 +199,19 @@ abstract class ByteBasedBitWriter implements BitWriter {
 		return count;
 	}
 
+	@Override
+	public long writeBytes(byte[] bytes, int offset, int length) {
+		if (bytes == null) throw new IllegalArgumentException("null bytes");
+		BitStreams.checkRange(bytes.length, offset, length);
+		long c = (long) length << 3;
+		if (position + c > size) throw new EndOfBitStreamException();
+		if (count != 0) return BitWriter.super.writeBytes(bytes, offset, length);
+		// aligned, so the bytes can be written unaltered
+		copyBytes(bytes, offset, length);
+		position += c;
+		return c;
+	}
+
 	@Override
 	public int flush() {
 		if (count == 0) return 0;
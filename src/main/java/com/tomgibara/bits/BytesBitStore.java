@@ -19,7 +19,6 @@ package com.tomgibara.bits;
 import java.util.Arrays;
 import java.util.Random;
 
-//TODO optimize further
 class BytesBitStore extends AbstractBitStore {
 
 	// statics
@@ -110,6 +109,47 @@ class BytesBitStore extends AbstractBitStore {
 
 	// accelerators
 
+	@Override
+	public long getBits(int position, int length) {
+		Bits.checkBitsLength(length);
+		if (length == 0) return 0L;
+		position = adjPosition(position, length);
+		int i = position >> ADDRESS_BITS;
+		int offset = position & ADDRESS_MASK;
+		long value = (bits[i] & 0xffL) >>> offset;
+		for (int shift = ADDRESS_SIZE - offset; shift < length; shift += ADDRESS_SIZE) {
+			value |= (bits[++i] & 0xffL) << shift;
+		}
+		return length == 64 ? value : value & ~(-1L << length);
+	}
+
+	@Override
+	public void setBits(int position, long value, int length) {
+		Bits.checkBitsLength(length);
+		position = adjPosition(position, length);
+		checkMutability();
+		int i = position >> ADDRESS_BITS;
+		int offset = position & ADDRESS_MASK;
+		// the partial byte at the start
+		if (offset != 0 && length != 0) {
+			int count = Math.min(ADDRESS_SIZE - offset, length);
+			int m = ((1 << count) - 1) << offset;
+			bits[i] = (byte) (bits[i] & ~m | ((int) value << offset) & m);
+			value >>>= count;
+			length -= count;
+			i++;
+		}
+		// whole bytes
+		for (; length >= ADDRESS_SIZE; length -= ADDRESS_SIZE, value >>>= ADDRESS_SIZE) {
+			bits[i++] = (byte) value;
+		}
+		// the partial byte at the end
+		if (length != 0) {
+			int m = (1 << length) - 1;
+			bits[i] = (byte) (bits[i] & ~m | (int) value & m);
+		}
+	}
+
 	@Override
 	public boolean getThenSetBit(int index, boolean value) {
 		index = adjIndex(index);
@@ -166,6 +206,12 @@ class BytesBitStore extends AbstractBitStore {
 		return Bits.adjIndex(index, start, finish);
 	}
 
+	private int adjPosition(int position, int length) {
+		position = Bits.adjPosition(position, start, finish);
+		if (position + length > finish) throw new IllegalArgumentException("length too great");
+		return position;
+	}
+
 	private BytesBitStore copyAdj(int from, int to, boolean mutable) {
 		if (start == finish) return new BytesBitStore(NO_BITS, from, to, mutable);
 		int i = start >> ADDRESS_BITS;
@@ -0,0 +1,1085 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import static com.tomgibara.bits.Bits.checkBitsLength;
+
+import java.util.Arrays;
+
+import com.tomgibara.bits.ImmutableBit.ImmutableOne;
+import com.tomgibara.bits.ImmutableBit.ImmutableZero;
+
+// stores bits in chunks of 2^16 bits, each of which is held in the most compact of
+// a sorted array of positions, a bitmap or a list of runs
+final class CompressedBitStore extends AbstractBitStore {
+
+	// statics
+
+	private static final int CHUNK_BITS = 16;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private static final int ADDRESS_BITS = 6;
+	private static final int ADDRESS_SIZE = 1 << ADDRESS_BITS;
+	private static final int ADDRESS_MASK = ADDRESS_SIZE - 1;
+
+	private static final int WORD_BITS = CHUNK_BITS - ADDRESS_BITS;
+	private static final int CHUNK_WORDS = 1 << WORD_BITS;
+	private static final int WORD_MASK = CHUNK_WORDS - 1;
+
+	// containers with no more bits than this are stored as arrays
+	private static final int ARRAY_LIMIT = 4096;
+	// containers with more runs than this are never stored as runs
+	private static final int RUN_LIMIT = 2048;
+
+	private static final int SET = 0;
+	private static final int AND = 1;
+	private static final int OR  = 2;
+	private static final int XOR = 3;
+	// only applied internally
+	private static final int AND_NOT = 4;
+
+	private static final Container[] NO_CONTAINERS = new Container[0];
+
+	// chooses the most compact container for the bits, the array may be retained
+	private static Container optimize(long[] bits) {
+		int cardinality = 0;
+		int runs = 0;
+		long carry = 0L;
+		for (int i = 0; i < CHUNK_WORDS; i++) {
+			long w = bits[i];
+			cardinality += Long.bitCount(w);
+			runs += Long.bitCount(w & ~((w << 1) | carry));
+			carry = w >>> ADDRESS_MASK;
+		}
+		if (cardinality == 0) return null;
+		if (runs <= RUN_LIMIT && runs * 2 < Math.min(cardinality, CHUNK_WORDS * 4)) return RunContainer.fromBits(bits, runs, cardinality);
+		if (cardinality <= ARRAY_LIMIT) return ArrayContainer.fromBits(bits, cardinality);
+		return new BitmapContainer(bits, cardinality);
+	}
+
+	// combines the bits of two containers, either may be null and the first may be modified
+	private static Container combine(int operation, Container a, Container b) {
+		if (b == null) return operation == SET || operation == AND ? null : a;
+		if (a == null) return operation == AND || operation == AND_NOT ? null : b.copy();
+		if (operation == SET) return b.copy();
+		if (a instanceof ArrayContainer) {
+			ArrayContainer aa = (ArrayContainer) a;
+			if (b instanceof ArrayContainer) return aa.combine(operation, (ArrayContainer) b);
+			if (operation == AND || operation == AND_NOT) return aa.filter(b, operation == AND);
+		} else if (b instanceof ArrayContainer) {
+			ArrayContainer ab = (ArrayContainer) b;
+			if (operation == AND) return ab.filter(a, true);
+			long[] bits = a.bits();
+			final char[] values = ab.values;
+			final int count = ab.count;
+			for (int i = 0; i < count; i++) {
+				int v = values[i];
+				int j = v >>> ADDRESS_BITS;
+				switch (operation) {
+				case OR     : bits[j] |=  1L << v; break;
+				case XOR    : bits[j] ^=  1L << v; break;
+				case AND_NOT: bits[j] &= ~(1L << v); break;
+				}
+			}
+			return optimize(bits);
+		}
+		long[] bits = a.bits();
+		long[] that = b instanceof BitmapContainer ? ((BitmapContainer) b).bits : b.bits();
+		switch (operation) {
+		case AND    : for (int i = 0; i < CHUNK_WORDS; i++) bits[i] &=  that[i]; break;
+		case OR     : for (int i = 0; i < CHUNK_WORDS; i++) bits[i] |=  that[i]; break;
+		case XOR    : for (int i = 0; i < CHUNK_WORDS; i++) bits[i] ^=  that[i]; break;
+		case AND_NOT: for (int i = 0; i < CHUNK_WORDS; i++) bits[i] &= ~that[i]; break;
+		}
+		return optimize(bits);
+	}
+
+	// sets the bits over the range [from, to] inclusive
+	private static void setRange(long[] bits, int from, int to) {
+		int f = from >>> ADDRESS_BITS;
+		int t = to >>> ADDRESS_BITS;
+		long fm = -1L << from;
+		long tm = -1L >>> (ADDRESS_MASK - (to & ADDRESS_MASK));
+		if (f == t) {
+			bits[f] |= fm & tm;
+		} else {
+			bits[f] |= fm;
+			Arrays.fill(bits, f + 1, t, -1L);
+			bits[t] |= tm;
+		}
+	}
+
+	// fields
+
+	private final int size;
+	private final Container[] containers;
+	private final boolean mutable;
+
+	// constructors
+
+	CompressedBitStore(int size) {
+		this.size = size;
+		this.containers = size == 0 ? NO_CONTAINERS : new Container[((size - 1) >>> CHUNK_BITS) + 1];
+		this.mutable = true;
+	}
+
+	private CompressedBitStore(int size, Container[] containers, boolean mutable) {
+		this.size = size;
+		this.containers = containers;
+		this.mutable = mutable;
+	}
+
+	// fundamental methods
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean getBit(int index) {
+		checkIndex(index);
+		return getBitImpl(index);
+	}
+
+	@Override
+	public void setBit(int index, boolean value) {
+		checkIndex(index);
+		checkMutable();
+		setBitImpl(index, value);
+	}
+
+	// accelerating methods
+
+	@Override
+	public long getBits(int position, int length) {
+		checkBitsLength(length);
+		checkPosition(position, length);
+		return getBitsImpl(position, length);
+	}
+
+	@Override
+	public int getBitsAsInt(int position, int length) {
+		Bits.checkIntBitsLength(length);
+		checkPosition(position, length);
+		return (int) getBitsImpl(position, length);
+	}
+
+	@Override
+	public boolean getThenSetBit(int index, boolean value) {
+		checkIndex(index);
+		checkMutable();
+		boolean previous = getBitImpl(index);
+		if (previous != value) setBitImpl(index, value);
+		return previous;
+	}
+
+	@Override
+	public void flipBit(int index) {
+		checkIndex(index);
+		checkMutable();
+		setBitImpl(index, !getBitImpl(index));
+	}
+
+	@Override
+	public void setBits(int position, long value, int length) {
+		checkBitsLength(length);
+		checkPosition(position, length);
+		checkMutable();
+		setBitsImpl(position, value, length);
+	}
+
+	@Override
+	public void fill() {
+		checkMutable();
+		for (int i = 0; i < containers.length; i++) {
+			containers[i] = RunContainer.full(chunkSize(i));
+		}
+	}
+
+	@Override
+	public void clear() {
+		checkMutable();
+		Arrays.fill(containers, null);
+	}
+
+	@Override
+	public void flip() {
+		checkMutable();
+		for (int i = 0; i < containers.length; i++) {
+			Container c = containers[i];
+			int chunkSize = chunkSize(i);
+			if (c == null) {
+				containers[i] = RunContainer.full(chunkSize);
+			} else {
+				long[] bits = c.bits();
+				for (int j = 0; j < CHUNK_WORDS; j++) bits[j] = ~bits[j];
+				if (chunkSize < CHUNK_SIZE) {
+					int t = chunkSize >>> ADDRESS_BITS;
+					if ((chunkSize & ADDRESS_MASK) != 0) bits[t++] &= -1L >>> -chunkSize;
+					Arrays.fill(bits, t, CHUNK_WORDS, 0L);
+				}
+				containers[i] = optimize(bits);
+			}
+		}
+	}
+
+	// operations
+
+	@Override
+	public Op set() {
+		return new CompressedOp(new BitStoreOp.Set(this), SET);
+	}
+
+	@Override
+	public Op and() {
+		return new CompressedOp(new BitStoreOp.And(this), AND);
+	}
+
+	@Override
+	public Op or() {
+		return new CompressedOp(new BitStoreOp.Or(this), OR);
+	}
+
+	@Override
+	public Op xor() {
+		return new CompressedOp(new BitStoreOp.Xor(this), XOR);
+	}
+
+	// matching
+
+	@Override
+	public BitMatches ones() {
+		return new CompressedOnes();
+	}
+
+	@Override
+	public BitMatches zeros() {
+		return new CompressedZeros();
+	}
+
+	// mutability
+
+	@Override
+	public boolean isMutable() {
+		return mutable;
+	}
+
+	@Override
+	public BitStore mutableCopy() {
+		return new CompressedBitStore(size, copyContainers(), true);
+	}
+
+	@Override
+	public BitStore immutableCopy() {
+		return new CompressedBitStore(size, copyContainers(), false);
+	}
+
+	@Override
+	public BitStore immutableView() {
+		return new CompressedBitStore(size, containers, false);
+	}
+
+	// private utility methods
+
+	private void checkIndex(int index) {
+		if (index < 0) throw new IllegalArgumentException("negative index");
+		if (index >= size) throw new IllegalArgumentException("index too large");
+	}
+
+	private void checkPosition(int position, int length) {
+		if (position < 0) throw new IllegalArgumentException("negative position");
+		if (position + length > size) throw new IllegalArgumentException("length too great");
+	}
+
+	private void checkMutable() {
+		if (!mutable) throw new IllegalStateException("immutable");
+	}
+
+	private int chunkSize(int i) {
+		return Math.min(CHUNK_SIZE, size - (i << CHUNK_BITS));
+	}
+
+	private Container[] copyContainers() {
+		Container[] copy = new Container[containers.length];
+		for (int i = 0; i < copy.length; i++) {
+			Container c = containers[i];
+			if (c != null) copy[i] = c.copy();
+		}
+		return copy;
+	}
+
+	private boolean getBitImpl(int index) {
+		Container c = containers[index >>> CHUNK_BITS];
+		return c != null && c.contains(index & CHUNK_MASK);
+	}
+
+	private void setBitImpl(int index, boolean value) {
+		int i = index >>> CHUNK_BITS;
+		int j = index & CHUNK_MASK;
+		Container c = containers[i];
+		if (value) {
+			containers[i] = c == null ? new ArrayContainer(j) : c.add(j);
+		} else if (c != null) {
+			containers[i] = c.remove(j);
+		}
+	}
+
+	// the word at the given word index, bits beyond the size are always zero
+	private long word(int i) {
+		Container c = containers[i >>> WORD_BITS];
+		return c == null ? 0L : c.word(i & WORD_MASK);
+	}
+
+	private long getBitsImpl(int position, int length) {
+		if (length == 0) return 0L;
+		final int i = position >>> ADDRESS_BITS;
+		final int s = position & ADDRESS_MASK;
+		final long w;
+		if (s == 0) {
+			w = word(i);
+		} else if (s + length <= ADDRESS_SIZE) {
+			w = word(i) >>> s;
+		} else {
+			w = (word(i) >>> s) | (word(i + 1) << (ADDRESS_SIZE - s));
+		}
+		return length == ADDRESS_SIZE ? w : w & ((1L << length) - 1L);
+	}
+
+	private void setBitsImpl(int position, long value, int length) {
+		if (length == 0) return;
+		long mask = length == ADDRESS_SIZE ? -1L : (1L << length) - 1L;
+		// only modify the bits that change
+		long diff = (getBitsImpl(position, length) ^ value) & mask;
+		while (diff != 0L) {
+			int bit = Long.numberOfTrailingZeros(diff);
+			setBitImpl(position + bit, (value & (1L << bit)) != 0L);
+			diff &= diff - 1L;
+		}
+	}
+
+	// the bits of a vector chunk as a container
+	private static Container container(BitVector vector, int i) {
+		int from = i << CHUNK_BITS;
+		int to = Math.min(vector.size(), from + CHUNK_SIZE);
+		long[] bits = new long[CHUNK_WORDS];
+		int j = 0;
+		for (int p = from; p < to; p += ADDRESS_SIZE, j++) {
+			bits[j] = vector.getBits(p, Math.min(ADDRESS_SIZE, to - p));
+		}
+		return optimize(bits);
+	}
+
+	private void performImpl(int operation, CompressedBitStore that) {
+		if (that.containers == this.containers) {
+			// trivial cases of operating on self
+			if (operation == XOR || operation == AND_NOT) clear();
+			return;
+		}
+		for (int i = 0; i < containers.length; i++) {
+			containers[i] = combine(operation, containers[i], that.containers[i]);
+		}
+	}
+
+	private void performImpl(int operation, BitVector that) {
+		for (int i = 0; i < containers.length; i++) {
+			Container c = containers[i];
+			// avoid unpacking the vector where the result is known
+			if (c == null && operation == AND) continue;
+			containers[i] = combine(operation, c, container(that, i));
+		}
+	}
+
+	// finds the first match at or after the position, returns size if none
+	private int next(boolean bit, int position) {
+		if (position >= size) return size;
+		for (int i = position >>> CHUNK_BITS; i < containers.length; i++) {
+			int from = i == position >>> CHUNK_BITS ? position & CHUNK_MASK : 0;
+			Container c = containers[i];
+			final int j;
+			if (c == null) {
+				j = bit ? -1 : from;
+			} else {
+				j = bit ? c.next(from) : c.nextAbsent(from);
+			}
+			if (j != -1) return Math.min(size, (i << CHUNK_BITS) + j);
+		}
+		return size;
+	}
+
+	// finds the last match before the position, returns -1 if none
+	private int previous(boolean bit, int position) {
+		if (position <= 0) return -1;
+		position--;
+		for (int i = position >>> CHUNK_BITS; i >= 0; i--) {
+			int from = i == position >>> CHUNK_BITS ? position & CHUNK_MASK : CHUNK_MASK;
+			Container c = containers[i];
+			final int j;
+			if (c == null) {
+				j = bit ? -1 : from;
+			} else {
+				j = bit ? c.previous(from) : c.previousAbsent(from);
+			}
+			if (j != -1) return (i << CHUNK_BITS) + j;
+		}
+		return -1;
+	}
+
+	private int countOnes() {
+		int count = 0;
+		for (Container c : containers) {
+			if (c != null) count += c.cardinality();
+		}
+		return count;
+	}
+
+	// inner classes
+
+	private static abstract class Container {
+
+		abstract int cardinality();
+
+		abstract boolean contains(int i);
+
+		// returns the container that holds the result
+		abstract Container add(int i);
+
+		// returns the container that holds the result, null if empty
+		abstract Container remove(int i);
+
+		abstract long word(int w);
+
+		// a bitmap of the container that the caller may modify; the container must not be used subsequently
+		abstract long[] bits();
+
+		abstract Container copy();
+
+		// the first bit set at or after i, -1 if none
+		int next(int i) {
+			int w = i >>> ADDRESS_BITS;
+			long bits = word(w) & (-1L << i);
+			while (bits == 0L) {
+				if (++w == CHUNK_WORDS) return -1;
+				bits = word(w);
+			}
+			return (w << ADDRESS_BITS) + Long.numberOfTrailingZeros(bits);
+		}
+
+		// the last bit set at or before i, -1 if none
+		int previous(int i) {
+			int w = i >>> ADDRESS_BITS;
+			long bits = word(w) & (-1L >>> (ADDRESS_MASK - (i & ADDRESS_MASK)));
+			while (bits == 0L) {
+				if (--w < 0) return -1;
+				bits = word(w);
+			}
+			return (w << ADDRESS_BITS) + ADDRESS_MASK - Long.numberOfLeadingZeros(bits);
+		}
+
+		// the first bit clear at or after i, -1 if none
+		int nextAbsent(int i) {
+			int w = i >>> ADDRESS_BITS;
+			long bits = ~word(w) & (-1L << i);
+			while (bits == 0L) {
+				if (++w == CHUNK_WORDS) return -1;
+				bits = ~word(w);
+			}
+			return (w << ADDRESS_BITS) + Long.numberOfTrailingZeros(bits);
+		}
+
+		// the last bit clear at or before i, -1 if none
+		int previousAbsent(int i) {
+			int w = i >>> ADDRESS_BITS;
+			long bits = ~word(w) & (-1L >>> (ADDRESS_MASK - (i & ADDRESS_MASK)));
+			while (bits == 0L) {
+				if (--w < 0) return -1;
+				bits = ~word(w);
+			}
+			return (w << ADDRESS_BITS) + ADDRESS_MASK - Long.numberOfLeadingZeros(bits);
+		}
+
+	}
+
+	private static final class ArrayContainer extends Container {
+
+		static ArrayContainer fromBits(long[] bits, int cardinality) {
+			char[] values = new char[cardinality];
+			int count = 0;
+			for (int i = 0; i < CHUNK_WORDS; i++) {
+				long w = bits[i];
+				while (w != 0L) {
+					values[count++] = (char) ((i << ADDRESS_BITS) + Long.numberOfTrailingZeros(w));
+					w &= w - 1L;
+				}
+			}
+			return new ArrayContainer(values, count);
+		}
+
+		char[] values;
+		int count;
+
+		ArrayContainer(int i) {
+			values = new char[4];
+			values[0] = (char) i;
+			count = 1;
+		}
+
+		ArrayContainer(char[] values, int count) {
+			this.values = values;
+			this.count = count;
+		}
+
+		@Override
+		int cardinality() {
+			return count;
+		}
+
+		@Override
+		boolean contains(int i) {
+			return Arrays.binarySearch(values, 0, count, (char) i) >= 0;
+		}
+
+		@Override
+		Container add(int i) {
+			int index = Arrays.binarySearch(values, 0, count, (char) i);
+			if (index >= 0) return this;
+			if (count == ARRAY_LIMIT) {
+				long[] bits = bits();
+				bits[i >>> ADDRESS_BITS] |= 1L << i;
+				return new BitmapContainer(bits, count + 1);
+			}
+			index = -1 - index;
+			if (count == values.length) values = Arrays.copyOf(values, Math.min(count * 2, ARRAY_LIMIT));
+			System.arraycopy(values, index, values, index + 1, count - index);
+			values[index] = (char) i;
+			count++;
+			return this;
+		}
+
+		@Override
+		Container remove(int i) {
+			int index = Arrays.binarySearch(values, 0, count, (char) i);
+			if (index < 0) return this;
+			if (count == 1) return null;
+			System.arraycopy(values, index + 1, values, index, count - index - 1);
+			count--;
+			return this;
+		}
+
+		@Override
+		long word(int w) {
+			int lo = w << ADDRESS_BITS;
+			int index = Arrays.binarySearch(values, 0, count, (char) lo);
+			if (index < 0) index = -1 - index;
+			int hi = lo + ADDRESS_MASK;
+			long bits = 0L;
+			for (; index < count && values[index] <= hi; index++) {
+				bits |= 1L << values[index];
+			}
+			return bits;
+		}
+
+		@Override
+		long[] bits() {
+			long[] bits = new long[CHUNK_WORDS];
+			for (int i = 0; i < count; i++) {
+				int v = values[i];
+				bits[v >>> ADDRESS_BITS] |= 1L << v;
+			}
+			return bits;
+		}
+
+		@Override
+		Container copy() {
+			return new ArrayContainer(Arrays.copyOf(values, count), count);
+		}
+
+		@Override
+		int next(int i) {
+			int index = Arrays.binarySearch(values, 0, count, (char) i);
+			if (index >= 0) return i;
+			index = -1 - index;
+			return index < count ? values[index] : -1;
+		}
+
+		@Override
+		int previous(int i) {
+			int index = Arrays.binarySearch(values, 0, count, (char) i);
+			if (index >= 0) return i;
+			index = -2 - index;
+			return index >= 0 ? values[index] : -1;
+		}
+
+		// retains (or removes) the values that are contained in the other container
+		Container filter(Container that, boolean retain) {
+			char[] result = new char[count];
+			int size = 0;
+			for (int i = 0; i < count; i++) {
+				char v = values[i];
+				if (that.contains(v) == retain) result[size++] = v;
+			}
+			return size == 0 ? null : new ArrayContainer(result, size);
+		}
+
+		Container combine(int operation, ArrayContainer that) {
+			final char[] a = this.values;
+			final char[] b = that.values;
+			final int n = this.count;
+			final int m = that.count;
+			char[] result = new char[operation == AND || operation == AND_NOT ? n : n + m];
+			int i = 0;
+			int j = 0;
+			int size = 0;
+			while (i < n && j < m) {
+				char x = a[i];
+				char y = b[j];
+				if (x < y) {
+					if (operation != AND) result[size++] = x;
+					i++;
+				} else if (x > y) {
+					if (operation == OR || operation == XOR) result[size++] = y;
+					j++;
+				} else {
+					if (operation == AND || operation == OR) result[size++] = x;
+					i++;
+					j++;
+				}
+			}
+			if (operation != AND) while (i < n) result[size++] = a[i++];
+			if (operation == OR || operation == XOR) while (j < m) result[size++] = b[j++];
+			if (size == 0) return null;
+			ArrayContainer container = new ArrayContainer(result, size);
+			return size > ARRAY_LIMIT ? optimize(container.bits()) : container;
+		}
+
+	}
+
+	private static final class BitmapContainer extends Container {
+
+		final long[] bits;
+		int cardinality;
+
+		BitmapContainer(long[] bits, int cardinality) {
+			this.bits = bits;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		boolean contains(int i) {
+			return (bits[i >>> ADDRESS_BITS] & (1L << i)) != 0L;
+		}
+
+		@Override
+		Container add(int i) {
+			int w = i >>> ADDRESS_BITS;
+			long m = 1L << i;
+			if ((bits[w] & m) == 0L) {
+				bits[w] |= m;
+				cardinality++;
+			}
+			return this;
+		}
+
+		@Override
+		Container remove(int i) {
+			int w = i >>> ADDRESS_BITS;
+			long m = 1L << i;
+			if ((bits[w] & m) == 0L) return this;
+			bits[w] &= ~m;
+			cardinality--;
+			return cardinality <= ARRAY_LIMIT ? ArrayContainer.fromBits(bits, cardinality) : this;
+		}
+
+		@Override
+		long word(int w) {
+			return bits[w];
+		}
+
+		@Override
+		long[] bits() {
+			return bits;
+		}
+
+		@Override
+		Container copy() {
+			return new BitmapContainer(bits.clone(), cardinality);
+		}
+
+	}
+
+	private static final class RunContainer extends Container {
+
+		static RunContainer full(int size) {
+			return new RunContainer(new char[] {0}, new char[] {(char) (size - 1)}, 1, size);
+		}
+
+		static RunContainer fromBits(long[] bits, int runs, int cardinality) {
+			char[] starts = new char[runs];
+			char[] ends = new char[runs];
+			int count = 0;
+			int i = 0;
+			while (count < runs) {
+				int start = nextSet(bits, i);
+				int end = nextClear(bits, start);
+				starts[count] = (char) start;
+				ends[count] = (char) (end - 1);
+				count++;
+				i = end;
+			}
+			return new RunContainer(starts, ends, count, cardinality);
+		}
+
+		private static int nextSet(long[] bits, int i) {
+			int w = i >>> ADDRESS_BITS;
+			long word = bits[w] & (-1L << i);
+			while (word == 0L) word = bits[++w];
+			return (w << ADDRESS_BITS) + Long.numberOfTrailingZeros(word);
+		}
+
+		private static int nextClear(long[] bits, int i) {
+			int w = i >>> ADDRESS_BITS;
+			long word = ~bits[w] & (-1L << i);
+			while (word == 0L) {
+				if (++w == CHUNK_WORDS) return CHUNK_SIZE;
+				word = ~bits[w];
+			}
+			return (w << ADDRESS_BITS) + Long.numberOfTrailingZeros(word);
+		}
+
+		// runs are inclusive of their ends
+		char[] starts;
+		char[] ends;
+		int count;
+		int cardinality;
+
+		RunContainer(char[] starts, char[] ends, int count, int cardinality) {
+			this.starts = starts;
+			this.ends = ends;
+			this.count = count;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		boolean contains(int i) {
+			int k = run(i);
+			return k >= 0 && ends[k] >= i;
+		}
+
+		@Override
+		Container add(int i) {
+			int k = run(i);
+			if (k >= 0 && ends[k] >= i) return this;
+			boolean left = k >= 0 && ends[k] + 1 == i;
+			boolean right = k + 1 < count && starts[k + 1] == i + 1;
+			if (left && right) {
+				ends[k] = ends[k + 1];
+				delete(k + 1);
+			} else if (left) {
+				ends[k] = (char) i;
+			} else if (right) {
+				starts[k + 1] = (char) i;
+			} else {
+				insert(k + 1, i, i);
+			}
+			cardinality++;
+			return count > RUN_LIMIT ? optimize(bits()) : this;
+		}
+
+		@Override
+		Container remove(int i) {
+			int k = run(i);
+			if (k < 0 || ends[k] < i) return this;
+			if (cardinality == 1) return null;
+			int start = starts[k];
+			int end = ends[k];
+			if (start == end) {
+				delete(k);
+			} else if (i == start) {
+				starts[k] = (char) (i + 1);
+			} else if (i == end) {
+				ends[k] = (char) (i - 1);
+			} else {
+				ends[k] = (char) (i - 1);
+				insert(k + 1, i + 1, end);
+			}
+			cardinality--;
+			return count > RUN_LIMIT ? optimize(bits()) : this;
+		}
+
+		@Override
+		long word(int w) {
+			int lo = w << ADDRESS_BITS;
+			int hi = lo + ADDRESS_MASK;
+			long bits = 0L;
+			for (int k = run(hi); k >= 0 && ends[k] >= lo; k--) {
+				int s = Math.max(starts[k], lo) - lo;
+				int e = Math.min(ends[k], hi) - lo;
+				bits |= (-1L >>> (ADDRESS_MASK - e + s)) << s;
+			}
+			return bits;
+		}
+
+		@Override
+		long[] bits() {
+			long[] bits = new long[CHUNK_WORDS];
+			for (int k = 0; k < count; k++) {
+				setRange(bits, starts[k], ends[k]);
+			}
+			return bits;
+		}
+
+		@Override
+		Container copy() {
+			return new RunContainer(Arrays.copyOf(starts, count), Arrays.copyOf(ends, count), count, cardinality);
+		}
+
+		@Override
+		int next(int i) {
+			int k = run(i);
+			if (k >= 0 && ends[k] >= i) return i;
+			return k + 1 < count ? starts[k + 1] : -1;
+		}
+
+		@Override
+		int previous(int i) {
+			int k = run(i);
+			return k < 0 ? -1 : Math.min(ends[k], i);
+		}
+
+		// the index of the last run starting at or before i, -1 if none
+		private int run(int i) {
+			int index = Arrays.binarySearch(starts, 0, count, (char) i);
+			return index >= 0 ? index : -2 - index;
+		}
+
+		private void insert(int k, int start, int end) {
+			if (count == starts.length) {
+				int length = Math.max(4, count * 2);
+				starts = Arrays.copyOf(starts, length);
+				ends = Arrays.copyOf(ends, length);
+			}
+			System.arraycopy(starts, k, starts, k + 1, count - k);
+			System.arraycopy(ends, k, ends, k + 1, count - k);
+			starts[k] = (char) start;
+			ends[k] = (char) end;
+			count++;
+		}
+
+		private void delete(int k) {
+			System.arraycopy(starts, k + 1, starts, k, count - k - 1);
+			System.arraycopy(ends, k + 1, ends, k, count - k - 1);
+			count--;
+		}
+
+	}
+
+	private final class CompressedOp implements Op {
+
+		private final Op generic;
+		private final int operation;
+
+		CompressedOp(Op generic, int operation) {
+			this.generic = generic;
+			this.operation = operation;
+		}
+
+		@Override
+		public Operation getOperation() {
+			return generic.getOperation();
+		}
+
+		@Override
+		public void with(boolean value) {
+			generic.with(value);
+		}
+
+		@Override
+		public void withBit(int position, boolean value) {
+			generic.withBit(position, value);
+		}
+
+		@Override
+		public boolean getThenWithBit(int position, boolean value) {
+			return generic.getThenWithBit(position, value);
+		}
+
+		@Override
+		public void withByte(int position, byte value) {
+			generic.withByte(position, value);
+		}
+
+		@Override
+		public void withShort(int position, short value) {
+			generic.withShort(position, value);
+		}
+
+		@Override
+		public void withInt(int position, int value) {
+			generic.withInt(position, value);
+		}
+
+		@Override
+		public void withLong(int position, long value) {
+			generic.withLong(position, value);
+		}
+
+		@Override
+		public void withBits(int position, long value, int length) {
+			generic.withBits(position, value, length);
+		}
+
+		@Override
+		public void withStore(BitStore store) {
+			if (store == null) throw new IllegalArgumentException("null store");
+			if (store.size() != size) throw new IllegalArgumentException("different sizes");
+			checkMutable();
+			if (store instanceof CompressedBitStore) {
+				performImpl(operation, (CompressedBitStore) store);
+			} else if (operation == AND && store instanceof FlippedBitStore && store.flipped() instanceof CompressedBitStore) {
+				// and with a flipped store is an and-not
+				performImpl(AND_NOT, (CompressedBitStore) store.flipped());
+			} else if (store instanceof BitVector) {
+				performImpl(operation, (BitVector) store);
+			} else {
+				generic.withStore(store);
+			}
+		}
+
+		@Override
+		public void withStore(int position, BitStore store) {
+			generic.withStore(position, store);
+		}
+
+		@Override
+		public void withBytes(int position, byte[] bytes, int offset, int length) {
+			generic.withBytes(position, bytes, offset, length);
+		}
+
+		@Override
+		public BitWriter openWriter(int finalPos, int initialPos) {
+			return generic.openWriter(finalPos, initialPos);
+		}
+
+	}
+
+	private abstract class CompressedMatches extends BitStoreBitMatches {
+
+		CompressedMatches() {
+			super(CompressedBitStore.this);
+		}
+
+		@Override
+		public BitMatches range(int from, int to) {
+			return s.range(from, to).match(bit());
+		}
+
+		@Override
+		public boolean isAll() {
+			return count() == size;
+		}
+
+		@Override
+		public boolean isNone() {
+			return count() == 0;
+		}
+
+		@Override
+		public int first() {
+			return CompressedBitStore.this.next(bit(), 0);
+		}
+
+		@Override
+		public int last() {
+			return CompressedBitStore.this.previous(bit(), size);
+		}
+
+		@Override
+		public int next(int position) {
+			if (position < 0) throw new IllegalArgumentException("negative position");
+			if (position > size) throw new IllegalArgumentException("position exceeds size");
+			return CompressedBitStore.this.next(bit(), position);
+		}
+
+		@Override
+		public int previous(int position) {
+			if (position < 0) throw new IllegalArgumentException("negative position");
+			if (position > size) throw new IllegalArgumentException("position exceeds size");
+			return CompressedBitStore.this.previous(bit(), position);
+		}
+
+	}
+
+	private final class CompressedOnes extends CompressedMatches {
+
+		@Override
+		public boolean bit() {
+			return true;
+		}
+
+		@Override
+		public ImmutableOne sequence() {
+			return ImmutableOne.INSTANCE;
+		}
+
+		@Override
+		public int count() {
+			return countOnes();
+		}
+
+		@Override
+		public void replaceAll(boolean bits) {
+			if (!bits) clear();
+		}
+
+	}
+
+	private final class CompressedZeros extends CompressedMatches {
+
+		@Override
+		public boolean bit() {
+			return false;
+		}
+
+		@Override
+		public ImmutableZero sequence() {
+			return ImmutableZero.INSTANCE;
+		}
+
+		@Override
+		public int count() {
+			return size - countOnes();
+		}
+
+		@Override
+		public void replaceAll(boolean bits) {
+			if (bits) fill();
+		}
+
+	}
+
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import static com.tomgibara.bits.Bits.checkBitsLength;
+import static com.tomgibara.bits.Bits.checkIntBitsLength;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * A mutable {@link BitStore} that may be modified safely by multiple threads
+ * without external synchronization. The bits are held in an
+ * {@link AtomicLongArray} and every modification is applied to the words of
+ * the array with compare-and-set, so that threads never block one another.
+ *
+ * <p>
+ * Operations on single bits, including {@link #getThenSetBit(int, boolean)}
+ * and {@link Op#getThenWithBit(int, boolean)}, are linearizable. Operations
+ * that span several bits, such as {@link #setBits(int, long, int)},
+ * {@link Op#withLong(int, long)} and {@link Op#withStore(BitStore)}, are
+ * applied atomically to each underlying word but not to the range as a whole.
+ * In particular, the bits of a {@link BitVector} may be merged into the store
+ * with <code>store.or().withStore(vector)</code> (or the corresponding
+ * <code>and()</code> operation) while other threads concurrently set bits,
+ * and no bit set by any thread will be lost. Reads spanning more than one
+ * word may observe the effects of concurrent modifications to some words but
+ * not others.
+ *
+ * <p>
+ * Instances are obtained from {@link Bits#concurrentStore(int)}. Ranges of a
+ * concurrent store share its bits and are themselves concurrent stores.
+ *
+ * @author Tom Gibara
+ */
+
+public final class ConcurrentBitStore extends AbstractBitStore {
+
+	// statics
+
+	private static final int ADDRESS_BITS = 6;
+	private static final int ADDRESS_SIZE = 1 << ADDRESS_BITS;
+	private static final int ADDRESS_MASK = ADDRESS_SIZE - 1;
+
+	private static final int SET = 0;
+	private static final int AND = 1;
+	private static final int OR  = 2;
+	private static final int XOR = 3;
+
+	static ConcurrentBitStore allocate(int size) {
+		return new ConcurrentBitStore(new Words((size + ADDRESS_MASK) >>> ADDRESS_BITS), 0, size);
+	}
+
+	// fields
+
+	private final Words words;
+	private final int start;
+	private final int finish;
+
+	// constructors
+
+	private ConcurrentBitStore(Words words, int start, int finish) {
+		this.words = words;
+		this.start = start;
+		this.finish = finish;
+	}
+
+	// fundamental methods
+
+	@Override
+	public int size() {
+		return finish - start;
+	}
+
+	@Override
+	public boolean getBit(int index) {
+		return words.getBitAdj(adjIndex(index));
+	}
+
+	@Override
+	public void setBit(int index, boolean value) {
+		words.performAdj(SET, adjIndex(index), value);
+	}
+
+	// accelerating methods
+
+	@Override
+	public long getBits(int position, int length) {
+		checkBitsLength(length);
+		return words.getBitsAdj(adjPosition(position, length), length);
+	}
+
+	@Override
+	public int getBitsAsInt(int position, int length) {
+		checkIntBitsLength(length);
+		return (int) words.getBitsAdj(adjPosition(position, length), length);
+	}
+
+	@Override
+	public void flipBit(int index) {
+		words.performAdj(XOR, adjIndex(index), true);
+	}
+
+	@Override
+	public boolean getThenSetBit(int index, boolean value) {
+		return words.performAdj(SET, adjIndex(index), value);
+	}
+
+	@Override
+	public void setBits(int position, long value, int length) {
+		checkBitsLength(length);
+		words.performAdj(SET, adjPosition(position, length), value, length);
+	}
+
+	@Override
+	public void setStore(int position, BitStore store) {
+		set().withStore(position, store);
+	}
+
+	@Override
+	public void fill() {
+		words.performAdj(SET, start, finish, true);
+	}
+
+	@Override
+	public void clear() {
+		words.performAdj(SET, start, finish, false);
+	}
+
+	@Override
+	public void flip() {
+		words.performAdj(XOR, start, finish, true);
+	}
+
+	@Override
+	public void setAll(boolean value) {
+		words.performAdj(SET, start, finish, value);
+	}
+
+	// operations
+
+	@Override
+	public Op set() {
+		return new ConcurrentOp(SET);
+	}
+
+	@Override
+	public Op and() {
+		return new ConcurrentOp(AND);
+	}
+
+	@Override
+	public Op or() {
+		return new ConcurrentOp(OR);
+	}
+
+	@Override
+	public Op xor() {
+		return new ConcurrentOp(XOR);
+	}
+
+	@Override
+	public Op op(Operation operation) {
+		if (operation == null) throw new IllegalArgumentException("null operation");
+		return new ConcurrentOp(operation.ordinal());
+	}
+
+	// views
+
+	@Override
+	public ConcurrentBitStore range(int from, int to) {
+		if (from < 0) throw new IllegalArgumentException();
+		if (from > to) throw new IllegalArgumentException();
+		from += start;
+		to += start;
+		if (to > finish) throw new IllegalArgumentException();
+		return new ConcurrentBitStore(words, from, to);
+	}
+
+	// mutability
+
+	@Override
+	public boolean isMutable() {
+		return true;
+	}
+
+	@Override
+	public ConcurrentBitStore mutableCopy() {
+		ConcurrentBitStore copy = allocate(finish - start);
+		copy.set().withStore(0, this);
+		return copy;
+	}
+
+	// private utility methods
+
+	private int adjIndex(int index) {
+		return Bits.adjIndex(index, start, finish);
+	}
+
+	private int adjPosition(int position, int length) {
+		if (position < 0) throw new IllegalArgumentException("negative position");
+		position += start;
+		if (position + length > finish) throw new IllegalArgumentException("length too great");
+		return position;
+	}
+
+	private void performAdj(int operation, int position, BitStore store) {
+		if (store instanceof ConcurrentBitStore) {
+			ConcurrentBitStore that = (ConcurrentBitStore) store;
+			if (that.words == this.words && position < that.finish && position + store.size() > that.start) {
+				// avoid overwriting the source as it is read
+				store = BitVector.fromStore(store);
+			}
+		}
+		words.performAdj(operation, position, store);
+	}
+
+	// inner classes
+
+	// applies every modification to the words with compare-and-set
+	private static final class Words extends WordKernel {
+
+		private final AtomicLongArray array;
+
+		Words(int length) {
+			array = new AtomicLongArray(length);
+		}
+
+		@Override
+		long word(long i) {
+			return array.get((int) i);
+		}
+
+		@Override
+		void setWord(long i, long w) {
+			array.set((int) i, w);
+		}
+
+		@Override
+		long performWord(int operation, long i, long m, long v) {
+			final int j = (int) i;
+			while (true) {
+				final long w = array.get(j);
+				final long n;
+				switch (operation) {
+				case SET: n = w & ~m | v & m; break;
+				case AND: n = w & (v | ~m); break;
+				case OR : n = w | v & m; break;
+				case XOR: n = w ^ v & m; break;
+				default: throw new IllegalStateException("Unexpected operation constant: " + operation);
+				}
+				// no write is needed if the word is unchanged
+				if (n == w || array.compareAndSet(j, w, n)) return w;
+			}
+		}
+
+		@Override
+		void performWords(int operation, long f, long t, long fill) {
+			if (operation == SET) {
+				// whole words can be written without reference to their previous values
+				for (long i = f; i < t; i++) setWord(i, fill);
+			} else {
+				for (long i = f; i < t; i++) performWord(operation, i, -1L, fill);
+			}
+		}
+
+	}
+
+	private final class ConcurrentOp implements Op {
+
+		private final int operation;
+
+		ConcurrentOp(int operation) {
+			this.operation = operation;
+		}
+
+		@Override
+		public Operation getOperation() {
+			return Operation.values[operation];
+		}
+
+		@Override
+		public void with(boolean value) {
+			words.performAdj(operation, start, finish, value);
+		}
+
+		@Override
+		public void withBit(int position, boolean value) {
+			words.performAdj(operation, adjIndex(position), value);
+		}
+
+		@Override
+		public boolean getThenWithBit(int position, boolean value) {
+			return words.performAdj(operation, adjIndex(position), value);
+		}
+
+		@Override
+		public void withByte(int position, byte value) {
+			withBits(position, value, 8);
+		}
+
+		@Override
+		public void withShort(int position, short value) {
+			withBits(position, value, 16);
+		}
+
+		@Override
+		public void withInt(int position, int value) {
+			withBits(position, value, 32);
+		}
+
+		@Override
+		public void withLong(int position, long value) {
+			withBits(position, value, 64);
+		}
+
+		@Override
+		public void withBits(int position, long value, int length) {
+			checkBitsLength(length);
+			words.performAdj(operation, adjPosition(position, length), value, length);
+		}
+
+		@Override
+		public void withStore(BitStore store) {
+			if (store == null) throw new IllegalArgumentException("null store");
+			if (store.size() != size()) throw new IllegalArgumentException("different sizes");
+			performAdj(operation, start, store);
+		}
+
+		@Override
+		public void withStore(int position, BitStore store) {
+			if (store == null) throw new IllegalArgumentException("null store");
+			performAdj(operation, adjPosition(position, store.size()), store);
+		}
+
+		@Override
+		public void withBytes(int position, byte[] bytes, int offset, int length) {
+			generic().withBytes(position, bytes, offset, length);
+		}
+
+		@Override
+		public BitWriter openWriter(int finalPos, int initialPos) {
+			return generic().openWriter(finalPos, initialPos);
+		}
+
+		private Op generic() {
+			BitStore s = ConcurrentBitStore.this;
+			switch (operation) {
+			case SET: return new BitStoreOp.Set(s);
+			case AND: return new BitStoreOp.And(s);
+			case OR : return new BitStoreOp.Or(s);
+			case XOR: return new BitStoreOp.Xor(s);
+			default: throw new IllegalStateException("Unexpected operation constant: " + operation);
+			}
+		}
+
+	}
+
+}
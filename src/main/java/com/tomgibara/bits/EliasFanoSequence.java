@@ -0,0 +1,285 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntSupplier;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import com.tomgibara.bits.BitStore.BitMatches;
+import com.tomgibara.bits.BitStore.Positions;
+
+/**
+ * <p>
+ * An immutable, non-decreasing sequence of non-negative ints stored using the
+ * Elias-Fano encoding. Each value is split into high and low bits: the low bits
+ * of every value are packed into one {@link BitVector} and the high bits are
+ * recorded in unary in another. For a sequence of <i>n</i> values less than
+ * <i>u</i>, the encoding occupies fewer than 2 + log(<i>u</i>/<i>n</i>) bits
+ * per value; very much less than an int array, or a bitmap over a sparse
+ * range.
+ *
+ * <p>
+ * The high bits are indexed with a {@link RankSelectIndex} so that
+ * {@link #get(int)} and {@link #nextGEQ(int)} operate in near-constant time,
+ * which makes the sequence suitable for skipping intersections of posting
+ * lists. Iteration over the values decodes them sequentially.
+ *
+ * <p>
+ * Sequences are created from sorted values with {@link #fromSorted(IntStream)}
+ * or from the positions of the ones in a {@link BitStore} with
+ * {@link #fromOnes(BitStore)}.
+ *
+ * @author Tom Gibara
+ */
+
+public final class EliasFanoSequence {
+
+	// statics
+
+	private static final int MAX_BITS = Integer.MAX_VALUE / 8;
+
+	private static final EliasFanoSequence EMPTY = new EliasFanoSequence(0, 0L, new int[0]);
+
+	/**
+	 * Creates a sequence from a stream of sorted values.
+	 *
+	 * @param values
+	 *            non-negative values in non-decreasing order
+	 * @return a sequence containing the values
+	 */
+
+	public static EliasFanoSequence fromSorted(IntStream values) {
+		if (values == null) throw new IllegalArgumentException("null values");
+		int[] array = values.toArray();
+		int size = array.length;
+		if (size == 0) return EMPTY;
+		int previous = 0;
+		for (int value : array) {
+			if (value < previous) throw new IllegalArgumentException(value < 0 ? "negative value" : "values not sorted");
+			previous = value;
+		}
+		return new EliasFanoSequence(size, previous + 1L, array);
+	}
+
+	/**
+	 * Creates a sequence containing the positions of the ones in a
+	 * {@link BitStore}.
+	 *
+	 * @param store
+	 *            the bits to encode
+	 * @return a sequence of the ascending positions of the ones in the store
+	 */
+
+	public static EliasFanoSequence fromOnes(BitStore store) {
+		if (store == null) throw new IllegalArgumentException("null store");
+		BitMatches ones = store.ones();
+		int size = ones.count();
+		if (size == 0) return EMPTY;
+		return new EliasFanoSequence(size, store.size(), ones.positions()::nextPosition);
+	}
+
+	// number of low bits that minimizes the encoded size
+	private static int lowBits(int size, long bound) {
+		long quotient = bound / size;
+		return quotient <= 1L ? 0 : 63 - Long.numberOfLeadingZeros(quotient);
+	}
+
+	// fields
+
+	private final int size;
+	private final int lowBits;
+	private final BitVector upper;
+	private final BitVector lower;
+	private final RankSelectIndex index;
+
+	// constructors
+
+	private EliasFanoSequence(int size, long bound, int[] values) {
+		this(size, bound, new IntSupplier() {
+			private int i = 0;
+			@Override public int getAsInt() { return values[i++]; }
+		});
+	}
+
+	private EliasFanoSequence(int size, long bound, IntSupplier values) {
+		this.size = size;
+		lowBits = size == 0 ? 0 : lowBits(size, bound);
+		long upperSize = size + (bound >> lowBits) + 1;
+		long lowerSize = (long) size * lowBits;
+		if (upperSize > MAX_BITS || lowerSize > MAX_BITS) throw new IllegalArgumentException("too many values");
+		BitVector upper = new BitVector((int) upperSize);
+		BitVector lower = new BitVector((int) lowerSize);
+		for (int i = 0; i < size; i++) {
+			int value = values.getAsInt();
+			upper.setBit((value >>> lowBits) + i, true);
+			if (lowBits != 0) lower.setBitsAsInt(i * lowBits, value, lowBits);
+		}
+		this.upper = upper.indexedCopy();
+		this.lower = lower.immutable();
+		index = this.upper.rankSelect();
+	}
+
+	// accessors
+
+	/**
+	 * The number of values in the sequence.
+	 *
+	 * @return the size of the sequence
+	 */
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * The number of bits used to encode the values, excluding the index.
+	 *
+	 * @return the number of encoded bits
+	 */
+
+	public long encodedBits() {
+		return (long) upper.size() + lower.size();
+	}
+
+	// methods
+
+	/**
+	 * The value at the specified index.
+	 *
+	 * @param i
+	 *            an index into the sequence
+	 * @return the value at the index
+	 */
+
+	public int get(int i) {
+		if (i < 0) throw new IllegalArgumentException("negative index");
+		if (i >= size) throw new IllegalArgumentException("index too large");
+		return value(i, index.select1(i));
+	}
+
+	/**
+	 * The least value in the sequence that is greater than or equal to the
+	 * supplied value.
+	 *
+	 * @param x
+	 *            the value sought
+	 * @return the least value not less than x, or -1 if all values are less
+	 *         than x
+	 */
+
+	public int nextGEQ(int x) {
+		if (x < 0) x = 0;
+		int high = x >>> lowBits;
+		// the position after the zero that terminates the preceding bucket
+		int position = high == 0 ? 0 : index.select0(high - 1) + 1;
+		int limit = upper.size();
+		if (position >= limit) return -1;
+		int i = position - high;
+		BitMatches ones = upper.ones();
+		// scan forward from the first value in the bucket
+		for (position = ones.next(position); position < limit; position = ones.next(position + 1)) {
+			int value = value(i, position);
+			if (value >= x) return value;
+			i++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Iterates over the values in the sequence, in order.
+	 *
+	 * @return an iterator over the values
+	 */
+
+	public PrimitiveIterator.OfInt iterator() {
+		return new SequenceIterator();
+	}
+
+	/**
+	 * A stream of the values in the sequence, in order.
+	 *
+	 * @return a stream over the values
+	 */
+
+	public IntStream stream() {
+		int characteristics = Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+		return StreamSupport.intStream(Spliterators.spliterator(iterator(), size, characteristics), false);
+	}
+
+	/**
+	 * Copies the values of the sequence into an array.
+	 *
+	 * @return an array containing the values of the sequence
+	 */
+
+	public int[] toArray() {
+		int[] array = new int[size];
+		PrimitiveIterator.OfInt it = iterator();
+		for (int i = 0; i < size; i++) {
+			array[i] = it.nextInt();
+		}
+		return array;
+	}
+
+	// object methods
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder().append('[');
+		PrimitiveIterator.OfInt it = iterator();
+		while (it.hasNext()) {
+			sb.append(it.nextInt());
+			if (it.hasNext()) sb.append(", ");
+		}
+		return sb.append(']').toString();
+	}
+
+	// private utility methods
+
+	// the value at index i, given the position of its one in the upper bits
+	private int value(int i, int position) {
+		int high = position - i;
+		return lowBits == 0 ? high : (high << lowBits) | lower.getBitsAsInt(i * lowBits, lowBits);
+	}
+
+	// inner classes
+
+	private final class SequenceIterator implements PrimitiveIterator.OfInt {
+
+		private final Positions positions = upper.ones().positions();
+		private int i = 0;
+
+		@Override
+		public boolean hasNext() {
+			return i < size;
+		}
+
+		@Override
+		public int nextInt() {
+			if (i == size) throw new NoSuchElementException();
+			int value = value(i, positions.nextPosition());
+			i++;
+			return value;
+		}
+
+	}
+}
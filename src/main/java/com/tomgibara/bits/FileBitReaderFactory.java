@@ -16,13 +16,13 @@
  */
 package com.tomgibara.bits;
 
-import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * Provides a convenient way of opening and closing {@link BitReader}s over a
@@ -68,7 +68,89 @@ public class FileBitReaderFactory {
 		 * read position backwards through the file.
 		 */
 
-		STREAM
+		STREAM,
+
+		/**
+		 * The file is mapped into memory for each reader and bits are read
+		 * directly from the mapping, without copying the file onto the heap.
+		 * Readers support efficient random access and files of any size;
+		 * those larger than 2GB are mapped in multiple segments. The buffer
+		 * size is not used in this mode. Readers hold no open file, but their
+		 * mappings are retained until the reader is closed.
+		 */
+
+		MAPPED,
+
+		/**
+		 * A channel to the file is obtained for each reader and bits are read
+		 * from one buffer while the following bytes of the file are read into
+		 * a second buffer on a background thread. This mode avoids stalling on
+		 * I/O when a file is read sequentially; moving the read position
+		 * outside the current buffer discards the prefetched bytes. The
+		 * {@link #getStats(BitReader)} method reports how often a reader waited
+		 * for bytes to arrive.
+		 */
+
+		PREFETCH
+	}
+
+	/**
+	 * Records how a reader opened in {@link Mode#PREFETCH} has obtained bytes
+	 * from its file. A reader that rarely waits is being supplied with bytes
+	 * faster than it consumes them.
+	 *
+	 * @see FileBitReaderFactory#getStats(BitReader)
+	 */
+
+	public static final class Stats {
+
+		private final long fillCount;
+		private final long waitCount;
+		private final long waitNanos;
+
+		private Stats(long fillCount, long waitCount, long waitNanos) {
+			this.fillCount = fillCount;
+			this.waitCount = waitCount;
+			this.waitNanos = waitNanos;
+		}
+
+		/**
+		 * The number of times a buffer has been scheduled to be filled from
+		 * the file.
+		 *
+		 * @return the number of buffer fills
+		 */
+
+		public long getFillCount() {
+			return fillCount;
+		}
+
+		/**
+		 * The number of times that the reader needed bytes that had not yet
+		 * been read from the file.
+		 *
+		 * @return the number of times the reader waited
+		 */
+
+		public long getWaitCount() {
+			return waitCount;
+		}
+
+		/**
+		 * The total time that the reader spent waiting for bytes to be read
+		 * from the file.
+		 *
+		 * @return the wait time in nanoseconds
+		 */
+
+		public long getWaitNanos() {
+			return waitNanos;
+		}
+
+		@Override
+		public String toString() {
+			return "fills: " + fillCount + ", waits: " + waitCount + ", wait nanos: " + waitNanos;
+		}
 	}
 
 	private final Mode mode;
@@ -94,7 +176,9 @@ public class FileBitReaderFactory {
 
 	/**
 	 * Constructs a new {@link FileBitReaderFactory} using the specified buffer
-	 * size. When the mode is {@link Mode#MEMORY}, the bufferSize is ignored.
+	 * size. When the mode is {@link Mode#MEMORY} or {@link Mode#MAPPED}, the
+	 * bufferSize is ignored. Readers opened in {@link Mode#PREFETCH} allocate
+	 * two buffers of this size.
 	 *
 	 * @param file
 	 *            the file from which bits are to be read
@@ -138,7 +222,7 @@ public class FileBitReaderFactory {
 
 	/**
 	 * The size of the buffer used to read bytes from the file. The buffer size
-	 * is irrelevant when the mode is {@link Mode#MEMORY}.
+	 * is irrelevant when the mode is {@link Mode#MEMORY} or {@link Mode#MAPPED}.
 	 *
 	 * @return the buffer size, always positive
 	 */
@@ -166,8 +250,10 @@ public class FileBitReaderFactory {
 		try {
 			switch(mode) {
 			case MEMORY : return new ByteArrayBitReader(getBytes());
-			case STREAM : return new InputStreamBitReader(new BufferedInputStream(new FileInputStream(file), bufferSize));
+			case STREAM : return new InputStreamBitReader(new FileInputStream(file), bufferSize);
 			case CHANNEL: return new FileChannelBitReader(new RandomAccessFile(file, "r").getChannel(), ByteBuffer.allocateDirect(bufferSize));
+			case MAPPED : return getMappedReader();
+			case PREFETCH : return new PrefetchingBitReader(new RandomAccessFile(file, "r").getChannel(), bufferSize);
 			default: throw new IllegalStateException("Unexpected mode: " + mode);
 			}
 		} catch (IOException e) {
@@ -178,6 +264,9 @@ public class FileBitReaderFactory {
 	/**
 	 * Closes a reader that was previously opened with a call to
 	 * {@link #openReader()}. Closing a reader multiple times has no effect.
+	 * Closing a reader opened in {@link Mode#MAPPED} releases its mappings,
+	 * after which it must not be read. Closing a reader opened in
+	 * {@link Mode#PREFETCH} also stops its background thread.
 	 *
 	 * @param reader
 	 *            the reader to close
@@ -201,10 +290,45 @@ public class FileBitReaderFactory {
 			} catch (IOException e) {
 				throw new BitStreamException(e);
 			}
+		} else if (reader instanceof MappedBitReader) {
+			((MappedBitReader) reader).close();
+		} else if (reader instanceof PrefetchingBitReader) {
+			try {
+				((PrefetchingBitReader) reader).close();
+			} catch (IOException e) {
+				throw new BitStreamException(e);
+			}
 		}
 
 	}
 
+	/**
+	 * Reports how a reader that was opened in {@link Mode#PREFETCH} has
+	 * obtained bytes from the file. The returned statistics are a snapshot and
+	 * are not updated by further reads.
+	 *
+	 * @param reader
+	 *            a reader opened by a factory in {@link Mode#PREFETCH}
+	 * @return statistics for the reader
+	 * @throws IllegalArgumentException
+	 *             if the supplied reader was null or was not opened in
+	 *             {@link Mode#PREFETCH}
+	 */
+
+	public Stats getStats(BitReader reader) throws IllegalArgumentException {
+		if (reader == null) throw new IllegalArgumentException("null reader");
+		if (!(reader instanceof PrefetchingBitReader)) throw new IllegalArgumentException("reader not opened in prefetch mode");
+		PrefetchingBitReader r = (PrefetchingBitReader) reader;
+		return new Stats(r.getFillCount(), r.getWaitCount(), r.getWaitNanos());
+	}
+
+	private BitReader getMappedReader() throws IOException {
+		// mappings remain valid after the channel is closed
+		try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+			return new MappedBitReader(channel);
+		}
+	}
+
 	private byte[] getBytes() throws IOException {
 		synchronized (this) {
 			if (bytes == null) {
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * A base class for {@link BitWriter} implementations that write bits to
+ * random positions in a file. Bits are merged a word at a time into the bytes
+ * of the file so that bits either side of those written are preserved. This
+ * allows the writer to be repositioned, for example to back-patch a header.
+ *
+ * @author Tom Gibara
+ *
+ */
+
+abstract class FileBitWriter implements BitWriter {
+
+	// fields
+
+	final FileChannel channel;
+	// the position in bits
+	private long position = 0L;
+	// the number of bytes that contain written bits
+	private long extent = 0L;
+
+	// constructors
+
+	FileBitWriter(FileChannel channel) {
+		this.channel = channel;
+	}
+
+	// methods for implementation
+
+	// the big-endian long at the specified byte index; bytes beyond the end of the file are zero
+	abstract long getLong(long index) throws BitStreamException;
+
+	// always follows a call to getLong with the same index
+	abstract void putLong(long index, long value) throws BitStreamException;
+
+	// writes any buffered bytes to the channel
+	abstract void flushBytes() throws BitStreamException;
+
+	// ensures that all written bytes have reached the storage device
+	void force(boolean metaData) throws BitStreamException {
+		flushBytes();
+		try {
+			channel.force(metaData);
+		} catch (IOException e) {
+			throw new BitStreamException(e);
+		}
+	}
+
+	// relinquishes any resources that would prevent the file from being truncated
+	void release() {
+	}
+
+	// accessors
+
+	FileChannel getChannel() {
+		return channel;
+	}
+
+	long getExtent() {
+		return extent;
+	}
+
+	// bit writer methods
+
+	@Override
+	public int writeBit(int bit) throws BitStreamException {
+		writeBits(bit, 1);
+		return 1;
+	}
+
+	@Override
+	public int write(int bits, int count) throws BitStreamException {
+		if (count < 0) throw new IllegalArgumentException("negative count");
+		if (count > 32) throw new IllegalArgumentException("count too great");
+		if (count != 0) writeBits(bits, count);
+		return count;
+	}
+
+	@Override
+	public int write(long bits, int count) throws BitStreamException {
+		if (count < 0) throw new IllegalArgumentException("negative count");
+		if (count > 64) throw new IllegalArgumentException("count too great");
+		if (count != 0) writeBits(bits, count);
+		return count;
+	}
+
+	@Override
+	public long writeBooleans(boolean value, long count) throws BitStreamException {
+		if (count < 0L) throw new IllegalArgumentException("negative count");
+		long bits = value ? -1L : 0L;
+		for (long c = count; c > 0L; c -= 64L) {
+			writeBits(bits, (int) Math.min(64L, c));
+		}
+		return count;
+	}
+
+	// advances to a byte boundary as other byte based writers do; the padding
+	// bits are not overwritten, since they may have been written previously,
+	// and are otherwise zero
+	@Override
+	public int flush() throws BitStreamException {
+		int padding = BitBoundary.BYTE.bitsFrom(position);
+		position += padding;
+		flushBytes();
+		return padding;
+	}
+
+	// bit stream methods
+
+	@Override
+	public long getPosition() {
+		return position;
+	}
+
+	@Override
+	public long setPosition(long position) throws BitStreamException, IllegalArgumentException {
+		BitStreams.checkPosition(position);
+		this.position = position;
+		return position;
+	}
+
+	// private utility methods
+
+	// count is between 1 and 64
+	private void writeBits(long bits, int count) {
+		int offset = (int) position & 7;
+		int end = offset + count;
+		if (end > 64) {
+			writeBits(bits >>> 32, count - 32);
+			writeBits(bits, 32);
+			return;
+		}
+		long index = position >> 3;
+		long mask = -1L >>> offset;
+		if (end < 64) mask &= ~(-1L >>> end);
+		long word = getLong(index);
+		putLong(index, word & ~mask | bits << (64 - end) & mask);
+		position += count;
+		long e = (position + 7) >> 3;
+		if (e > extent) extent = e;
+	}
+
+}
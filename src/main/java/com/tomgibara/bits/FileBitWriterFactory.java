@@ -0,0 +1,267 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Provides a convenient way of opening and closing {@link BitWriter}s over a
+ * file. A {@link Mode} supplied to the constructor controls the characteristics
+ * of returned writers.
+ *
+ * <p>
+ * Writers returned by this factory replace the contents of the file. They
+ * support {@link BitWriter#setPosition(long)}, so that previously written bits
+ * (a header, for example) can be overwritten; bits are written without
+ * disturbing the bits that surround them. The file is truncated to the last
+ * byte containing written bits when the writer is closed with
+ * {@link #closeWriter(BitWriter)}.
+ *
+ * @author Tom Gibara
+ *
+ * @see FileBitReaderFactory
+ */
+
+public class FileBitWriterFactory {
+
+	/**
+	 * The default size of byte buffer used to write files.
+	 */
+
+	public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+	// the buffer must accommodate at least two longs
+	private static final int MIN_BUFFER_SIZE = 16;
+
+	/**
+	 * Specifies the method by which bits are written to the underlying file.
+	 */
+
+	public enum Mode {
+
+		/**
+		 * Bits are accumulated in a direct buffer that is written to a channel
+		 * for the file when it is flushed, or when the writer is positioned
+		 * outside it.
+		 */
+
+		CHANNEL,
+
+		/**
+		 * The file is mapped into memory and bits are written directly into
+		 * the mapping. Files of any size are supported; the file is mapped in
+		 * segments as it is written. The buffer size is not used in this
+		 * mode.
+		 */
+
+		MAPPED
+	}
+
+	private final Mode mode;
+	private final File file;
+	private final int bufferSize;
+
+	/**
+	 * Constructs a new {@link FileBitWriterFactory} using the default buffer
+	 * size specified by {@link #DEFAULT_BUFFER_SIZE}.
+	 *
+	 * @param file
+	 *            the file to which bits are to be written
+	 * @param mode
+	 *            the method by which bits are written to the file
+	 * @throws IllegalArgumentException
+	 *             if any parameter is null
+	 */
+
+	public FileBitWriterFactory(File file, Mode mode) throws IllegalArgumentException {
+		this(file, mode, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Constructs a new {@link FileBitWriterFactory} using the specified buffer
+	 * size. When the mode is {@link Mode#MAPPED}, the bufferSize is ignored.
+	 *
+	 * @param file
+	 *            the file to which bits are to be written
+	 * @param mode
+	 *            the method by which bits are written to the file
+	 * @param bufferSize
+	 *            the size of the buffer, at least 16 bytes
+	 * @throws IllegalArgumentException
+	 *             if file is null, the mode is null, or the bufferSize is less
+	 *             than 16
+	 */
+
+	public FileBitWriterFactory(File file, Mode mode, int bufferSize) throws IllegalArgumentException {
+		if (file == null) throw new IllegalArgumentException("null file");
+		if (mode == null) throw new IllegalArgumentException("null mode");
+		if (bufferSize < MIN_BUFFER_SIZE) throw new IllegalArgumentException("bufferSize too small");
+		this.file = file;
+		this.mode = mode;
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * The file to which bits are to be written.
+	 *
+	 * @return the file, never null
+	 */
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * The method by which bits will be written to the file.
+	 *
+	 * @return the mode, never null
+	 */
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * The size of the buffer used to write bytes to the file. The buffer size
+	 * is irrelevant when the mode is {@link Mode#MAPPED}.
+	 *
+	 * @return the buffer size, at least 16
+	 */
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Opens a writer over the file, discarding any existing contents. The
+	 * characteristics of the returned writer are determined by the
+	 * {@link Mode} in which the factory was created.
+	 *
+	 * Any writer returned by this method MUST eventually be closed by passing
+	 * it to the {@link #closeWriter(BitWriter)} method. Not doing so may risk
+	 * losing written bits and leaking system resources.
+	 *
+	 * @return a new writer over the file
+	 * @throws BitStreamException
+	 *             if the writer could not be opened, typically because the
+	 *             file could not be written
+	 */
+
+	public BitWriter openWriter() throws BitStreamException {
+		return openWriter(0L);
+	}
+
+	/**
+	 * Opens a writer over the file, discarding any existing contents, and
+	 * extending the file to an anticipated length. Doing so may reduce the
+	 * cost of growing the file and its fragmentation, though whether storage
+	 * is actually reserved depends on the file system. The file is truncated
+	 * to the bits written when the writer is closed.
+	 *
+	 * @param preallocation
+	 *            the anticipated length of the file in bytes
+	 * @return a new writer over the file
+	 * @throws BitStreamException
+	 *             if the writer could not be opened, typically because the
+	 *             file could not be written
+	 * @see #openWriter()
+	 */
+
+	public BitWriter openWriter(long preallocation) throws BitStreamException {
+		if (preallocation < 0L) throw new IllegalArgumentException("negative preallocation");
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(file, "rw");
+			raf.setLength(0L);
+			if (preallocation > 0L) raf.setLength(preallocation);
+			FileChannel channel = raf.getChannel();
+			switch (mode) {
+			case CHANNEL : return new FileChannelBitWriter(channel, ByteBuffer.allocateDirect(bufferSize));
+			case MAPPED : return new MappedBitWriter(channel);
+			default: throw new IllegalStateException("Unexpected mode: " + mode);
+			}
+		} catch (IOException e) {
+			if (raf != null) {
+				try {
+					raf.close();
+				} catch (IOException ex) {
+					/* ignored in favour of the original exception */
+				}
+			}
+			throw new BitStreamException(e);
+		}
+	}
+
+	/**
+	 * Flushes a writer that was previously opened with a call to
+	 * {@link #openWriter()} and forces all of the bits written to it onto the
+	 * storage device that contains the file.
+	 *
+	 * @param writer
+	 *            the writer to force
+	 * @throws IllegalArgumentException
+	 *             if the supplied writer was null or was not opened by a
+	 *             factory
+	 * @throws BitStreamException
+	 *             if an IOException was raised when forcing the file
+	 */
+
+	public void forceWriter(BitWriter writer) throws IllegalArgumentException, BitStreamException {
+		fileWriter(writer).force(true);
+	}
+
+	/**
+	 * Closes a writer that was previously opened with a call to
+	 * {@link #openWriter()}, flushing any buffered bits and truncating the
+	 * file to the last byte containing written bits. Closing a writer multiple
+	 * times has no effect.
+	 *
+	 * @param writer
+	 *            the writer to close
+	 * @throws IllegalArgumentException
+	 *             if the supplied writer was null or was not opened by a
+	 *             factory
+	 * @throws BitStreamException
+	 *             if an IOException was raised when closing the file
+	 */
+
+	public void closeWriter(BitWriter writer) throws IllegalArgumentException, BitStreamException {
+		FileBitWriter w = fileWriter(writer);
+		FileChannel channel = w.getChannel();
+		if (!channel.isOpen()) return;
+		try {
+			w.flushBytes();
+			// mappings must be released before the file is truncated beneath them
+			w.release();
+			channel.truncate(w.getExtent());
+			channel.close();
+		} catch (IOException e) {
+			throw new BitStreamException(e);
+		}
+	}
+
+	private FileBitWriter fileWriter(BitWriter writer) {
+		if (writer == null) throw new IllegalArgumentException("null writer");
+		if (!(writer instanceof FileBitWriter)) throw new IllegalArgumentException("writer not opened by factory");
+		return (FileBitWriter) writer;
+	}
+
+}
@@ -18,6 +18,7 @@ package com.tomgibara.bits;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 
 class FileChannelBitReader extends ByteBasedBitReader {
@@ -28,10 +29,11 @@ class FileChannelBitReader extends ByteBasedBitReader {
 
 	FileChannelBitReader(FileChannel channel, ByteBuffer buffer) {
 		this.channel = channel;
-		this.buffer = buffer;
-		buffer.clear();
+		// a duplicate so that the byte order can be fixed
+		this.buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+		this.buffer.clear();
 		// force buffer to be populated
-		buffer.position(buffer.limit());
+		this.buffer.position(this.buffer.limit());
 		bufferPosition = -1L;
 	}
 
@@ -49,6 +51,34 @@ class FileChannelBitReader extends ByteBasedBitReader {
 		return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
 	}
 
+	@Override
+	protected int availableSourceBytes() {
+		return buffer.remaining();
+	}
+
+	@Override
+	protected long readSourceLong() throws BitStreamException {
+		return buffer.getLong();
+	}
+
+	@Override
+	protected int readSourceBytes(byte[] bytes, int offset, int length) throws BitStreamException {
+		int count = 0;
+		while (count < length) {
+			if (!buffer.hasRemaining()) {
+				// refills the buffer
+				int b = readSourceByte();
+				if (b < 0) break;
+				bytes[offset + count++] = (byte) b;
+				continue;
+			}
+			int n = Math.min(length - count, buffer.remaining());
+			buffer.get(bytes, offset + count, n);
+			count += n;
+		}
+		return count;
+	}
+
 	@Override
 	protected long seekSourceByte(long index) throws BitStreamException {
 		// first see if index is inside buffer
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+// writes through a buffer that holds a window of the file's bytes; the window
+// is only read from the channel where it overlaps existing content, so that
+// appending to a file never reads from it
+class FileChannelBitWriter extends FileBitWriter {
+
+	// fields
+
+	private final ByteBuffer buffer;
+	private final int capacity;
+	// the index of the first byte in the buffer, or -1 if nothing is buffered
+	private long bufferIndex = -1L;
+	// the range of the buffer that has been modified
+	private int dirtyFrom = Integer.MAX_VALUE;
+	private int dirtyTo = 0;
+	// the number of bytes known to be in the file
+	private long length;
+
+	// constructors
+
+	FileChannelBitWriter(FileChannel channel, ByteBuffer buffer) {
+		super(channel);
+		// a duplicate so that the byte order can be fixed
+		this.buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+		capacity = buffer.capacity();
+		try {
+			length = channel.size();
+		} catch (IOException e) {
+			throw new BitStreamException(e);
+		}
+	}
+
+	// file bit writer methods
+
+	@Override
+	long getLong(long index) {
+		if (bufferIndex < 0L || index < bufferIndex || index + 8 > bufferIndex + capacity) {
+			flushBytes();
+			load(index);
+		}
+		return buffer.getLong((int) (index - bufferIndex));
+	}
+
+	@Override
+	void putLong(long index, long value) {
+		int i = (int) (index - bufferIndex);
+		buffer.putLong(i, value);
+		if (i < dirtyFrom) dirtyFrom = i;
+		if (i + 8 > dirtyTo) dirtyTo = i + 8;
+	}
+
+	@Override
+	void flushBytes() {
+		// bytes beyond the extent were never written and should not lengthen the file
+		int to = (int) Math.min(dirtyTo, getExtent() - bufferIndex);
+		if (dirtyFrom < to) {
+			ByteBuffer bytes = buffer.duplicate();
+			bytes.limit(to).position(dirtyFrom);
+			long position = bufferIndex + dirtyFrom;
+			try {
+				while (bytes.hasRemaining()) {
+					position += channel.write(bytes, position);
+				}
+			} catch (IOException e) {
+				throw new BitStreamException(e);
+			}
+			if (position > length) length = position;
+		}
+		dirtyFrom = Integer.MAX_VALUE;
+		dirtyTo = 0;
+	}
+
+	// private utility methods
+
+	private void load(long index) {
+		// retain any bytes which are already buffered
+		if (bufferIndex >= 0L && index > bufferIndex && index < bufferIndex + capacity) {
+			buffer.limit(capacity).position((int) (index - bufferIndex));
+			buffer.compact();
+		} else {
+			buffer.clear();
+		}
+		bufferIndex = index;
+		// read any existing bytes
+		long position = index + buffer.position();
+		try {
+			while (position < length && buffer.hasRemaining()) {
+				int read = channel.read(buffer, position);
+				if (read < 0) break;
+				position += read;
+			}
+		} catch (IOException e) {
+			throw new BitStreamException(e);
+		}
+		// and zero the remainder
+		while (buffer.remaining() >= 8) {
+			buffer.putLong(0L);
+		}
+		while (buffer.hasRemaining()) {
+			buffer.put((byte) 0);
+		}
+		buffer.clear();
+	}
+
+}
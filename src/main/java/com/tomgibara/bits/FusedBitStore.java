@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+// an immutable view that combines any number of stores with a single operation,
+// a word at a time; nesting instances (and flipping them) forms an expression
+// that is evaluated in one pass without materializing intermediate results
+final class FusedBitStore extends AbstractBitStore {
+
+	private static long mask(int length) {
+		return length == 64 ? -1L : ~(-1L << length);
+	}
+
+	private final Operation operation;
+	private final BitStore[] stores;
+	private final int size;
+
+	FusedBitStore(Operation operation, BitStore... stores) {
+		if (stores == null) throw new IllegalArgumentException("null stores");
+		if (stores.length == 0) throw new IllegalArgumentException("no stores");
+		stores = stores.clone();
+		int size = -1;
+		for (BitStore store : stores) {
+			if (store == null) throw new IllegalArgumentException("null store");
+			if (size == -1) {
+				size = store.size();
+			} else if (store.size() != size) {
+				throw new IllegalArgumentException("size mismatch");
+			}
+		}
+		this.operation = operation;
+		this.stores = stores;
+		this.size = size;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean getBit(int index) {
+		return getBits(index, 1) != 0L;
+	}
+
+	@Override
+	public long getBits(int position, int length) {
+		Bits.checkBitsLength(length);
+		if (length == 0) return 0L;
+		final long mask = mask(length);
+		long bits = stores[0].getBits(position, length);
+		switch (operation) {
+		case AND:
+			for (int i = 1; i < stores.length && (bits & mask) != 0L; i++) {
+				bits &= stores[i].getBits(position, length);
+			}
+			break;
+		case OR:
+			for (int i = 1; i < stores.length && (bits & mask) != mask; i++) {
+				bits |= stores[i].getBits(position, length);
+			}
+			break;
+		case XOR:
+			for (int i = 1; i < stores.length; i++) {
+				bits ^= stores[i].getBits(position, length);
+			}
+			break;
+		default:
+			bits = stores[stores.length - 1].getBits(position, length);
+		}
+		return bits & mask;
+	}
+
+	@Override
+	public int getBitsAsInt(int position, int length) {
+		Bits.checkIntBitsLength(length);
+		return (int) getBits(position, length);
+	}
+
+}
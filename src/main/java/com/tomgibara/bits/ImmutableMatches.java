@@ -18,6 +18,8 @@ package com.tomgibara.bits;
 
 import java.util.Collections;
 import java.util.SortedSet;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 import com.tomgibara.bits.BitStore.BitMatches;
 import com.tomgibara.bits.BitStore.Positions;
@@ -110,4 +112,14 @@ class ImmutableMatches implements BitMatches {
 		return Collections.unmodifiableSortedSet(matches.asSet());
 	}
 
+	@Override
+	public IntStream stream() {
+		return matches.stream();
+	}
+
+	@Override
+	public void forEach(IntConsumer action) {
+		matches.forEach(action);
+	}
+
 }
@@ -18,28 +18,70 @@ package com.tomgibara.bits;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
+// bytes are read from the stream in blocks; the buffer's position and limit
+// bound the bytes that have been read from the stream but not consumed
 class InputStreamBitReader extends ByteBasedBitReader {
 
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+
 	private final InputStream in;
+	private final ByteBuffer buffer;
 
 	InputStreamBitReader(InputStream in) {
+		this(in, DEFAULT_BUFFER_SIZE);
+	}
+
+	InputStreamBitReader(InputStream in, int bufferSize) {
 		this.in = in;
+		buffer = ByteBuffer.allocate(bufferSize);
+		buffer.limit(0);
 	}
 
 	@Override
 	protected int readSourceByte() throws BitStreamException {
+		if (!buffer.hasRemaining() && !fill()) return -1;
+		return buffer.get() & 0xff;
+	}
+
+	@Override
+	protected int availableSourceBytes() {
+		return buffer.remaining();
+	}
+
+	@Override
+	protected long readSourceLong() throws BitStreamException {
+		return buffer.getLong();
+	}
+
+	@Override
+	protected int readSourceBytes(byte[] bytes, int offset, int length) throws BitStreamException {
+		// buffered bytes first, the remainder directly from the stream
+		int count = Math.min(length, buffer.remaining());
+		buffer.get(bytes, offset, count);
 		try {
-			return in.read();
+			while (count < length) {
+				int read = in.read(bytes, offset + count, length - count);
+				if (read < 0) break;
+				count += read;
+			}
 		} catch (IOException e) {
 			throw new BitStreamException(e);
 		}
+		return count;
 	}
 
 	@Override
 	protected long skipSourceBytes(long count) throws BitStreamException {
+		int remaining = buffer.remaining();
+		if (count <= remaining) {
+			buffer.position(buffer.position() + (int) count);
+			return count;
+		}
+		buffer.position(buffer.limit());
 		try {
-			return in.skip(count);
+			return remaining + in.skip(count - remaining);
 		} catch (IOException e) {
 			throw new BitStreamException(e);
 		}
@@ -60,4 +102,18 @@ class InputStreamBitReader extends ByteBasedBitReader {
 		return in;
 	}
 
+	private boolean fill() {
+		try {
+			int count;
+			do {
+				count = in.read(buffer.array(), 0, buffer.capacity());
+			} while (count == 0);
+			buffer.position(0);
+			buffer.limit(Math.max(count, 0));
+			return count > 0;
+		} catch (IOException e) {
+			throw new BitStreamException(e);
+		}
+	}
+
 }
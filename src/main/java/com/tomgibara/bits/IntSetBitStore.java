@@ -24,6 +24,8 @@ import java.util.NoSuchElementException;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 final class IntSetBitStore extends AbstractBitStore {
 
@@ -319,12 +321,42 @@ final class IntSetBitStore extends AbstractBitStore {
 	private class SparseOnes extends SparseMatches {
 
 		SparseOnes() { super(true, new OnesSet(set, start, finish)); }
+
+		// the spliterator of the backing set is used, avoiding a bit scan
+		@Override
+		public IntStream stream() {
+			return set.stream().mapToInt(i -> i - start);
+		}
+
+		@Override
+		public void forEach(IntConsumer action) {
+			if (action == null) throw new IllegalArgumentException("null action");
+			for (Integer i : set) {
+				action.accept(i - start);
+			}
+		}
 	}
 
 	private class SparseZeros extends SparseMatches {
 
 		SparseZeros() { super(false, new ZerosSet(set, start, finish)); }
 
+		// reports the gaps between the ones
+		@Override
+		public void forEach(IntConsumer action) {
+			if (action == null) throw new IllegalArgumentException("null action");
+			int position = start;
+			for (Integer i : set) {
+				for (; position < i; position++) {
+					action.accept(position - start);
+				}
+				position = i + 1;
+			}
+			for (; position < finish; position++) {
+				action.accept(position - start);
+			}
+		}
+
 	}
 
 	private class OnesSet extends AbstractSet<Integer> implements SortedSet<Integer> {
@@ -0,0 +1,563 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import com.tomgibara.bits.BitStore.Test;
+import com.tomgibara.fundament.Mutability;
+
+/**
+ * <p>
+ * A fixed length bit sequence that is indexed by longs and which may
+ * consequently hold more than <code>Integer.MAX_VALUE</code> bits. The
+ * interface mirrors the vocabulary of {@link BitStore} (operations, matches and
+ * tests) but with long positions, counts and sizes.
+ *
+ * <p>
+ * Any window of a {@link LargeBitStore} that spans no more than
+ * <code>Integer.MAX_VALUE</code> bits can be exposed as a regular
+ * {@link BitStore} via {@link #range(long, long)}, allowing existing code to
+ * operate over it.
+ *
+ * <p>
+ * As with {@link BitStore}, positions are big-endian: the least significant
+ * bit has index zero.
+ *
+ * @author Tom Gibara
+ * @see Bits#largeStore(long)
+ * @see LargeBitVector
+ */
+
+public interface LargeBitStore extends Mutability<LargeBitStore> {
+
+	/**
+	 * Operations that can be conducted on a {@link LargeBitStore} using one
+	 * of the logical operations.
+	 *
+	 * @see BitStore.Op
+	 */
+
+	interface Op {
+
+		/**
+		 * The operation applied by these methods.
+		 *
+		 * @return the operation
+		 */
+
+		Operation getOperation();
+
+		/**
+		 * Applies the operation to every bit using the supplied bit value.
+		 *
+		 * @param value
+		 *            the bit value to apply
+		 */
+
+		void with(boolean value);
+
+		/**
+		 * Applies the operation to a single bit using the supplied bit value.
+		 *
+		 * @param position
+		 *            the index of the bit to be operated on
+		 * @param value
+		 *            the bit value to apply
+		 */
+
+		void withBit(long position, boolean value);
+
+		/**
+		 * Returns an existing bit before applying the supplied value using the
+		 * operation specified by this object.
+		 *
+		 * @param position
+		 *            the index of the bit to be returned and then operated on
+		 * @param value
+		 *            the bit value to apply
+		 * @return the bit value prior to the operation
+		 */
+
+		boolean getThenWithBit(long position, boolean value);
+
+		/**
+		 * Applies the operation to a range of 64 bits using bits of the
+		 * supplied long.
+		 *
+		 * @param position
+		 *            the smallest index in the range
+		 * @param value
+		 *            the bits to apply
+		 */
+
+		void withLong(long position, long value);
+
+		/**
+		 * Applies the operation to a range of bits using bits from the supplied
+		 * long. When only a subset of the long bits is required (when the
+		 * length is less than 64) the least-significant bits are used.
+		 *
+		 * @param position
+		 *            the smallest index in the range
+		 * @param value
+		 *            the bits to apply
+		 * @param length
+		 *            the number of bits in the range
+		 */
+
+		void withBits(long position, long value, int length);
+
+		/**
+		 * Applies the operation to a range of bits using bits from the supplied
+		 * {@link BitStore}.
+		 *
+		 * @param position
+		 *            the smallest index in the range
+		 * @param store
+		 *            contains the bits to apply
+		 */
+
+		void withStore(long position, BitStore store);
+
+		/**
+		 * Applies the operation to all bits, using the bits of another
+		 * {@link LargeBitStore}.
+		 *
+		 * @param store
+		 *            a {@link LargeBitStore} of the same size
+		 */
+
+		void withStore(LargeBitStore store);
+
+	}
+
+	/**
+	 * Provides information about the positions of 1s or 0s in a
+	 * {@link LargeBitStore}.
+	 *
+	 * @see BitStore.BitMatches
+	 */
+
+	interface BitMatches {
+
+		/**
+		 * The store over which the matches are being reported.
+		 *
+		 * @return the bit store being matched over
+		 */
+
+		LargeBitStore store();
+
+		/**
+		 * Whether 1s are being matched.
+		 *
+		 * @return bit value being matched
+		 */
+
+		boolean bit();
+
+		/**
+		 * The number of matched bits.
+		 *
+		 * @return the number of bits with the value of {@link #bit()}
+		 */
+
+		long count();
+
+		/**
+		 * Whether the {@link LargeBitStore} consists entirely of the matched
+		 * bit value.
+		 *
+		 * @return true if and only if all bits in the store have the value of
+		 *         {@link #bit()}
+		 */
+
+		boolean isAll();
+
+		/**
+		 * Whether none of the bits in the {@link LargeBitStore} have the
+		 * matched bit value.
+		 *
+		 * @return true if and only if none of the bits in the store have the
+		 *         value of {@link #bit()}
+		 */
+
+		boolean isNone();
+
+		/**
+		 * The position of the first match. If there is no match, the store size
+		 * is returned.
+		 *
+		 * @return the position of the first match, or the store size if there
+		 *         is no match.
+		 */
+
+		long first();
+
+		/**
+		 * The position of the last match. If there is no match, -1 is returned.
+		 *
+		 * @return the position of the last match or -1 if there is no match.
+		 */
+
+		long last();
+
+		/**
+		 * The position of the first match that occurs at an index greater than
+		 * or equal to the specified position. If there is no match, the store
+		 * size is returned.
+		 *
+		 * @param position
+		 *            position from which the next match should be found
+		 * @return the position of the first subsequent match, or the store
+		 *         size if there is no match.
+		 */
+
+		long next(long position);
+
+		/**
+		 * The position of the first match that occurs at an index less than the
+		 * specified position. If there is no match, -1 is returned.
+		 *
+		 * @param position
+		 *            position from which the previous match should be found
+		 * @return the position of the first prior match, or -1 if there is no
+		 *         match.
+		 */
+
+		long previous(long position);
+
+	}
+
+	/**
+	 * Performs tests of a fixed type against a {@link LargeBitStore}.
+	 *
+	 * @see BitStore.Tests
+	 */
+
+	interface Tests {
+
+		/**
+		 * The type of tests performed by this object.
+		 *
+		 * @return the type of test
+		 */
+
+		Test getTest();
+
+		/**
+		 * Tests a {@link LargeBitStore} against the source.
+		 *
+		 * @param store
+		 *            the bits tested against
+		 * @return whether the test succeeds
+		 * @throws IllegalArgumentException
+		 *             if the store size does not match the size of the source
+		 */
+
+		boolean store(LargeBitStore store);
+
+	}
+
+	// fundamental methods
+
+	/**
+	 * The size of the {@link LargeBitStore} in bits.
+	 *
+	 * @return the size of the store, possibly zero, never negative
+	 */
+
+	long size();
+
+	/**
+	 * Gets the value of a single bit in the {@link LargeBitStore}.
+	 *
+	 * @param index
+	 *            the index of the bit value to be returned
+	 * @return whether the bit at the specified index is a one
+	 */
+
+	boolean getBit(long index);
+
+	/**
+	 * Sets the value of a bit in the {@link LargeBitStore}.
+	 *
+	 * @param index
+	 *            the index of the bit to be set
+	 * @param value
+	 *            the value to be assigned to the bit
+	 */
+
+	void setBit(long index, boolean value);
+
+	// accelerating methods
+
+	/**
+	 * Returns up to 64 bits of the {@link LargeBitStore} starting from a
+	 * specified position, packed in a long.
+	 *
+	 * @param position
+	 *            the index of the least bit returned
+	 * @param length
+	 *            the number of bits to be returned, from 0 to 64 inclusive
+	 * @return a long containing the specified bits
+	 * @see BitStore#getBits(int, int)
+	 */
+
+	long getBits(long position, int length);
+
+	/**
+	 * Sets up to 64 bits of the {@link LargeBitStore}, starting at a specified
+	 * position, with bits packed in a long.
+	 *
+	 * @param position
+	 *            the index of the least bit assigned to
+	 * @param value
+	 *            the values to be assigned to the bits
+	 * @param length
+	 *            the number of bits to be modified
+	 * @see BitStore#setBits(int, long, int)
+	 */
+
+	void setBits(long position, long value, int length);
+
+	/**
+	 * Flips the bit at a specified index.
+	 *
+	 * @param index
+	 *            the bit to be flipped
+	 */
+
+	default void flipBit(long index) {
+		setBit(index, !getBit(index));
+	}
+
+	/**
+	 * Sets the value of a bit and returns its value prior to any modification.
+	 *
+	 * @param index
+	 *            the index of the bit to be modified
+	 * @param value
+	 *            the value to be assigned to the bit
+	 * @return the value of the bit before assignment
+	 */
+
+	default boolean getThenSetBit(long index, boolean value) {
+		boolean previous = getBit(index);
+		if (previous != value) setBit(index, value);
+		return previous;
+	}
+
+	/**
+	 * Sets every bit in the {@link LargeBitStore} to <code>1</code>.
+	 */
+
+	default void fill() {
+		setAll(true);
+	}
+
+	/**
+	 * Sets every bit in the {@link LargeBitStore} to <code>0</code>.
+	 */
+
+	default void clear() {
+		setAll(false);
+	}
+
+	/**
+	 * Flips every bit in the {@link LargeBitStore}.
+	 */
+
+	default void flip() {
+		xor().with(true);
+	}
+
+	/**
+	 * Sets all bits in the bit store to the specified value.
+	 *
+	 * @param value
+	 *            the bit value to assign to all bits
+	 */
+
+	default void setAll(boolean value) {
+		set().with(value);
+	}
+
+	// operations
+
+	/**
+	 * An {@link Op} that uses {@link Operation#SET} to 'set' bits on the
+	 * {@link LargeBitStore}.
+	 *
+	 * @return an object for <code>set</code>ting bit values on the store
+	 */
+
+	Op set();
+
+	/**
+	 * An {@link Op} that uses {@link Operation#AND} to 'and' bits on the
+	 * {@link LargeBitStore}.
+	 *
+	 * @return an object for <code>and</code>ing bit values on the store
+	 */
+
+	Op and();
+
+	/**
+	 * An {@link Op} that uses {@link Operation#OR} to 'or' bits on the
+	 * {@link LargeBitStore}.
+	 *
+	 * @return an object for <code>or</code>ing bit values on the store
+	 */
+
+	Op or();
+
+	/**
+	 * An {@link Op} that uses {@link Operation#XOR} to 'xor' bits on the
+	 * {@link LargeBitStore}.
+	 *
+	 * @return an object for <code>xor</code>ing bit values on the store
+	 */
+
+	Op xor();
+
+	/**
+	 * Returns an {@link Op} that applies the specified {@link Operation} to the
+	 * bits of this {@link LargeBitStore}.
+	 *
+	 * @param operation
+	 *            the operation to be applied to the bits of this store.
+	 * @return an object that can applies the operation to this bit store.
+	 */
+
+	default Op op(Operation operation) {
+		if (operation == null) throw new IllegalArgumentException("null operation");
+		switch (operation) {
+		case SET: return set();
+		case AND: return and();
+		case OR:  return or();
+		case XOR: return xor();
+		default:
+			throw new IllegalArgumentException("Unsupported operation");
+		}
+	}
+
+	// matching
+
+	/**
+	 * Returns an object that identifies the positions of each <code>1</code>
+	 * bit in the {@link LargeBitStore}.
+	 *
+	 * @return the locations of all <code>1</code> bits
+	 */
+
+	BitMatches ones();
+
+	/**
+	 * Returns an object that identifies the positions of each <code>0</code>
+	 * bit in the {@link LargeBitStore}.
+	 *
+	 * @return the locations of all <code>0</code> bits
+	 */
+
+	BitMatches zeros();
+
+	/**
+	 * Returns an object that identifies each position with the specified bits
+	 * value.
+	 *
+	 * @param bit
+	 *            the bit value to match
+	 * @return the locations of the matching bits
+	 */
+
+	default BitMatches match(boolean bit) {
+		return bit ? ones() : zeros();
+	}
+
+	// tests
+
+	/**
+	 * Returns tests of a specified nature.
+	 *
+	 * @param test
+	 *            the test to be applied
+	 * @return an object that applies the specified test
+	 */
+
+	Tests test(Test test);
+
+	/**
+	 * Tests for equality.
+	 *
+	 * @return tests for equality
+	 */
+
+	default Tests equals() {
+		return test(Test.EQUALS);
+	}
+
+	/**
+	 * Tests for exclusion.
+	 *
+	 * @return tests for exclusion
+	 */
+
+	default Tests excludes() {
+		return test(Test.EXCLUDES);
+	}
+
+	/**
+	 * Tests for containment.
+	 *
+	 * @return tests for containment
+	 */
+
+	default Tests contains() {
+		return test(Test.CONTAINS);
+	}
+
+	/**
+	 * Tests for complement.
+	 *
+	 * @return tests for complement
+	 */
+
+	default Tests complements() {
+		return test(Test.COMPLEMENTS);
+	}
+
+	// views
+
+	/**
+	 * A window of this {@link LargeBitStore} exposed as a {@link BitStore}.
+	 * The returned store is a view over this store, changes in either are
+	 * reflected in the other. If this store is immutable, so too is the
+	 * returned store.
+	 *
+	 * @param from
+	 *            the start of the range (inclusive)
+	 * @param to
+	 *            the end of the range (exclusive)
+	 * @return a sub range of the {@link LargeBitStore}
+	 * @throws IllegalArgumentException
+	 *             if the range is invalid or spans more than
+	 *             <code>Integer.MAX_VALUE</code> bits
+	 */
+
+	BitStore range(long from, long to);
+
+}
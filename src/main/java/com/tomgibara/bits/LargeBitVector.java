@@ -0,0 +1,736 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import static com.tomgibara.bits.Bits.checkBitsLength;
+
+import java.util.Arrays;
+
+import com.tomgibara.bits.BitStore.Test;
+
+/**
+ * <p>
+ * A {@link LargeBitStore} implementation that stores its bits in pages of
+ * longs, allowing it to accommodate more than <code>Integer.MAX_VALUE</code>
+ * bits. Bits are packed into the longs with the same layout as
+ * {@link BitVector}.
+ *
+ * <p>
+ * Instances may be immutable (see {@link #isMutable()}, {@link #mutable()}
+ * and {@link #immutable()}).
+ *
+ * @author Tom Gibara
+ */
+
+public final class LargeBitVector implements LargeBitStore {
+
+	// statics
+
+	private static final int ADDRESS_BITS = 6;
+	private static final int ADDRESS_SIZE = 1 << ADDRESS_BITS;
+	private static final int ADDRESS_MASK = ADDRESS_SIZE - 1;
+
+	// 2^16 longs, or 4 megabits per page
+	static final int DEFAULT_PAGE_BITS = 16;
+
+	private static final int SET = 0;
+	private static final int AND = 1;
+	private static final int OR  = 2;
+	private static final int XOR = 3;
+
+	private static final int EQUALS = 0;
+
+	/**
+	 * Creates a {@link LargeBitVector} by copying another
+	 * {@link LargeBitStore}.
+	 *
+	 * @param store
+	 *            the bit store to be copied
+	 * @return a new bit vector that equals the supplied store
+	 */
+
+	public static LargeBitVector fromStore(LargeBitStore store) {
+		if (store == null) throw new IllegalArgumentException("null store");
+		if (store instanceof LargeBitVector) return ((LargeBitVector) store).mutableCopy();
+		LargeBitVector vector = new LargeBitVector(store.size());
+		vector.set().withStore(store);
+		return vector;
+	}
+
+	// fields
+
+	private final long size;
+	private final int pageBits;
+	private final int pageMask;
+	private final long[][] pages;
+	private final boolean mutable;
+	private final WordKernel kernel = new Pages();
+
+	// constructors
+
+	/**
+	 * Creates a new zeroed bit vector of the specified size.
+	 *
+	 * @param size
+	 *            the number of bits in the vector
+	 */
+
+	public LargeBitVector(long size) {
+		this(size, DEFAULT_PAGE_BITS);
+	}
+
+	// page size is exposed to allow page boundaries to be tested
+	LargeBitVector(long size, int pageBits) {
+		if (size < 0L) throw new IllegalArgumentException("negative size");
+		if (pageBits < 0 || pageBits > 24) throw new IllegalArgumentException("invalid pageBits");
+		long words = (size + ADDRESS_MASK) >>> ADDRESS_BITS;
+		long pageCount = (words + (1 << pageBits) - 1) >>> pageBits;
+		if (pageCount > Integer.MAX_VALUE) throw new IllegalArgumentException("size too large");
+		this.size = size;
+		this.pageBits = pageBits;
+		this.pageMask = (1 << pageBits) - 1;
+		this.mutable = true;
+		pages = new long[(int) pageCount][];
+		for (int i = 0; i < pages.length; i++) {
+			long remaining = words - ((long) i << pageBits);
+			pages[i] = new long[(int) Math.min(remaining, 1 << pageBits)];
+		}
+	}
+
+	private LargeBitVector(long size, int pageBits, long[][] pages, boolean mutable) {
+		this.size = size;
+		this.pageBits = pageBits;
+		this.pageMask = (1 << pageBits) - 1;
+		this.pages = pages;
+		this.mutable = mutable;
+	}
+
+	// fundamental methods
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public boolean getBit(long index) {
+		checkIndex(index);
+		return getBitAdj(index);
+	}
+
+	@Override
+	public void setBit(long index, boolean value) {
+		checkIndex(index);
+		checkMutable();
+		performAdj(SET, index, value);
+	}
+
+	// accelerating methods
+
+	@Override
+	public long getBits(long position, int length) {
+		checkBitsLength(length);
+		checkPosition(position, length);
+		return getBitsAdj(position, length);
+	}
+
+	@Override
+	public void setBits(long position, long value, int length) {
+		checkBitsLength(length);
+		checkPosition(position, length);
+		checkMutable();
+		performAdj(SET, position, value, length);
+	}
+
+	@Override
+	public void flipBit(long index) {
+		checkIndex(index);
+		checkMutable();
+		performAdj(XOR, index, true);
+	}
+
+	@Override
+	public boolean getThenSetBit(long index, boolean value) {
+		checkIndex(index);
+		checkMutable();
+		return getThenPerformAdj(SET, index, value);
+	}
+
+	@Override
+	public void setAll(boolean value) {
+		checkMutable();
+		performAdj(SET, 0L, size, value);
+	}
+
+	@Override
+	public void flip() {
+		checkMutable();
+		performAdj(XOR, 0L, size, true);
+	}
+
+	// operations
+
+	@Override
+	public Op set() {
+		return new LargeOp(SET);
+	}
+
+	@Override
+	public Op and() {
+		return new LargeOp(AND);
+	}
+
+	@Override
+	public Op or() {
+		return new LargeOp(OR);
+	}
+
+	@Override
+	public Op xor() {
+		return new LargeOp(XOR);
+	}
+
+	@Override
+	public Op op(Operation operation) {
+		if (operation == null) throw new IllegalArgumentException("null operation");
+		return new LargeOp(operation.ordinal());
+	}
+
+	// matching
+
+	@Override
+	public BitMatches ones() {
+		return new LargeMatches(true);
+	}
+
+	@Override
+	public BitMatches zeros() {
+		return new LargeMatches(false);
+	}
+
+	// tests
+
+	@Override
+	public Tests test(Test test) {
+		if (test == null) throw new IllegalArgumentException("null test");
+		return new LargeTests(test.ordinal());
+	}
+
+	// views
+
+	@Override
+	public BitStore range(long from, long to) {
+		if (from < 0L) throw new IllegalArgumentException("negative from");
+		if (to < from) throw new IllegalArgumentException("from exceeds to");
+		if (to > size) throw new IllegalArgumentException("to exceeds size");
+		if (to - from > Integer.MAX_VALUE) throw new IllegalArgumentException("range too large");
+		return new Window(from, (int) (to - from));
+	}
+
+	// mutability
+
+	@Override
+	public boolean isMutable() {
+		return mutable;
+	}
+
+	@Override
+	public LargeBitVector mutable() {
+		return mutable ? this : mutableCopy();
+	}
+
+	@Override
+	public LargeBitVector immutable() {
+		return mutable ? immutableView() : this;
+	}
+
+	@Override
+	public LargeBitVector mutableCopy() {
+		return new LargeBitVector(size, pageBits, copyPages(), true);
+	}
+
+	@Override
+	public LargeBitVector immutableCopy() {
+		return new LargeBitVector(size, pageBits, copyPages(), false);
+	}
+
+	@Override
+	public LargeBitVector immutableView() {
+		return new LargeBitVector(size, pageBits, pages, false);
+	}
+
+	// object methods
+
+	@Override
+	public int hashCode() {
+		int h = Long.hashCode(size);
+		long words = wordCount();
+		for (long i = 0L; i < words; i++) {
+			h = 31 * h + Long.hashCode(word(i) & wordMask(i));
+		}
+		return h;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (!(obj instanceof LargeBitStore)) return false;
+		LargeBitStore that = (LargeBitStore) obj;
+		if (this.size != that.size()) return false;
+		return new LargeTests(EQUALS).store(that);
+	}
+
+	@Override
+	public String toString() {
+		// a full binary string is impractical at the sizes this class targets
+		return "LargeBitVector(size: " + size + ", ones: " + new LargeMatches(true).count() + ")";
+	}
+
+	// package scoped methods
+
+	long wordCount() {
+		return (size + ADDRESS_MASK) >>> ADDRESS_BITS;
+	}
+
+	// the word at the given index, unused high bits of the last word are undefined
+	long word(long index) {
+		return kernel.word(index);
+	}
+
+	WordKernel kernel() {
+		return kernel;
+	}
+
+	// private utility methods
+
+	private long wordMask(long index) {
+		long bits = size - (index << ADDRESS_BITS);
+		return bits >= ADDRESS_SIZE ? -1L : -1L >>> (ADDRESS_SIZE - bits);
+	}
+
+	private long[][] copyPages() {
+		long[][] copy = new long[pages.length][];
+		for (int i = 0; i < copy.length; i++) {
+			copy[i] = pages[i].clone();
+		}
+		return copy;
+	}
+
+	private void checkMutable() {
+		if (!mutable) throw new IllegalStateException("immutable");
+	}
+
+	private void checkIndex(long index) {
+		if (index < 0L) throw new IllegalArgumentException("negative index");
+		if (index >= size) throw new IllegalArgumentException("index beyond highest bit");
+	}
+
+	private void checkPosition(long position) {
+		if (position < 0L) throw new IllegalArgumentException("negative position");
+		if (position > size) throw new IllegalArgumentException("position exceeds size");
+	}
+
+	private void checkPosition(long position, int length) {
+		if (position < 0L) throw new IllegalArgumentException("negative position");
+		if (position + length > size) throw new IllegalArgumentException("length too great");
+	}
+
+	private boolean getBitAdj(long index) {
+		return kernel.getBitAdj(index);
+	}
+
+	private long getBitsAdj(long position, int length) {
+		return kernel.getBitsAdj(position, length);
+	}
+
+	private void performAdj(int operation, long index, boolean value) {
+		kernel.performAdj(operation, index, value);
+	}
+
+	private boolean getThenPerformAdj(int operation, long index, boolean value) {
+		return kernel.performAdj(operation, index, value);
+	}
+
+	private void performAdj(int operation, long position, long value, int length) {
+		kernel.performAdj(operation, position, value, length);
+	}
+
+	private void performAdj(int operation, long from, long to, boolean value) {
+		kernel.performAdj(operation, from, to, value);
+	}
+
+	private void performAdj(int operation, long position, BitStore store) {
+		if (store instanceof Window) {
+			Window that = (Window) store;
+			if (that.pages() == this.pages && position < that.from + that.size && position + that.size > that.from) {
+				// avoid overwriting the source as it is read
+				store = BitVector.fromStore(store);
+			}
+		}
+		kernel.performAdj(operation, position, store);
+	}
+
+	private void performAdj(int operation, LargeBitStore store) {
+		if (store instanceof LargeBitVector) {
+			LargeBitVector that = (LargeBitVector) store;
+			if (that.pages == this.pages) {
+				// trivial cases of operating on self
+				switch (operation) {
+				case XOR: performAdj(SET, 0L, size, false); return;
+				default: return;
+				}
+			}
+			kernel.performAdj(operation, size, that.kernel);
+		} else {
+			long offset = 0L;
+			for (; offset + ADDRESS_SIZE <= size; offset += ADDRESS_SIZE) {
+				performAdj(operation, offset, store.getBits(offset, ADDRESS_SIZE), ADDRESS_SIZE);
+			}
+			if (offset < size) {
+				int rem = (int) (size - offset);
+				performAdj(operation, offset, store.getBits(offset, rem), rem);
+			}
+		}
+	}
+
+	private long countOnesAdj(long from, long to) {
+		return kernel.countOnesAdj(from, to);
+	}
+
+	// returns to if there is no match
+	private long firstInRangeAdj(boolean bit, long from, long to) {
+		return kernel.firstInRangeAdj(bit, from, to);
+	}
+
+	// returns -1 if there is no match
+	private long lastInRangeAdj(boolean bit, long from, long to) {
+		return kernel.lastInRangeAdj(bit, from, to);
+	}
+
+	private boolean test(int test, LargeBitStore store) {
+		if (store.size() != size) throw new IllegalArgumentException("mismatched size");
+		return kernel.test(test, size, store, store instanceof LargeBitVector ? ((LargeBitVector) store).kernel : null);
+	}
+
+	// inner classes
+
+	// operates on the words of the pages
+	private final class Pages extends WordKernel {
+
+		@Override
+		long word(long i) {
+			return pages[(int) (i >>> pageBits)][(int) i & pageMask];
+		}
+
+		@Override
+		void setWord(long i, long w) {
+			pages[(int) (i >>> pageBits)][(int) i & pageMask] = w;
+		}
+
+		// applies a constant to whole words over [f, t) a page at a time
+		@Override
+		void performWords(int operation, long f, long t, long fill) {
+			while (f < t) {
+				final long[] page = pages[(int) (f >>> pageBits)];
+				final int from = (int) f & pageMask;
+				final int to = (int) Math.min(page.length, from + t - f);
+				if (operation == SET) {
+					Arrays.fill(page, from, to, fill);
+				} else {
+					for (int i = from; i < to; i++) page[i] = ~page[i];
+				}
+				f += to - from;
+			}
+		}
+
+		@Override
+		long countOnesAdj(long from, long to) {
+			if (to - from <= ADDRESS_SIZE << 1) return super.countOnesAdj(from, to);
+			final long f = from >>> ADDRESS_BITS;
+			final long t = (to - 1) >>> ADDRESS_BITS;
+			long count = Long.bitCount(word(f) & (-1L << from)) + Long.bitCount(word(t) & (-1L >>> -to));
+			for (long i = f + 1; i < t; ) {
+				final long[] page = pages[(int) (i >>> pageBits)];
+				final int a = (int) i & pageMask;
+				final int b = (int) Math.min(page.length, a + t - i);
+				for (int j = a; j < b; j++) count += Long.bitCount(page[j]);
+				i += b - a;
+			}
+			return count;
+		}
+
+	}
+
+	private final class LargeOp implements Op {
+
+		private final int operation;
+
+		LargeOp(int operation) {
+			this.operation = operation;
+		}
+
+		@Override
+		public Operation getOperation() {
+			return Operation.values[operation];
+		}
+
+		@Override
+		public void with(boolean value) {
+			checkMutable();
+			performAdj(operation, 0L, size, value);
+		}
+
+		@Override
+		public void withBit(long position, boolean value) {
+			checkIndex(position);
+			checkMutable();
+			performAdj(operation, position, value);
+		}
+
+		@Override
+		public boolean getThenWithBit(long position, boolean value) {
+			checkIndex(position);
+			checkMutable();
+			return getThenPerformAdj(operation, position, value);
+		}
+
+		@Override
+		public void withLong(long position, long value) {
+			withBits(position, value, ADDRESS_SIZE);
+		}
+
+		@Override
+		public void withBits(long position, long value, int length) {
+			checkBitsLength(length);
+			checkPosition(position, length);
+			checkMutable();
+			performAdj(operation, position, value, length);
+		}
+
+		@Override
+		public void withStore(long position, BitStore store) {
+			if (store == null) throw new IllegalArgumentException("null store");
+			checkPosition(position);
+			if (position + store.size() > size) throw new IllegalArgumentException("store size too great");
+			checkMutable();
+			performAdj(operation, position, store);
+		}
+
+		@Override
+		public void withStore(LargeBitStore store) {
+			if (store == null) throw new IllegalArgumentException("null store");
+			if (store.size() != size) throw new IllegalArgumentException("mismatched store size");
+			checkMutable();
+			performAdj(operation, store);
+		}
+
+	}
+
+	private final class LargeMatches implements BitMatches {
+
+		private final boolean bit;
+
+		LargeMatches(boolean bit) {
+			this.bit = bit;
+		}
+
+		@Override
+		public LargeBitStore store() {
+			return LargeBitVector.this;
+		}
+
+		@Override
+		public boolean bit() {
+			return bit;
+		}
+
+		@Override
+		public long count() {
+			long count = countOnesAdj(0L, size);
+			return bit ? count : size - count;
+		}
+
+		@Override
+		public boolean isAll() {
+			return firstInRangeAdj(!bit, 0L, size) == size;
+		}
+
+		@Override
+		public boolean isNone() {
+			return firstInRangeAdj(bit, 0L, size) == size;
+		}
+
+		@Override
+		public long first() {
+			return firstInRangeAdj(bit, 0L, size);
+		}
+
+		@Override
+		public long last() {
+			return lastInRangeAdj(bit, 0L, size);
+		}
+
+		@Override
+		public long next(long position) {
+			checkPosition(position);
+			return firstInRangeAdj(bit, position, size);
+		}
+
+		@Override
+		public long previous(long position) {
+			checkPosition(position);
+			return lastInRangeAdj(bit, 0L, position);
+		}
+
+	}
+
+	private final class LargeTests implements Tests {
+
+		private final int test;
+
+		LargeTests(int test) {
+			this.test = test;
+		}
+
+		@Override
+		public Test getTest() {
+			return Test.values[test];
+		}
+
+		@Override
+		public boolean store(LargeBitStore store) {
+			if (store == null) throw new IllegalArgumentException("null store");
+			return test(test, store);
+		}
+
+	}
+
+	// an int sized window onto the vector
+	private final class Window extends AbstractBitStore {
+
+		private final long from;
+		private final int size;
+
+		Window(long from, int size) {
+			this.from = from;
+			this.size = size;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean getBit(int index) {
+			return getBitAdj(from + Bits.adjIndex(index, 0, size));
+		}
+
+		@Override
+		public void setBit(int index, boolean value) {
+			index = Bits.adjIndex(index, 0, size);
+			checkMutable();
+			performAdj(SET, from + index, value);
+		}
+
+		@Override
+		public void flipBit(int index) {
+			index = Bits.adjIndex(index, 0, size);
+			checkMutable();
+			performAdj(XOR, from + index, true);
+		}
+
+		@Override
+		public boolean getThenSetBit(int index, boolean value) {
+			index = Bits.adjIndex(index, 0, size);
+			checkMutable();
+			return getThenPerformAdj(SET, from + index, value);
+		}
+
+		@Override
+		public long getBits(int position, int length) {
+			checkBitsLength(length);
+			checkWindow(position, length);
+			return getBitsAdj(from + position, length);
+		}
+
+		@Override
+		public int getBitsAsInt(int position, int length) {
+			Bits.checkIntBitsLength(length);
+			checkWindow(position, length);
+			return (int) getBitsAdj(from + position, length);
+		}
+
+		@Override
+		public void setBits(int position, long value, int length) {
+			checkBitsLength(length);
+			checkWindow(position, length);
+			checkMutable();
+			performAdj(SET, from + position, value, length);
+		}
+
+		@Override
+		public void setStore(int position, BitStore store) {
+			if (store == null) throw new IllegalArgumentException("null store");
+			checkWindow(position, store.size());
+			checkMutable();
+			performAdj(SET, from + position, store);
+		}
+
+		@Override
+		public void fill() {
+			checkMutable();
+			performAdj(SET, from, from + size, true);
+		}
+
+		@Override
+		public void clear() {
+			checkMutable();
+			performAdj(SET, from, from + size, false);
+		}
+
+		@Override
+		public void flip() {
+			checkMutable();
+			performAdj(XOR, from, from + size, true);
+		}
+
+		@Override
+		public BitStore range(int from, int to) {
+			if (from < 0) throw new IllegalArgumentException();
+			if (from > to) throw new IllegalArgumentException();
+			if (to > size) throw new IllegalArgumentException();
+			return new Window(this.from + from, to - from);
+		}
+
+		@Override
+		public boolean isMutable() {
+			return mutable;
+		}
+
+		long[][] pages() {
+			return pages;
+		}
+
+		private void checkWindow(int position, int length) {
+			if (position < 0) throw new IllegalArgumentException("negative position");
+			if (position + length > size) throw new IllegalArgumentException("length too great");
+		}
+
+	}
+
+}
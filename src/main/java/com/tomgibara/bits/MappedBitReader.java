@@ -1,5 +1,5 @@
 /*
- * Copyright 2007 Tom Gibara
+ * Copyright 2016 Tom Gibara
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,76 +16,177 @@
  */
 package com.tomgibara.bits;
 
+import java.io.IOException;
 import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 
-//TODO implement this properly
+// reads the bits of a file that has been mapped into memory; since a single
+// buffer cannot exceed 2GB, the file is mapped as a number of segments, each of
+// which overlaps the next by a long so that words can almost always be read
+// from a single buffer
 class MappedBitReader implements BitReader {
 
-	private final MappedByteBuffer buffer;
-	private long size;
-	private long offset;
+	// statics
 
-	private boolean currentSet = false;
-	private byte current;
+	// segments of 1GB
+	static final int DEFAULT_SEGMENT_SHIFT = 30;
+
+	private static final int OVERLAP = 8;
+
+	// fields
+
+	// null once the reader has been closed
+	private MappedByteBuffer[] segments;
+	private final int segmentShift;
+	private final long segmentMask;
+	// the number of bytes mapped
+	private final long length;
+	// the number of bits available
+	private final long size;
+	private long position = 0L;
 
 	// constructors
 
-	//TODO should offer constructor without position?
-	public MappedBitReader(MappedByteBuffer buffer, long size, long position) {
-		this.buffer = buffer;
-		setSize(size);
-		buffer.position();
-		//TODO should check for position > size?
-		setPosition(position);
+	MappedBitReader(FileChannel channel) throws IOException {
+		this(channel, DEFAULT_SEGMENT_SHIFT);
 	}
 
-	public void setSize(long size) {
-		if ((size+7)/8 > buffer.limit()) throw new IllegalArgumentException();
-		if (size < getPosition()) setPosition(size);
-		this.size = size;
+	// the channel may be closed once the reader has been constructed
+	MappedBitReader(FileChannel channel, int segmentShift) throws IOException {
+		if (channel == null) throw new IllegalArgumentException("null channel");
+		if (segmentShift < 0 || segmentShift > DEFAULT_SEGMENT_SHIFT) throw new IllegalArgumentException("invalid segmentShift");
+		length = channel.size();
+		size = length << 3;
+		this.segmentShift = segmentShift;
+		long segmentSize = 1L << segmentShift;
+		segmentMask = segmentSize - 1L;
+		int count = (int) ((length + segmentMask) >> segmentShift);
+		segments = new MappedByteBuffer[count];
+		for (int i = 0; i < count; i++) {
+			long offset = (long) i << segmentShift;
+			segments[i] = channel.map(MapMode.READ_ONLY, offset, Math.min(length - offset, segmentSize + OVERLAP));
+		}
 	}
 
+	// accessors
+
 	long getSize() {
 		return size;
 	}
 
+	// bit reader methods
+
 	@Override
-	public long getPosition() {
-		if (currentSet) {
-			return (buffer.position()-1) * 8L + offset;
-		} else {
-			return buffer.position() * 8L + offset;
+	public int readBit() throws BitStreamException {
+		if (position == size) throw new EndOfBitStreamException();
+		long p = position++;
+		return byteAt(p >> 3) >> (7 - ((int) p & 7)) & 1;
+	}
+
+	@Override
+	public boolean readBoolean() throws BitStreamException {
+		return readBit() == 1;
+	}
+
+	@Override
+	public int read(int count) throws BitStreamException {
+		if (count < 0) throw new IllegalArgumentException("negative count");
+		if (count > 32) throw new IllegalArgumentException("count too great");
+		return (int) readBits(count);
+	}
+
+	@Override
+	public long readLong(int count) throws BitStreamException {
+		if (count < 0) throw new IllegalArgumentException("negative count");
+		if (count > 64) throw new IllegalArgumentException("count too great");
+		return readBits(count);
+	}
+
+	@Override
+	public int readUntil(boolean one) throws BitStreamException {
+		int count = 0;
+		while (true) {
+			int available = (int) Math.min(64L, size - position);
+			if (available == 0) throw new EndOfBitStreamException();
+			long bits = window(position);
+			if (!one) bits = ~bits;
+			if (available < 64) bits &= -1L << (64 - available);
+			int run = Long.numberOfLeadingZeros(bits);
+			if (run < available) {
+				position += run + 1;
+				return count + run;
+			}
+			count += available;
+			position += available;
 		}
 	}
 
+	// bit stream methods
+
 	@Override
-	public long setPosition(long position) {
-		BitStreams.checkPosition(position);
-		if (position > size) position = size;
-		buffer.position((int) (position/8));
-		offset = position % 8;
-		updateCurrent();
+	public long getPosition() {
 		return position;
 	}
 
 	@Override
-	public int readBit() throws BitStreamException {
-		throw new UnsupportedOperationException();
+	public long setPosition(long position) {
+		BitStreams.checkPosition(position);
+		this.position = Math.min(position, size);
+		return this.position;
 	}
 
-	@Override
-	public int read(int count) {
-		if (count == 0) return 0;
-		throw new UnsupportedOperationException();
+	// package scoped methods
+
+	// unmaps the file, after which any read fails
+	void close() {
+		MappedByteBuffer[] segments = this.segments;
+		if (segments == null) return;
+		this.segments = null;
+		for (MappedByteBuffer segment : segments) {
+			BufferBitStore.unmap(segment);
+		}
 	}
 
-	private void updateCurrent() {
-		if (buffer.hasRemaining()) {
-			current = buffer.get();
-			currentSet = true;
-		} else {
-			currentSet = false;
+	// private utility methods
+
+	private long readBits(int count) {
+		if (count == 0) return 0L;
+		if (size - position < count) throw new EndOfBitStreamException();
+		long bits = window(position) >>> (64 - count);
+		position += count;
+		return bits;
+	}
+
+	// the 64 bits from a position, the first in the most significant bit, zero padded
+	private long window(long p) {
+		long index = p >> 3;
+		int offset = (int) p & 7;
+		long bits = longAt(index) << offset;
+		return offset == 0 ? bits : bits | byteAt(index + 8) >>> (8 - offset);
+	}
+
+	private long longAt(long index) {
+		MappedByteBuffer segment = segments()[(int) (index >> segmentShift)];
+		int i = (int) (index & segmentMask);
+		if (i + 8 <= segment.limit()) return segment.getLong(i);
+		// only possible at the end of the file
+		long bits = 0L;
+		for (int j = 0; j < 8; j++) {
+			bits = bits << 8 | byteAt(index + j);
 		}
+		return bits;
+	}
+
+	private int byteAt(long index) {
+		if (index >= length) return 0;
+		return segments()[(int) (index >> segmentShift)].get((int) (index & segmentMask)) & 0xff;
+	}
+
+	private MappedByteBuffer[] segments() {
+		MappedByteBuffer[] segments = this.segments;
+		if (segments == null) throw new BitStreamException("closed");
+		return segments;
 	}
 
 }
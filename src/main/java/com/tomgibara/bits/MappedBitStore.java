@@ -0,0 +1,664 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import static com.tomgibara.bits.Bits.checkBitsLength;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import com.tomgibara.bits.BitStore.Test;
+
+/**
+ * <p>
+ * A {@link LargeBitStore} that is persisted in a memory-mapped file. Changes
+ * made to the store are written through to the file by the operating system,
+ * so that the bits survive beyond the lifetime of the application without any
+ * need for an explicit load or serialization step. Calling {@link #force()}
+ * guarantees that any changes have been written to the storage device.
+ *
+ * <p>
+ * The file is mapped in multiple regions so that stores may exceed the 2GB
+ * limit of a single mapping. Bits are laid out in the file consistently with
+ * {@link Bits#asStore(byte[])}; the zeroth indexed bit of the store is the
+ * least significant bit of the first byte in the file. The file is extended
+ * (if necessary) to a whole number of 64-bit words. Note that the file does not
+ * record the size of the store; this must be supplied when the file is
+ * reopened.
+ *
+ * <p>
+ * Instances are obtained from {@link Bits#mappedStore(FileChannel, long, boolean)}.
+ * The mappings persist after the channel is closed, but can be released
+ * explicitly via {@link #close()}, after which any access to the store (or its
+ * views) fails with an <code>IllegalStateException</code>. A store must not be
+ * closed while other threads may be accessing it.
+ *
+ * @author Tom Gibara
+ */
+
+public final class MappedBitStore implements LargeBitStore, AutoCloseable {
+
+	// statics
+
+	private static final int ADDRESS_BITS = 6;
+	private static final int ADDRESS_SIZE = 1 << ADDRESS_BITS;
+	private static final int ADDRESS_MASK = ADDRESS_SIZE - 1;
+
+	// 2^27 longs, or 1 gigabyte per mapping
+	static final int DEFAULT_MAPPING_BITS = 27;
+
+	private static final int SET = 0;
+	private static final int AND = 1;
+	private static final int OR  = 2;
+	private static final int XOR = 3;
+
+	private static final int EQUALS = 0;
+
+	// fields
+
+	private final long size;
+	private final Mappings mappings;
+	private final boolean mutable;
+
+	// constructors
+
+	// mapping size is exposed to allow mapping boundaries to be tested
+	MappedBitStore(FileChannel channel, long size, boolean mutable, int mappingBits) throws IOException {
+		long words = (size + ADDRESS_MASK) >>> ADDRESS_BITS;
+		long count = (words + (1 << mappingBits) - 1) >>> mappingBits;
+		if (count > Integer.MAX_VALUE) throw new IllegalArgumentException("size too large");
+		MappedByteBuffer[] buffers = new MappedByteBuffer[(int) count];
+		MapMode mode = mutable ? MapMode.READ_WRITE : MapMode.READ_ONLY;
+		for (int i = 0; i < buffers.length; i++) {
+			long first = (long) i << mappingBits;
+			long length = Math.min(words - first, 1 << mappingBits);
+			buffers[i] = channel.map(mode, first << 3, length << 3);
+			buffers[i].order(ByteOrder.LITTLE_ENDIAN);
+		}
+		this.size = size;
+		this.mappings = new Mappings(buffers, mappingBits);
+		this.mutable = mutable;
+	}
+
+	private MappedBitStore(long size, Mappings mappings, boolean mutable) {
+		this.size = size;
+		this.mappings = mappings;
+		this.mutable = mutable;
+	}
+
+	// methods
+
+	/**
+	 * Forces any changes made to the store to be written to the storage
+	 * device that contains the mapped file.
+	 *
+	 * @see MappedByteBuffer#force()
+	 */
+
+	public void force() {
+		for (MappedByteBuffer buffer : words().buffers) {
+			buffer.force();
+		}
+	}
+
+	/**
+	 * Whether the mappings underlying this store have been released.
+	 *
+	 * @return true if the store has been closed, false otherwise
+	 */
+
+	public boolean isClosed() {
+		return mappings.buffers == null;
+	}
+
+	/**
+	 * Releases the file mappings that underlie the store. Changes made to the
+	 * store are not forced to the storage device. Any views of the store also
+	 * become unusable. Calling this method on a closed store has no effect.
+	 */
+
+	@Override
+	public void close() {
+		mappings.release();
+	}
+
+	// fundamental methods
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public boolean getBit(long index) {
+		checkIndex(index);
+		return words().getBitAdj(index);
+	}
+
+	@Override
+	public void setBit(long index, boolean value) {
+		checkIndex(index);
+		checkMutable();
+		words().performAdj(SET, index, value);
+	}
+
+	// accelerating methods
+
+	@Override
+	public long getBits(long position, int length) {
+		checkBitsLength(length);
+		checkPosition(position, length);
+		return words().getBitsAdj(position, length);
+	}
+
+	@Override
+	public void setBits(long position, long value, int length) {
+		checkBitsLength(length);
+		checkPosition(position, length);
+		checkMutable();
+		words().performAdj(SET, position, value, length);
+	}
+
+	@Override
+	public void flipBit(long index) {
+		checkIndex(index);
+		checkMutable();
+		words().performAdj(XOR, index, true);
+	}
+
+	@Override
+	public boolean getThenSetBit(long index, boolean value) {
+		checkIndex(index);
+		checkMutable();
+		return words().performAdj(SET, index, value);
+	}
+
+	@Override
+	public void setAll(boolean value) {
+		checkMutable();
+		words().performAdj(SET, 0L, size, value);
+	}
+
+	@Override
+	public void flip() {
+		checkMutable();
+		words().performAdj(XOR, 0L, size, true);
+	}
+
+	// operations
+
+	@Override
+	public Op set() {
+		return new MappedOp(SET);
+	}
+
+	@Override
+	public Op and() {
+		return new MappedOp(AND);
+	}
+
+	@Override
+	public Op or() {
+		return new MappedOp(OR);
+	}
+
+	@Override
+	public Op xor() {
+		return new MappedOp(XOR);
+	}
+
+	@Override
+	public Op op(Operation operation) {
+		if (operation == null) throw new IllegalArgumentException("null operation");
+		return new MappedOp(operation.ordinal());
+	}
+
+	// matching
+
+	@Override
+	public BitMatches ones() {
+		return new MappedMatches(true);
+	}
+
+	@Override
+	public BitMatches zeros() {
+		return new MappedMatches(false);
+	}
+
+	// tests
+
+	@Override
+	public Tests test(Test test) {
+		if (test == null) throw new IllegalArgumentException("null test");
+		return new MappedTests(test.ordinal());
+	}
+
+	// views
+
+	@Override
+	public BitStore range(long from, long to) {
+		if (from < 0L) throw new IllegalArgumentException("negative from");
+		if (to < from) throw new IllegalArgumentException("from exceeds to");
+		if (to > size) throw new IllegalArgumentException("to exceeds size");
+		if (to - from > Integer.MAX_VALUE) throw new IllegalArgumentException("range too large");
+		return new Window(from, (int) (to - from));
+	}
+
+	// mutability
+
+	@Override
+	public boolean isMutable() {
+		return mutable;
+	}
+
+	@Override
+	public LargeBitStore mutableCopy() {
+		return LargeBitVector.fromStore(this);
+	}
+
+	@Override
+	public LargeBitStore immutableCopy() {
+		return LargeBitVector.fromStore(this).immutableView();
+	}
+
+	@Override
+	public LargeBitStore immutableView() {
+		return new MappedBitStore(size, mappings, false);
+	}
+
+	// object methods
+
+	@Override
+	public int hashCode() {
+		Mappings words = words();
+		int h = Long.hashCode(size);
+		long count = (size + ADDRESS_MASK) >>> ADDRESS_BITS;
+		for (long i = 0L; i < count; i++) {
+			long w = words.word(i);
+			if (i == count - 1) w &= -1L >>> -size;
+			h = 31 * h + Long.hashCode(w);
+		}
+		return h;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (!(obj instanceof LargeBitStore)) return false;
+		LargeBitStore that = (LargeBitStore) obj;
+		if (this.size != that.size()) return false;
+		return test(EQUALS, that);
+	}
+
+	@Override
+	public String toString() {
+		return "MappedBitStore(size: " + size + ", ones: " + new MappedMatches(true).count() + ")";
+	}
+
+	// private utility methods
+
+	private Mappings words() {
+		if (mappings.buffers == null) throw new IllegalStateException("closed");
+		return mappings;
+	}
+
+	private void checkMutable() {
+		if (!mutable) throw new IllegalStateException("immutable");
+	}
+
+	private void checkIndex(long index) {
+		if (index < 0L) throw new IllegalArgumentException("negative index");
+		if (index >= size) throw new IllegalArgumentException("index beyond highest bit");
+	}
+
+	private void checkPosition(long position) {
+		if (position < 0L) throw new IllegalArgumentException("negative position");
+		if (position > size) throw new IllegalArgumentException("position exceeds size");
+	}
+
+	private void checkPosition(long position, int length) {
+		if (position < 0L) throw new IllegalArgumentException("negative position");
+		if (position + length > size) throw new IllegalArgumentException("length too great");
+	}
+
+	private void performAdj(Mappings words, int operation, long position, BitStore store) {
+		if (store instanceof Window) {
+			Window that = (Window) store;
+			if (that.mappings() == mappings && position < that.from + that.size && position + that.size > that.from) {
+				// avoid overwriting the source as it is read
+				store = BitVector.fromStore(store);
+			}
+		}
+		words.performAdj(operation, position, store);
+	}
+
+	private void performAdj(Mappings words, int operation, LargeBitStore store) {
+		if (store instanceof MappedBitStore && ((MappedBitStore) store).mappings == mappings) {
+			// trivial cases of operating on self
+			if (operation == XOR) words.performAdj(SET, 0L, size, false);
+			return;
+		}
+		if (store instanceof LargeBitVector) {
+			words.performAdj(operation, size, ((LargeBitVector) store).kernel());
+			return;
+		}
+		final long count = size >>> ADDRESS_BITS;
+		for (long i = 0L; i < count; i++) {
+			words.performWord(operation, i, store.getBits(i << ADDRESS_BITS, ADDRESS_SIZE));
+		}
+		final int rem = (int) size & ADDRESS_MASK;
+		if (rem != 0) {
+			final long position = count << ADDRESS_BITS;
+			words.performAdj(operation, position, store.getBits(position, rem), rem);
+		}
+	}
+
+	private boolean test(int test, LargeBitStore store) {
+		if (store.size() != size) throw new IllegalArgumentException("mismatched size");
+		return words().test(test, size, store, store instanceof LargeBitVector ? ((LargeBitVector) store).kernel() : null);
+	}
+
+	// inner classes
+
+	// shared between a store and its views so that closing is observed by all
+	private static final class Mappings extends WordKernel {
+
+		MappedByteBuffer[] buffers;
+		final int shift;
+		final int mask;
+
+		Mappings(MappedByteBuffer[] buffers, int shift) {
+			this.buffers = buffers;
+			this.shift = shift;
+			this.mask = (1 << shift) - 1;
+		}
+
+		@Override
+		long word(long i) {
+			return buffers[(int) (i >>> shift)].getLong(((int) i & mask) << 3);
+		}
+
+		@Override
+		void setWord(long i, long w) {
+			buffers[(int) (i >>> shift)].putLong(((int) i & mask) << 3, w);
+		}
+
+		void release() {
+			MappedByteBuffer[] buffers = this.buffers;
+			if (buffers == null) return;
+			this.buffers = null;
+			for (MappedByteBuffer buffer : buffers) {
+				BufferBitStore.unmap(buffer);
+			}
+		}
+	}
+
+	private final class MappedOp implements Op {
+
+		private final int operation;
+
+		MappedOp(int operation) {
+			this.operation = operation;
+		}
+
+		@Override
+		public Operation getOperation() {
+			return Operation.values[operation];
+		}
+
+		@Override
+		public void with(boolean value) {
+			checkMutable();
+			words().performAdj(operation, 0L, size, value);
+		}
+
+		@Override
+		public void withBit(long position, boolean value) {
+			checkIndex(position);
+			checkMutable();
+			words().performAdj(operation, position, value);
+		}
+
+		@Override
+		public boolean getThenWithBit(long position, boolean value) {
+			checkIndex(position);
+			checkMutable();
+			return words().performAdj(operation, position, value);
+		}
+
+		@Override
+		public void withLong(long position, long value) {
+			withBits(position, value, ADDRESS_SIZE);
+		}
+
+		@Override
+		public void withBits(long position, long value, int length) {
+			checkBitsLength(length);
+			checkPosition(position, length);
+			checkMutable();
+			words().performAdj(operation, position, value, length);
+		}
+
+		@Override
+		public void withStore(long position, BitStore store) {
+			if (store == null) throw new IllegalArgumentException("null store");
+			checkPosition(position);
+			if (position + store.size() > size) throw new IllegalArgumentException("store size too great");
+			checkMutable();
+			performAdj(words(), operation, position, store);
+		}
+
+		@Override
+		public void withStore(LargeBitStore store) {
+			if (store == null) throw new IllegalArgumentException("null store");
+			if (store.size() != size) throw new IllegalArgumentException("mismatched store size");
+			checkMutable();
+			performAdj(words(), operation, store);
+		}
+
+	}
+
+	private final class MappedMatches implements BitMatches {
+
+		private final boolean bit;
+
+		MappedMatches(boolean bit) {
+			this.bit = bit;
+		}
+
+		@Override
+		public LargeBitStore store() {
+			return MappedBitStore.this;
+		}
+
+		@Override
+		public boolean bit() {
+			return bit;
+		}
+
+		@Override
+		public long count() {
+			long count = words().countOnesAdj(0L, size);
+			return bit ? count : size - count;
+		}
+
+		@Override
+		public boolean isAll() {
+			return words().firstInRangeAdj(!bit, 0L, size) == size;
+		}
+
+		@Override
+		public boolean isNone() {
+			return words().firstInRangeAdj(bit, 0L, size) == size;
+		}
+
+		@Override
+		public long first() {
+			return words().firstInRangeAdj(bit, 0L, size);
+		}
+
+		@Override
+		public long last() {
+			return words().lastInRangeAdj(bit, 0L, size);
+		}
+
+		@Override
+		public long next(long position) {
+			checkPosition(position);
+			return words().firstInRangeAdj(bit, position, size);
+		}
+
+		@Override
+		public long previous(long position) {
+			checkPosition(position);
+			return words().lastInRangeAdj(bit, 0L, position);
+		}
+
+	}
+
+	private final class MappedTests implements Tests {
+
+		private final int test;
+
+		MappedTests(int test) {
+			this.test = test;
+		}
+
+		@Override
+		public Test getTest() {
+			return Test.values[test];
+		}
+
+		@Override
+		public boolean store(LargeBitStore store) {
+			if (store == null) throw new IllegalArgumentException("null store");
+			return test(test, store);
+		}
+
+	}
+
+	// an int sized window onto the store
+	private final class Window extends AbstractBitStore {
+
+		private final long from;
+		private final int size;
+
+		Window(long from, int size) {
+			this.from = from;
+			this.size = size;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean getBit(int index) {
+			return words().getBitAdj(from + Bits.adjIndex(index, 0, size));
+		}
+
+		@Override
+		public void setBit(int index, boolean value) {
+			index = Bits.adjIndex(index, 0, size);
+			checkMutable();
+			words().performAdj(SET, from + index, value);
+		}
+
+		@Override
+		public void flipBit(int index) {
+			index = Bits.adjIndex(index, 0, size);
+			checkMutable();
+			words().performAdj(XOR, from + index, true);
+		}
+
+		@Override
+		public long getBits(int position, int length) {
+			checkBitsLength(length);
+			checkWindow(position, length);
+			return words().getBitsAdj(from + position, length);
+		}
+
+		@Override
+		public int getBitsAsInt(int position, int length) {
+			Bits.checkIntBitsLength(length);
+			checkWindow(position, length);
+			return (int) words().getBitsAdj(from + position, length);
+		}
+
+		@Override
+		public void setBits(int position, long value, int length) {
+			checkBitsLength(length);
+			checkWindow(position, length);
+			checkMutable();
+			words().performAdj(SET, from + position, value, length);
+		}
+
+		@Override
+		public void setStore(int position, BitStore store) {
+			if (store == null) throw new IllegalArgumentException("null store");
+			checkWindow(position, store.size());
+			checkMutable();
+			performAdj(words(), SET, from + position, store);
+		}
+
+		@Override
+		public void fill() {
+			checkMutable();
+			words().performAdj(SET, from, from + size, true);
+		}
+
+		@Override
+		public void clear() {
+			checkMutable();
+			words().performAdj(SET, from, from + size, false);
+		}
+
+		@Override
+		public void flip() {
+			checkMutable();
+			words().performAdj(XOR, from, from + size, true);
+		}
+
+		@Override
+		public BitStore range(int from, int to) {
+			if (from < 0) throw new IllegalArgumentException();
+			if (from > to) throw new IllegalArgumentException();
+			if (to > size) throw new IllegalArgumentException();
+			return new Window(this.from + from, to - from);
+		}
+
+		@Override
+		public boolean isMutable() {
+			return mutable;
+		}
+
+		Mappings mappings() {
+			return mappings;
+		}
+
+		private void checkWindow(int position, int length) {
+			if (position < 0) throw new IllegalArgumentException("negative position");
+			if (position + length > size) throw new IllegalArgumentException("length too great");
+		}
+
+	}
+
+}
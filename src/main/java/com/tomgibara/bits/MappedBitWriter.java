@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+// writes bits directly into a file that is mapped into memory; segments are
+// mapped as they are first written, each overlapping the next by a long (as
+// in MappedBitReader) so that every word is written via a single buffer;
+// mapping a segment extends the file to cover it, so the file should be
+// truncated to the extent of the written bits once writing is complete
+class MappedBitWriter extends FileBitWriter {
+
+	// statics
+
+	// segments of 64MB
+	static final int DEFAULT_SEGMENT_SHIFT = 26;
+
+	private static final int OVERLAP = 8;
+
+	private static final MappedByteBuffer[] NO_SEGMENTS = new MappedByteBuffer[0];
+
+	// fields
+
+	private final int segmentShift;
+	private final long segmentMask;
+	private MappedByteBuffer[] segments = NO_SEGMENTS;
+
+	// constructors
+
+	MappedBitWriter(FileChannel channel) {
+		this(channel, DEFAULT_SEGMENT_SHIFT);
+	}
+
+	MappedBitWriter(FileChannel channel, int segmentShift) {
+		super(channel);
+		if (segmentShift < 0 || segmentShift > MappedBitReader.DEFAULT_SEGMENT_SHIFT) throw new IllegalArgumentException("invalid segmentShift");
+		this.segmentShift = segmentShift;
+		segmentMask = (1L << segmentShift) - 1L;
+	}
+
+	// file bit writer methods
+
+	@Override
+	long getLong(long index) {
+		return segment(index).getLong((int) (index & segmentMask));
+	}
+
+	@Override
+	void putLong(long index, long value) {
+		segment(index).putLong((int) (index & segmentMask), value);
+	}
+
+	@Override
+	void flushBytes() {
+		// writes to the mapping are visible to the file without flushing
+	}
+
+	@Override
+	void force(boolean metaData) {
+		for (MappedByteBuffer segment : segments) {
+			if (segment != null) segment.force();
+		}
+		super.force(metaData);
+	}
+
+	// written bytes remain in the file after it is unmapped
+	@Override
+	void release() {
+		MappedByteBuffer[] segments = this.segments;
+		this.segments = NO_SEGMENTS;
+		for (MappedByteBuffer segment : segments) {
+			if (segment != null) BufferBitStore.unmap(segment);
+		}
+	}
+
+	// private utility methods
+
+	private MappedByteBuffer segment(long index) {
+		int i = (int) (index >> segmentShift);
+		if (i >= segments.length) {
+			segments = Arrays.copyOf(segments, Math.max(i + 1, segments.length * 2));
+		}
+		MappedByteBuffer segment = segments[i];
+		if (segment == null) {
+			try {
+				segment = channel.map(MapMode.READ_WRITE, (long) i << segmentShift, (1L << segmentShift) + OVERLAP);
+			} catch (IOException e) {
+				throw new BitStreamException(e);
+			}
+			segments[i] = segment;
+		}
+		return segment;
+	}
+
+}
@@ -49,9 +49,9 @@ class OutputStreamBitWriter extends ByteBasedBitWriter {
 	}
 
 	@Override
-	protected void writeBytes(byte[] bytes, int offset, int length) throws BitStreamException {
+	protected void copyBytes(byte[] bytes, int offset, int length) throws BitStreamException {
 		try {
-			out.write(bytes, 0, length);
+			out.write(bytes, offset, length);
 		} catch (IOException e) {
 			throw new BitStreamException(e);
 		}
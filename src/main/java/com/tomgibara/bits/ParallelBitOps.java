@@ -0,0 +1,373 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.tomgibara.bits.BitStore.Test;
+
+/**
+ * <p>
+ * Performs bulk operations, counts and tests over very large
+ * {@link BitVector} instances by splitting them into word-aligned ranges that
+ * are processed concurrently in a {@link ForkJoinPool}.
+ *
+ * <p>
+ * Vectors with fewer bits than the threshold (see
+ * {@link #withThreshold(int)}) are processed sequentially on the calling
+ * thread, as are ranges that would otherwise be split below the threshold.
+ * The vectors supplied to the methods of this class must not be modified by
+ * other threads while the methods execute.
+ *
+ * <p>
+ * Instances are obtained via {@link Bits#parallelOps(ForkJoinPool)} and are
+ * safe for concurrent use.
+ *
+ * @author Tom Gibara
+ */
+
+public final class ParallelBitOps {
+
+	// statics
+
+	// over a million bits, or 16K words, per task
+	static final int DEFAULT_THRESHOLD = 1 << 20;
+
+	// fields
+
+	private final ForkJoinPool pool;
+	private final int threshold;
+
+	// constructors
+
+	ParallelBitOps(ForkJoinPool pool, int threshold) {
+		this.pool = pool;
+		this.threshold = threshold;
+	}
+
+	// accessors
+
+	/**
+	 * The pool in which operations are executed.
+	 *
+	 * @return the fork-join pool
+	 */
+
+	public ForkJoinPool pool() {
+		return pool;
+	}
+
+	/**
+	 * The minimum number of bits that will be processed by a single task.
+	 *
+	 * @return the threshold, in bits
+	 */
+
+	public int threshold() {
+		return threshold;
+	}
+
+	/**
+	 * Parallel operations that are executed in the same pool, but with a
+	 * different threshold.
+	 *
+	 * @param threshold
+	 *            the minimum number of bits processed by a single task
+	 * @return parallel operations with the specified threshold
+	 */
+
+	public ParallelBitOps withThreshold(int threshold) {
+		if (threshold < 64) throw new IllegalArgumentException("threshold less than 64");
+		return threshold == this.threshold ? this : new ParallelBitOps(pool, threshold);
+	}
+
+	// counts
+
+	/**
+	 * Counts the ones in a vector.
+	 *
+	 * @param vector
+	 *            the vector whose ones are counted
+	 * @return the number of ones in the vector
+	 * @see BitStore.BitMatches#count()
+	 */
+
+	public int countOnes(BitVector vector) {
+		checkVector(vector);
+		return execute(new Task(vector) {
+			@Override
+			int compute(int from, int to) {
+				return vector.range(from, to).ones().count();
+			}
+		});
+	}
+
+	/**
+	 * Counts the ones that result from combining two vectors with an
+	 * operation, without modifying either.
+	 *
+	 * @param a
+	 *            the first vector
+	 * @param operation
+	 *            the operation by which the vectors' bits would be combined
+	 * @param b
+	 *            the second vector, of the same size as the first
+	 * @return the number of ones in the combined bits
+	 * @see BitStore#count(Operation, BitStore)
+	 */
+
+	public int count(BitVector a, Operation operation, BitVector b) {
+		checkVectors(a, b);
+		if (operation == null) throw new IllegalArgumentException("null operation");
+		return execute(new Task(a) {
+			@Override
+			int compute(int from, int to) {
+				return a.range(from, to).count(operation, b.range(from, to));
+			}
+		});
+	}
+
+	// tests
+
+	/**
+	 * Tests two vectors of the same size.
+	 *
+	 * @param a
+	 *            the vector being tested
+	 * @param test
+	 *            the test to apply
+	 * @param b
+	 *            the vector against which the test is applied
+	 * @return the result of the test
+	 * @see BitStore.Tests#store(BitStore)
+	 */
+
+	public boolean test(BitVector a, Test test, BitVector b) {
+		checkVectors(a, b);
+		if (test == null) throw new IllegalArgumentException("null test");
+		return execute(new Task(a) {
+			// allows tasks to finish early once any range has failed
+			private volatile boolean failed = false;
+
+			@Override
+			int compute(int from, int to) {
+				if (failed) return 0;
+				if (a.range(from, to).test(test).store(b.range(from, to))) return 1;
+				failed = true;
+				return 0;
+			}
+
+			@Override
+			int combine(int left, int right) {
+				return left & right;
+			}
+		}) != 0;
+	}
+
+	// mutations
+
+	/**
+	 * Sets every bit of a vector to the specified value.
+	 *
+	 * @param vector
+	 *            a mutable vector
+	 * @param value
+	 *            the value to which the bits are set
+	 * @see BitStore#setAll(boolean)
+	 */
+
+	public void setAll(BitVector vector, boolean value) {
+		checkMutable(vector);
+		execute(new Task(vector) {
+			@Override
+			int compute(int from, int to) {
+				vector.range(from, to).setAll(value);
+				return 0;
+			}
+		});
+	}
+
+	/**
+	 * Flips every bit of a vector.
+	 *
+	 * @param vector
+	 *            a mutable vector
+	 * @see BitStore#flip()
+	 */
+
+	public void flip(BitVector vector) {
+		checkMutable(vector);
+		execute(new Task(vector) {
+			@Override
+			int compute(int from, int to) {
+				vector.range(from, to).flip();
+				return 0;
+			}
+		});
+	}
+
+	/**
+	 * Applies an operation to every bit of a vector using the bits of another
+	 * vector of the same size.
+	 *
+	 * @param destination
+	 *            the mutable vector to be modified
+	 * @param operation
+	 *            the operation to apply
+	 * @param source
+	 *            the vector supplying the bits
+	 * @see BitStore.Op#withStore(BitStore)
+	 */
+
+	public void perform(BitVector destination, Operation operation, BitVector source) {
+		checkVectors(destination, source);
+		if (operation == null) throw new IllegalArgumentException("null operation");
+		checkMutable(destination);
+		// ranges of the source could otherwise be modified before they are read
+		BitVector src = destination != source && destination.overlaps(source) ? source.immutableCopy() : source;
+		execute(new Task(destination) {
+			@Override
+			int compute(int from, int to) {
+				destination.range(from, to).op(operation).withStore(src.range(from, to));
+				return 0;
+			}
+		});
+	}
+
+	/**
+	 * Translates the bits of a vector, filling vacated bits with the specified
+	 * value.
+	 *
+	 * @param vector
+	 *            a mutable vector
+	 * @param distance
+	 *            the number of indices through which the bits should be
+	 *            translated, positive distances move bits to higher indices
+	 * @param fill
+	 *            the value assigned to vacated bits
+	 * @see BitStore#shift(int, boolean)
+	 */
+
+	public void shift(BitVector vector, int distance, boolean fill) {
+		checkMutable(vector);
+		int size = vector.size();
+		if (distance == 0 || size == 0) return;
+		if (distance >= size || distance <= -size) {
+			setAll(vector, fill);
+		} else if (distance > 0) {
+			perform(vector.range(distance, size), Operation.SET, vector.range(0, size - distance));
+			vector.range(0, distance).setAll(fill);
+		} else {
+			perform(vector.range(0, size + distance), Operation.SET, vector.range(-distance, size));
+			vector.range(size + distance, size).setAll(fill);
+		}
+	}
+
+	// object methods
+
+	@Override
+	public String toString() {
+		return "ParallelBitOps with threshold " + threshold + " in " + pool;
+	}
+
+	// private utility methods
+
+	private int execute(Task task) {
+		return task.to - task.from <= threshold ? task.compute(task.from, task.to) : pool.invoke(task);
+	}
+
+	private void checkVector(BitVector vector) {
+		if (vector == null) throw new IllegalArgumentException("null vector");
+	}
+
+	private void checkVectors(BitVector a, BitVector b) {
+		if (a == null) throw new IllegalArgumentException("null a");
+		if (b == null) throw new IllegalArgumentException("null b");
+		if (a.size() != b.size()) throw new IllegalArgumentException("mismatched size");
+	}
+
+	private void checkMutable(BitVector vector) {
+		checkVector(vector);
+		if (!vector.isMutable()) throw new IllegalStateException("immutable");
+	}
+
+	// inner classes
+
+	// splits the range at word boundaries so that no word is shared by two tasks
+	private abstract class Task extends RecursiveTask<Integer> {
+
+		private static final long serialVersionUID = 1L;
+
+		final int offset;
+		final int from;
+		final int to;
+
+		Task(BitVector vector) {
+			this(vector.wordOffset(), 0, vector.size());
+		}
+
+		private Task(int offset, int from, int to) {
+			this.offset = offset;
+			this.from = from;
+			this.to = to;
+		}
+
+		abstract int compute(int from, int to);
+
+		int combine(int left, int right) {
+			return left + right;
+		}
+
+		@Override
+		protected Integer compute() {
+			if (to - from <= threshold) return compute(from, to);
+			// round the midpoint to a word boundary of the underlying bits
+			int mid = (((from + to) >>> 1) + offset & ~63) - offset;
+			if (mid <= from) mid += 64;
+			Task left = new Subtask(this, from, mid);
+			Task right = new Subtask(this, mid, to);
+			left.fork();
+			int r = right.compute();
+			return combine(left.join(), r);
+		}
+
+	}
+
+	private final class Subtask extends Task {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Task parent;
+
+		Subtask(Task parent, int from, int to) {
+			super(parent.offset, from, to);
+			this.parent = parent;
+		}
+
+		@Override
+		int compute(int from, int to) {
+			return parent.compute(from, to);
+		}
+
+		@Override
+		int combine(int left, int right) {
+			return parent.combine(left, right);
+		}
+	}
+
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// reads from one buffer while the following bytes of the file are read into
+// another by a background thread; seeks within the current buffer are
+// satisfied immediately, other seeks discard the prefetched bytes and start a
+// new prefetch from the target
+class PrefetchingBitReader extends ByteBasedBitReader {
+
+	// statics
+
+	private static final long KEEP_ALIVE_SECONDS = 1L;
+
+	// fields
+
+	private final FileChannel channel;
+	private final long length;
+	private final ExecutorService executor;
+
+	// the buffer being read, and the index in the file of its first byte
+	private ByteBuffer current;
+	private long currentIndex = 0L;
+	// the buffer being filled, and the index in the file of its first byte
+	private ByteBuffer next;
+	private long nextIndex;
+	private Future<ByteBuffer> pending = null;
+
+	// statistics
+	private long fillCount = 0L;
+	private long waitCount = 0L;
+	private long waitNanos = 0L;
+
+	// constructors
+
+	PrefetchingBitReader(FileChannel channel, int bufferSize) {
+		this.channel = channel;
+		try {
+			length = channel.size();
+		} catch (IOException e) {
+			throw new BitStreamException(e);
+		}
+		// the thread is released while idle, so unclosed readers do not retain it
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+			Thread thread = new Thread(r, "bit-reader-prefetch");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.allowCoreThreadTimeOut(true);
+		this.executor = executor;
+		current = ByteBuffer.allocateDirect(bufferSize);
+		current.limit(0);
+		next = ByteBuffer.allocateDirect(bufferSize);
+		prefetch(0L);
+	}
+
+	// accessors
+
+	FileChannel getChannel() {
+		return channel;
+	}
+
+	// the number of buffers that have been filled from the file
+	long getFillCount() {
+		return fillCount;
+	}
+
+	// the number of times that reading waited for a buffer to be filled
+	long getWaitCount() {
+		return waitCount;
+	}
+
+	// the total time spent waiting
+	long getWaitNanos() {
+		return waitNanos;
+	}
+
+	// byte based methods
+
+	@Override
+	protected int readSourceByte() throws BitStreamException {
+		if (!current.hasRemaining() && !advance()) return -1;
+		return current.get() & 0xff;
+	}
+
+	@Override
+	protected int availableSourceBytes() {
+		return current.remaining();
+	}
+
+	@Override
+	protected long readSourceLong() throws BitStreamException {
+		return current.getLong();
+	}
+
+	@Override
+	protected int readSourceBytes(byte[] bytes, int offset, int length) throws BitStreamException {
+		int count = 0;
+		while (count < length) {
+			if (!current.hasRemaining()) {
+				// refills the buffer
+				int b = readSourceByte();
+				if (b < 0) break;
+				bytes[offset + count++] = (byte) b;
+				continue;
+			}
+			int n = Math.min(length - count, current.remaining());
+			current.get(bytes, offset + count, n);
+			count += n;
+		}
+		return count;
+	}
+
+	@Override
+	protected long seekSourceByte(long index) throws BitStreamException {
+		if (index > length) index = length;
+		long offset = index - currentIndex;
+		if (offset >= 0L && offset <= current.limit()) {
+			current.position((int) offset);
+		} else {
+			discard();
+			currentIndex = index;
+			current.limit(0);
+			prefetch(index);
+		}
+		return index;
+	}
+
+	@Override
+	protected long skipSourceBytes(long count) throws BitStreamException {
+		if (count <= current.remaining()) {
+			current.position(current.position() + (int) count);
+			return count;
+		}
+		long index = currentIndex + current.position();
+		return seekSourceByte(index + count) - index;
+	}
+
+	// package scoped methods
+
+	void close() throws IOException {
+		executor.shutdownNow();
+		channel.close();
+	}
+
+	// private utility methods
+
+	// makes the following bytes of the file current, returning false at the end of the file
+	private boolean advance() {
+		long index = currentIndex + current.limit();
+		if (index >= length) return false;
+		if (pending == null || nextIndex != index) {
+			discard();
+			prefetch(index);
+		}
+		if (!pending.isDone()) {
+			waitCount ++;
+			long start = System.nanoTime();
+			await();
+			waitNanos += System.nanoTime() - start;
+		} else {
+			await();
+		}
+		// swap the buffers and start filling the one that was just read
+		ByteBuffer buffer = current;
+		current = next;
+		currentIndex = nextIndex;
+		next = buffer;
+		prefetch(currentIndex + current.limit());
+		return current.hasRemaining();
+	}
+
+	private void prefetch(long index) {
+		nextIndex = index;
+		if (index >= length) return;
+		ByteBuffer buffer = next;
+		pending = executor.submit(() -> {
+			buffer.clear();
+			long position = index;
+			while (buffer.hasRemaining()) {
+				int read = channel.read(buffer, position);
+				if (read < 0) break;
+				position += read;
+			}
+			buffer.flip();
+			return buffer;
+		});
+		fillCount ++;
+	}
+
+	// waits for any pending fill, so that its buffer can be safely reused
+	private void discard() {
+		if (pending != null) {
+			try {
+				pending.get();
+			} catch (InterruptedException e) {
+				// the fill is retained since it may still be writing to the buffer
+				Thread.currentThread().interrupt();
+				throw new BitStreamException(e);
+			} catch (ExecutionException e) {
+				/* the buffer will be refilled */
+			}
+			pending = null;
+		}
+	}
+
+	private void await() {
+		try {
+			pending.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BitStreamException(e);
+		} catch (ExecutionException e) {
+			throw new BitStreamException(e.getCause());
+		} finally {
+			pending = null;
+		}
+	}
+
+}
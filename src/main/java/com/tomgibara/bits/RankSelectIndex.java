@@ -0,0 +1,335 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+/**
+ * <p>
+ * A succinct index that answers rank and select queries over the bits of an
+ * immutable {@link BitVector}. Rank queries count the ones (or zeros) that
+ * precede a position, select queries locate the position of the k-th one (or
+ * zero).
+ *
+ * <p>
+ * The index records the cumulative count of ones at every 512 bit block,
+ * together with the block that contains every 512th one and every 512th zero.
+ * This occupies a little over 6% of the space occupied by the bits. Ranks are
+ * computed in constant time from a block count and at most eight word counts;
+ * selections are located by a short search between sampled blocks, followed by
+ * a scan of at most eight words.
+ *
+ * <p>
+ * An index is obtained from a vector via {@link BitVector#rankSelect()} and is
+ * shared by all the ranges of an indexed vector, see
+ * {@link BitVector#indexedCopy()}. Positions and ranks are always relative to
+ * the vector from which the index was obtained.
+ *
+ * @author Tom Gibara
+ */
+
+public final class RankSelectIndex {
+
+	// statics
+
+	private static final int ADDRESS_BITS = 6;
+	private static final int ADDRESS_MASK = (1 << ADDRESS_BITS) - 1;
+
+	// 8 words per block
+	private static final int BLOCK_BITS = 9;
+	private static final int BLOCK_WORDS = 1 << (BLOCK_BITS - ADDRESS_BITS);
+	// one sample for every 512 ones or zeros
+	private static final int SAMPLE_BITS = 9;
+
+	// returns the position of the k-th one in the word, k must be less than the bit count
+	private static int selectInWord(long word, int k) {
+		// halve the search until the byte is found
+		int shift = 0;
+		int c = Long.bitCount(word & 0xffffffffL);
+		if (k >= c) { shift = 32; k -= c; }
+		c = Long.bitCount((word >>> shift) & 0xffffL);
+		if (k >= c) { shift += 16; k -= c; }
+		c = Long.bitCount((word >>> shift) & 0xffL);
+		if (k >= c) { shift += 8; k -= c; }
+		long b = (word >>> shift) & 0xffL;
+		for (; k > 0; k--) b &= b - 1;
+		return shift + Long.numberOfTrailingZeros(b);
+	}
+
+	// fields
+
+	// directory, shared between ranges and indexed over all the bits
+	private final long[] bits;
+	// ones preceding each block, with a final entry for all the bits
+	private final int[] ranks;
+	// the blocks that contain each 512th one and zero
+	private final int[] oneSamples;
+	private final int[] zeroSamples;
+
+	// the indexed range
+	private final int start;
+	private final int finish;
+	private final int startRank;
+	private final int finishRank;
+
+	// constructors
+
+	RankSelectIndex(long[] bits, int start, int finish) {
+		this.bits = bits;
+		int blocks = (bits.length + BLOCK_WORDS - 1) / BLOCK_WORDS;
+		ranks = new int[blocks + 1];
+		int count = 0;
+		for (int b = 0; b < blocks; b++) {
+			ranks[b] = count;
+			int limit = Math.min(bits.length, (b + 1) * BLOCK_WORDS);
+			for (int i = b * BLOCK_WORDS; i < limit; i++) {
+				count += Long.bitCount(bits[i]);
+			}
+		}
+		ranks[blocks] = count;
+		int total = bits.length << ADDRESS_BITS;
+		oneSamples = samples(true, count, blocks);
+		zeroSamples = samples(false, total - count, blocks);
+
+		this.start = start;
+		this.finish = finish;
+		startRank = rankAdj(start);
+		finishRank = rankAdj(finish);
+	}
+
+	private RankSelectIndex(RankSelectIndex that, int start, int finish) {
+		this.bits = that.bits;
+		this.ranks = that.ranks;
+		this.oneSamples = that.oneSamples;
+		this.zeroSamples = that.zeroSamples;
+		this.start = start;
+		this.finish = finish;
+		startRank = rankAdj(start);
+		finishRank = rankAdj(finish);
+	}
+
+	// accessors
+
+	/**
+	 * The number of bits covered by the index; this is the size of the vector
+	 * from which it was obtained.
+	 *
+	 * @return the number of indexed bits
+	 */
+
+	public int size() {
+		return finish - start;
+	}
+
+	/**
+	 * The number of ones in the indexed bits.
+	 *
+	 * @return the number of ones
+	 */
+
+	public int countOnes() {
+		return finishRank - startRank;
+	}
+
+	/**
+	 * The number of zeros in the indexed bits.
+	 *
+	 * @return the number of zeros
+	 */
+
+	public int countZeros() {
+		return finish - start - finishRank + startRank;
+	}
+
+	// queries
+
+	/**
+	 * The number of ones that precede the specified position.
+	 *
+	 * @param position
+	 *            a position between zero and the size of the index inclusive
+	 * @return the number of ones in the range [0, position)
+	 */
+
+	public int rank1(int position) {
+		return rankAdj(adjPosition(position)) - startRank;
+	}
+
+	/**
+	 * The number of zeros that precede the specified position.
+	 *
+	 * @param position
+	 *            a position between zero and the size of the index inclusive
+	 * @return the number of zeros in the range [0, position)
+	 */
+
+	public int rank0(int position) {
+		return position - rank1(position);
+	}
+
+	/**
+	 * The position of the k-th one, counting from zero.
+	 *
+	 * @param k
+	 *            the number of ones that precede the position sought
+	 * @return the position of the one, or the size of the index if there are
+	 *         not more than k ones
+	 */
+
+	public int select1(int k) {
+		if (k < 0) throw new IllegalArgumentException("negative k");
+		if (k >= finishRank - startRank) return finish - start;
+		return selectOneAdj(startRank + k) - start;
+	}
+
+	/**
+	 * The position of the k-th zero, counting from zero.
+	 *
+	 * @param k
+	 *            the number of zeros that precede the position sought
+	 * @return the position of the zero, or the size of the index if there are
+	 *         not more than k zeros
+	 */
+
+	public int select0(int k) {
+		if (k < 0) throw new IllegalArgumentException("negative k");
+		if (k >= countZeros()) return finish - start;
+		return selectZeroAdj(start - startRank + k) - start;
+	}
+
+	// object methods
+
+	@Override
+	public String toString() {
+		return "RankSelectIndex of " + size() + " bits with " + countOnes() + " ones";
+	}
+
+	// package scoped methods
+
+	// positions are adjusted
+	RankSelectIndex range(int from, int to) {
+		return from == start && to == finish ? this : new RankSelectIndex(this, from, to);
+	}
+
+	// the adjusted position of the first one at or after the adjusted position
+	int nextOneAdj(int position) {
+		int rank = rankAdj(position);
+		return rank == finishRank ? finish : selectOneAdj(rank);
+	}
+
+	// the adjusted position of the last one before the adjusted position, or start - 1
+	int previousOneAdj(int position) {
+		int rank = rankAdj(position);
+		return rank == startRank ? start - 1 : selectOneAdj(rank - 1);
+	}
+
+	int nextZeroAdj(int position) {
+		int rank = position - rankAdj(position);
+		return rank == finish - finishRank ? finish : selectZeroAdj(rank);
+	}
+
+	int previousZeroAdj(int position) {
+		int rank = position - rankAdj(position);
+		return rank == start - startRank ? start - 1 : selectZeroAdj(rank - 1);
+	}
+
+	// private helper methods
+
+	private int adjPosition(int position) {
+		if (position < 0) throw new IllegalArgumentException("negative position");
+		position += start;
+		if (position > finish) throw new IllegalArgumentException("position exceeds size");
+		return position;
+	}
+
+	private int[] samples(boolean ones, int count, int blocks) {
+		int length = (count + (1 << SAMPLE_BITS) - 1) >> SAMPLE_BITS;
+		int[] samples = new int[length + 1];
+		int next = 0;
+		for (int b = 0; b < blocks; b++) {
+			int after = ones ? ranks[b + 1] : blockZeros(b + 1);
+			while (next < length && (next << SAMPLE_BITS) < after) {
+				samples[next++] = b;
+			}
+		}
+		// sentinel bounds the search for the final sample
+		samples[length] = Math.max(blocks - 1, 0);
+		return samples;
+	}
+
+	// zeros preceding the block
+	private int blockZeros(int block) {
+		return Math.min(block << BLOCK_BITS, bits.length << ADDRESS_BITS) - ranks[block];
+	}
+
+	// ones preceding the adjusted position
+	private int rankAdj(int position) {
+		int word = position >> ADDRESS_BITS;
+		int block = position >> BLOCK_BITS;
+		int rank = ranks[block];
+		for (int i = block * BLOCK_WORDS; i < word; i++) {
+			rank += Long.bitCount(bits[i]);
+		}
+		int r = position & ADDRESS_MASK;
+		if (r != 0) rank += Long.bitCount(bits[word] & (-1L >>> (64 - r)));
+		return rank;
+	}
+
+	// the adjusted position of the one preceded by rank ones
+	private int selectOneAdj(int rank) {
+		int j = rank >> SAMPLE_BITS;
+		// find the last block preceded by no more than rank ones
+		int lo = oneSamples[j];
+		int hi = oneSamples[j + 1];
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (ranks[mid] <= rank) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		rank -= ranks[lo];
+		for (int i = lo * BLOCK_WORDS; ; i++) {
+			long word = bits[i];
+			int c = Long.bitCount(word);
+			if (rank < c) return (i << ADDRESS_BITS) + selectInWord(word, rank);
+			rank -= c;
+		}
+	}
+
+	// the adjusted position of the zero preceded by rank zeros
+	private int selectZeroAdj(int rank) {
+		int j = rank >> SAMPLE_BITS;
+		int lo = zeroSamples[j];
+		int hi = zeroSamples[j + 1];
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (blockZeros(mid) <= rank) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		rank -= blockZeros(lo);
+		for (int i = lo * BLOCK_WORDS; ; i++) {
+			long word = ~bits[i];
+			int c = Long.bitCount(word);
+			if (rank < c) return (i << ADDRESS_BITS) + selectInWord(word, rank);
+			rank -= c;
+		}
+	}
+
+}
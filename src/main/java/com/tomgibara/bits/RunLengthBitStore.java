@@ -0,0 +1,572 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import static com.tomgibara.bits.Bits.checkBitsLength;
+
+import java.util.Arrays;
+
+import com.tomgibara.bits.ImmutableBit.ImmutableOne;
+import com.tomgibara.bits.ImmutableBit.ImmutableZero;
+
+/**
+ * <p>
+ * An immutable {@link BitStore} that compresses its bits using a word-aligned
+ * run-length encoding. The bits are divided into 64-bit words; sequences of
+ * words that are all zeros or all ones are recorded as runs, and other words
+ * are stored literally. Each run is recorded in a marker word that also counts
+ * the literal words that follow it.
+ *
+ * <p>
+ * This encoding is very compact for bits that contain long runs and, since
+ * logical operations between instances ({@link #and(RunLengthBitStore)},
+ * {@link #or(RunLengthBitStore)}, {@link #xor(RunLengthBitStore)} and
+ * {@link #andNot(RunLengthBitStore)}) stream over the encoded words, runs are
+ * combined in a single step and the results are produced directly in
+ * compressed form.
+ *
+ * <p>
+ * Bits are read directly from the encoded form; random access locates the
+ * containing marker by binary search.
+ *
+ * <p>
+ * Instances are created via {@link Bits#runLengthCopyOf(BitStore)}.
+ *
+ * @author Tom Gibara
+ */
+
+public final class RunLengthBitStore extends AbstractBitStore {
+
+	// statics
+
+	private static final int ADDRESS_BITS = 6;
+	private static final int ADDRESS_SIZE = 1 << ADDRESS_BITS;
+	private static final int ADDRESS_MASK = ADDRESS_SIZE - 1;
+
+	private static final int AND = 1;
+	private static final int OR  = 2;
+	private static final int XOR = 3;
+	private static final int AND_NOT = 4;
+
+	// markers: run bit (1 bit), run length in words (31 bits), literal count (32 bits)
+
+	private static long marker(boolean bit, long run, long literals) {
+		return (bit ? Long.MIN_VALUE : 0L) | (run << 32) | literals;
+	}
+
+	private static boolean runBit(long marker) {
+		return marker < 0L;
+	}
+
+	private static int runWords(long marker) {
+		return (int) (marker >>> 32) & Integer.MAX_VALUE;
+	}
+
+	private static int literalWords(long marker) {
+		return (int) marker;
+	}
+
+	private static long op(int operation, long a, long b) {
+		switch (operation) {
+		case AND    : return a &  b;
+		case OR     : return a |  b;
+		case XOR    : return a ^  b;
+		case AND_NOT: return a & ~b;
+		default: throw new IllegalStateException("Unexpected operation constant: " + operation);
+		}
+	}
+
+	static RunLengthBitStore encode(BitStore store) {
+		int size = store.size();
+		Encoder encoder = new Encoder();
+		int limit = size & ~ADDRESS_MASK;
+		for (int i = 0; i < limit; i += ADDRESS_SIZE) {
+			encoder.append(store.getLong(i), 1);
+		}
+		if (limit < size) encoder.append(store.getBits(limit, size - limit), 1);
+		return encoder.toStore(size);
+	}
+
+	// fields
+
+	private final int size;
+	// the encoded words
+	private final long[] data;
+	// the first word covered by each marker
+	private final int[] markerWords;
+	// the index of each marker in the data
+	private final int[] markerIndices;
+	private final int ones;
+
+	// constructors
+
+	private RunLengthBitStore(int size, long[] data) {
+		this.size = size;
+		this.data = data;
+		int count = 0;
+		for (int i = 0; i < data.length; i += 1 + literalWords(data[i])) count++;
+		markerWords = new int[count];
+		markerIndices = new int[count];
+		int ones = 0;
+		int word = 0;
+		for (int i = 0, k = 0; i < data.length; k++) {
+			long marker = data[i];
+			markerWords[k] = word;
+			markerIndices[k] = i;
+			int run = runWords(marker);
+			int literals = literalWords(marker);
+			if (runBit(marker)) ones += run << ADDRESS_BITS;
+			for (int j = 1; j <= literals; j++) ones += Long.bitCount(data[i + j]);
+			word += run + literals;
+			i += 1 + literals;
+		}
+		this.ones = ones;
+	}
+
+	// methods
+
+	/**
+	 * The number of 64-bit words used to encode the bits of the store. This
+	 * provides a measure of the effectiveness of the compression.
+	 *
+	 * @return the number of words in the encoding
+	 */
+
+	public int encodedWords() {
+		return data.length;
+	}
+
+	/**
+	 * Ands the bits of this store with those of another of the same size.
+	 *
+	 * @param that
+	 *            a run-length encoded store of the same size
+	 * @return a new store containing the result
+	 */
+
+	public RunLengthBitStore and(RunLengthBitStore that) {
+		return combine(AND, that);
+	}
+
+	/**
+	 * Ors the bits of this store with those of another of the same size.
+	 *
+	 * @param that
+	 *            a run-length encoded store of the same size
+	 * @return a new store containing the result
+	 */
+
+	public RunLengthBitStore or(RunLengthBitStore that) {
+		return combine(OR, that);
+	}
+
+	/**
+	 * Xors the bits of this store with those of another of the same size.
+	 *
+	 * @param that
+	 *            a run-length encoded store of the same size
+	 * @return a new store containing the result
+	 */
+
+	public RunLengthBitStore xor(RunLengthBitStore that) {
+		return combine(XOR, that);
+	}
+
+	/**
+	 * Ands the bits of this store with the complement of those of another
+	 * store of the same size.
+	 *
+	 * @param that
+	 *            a run-length encoded store of the same size
+	 * @return a new store containing the result
+	 */
+
+	public RunLengthBitStore andNot(RunLengthBitStore that) {
+		return combine(AND_NOT, that);
+	}
+
+	// fundamental methods
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean getBit(int index) {
+		if (index < 0) throw new IllegalArgumentException("negative index");
+		if (index >= size) throw new IllegalArgumentException("index too large");
+		return (word(index >>> ADDRESS_BITS) & (1L << index)) != 0L;
+	}
+
+	// accelerating methods
+
+	@Override
+	public long getBits(int position, int length) {
+		checkBitsLength(length);
+		if (position < 0) throw new IllegalArgumentException("negative position");
+		if (position + length > size) throw new IllegalArgumentException("length too great");
+		if (length == 0) return 0L;
+		final int i = position >>> ADDRESS_BITS;
+		final int s = position & ADDRESS_MASK;
+		final long w;
+		if (s == 0) {
+			w = word(i);
+		} else if (s + length <= ADDRESS_SIZE) {
+			w = word(i) >>> s;
+		} else {
+			w = (word(i) >>> s) | (word(i + 1) << (ADDRESS_SIZE - s));
+		}
+		return length == ADDRESS_SIZE ? w : w & ((1L << length) - 1L);
+	}
+
+	// matching
+
+	@Override
+	public BitMatches ones() {
+		return new RunLengthOnes();
+	}
+
+	@Override
+	public BitMatches zeros() {
+		return new RunLengthZeros();
+	}
+
+	// mutability
+
+	@Override
+	public boolean isMutable() {
+		return false;
+	}
+
+	@Override
+	public BitStore immutableCopy() {
+		return this;
+	}
+
+	@Override
+	public BitStore immutableView() {
+		return this;
+	}
+
+	// private utility methods
+
+	// the index of the marker that covers the given word
+	private int marker(int i) {
+		int k = Arrays.binarySearch(markerWords, i);
+		if (k >= 0) return k;
+		return -2 - k;
+	}
+
+	private long word(int i) {
+		int k = marker(i);
+		int index = markerIndices[k];
+		long marker = data[index];
+		int offset = i - markerWords[k];
+		int run = runWords(marker);
+		if (offset < run) return runBit(marker) ? -1L : 0L;
+		return data[index + 1 + offset - run];
+	}
+
+	private RunLengthBitStore combine(int operation, RunLengthBitStore that) {
+		if (that == null) throw new IllegalArgumentException("null that");
+		if (that.size != this.size) throw new IllegalArgumentException("mismatched size");
+		Encoder encoder = new Encoder();
+		Cursor a = new Cursor(this.data);
+		Cursor b = new Cursor(that.data);
+		while (!a.done()) {
+			final int n = Math.min(a.available(), b.available());
+			if (a.inRun() && b.inRun()) {
+				encoder.append(op(operation, a.word(0), b.word(0)), n);
+			} else {
+				boolean constant = false;
+				if (a.inRun()) {
+					long r = op(operation, a.word(0), 0L);
+					constant = r == op(operation, a.word(0), -1L);
+					if (constant) encoder.append(r, n);
+				} else if (b.inRun()) {
+					long r = op(operation, 0L, b.word(0));
+					constant = r == op(operation, -1L, b.word(0));
+					if (constant) encoder.append(r, n);
+				}
+				if (!constant) {
+					for (int k = 0; k < n; k++) {
+						encoder.append(op(operation, a.word(k), b.word(k)), 1);
+					}
+				}
+			}
+			a.advance(n);
+			b.advance(n);
+		}
+		return encoder.toStore(size);
+	}
+
+	// returns size if there is no match
+	private int next(boolean bit, int position) {
+		if (position >= size) return size;
+		int i = position >>> ADDRESS_BITS;
+		long mask = -1L << position;
+		for (int k = marker(i); k < markerWords.length; k++) {
+			int index = markerIndices[k];
+			long marker = data[index];
+			int start = markerWords[k];
+			int literalStart = start + runWords(marker);
+			int end = literalStart + literalWords(marker);
+			if (i < literalStart) {
+				if (runBit(marker) == bit) return Math.min(size, Math.max(position, i << ADDRESS_BITS));
+				i = literalStart;
+				mask = -1L;
+			}
+			for (; i < end; i++, mask = -1L) {
+				long w = data[index + 1 + i - literalStart];
+				if (!bit) w = ~w;
+				w &= mask;
+				if (w != 0L) return Math.min(size, (i << ADDRESS_BITS) + Long.numberOfTrailingZeros(w));
+			}
+		}
+		return size;
+	}
+
+	// returns -1 if there is no match
+	private int previous(boolean bit, int position) {
+		if (position <= 0) return -1;
+		int p = position - 1;
+		int i = p >>> ADDRESS_BITS;
+		long mask = -1L >>> (ADDRESS_MASK - (p & ADDRESS_MASK));
+		for (int k = marker(i); k >= 0; k--) {
+			int index = markerIndices[k];
+			long marker = data[index];
+			int start = markerWords[k];
+			int literalStart = start + runWords(marker);
+			for (; i >= literalStart; i--, mask = -1L) {
+				long w = data[index + 1 + i - literalStart];
+				if (!bit) w = ~w;
+				w &= mask;
+				if (w != 0L) return (i << ADDRESS_BITS) + ADDRESS_MASK - Long.numberOfLeadingZeros(w);
+			}
+			if (i >= start) {
+				if (runBit(marker) == bit) return Math.min(p, (i << ADDRESS_BITS) + ADDRESS_MASK);
+				i = start - 1;
+				mask = -1L;
+			}
+		}
+		return -1;
+	}
+
+	// inner classes
+
+	// accumulates words into an encoding
+	private static final class Encoder {
+
+		private long[] data = new long[8];
+		private int length = 0;
+		// the index of the current marker, or -1
+		private int marker = -1;
+
+		void append(long word, int count) {
+			if (word == 0L || word == -1L) {
+				boolean bit = word != 0L;
+				if (marker >= 0) {
+					long m = data[marker];
+					int run = runWords(m);
+					if (literalWords(m) == 0 && (run == 0 || runBit(m) == bit)) {
+						data[marker] = marker(bit, run + count, 0);
+						return;
+					}
+				}
+				ensureCapacity(1);
+				marker = length;
+				data[length++] = marker(bit, count, 0);
+			} else {
+				if (marker < 0) {
+					ensureCapacity(1);
+					marker = length;
+					data[length++] = marker(false, 0, 0);
+				}
+				ensureCapacity(count);
+				Arrays.fill(data, length, length + count, word);
+				length += count;
+				long m = data[marker];
+				data[marker] = marker(runBit(m), runWords(m), literalWords(m) + count);
+			}
+		}
+
+		RunLengthBitStore toStore(int size) {
+			return new RunLengthBitStore(size, Arrays.copyOf(data, length));
+		}
+
+		private void ensureCapacity(int count) {
+			if (length + count > data.length) {
+				data = Arrays.copyOf(data, Math.max(length + count, data.length * 2));
+			}
+		}
+
+	}
+
+	// streams over the words of an encoding
+	private static final class Cursor {
+
+		private final long[] data;
+		private int index = 0;
+		private boolean runBit;
+		private int run;
+		private int literals;
+		// index of the next literal
+		private int literal;
+
+		Cursor(long[] data) {
+			this.data = data;
+			load();
+		}
+
+		boolean done() {
+			return run == 0 && literals == 0;
+		}
+
+		boolean inRun() {
+			return run > 0;
+		}
+
+		// the number of words before the cursor changes from a run to literals
+		int available() {
+			return run > 0 ? run : literals;
+		}
+
+		// the word at an offset from the current word, within the available words
+		long word(int offset) {
+			if (run > 0) return runBit ? -1L : 0L;
+			return data[literal + offset];
+		}
+
+		void advance(int count) {
+			if (run > 0) {
+				run -= count;
+				if (run == 0 && literals == 0) load();
+			} else {
+				literal += count;
+				literals -= count;
+				if (literals == 0) load();
+			}
+		}
+
+		private void load() {
+			while (index < data.length) {
+				long marker = data[index];
+				runBit = runBit(marker);
+				run = runWords(marker);
+				literals = literalWords(marker);
+				literal = index + 1;
+				index = literal + literals;
+				if (run > 0 || literals > 0) return;
+			}
+			run = 0;
+			literals = 0;
+		}
+
+	}
+
+	private abstract class RunLengthMatches extends BitStoreBitMatches {
+
+		RunLengthMatches() {
+			super(RunLengthBitStore.this);
+		}
+
+		@Override
+		public BitMatches range(int from, int to) {
+			return s.range(from, to).match(bit());
+		}
+
+		@Override
+		public boolean isAll() {
+			return count() == size;
+		}
+
+		@Override
+		public boolean isNone() {
+			return count() == 0;
+		}
+
+		@Override
+		public int first() {
+			return RunLengthBitStore.this.next(bit(), 0);
+		}
+
+		@Override
+		public int last() {
+			return RunLengthBitStore.this.previous(bit(), size);
+		}
+
+		@Override
+		public int next(int position) {
+			if (position < 0) throw new IllegalArgumentException("negative position");
+			if (position > size) throw new IllegalArgumentException("position exceeds size");
+			return RunLengthBitStore.this.next(bit(), position);
+		}
+
+		@Override
+		public int previous(int position) {
+			if (position < 0) throw new IllegalArgumentException("negative position");
+			if (position > size) throw new IllegalArgumentException("position exceeds size");
+			return RunLengthBitStore.this.previous(bit(), position);
+		}
+
+		@Override
+		public void replaceAll(boolean bits) {
+			if (bits != bit()) throw new IllegalStateException("immutable");
+		}
+
+	}
+
+	private final class RunLengthOnes extends RunLengthMatches {
+
+		@Override
+		public boolean bit() {
+			return true;
+		}
+
+		@Override
+		public ImmutableOne sequence() {
+			return ImmutableOne.INSTANCE;
+		}
+
+		@Override
+		public int count() {
+			return ones;
+		}
+
+	}
+
+	private final class RunLengthZeros extends RunLengthMatches {
+
+		@Override
+		public boolean bit() {
+			return false;
+		}
+
+		@Override
+		public ImmutableZero sequence() {
+			return ImmutableZero.INSTANCE;
+		}
+
+		@Override
+		public int count() {
+			return size - ones;
+		}
+
+	}
+
+}
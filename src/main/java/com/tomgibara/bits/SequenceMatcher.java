@@ -0,0 +1,381 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * Locates occurrences of any number of bit sequences in a single pass. The
+ * sequences are compiled, once, into an automaton (after Aho and Corasick)
+ * which is then applied to the bits of a {@link BitStore} or to the bits read
+ * from a {@link BitReader}; the cost of a scan is independent of the number
+ * of sequences, aside from the number of matches reported. Overlapping
+ * occurrences are all reported.
+ *
+ * <p>
+ * The sequences are identified by their index in the order in which they were
+ * supplied to {@link Bits#sequenceMatcher(BitStore...)}. When a
+ * {@link BitStore} is scanned, occurrences are located exactly as they would
+ * be by {@link BitStore#match(BitStore)}. When a {@link BitReader} is
+ * scanned, an occurrence is any run of bits that is read in the same order as
+ * it would be read from the sequence's own reader (see
+ * {@link BitStore#openReader()}).
+ *
+ * <p>
+ * Instances are immutable and safe for concurrent use.
+ *
+ * @author Tom Gibara
+ * @see Bits#sequenceMatcher(BitStore...)
+ */
+
+public final class SequenceMatcher {
+
+	/**
+	 * Receives the occurrences of sequences identified by a
+	 * {@link SequenceMatcher}.
+	 */
+
+	@FunctionalInterface
+	public interface Handler {
+
+		/**
+		 * Called for each occurrence of a sequence. Occurrences are reported
+		 * in the order in which they end.
+		 *
+		 * @param sequence
+		 *            the index of the sequence that occurred
+		 * @param position
+		 *            for a {@link BitStore}, the index at which the sequence
+		 *            begins; for a {@link BitReader}, the number of bits read
+		 *            during the scan before the first bit of the sequence
+		 */
+
+		void matched(int sequence, long position);
+
+	}
+
+	// statics
+
+	// the number of bits consumed from a single table lookup
+	private static final int NIBBLE = 4;
+
+	// fields
+
+	private final BitStore[] sequences;
+	// processes bits in order of increasing index
+	private final Automaton indexOrder;
+	// processes bits in the order they are read
+	private final Automaton readOrder;
+
+	// constructors
+
+	SequenceMatcher(BitStore... sequences) {
+		if (sequences == null) throw new IllegalArgumentException("null sequences");
+		if (sequences.length == 0) throw new IllegalArgumentException("no sequences");
+		BitStore[] copies = new BitStore[sequences.length];
+		for (int i = 0; i < copies.length; i++) {
+			BitStore sequence = sequences[i];
+			if (sequence == null) throw new IllegalArgumentException("null sequence");
+			if (sequence.size() == 0) throw new IllegalArgumentException("empty sequence");
+			copies[i] = sequence.immutableCopy();
+		}
+		this.sequences = copies;
+		indexOrder = new Automaton(copies, false);
+		readOrder = new Automaton(copies, true);
+	}
+
+	// accessors
+
+	/**
+	 * The number of sequences that are matched.
+	 *
+	 * @return the number of sequences
+	 */
+
+	public int sequenceCount() {
+		return sequences.length;
+	}
+
+	/**
+	 * A sequence that is matched.
+	 *
+	 * @param index
+	 *            the index of the sequence
+	 * @return an immutable copy of the sequence
+	 */
+
+	public BitStore sequence(int index) {
+		if (index < 0) throw new IllegalArgumentException("negative index");
+		if (index >= sequences.length) throw new IllegalArgumentException("index too large");
+		return sequences[index];
+	}
+
+	// scanning
+
+	/**
+	 * Reports every occurrence of the sequences in a store. Occurrences are
+	 * reported in order of the positions at which they end.
+	 *
+	 * @param store
+	 *            the store to be scanned
+	 * @param handler
+	 *            receives each occurrence
+	 */
+
+	public void scan(BitStore store, Handler handler) {
+		if (store == null) throw new IllegalArgumentException("null store");
+		if (handler == null) throw new IllegalArgumentException("null handler");
+		Scan scan = new Scan(indexOrder, handler);
+		int size = store.size();
+		for (int position = 0; position < size; position += 64) {
+			int length = Math.min(64, size - position);
+			long bits = store.getBits(position, length);
+			scan.feed(length == 64 ? bits : bits & ~(-1L << length), length);
+		}
+	}
+
+	/**
+	 * Reports every occurrence of the sequences in a fixed number of bits read
+	 * from a reader.
+	 *
+	 * @param reader
+	 *            the reader from which bits are read
+	 * @param count
+	 *            the number of bits to read
+	 * @param handler
+	 *            receives each occurrence
+	 * @throws BitStreamException
+	 *             if the bits could not be read, including if the stream ends
+	 *             before the specified number of bits has been read
+	 */
+
+	public void scan(BitReader reader, long count, Handler handler) throws BitStreamException {
+		if (reader == null) throw new IllegalArgumentException("null reader");
+		if (count < 0L) throw new IllegalArgumentException("negative count");
+		if (handler == null) throw new IllegalArgumentException("null handler");
+		Scan scan = new Scan(readOrder, handler);
+		while (count > 0L) {
+			int length = (int) Math.min(32L, count);
+			scan.feed(reverse(reader.read(length), length), length);
+			count -= length;
+		}
+	}
+
+	/**
+	 * Reports every occurrence of the sequences in the bits read from a reader
+	 * until the end of the stream is reached. Where the number of bits
+	 * available is known, {@link #scan(BitReader, long, Handler)} should be
+	 * preferred since it can read many bits at once.
+	 *
+	 * @param reader
+	 *            the reader from which bits are read
+	 * @param handler
+	 *            receives each occurrence
+	 * @return the number of bits read
+	 * @throws BitStreamException
+	 *             if the bits could not be read
+	 */
+
+	public long scan(BitReader reader, Handler handler) throws BitStreamException {
+		if (reader == null) throw new IllegalArgumentException("null reader");
+		if (handler == null) throw new IllegalArgumentException("null handler");
+		Scan scan = new Scan(readOrder, handler);
+		while (true) {
+			int bit;
+			try {
+				bit = reader.readBit();
+			} catch (EndOfBitStreamException e) {
+				return scan.position;
+			}
+			scan.feed(bit, 1);
+		}
+	}
+
+	// object methods
+
+	@Override
+	public String toString() {
+		return "SequenceMatcher for " + Arrays.toString(sequences);
+	}
+
+	// private utility methods
+
+	// places the first bit read in the least significant position
+	private static long reverse(int bits, int length) {
+		return (Integer.reverse(bits) >>> (32 - length)) & 0xffffffffL;
+	}
+
+	// inner classes
+
+	private static final class Scan {
+
+		private final Automaton automaton;
+		private final Handler handler;
+		private int state = 0;
+		long position = 0L;
+
+		Scan(Automaton automaton, Handler handler) {
+			this.automaton = automaton;
+			this.handler = handler;
+		}
+
+		// processes the bits from the least significant up
+		void feed(long bits, int length) {
+			final int[] nibbles = automaton.nibbles;
+			int s = state;
+			int i = 0;
+			for (; i + NIBBLE <= length; i += NIBBLE) {
+				int nibble = (int) (bits >>> i) & 0xf;
+				int t = nibbles[(s << NIBBLE) + nibble];
+				if ((t & 1) != 0) {
+					// at least one sequence ends within the nibble
+					for (int j = 0; j < NIBBLE; j++) {
+						s = step(s, nibble >> j & 1, position + i + j);
+					}
+				} else {
+					s = t >>> 1;
+				}
+			}
+			for (; i < length; i++) {
+				s = step(s, (int) (bits >>> i) & 1, position + i);
+			}
+			state = s;
+			position += length;
+		}
+
+		private int step(int s, int bit, long index) {
+			s = automaton.transitions[(s << 1) + bit];
+			int[] outputs = automaton.outputs[s];
+			if (outputs != null) {
+				for (int sequence : outputs) {
+					handler.matched(sequence, index + 1 - automaton.lengths[sequence]);
+				}
+			}
+			return s;
+		}
+
+	}
+
+	private static final class Automaton {
+
+		// the sizes of the sequences
+		final int[] lengths;
+		// two transitions per state, indexed by bit
+		final int[] transitions;
+		// the sequences that end at each state, null if none
+		final int[][] outputs;
+		// 16 entries per state: the state after a nibble shifted left, with
+		// the low bit set if any sequence ends within the nibble
+		final int[] nibbles;
+
+		Automaton(BitStore[] sequences, boolean reversed) {
+			int count = sequences.length;
+			lengths = new int[count];
+			int capacity = 1;
+			for (int i = 0; i < count; i++) {
+				lengths[i] = sequences[i].size();
+				capacity += lengths[i];
+			}
+
+			// build the trie
+			int[] trie = new int[capacity << 1];
+			Arrays.fill(trie, -1);
+			List<List<Integer>> ends = new ArrayList<>();
+			ends.add(null);
+			int states = 1;
+			for (int i = 0; i < count; i++) {
+				BitStore sequence = sequences[i];
+				int length = lengths[i];
+				int s = 0;
+				for (int j = 0; j < length; j++) {
+					int bit = sequence.getBit(reversed ? length - 1 - j : j) ? 1 : 0;
+					int k = (s << 1) + bit;
+					if (trie[k] == -1) {
+						trie[k] = states++;
+						ends.add(null);
+					}
+					s = trie[k];
+				}
+				List<Integer> list = ends.get(s);
+				if (list == null) ends.set(s, list = new ArrayList<>());
+				list.add(i);
+			}
+
+			// complete the transitions and collect outputs breadth first
+			transitions = Arrays.copyOf(trie, states << 1);
+			outputs = new int[states][];
+			int[] failures = new int[states];
+			int[] queue = new int[states];
+			int head = 0;
+			int tail = 0;
+			outputs[0] = toArray(ends.get(0), null);
+			for (int bit = 0; bit < 2; bit++) {
+				int t = transitions[bit];
+				if (t == -1) {
+					transitions[bit] = 0;
+				} else {
+					failures[t] = 0;
+					queue[tail++] = t;
+				}
+			}
+			while (head < tail) {
+				int s = queue[head++];
+				outputs[s] = toArray(ends.get(s), outputs[failures[s]]);
+				for (int bit = 0; bit < 2; bit++) {
+					int k = (s << 1) + bit;
+					int t = transitions[k];
+					int f = transitions[(failures[s] << 1) + bit];
+					if (t == -1) {
+						transitions[k] = f;
+					} else {
+						failures[t] = f;
+						queue[tail++] = t;
+					}
+				}
+			}
+
+			// tabulate nibble transitions
+			nibbles = new int[states << NIBBLE];
+			for (int s = 0; s < states; s++) {
+				for (int nibble = 0; nibble < 1 << NIBBLE; nibble++) {
+					int t = s;
+					int hit = 0;
+					for (int j = 0; j < NIBBLE; j++) {
+						t = transitions[(t << 1) + (nibble >> j & 1)];
+						if (outputs[t] != null) hit = 1;
+					}
+					nibbles[(s << NIBBLE) + nibble] = t << 1 | hit;
+				}
+			}
+		}
+
+		// combines the sequences ending at a state with those of its longest proper suffix
+		private static int[] toArray(List<Integer> list, int[] suffix) {
+			if (list == null) return suffix;
+			int size = list.size();
+			int[] array = new int[size + (suffix == null ? 0 : suffix.length)];
+			for (int i = 0; i < size; i++) array[i] = list.get(i);
+			if (suffix != null) System.arraycopy(suffix, 0, array, size, suffix.length);
+			return array;
+		}
+
+	}
+
+}
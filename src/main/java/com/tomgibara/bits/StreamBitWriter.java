@@ -38,7 +38,7 @@ class StreamBitWriter extends ByteBasedBitWriter {
 	}
 
 	@Override
-	protected void writeBytes(byte[] bytes, int offset, int length) throws BitStreamException {
+	protected void copyBytes(byte[] bytes, int offset, int length) throws BitStreamException {
 		try {
 			stream.writeBytes(bytes, offset, length);
 		} catch (StreamException e) {
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+// word level operations shared by stores that hold their bits in a sequence of
+// longs, with bit i at position (i & 63) of word (i >>> 6); subclasses supply
+// access to the words and may override the methods that modify several words,
+// for example to apply them atomically; positions are absolute ("adjusted")
+abstract class WordKernel {
+
+	// statics
+
+	// operation and test constants match the ordinals of Operation and Test
+	static final int SET = 0;
+	static final int AND = 1;
+	static final int OR  = 2;
+	static final int XOR = 3;
+
+	static final int EQUALS = 0;
+	static final int EXCLUDES = 1;
+	static final int CONTAINS = 2;
+	static final int COMPLEMENTS = 3;
+
+	private static final int ADDRESS_BITS = 6;
+	private static final int ADDRESS_SIZE = 1 << ADDRESS_BITS;
+	private static final int ADDRESS_MASK = ADDRESS_SIZE - 1;
+
+	// methods for implementation
+
+	// the word at the given index, bits beyond the extent of the store are undefined
+	abstract long word(long i);
+
+	abstract void setWord(long i, long w);
+
+	// applies a masked operation to a single word, returning its previous value
+	long performWord(int operation, long i, long m, long v) {
+		final long w = word(i);
+		final long n;
+		switch (operation) {
+		case SET: n = w & ~m | v & m; break;
+		case AND: n = w & (v | ~m); break;
+		case OR : n = w | v & m; break;
+		case XOR: n = w ^ v & m; break;
+		default: throw new IllegalStateException("Unexpected operation constant: " + operation);
+		}
+		if (n != w) setWord(i, n);
+		return w;
+	}
+
+	// sets the words over [f, t) to fill, or inverts them if the operation is XOR
+	void performWords(int operation, long f, long t, long fill) {
+		if (operation == SET) {
+			for (long i = f; i < t; i++) setWord(i, fill);
+		} else {
+			for (long i = f; i < t; i++) setWord(i, ~word(i));
+		}
+	}
+
+	// applies a whole word, as permitted when the position is word aligned
+	void performWord(int operation, long i, long v) {
+		if (operation == SET) {
+			setWord(i, v);
+		} else {
+			performWord(operation, i, -1L, v);
+		}
+	}
+
+	// kernels
+
+	boolean getBitAdj(long index) {
+		return (word(index >>> ADDRESS_BITS) & (1L << index)) != 0L;
+	}
+
+	long getBitsAdj(long position, int length) {
+		if (length == 0) return 0L;
+		final long i = position >>> ADDRESS_BITS;
+		final int s = (int) position & ADDRESS_MASK;
+		final long w;
+		if (s == 0) {
+			w = word(i);
+		} else if (s + length <= ADDRESS_SIZE) {
+			w = word(i) >>> s;
+		} else {
+			w = (word(i) >>> s) | (word(i + 1) << (ADDRESS_SIZE - s));
+		}
+		return length == ADDRESS_SIZE ? w : w & ((1L << length) - 1L);
+	}
+
+	// returns the previous value of the bit
+	boolean performAdj(int operation, long index, boolean value) {
+		final long m = 1L << index;
+		return (performWord(operation, index >>> ADDRESS_BITS, m, value ? m : 0L) & m) != 0L;
+	}
+
+	void performAdj(int operation, long position, long value, int length) {
+		if (length == 0) return;
+		final long i = position >>> ADDRESS_BITS;
+		final int s = (int) position & ADDRESS_MASK;
+		final long m = length == ADDRESS_SIZE ? -1L : (1L << length) - 1L;
+		final long v = value & m;
+		performWord(operation, i, m << s, v << s);
+		if (s + length > ADDRESS_SIZE) {
+			final int r = ADDRESS_SIZE - s;
+			performWord(operation, i + 1, m >>> r, v >>> r);
+		}
+	}
+
+	void performAdj(int operation, long from, long to, boolean value) {
+		if (from == to) return;
+		// rationalize operations into fills or inversions
+		final long fill;
+		final int op;
+		switch (operation) {
+		case AND: if (value) return; op = SET; fill =  0L; break;
+		case OR : if (!value) return; op = SET; fill = -1L; break;
+		case XOR: if (!value) return; op = XOR; fill = -1L; break;
+		default : op = SET; fill = value ? -1L : 0L;
+		}
+		final long f = from >>> ADDRESS_BITS;
+		final long t = (to - 1) >>> ADDRESS_BITS;
+		final long fm = -1L << from;
+		final long tm = -1L >>> -to;
+		if (f == t) {
+			performWord(op, f, fm & tm, fill);
+			return;
+		}
+		performWord(op, f, fm, fill);
+		performWords(op, f + 1, t, fill);
+		performWord(op, t, tm, fill);
+	}
+
+	// the store must not share words with those being modified
+	void performAdj(int operation, long position, BitStore store) {
+		final int length = store.size();
+		// operate on whole words after the first partial word
+		int offset = (int) Math.min(-position & ADDRESS_MASK, length);
+		if (offset > 0) performAdj(operation, position, store.getBits(0, offset), offset);
+		final int limit = length - ADDRESS_SIZE;
+		for (long i = (position + offset) >>> ADDRESS_BITS; offset <= limit; offset += ADDRESS_SIZE, i++) {
+			performWord(operation, i, store.getLong(offset));
+		}
+		if (offset < length) {
+			final int rem = length - offset;
+			performAdj(operation, position + offset, store.getBits(offset, rem), rem);
+		}
+	}
+
+	// applies the words of that to the first size bits of this, that must not share words with this
+	void performAdj(int operation, long size, WordKernel that) {
+		final long words = size >>> ADDRESS_BITS;
+		for (long i = 0L; i < words; i++) {
+			performWord(operation, i, that.word(i));
+		}
+		final int rem = (int) size & ADDRESS_MASK;
+		if (rem != 0) performWord(operation, words, (1L << rem) - 1L, that.word(words));
+	}
+
+	long countOnesAdj(long from, long to) {
+		if (from == to) return 0L;
+		final long f = from >>> ADDRESS_BITS;
+		final long t = (to - 1) >>> ADDRESS_BITS;
+		final long fm = -1L << from;
+		final long tm = -1L >>> -to;
+		if (f == t) return Long.bitCount(word(f) & fm & tm);
+		long count = Long.bitCount(word(f) & fm) + Long.bitCount(word(t) & tm);
+		for (long i = f + 1; i < t; i++) {
+			count += Long.bitCount(word(i));
+		}
+		return count;
+	}
+
+	// returns to if there is no match
+	long firstInRangeAdj(boolean bit, long from, long to) {
+		if (from == to) return to;
+		final long flip = bit ? 0L : -1L;
+		final long t = (to - 1) >>> ADDRESS_BITS;
+		long i = from >>> ADDRESS_BITS;
+		long w = (word(i) ^ flip) & (-1L << from);
+		while (w == 0L) {
+			if (++i > t) return to;
+			w = word(i) ^ flip;
+		}
+		long position = (i << ADDRESS_BITS) + Long.numberOfTrailingZeros(w);
+		return position < to ? position : to;
+	}
+
+	// returns -1 if there is no match
+	long lastInRangeAdj(boolean bit, long from, long to) {
+		if (from == to) return -1L;
+		final long flip = bit ? 0L : -1L;
+		final long f = from >>> ADDRESS_BITS;
+		long i = (to - 1) >>> ADDRESS_BITS;
+		long w = (word(i) ^ flip) & (-1L >>> -to);
+		while (w == 0L) {
+			if (--i < f) return -1L;
+			w = word(i) ^ flip;
+		}
+		long position = (i << ADDRESS_BITS) + ADDRESS_MASK - Long.numberOfLeadingZeros(w);
+		return position >= from ? position : -1L;
+	}
+
+	// compares the first size bits with the store, whose words are supplied by that if possible
+	boolean test(int test, long size, LargeBitStore store, WordKernel that) {
+		final long words = (size + ADDRESS_MASK) >>> ADDRESS_BITS;
+		for (long i = 0L; i < words; i++) {
+			final long position = i << ADDRESS_BITS;
+			final int length = (int) Math.min(ADDRESS_SIZE, size - position);
+			final long m = length == ADDRESS_SIZE ? -1L : (1L << length) - 1L;
+			final long a = word(i) & m;
+			final long b = that == null ? store.getBits(position, length) : that.word(i) & m;
+			final boolean result;
+			switch (test) {
+			case EQUALS     : result = a == b; break;
+			case EXCLUDES   : result = (a & b) == 0L; break;
+			case CONTAINS   : result = (a | b) == a; break;
+			case COMPLEMENTS: result = (a ^ b) == m; break;
+			default: throw new IllegalStateException("Unexpected test constant: " + test);
+			}
+			if (!result) return false;
+		}
+		return true;
+	}
+
+}
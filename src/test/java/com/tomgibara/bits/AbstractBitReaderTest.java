@@ -110,6 +110,99 @@ public abstract class AbstractBitReaderTest extends TestCase {
 		}
 	}
 
+	public void testReadLong() {
+		Random r = new Random(0L);
+		for (int i = 0; i < 1000; i++) {
+			int size = r.nextInt(25) * 32;
+			BitStore source = Bits.toStore(size, r);
+			BitStore reverse = source.mutableCopy();
+			reverse.permute().reverse();
+			BitReader reader = readerFor(source);
+
+			while (true) {
+				int oldpos = (int) reader.getPosition();
+				int count = Math.min(size - oldpos, r.nextInt(65));
+				long bits = reader.readLong(count);
+				int newpos = (int) reader.getPosition();
+				assertEquals(oldpos + count, newpos);
+				long actual = reverse.getBits(size - newpos, count);
+				assertEquals(actual, bits);
+				if (newpos == size) break;
+				// interleave runs so that reads start at varied offsets
+				if (r.nextInt(4) == 0) {
+					boolean one = r.nextBoolean();
+					int run = 0;
+					while (newpos + run < size && reverse.getBit(size - newpos - run - 1) != one) run++;
+					if (newpos + run == size) {
+						try {
+							reader.readUntil(one);
+							fail();
+						} catch (EndOfBitStreamException e) {
+							/* expected */
+						}
+						break;
+					}
+					assertEquals(run, reader.readUntil(one));
+					assertEquals(newpos + run + 1, reader.getPosition());
+					if (newpos + run + 1 == size) break;
+				}
+			}
+		}
+	}
+
+	public void testReadBulk() {
+		Random r = new Random(0L);
+		for (int i = 0; i < 200; i++) {
+			int size = r.nextInt(100) * 32;
+			BitStore source = Bits.toStore(size, r);
+			BitStore reverse = source.mutableCopy();
+			reverse.permute().reverse();
+			BitReader reader = readerFor(source);
+
+			while (true) {
+				int pos = (int) reader.getPosition();
+				int remaining = size - pos;
+				switch (r.nextInt(3)) {
+				case 0: {
+					// misalign subsequent reads
+					int count = Math.min(remaining, r.nextInt(8));
+					assertEquals(reverse.getBits(remaining - count, count), reader.read(count));
+					break;
+				}
+				case 1: {
+					int length = Math.min(remaining / 8, r.nextInt(30));
+					int offset = r.nextInt(5);
+					byte[] bytes = new byte[offset + length + r.nextInt(5)];
+					reader.readBytes(bytes, offset, length);
+					for (int j = 0; j < length; j++) {
+						assertEquals("byte " + j, (byte) reverse.getBits(remaining - 8 * (j + 1), 8), bytes[offset + j]);
+					}
+					assertEquals(pos + 8 * length, reader.getPosition());
+					break;
+				}
+				case 2: {
+					int width = r.nextInt(65);
+					int length = width == 0 ? r.nextInt(5) : Math.min(remaining / width, r.nextInt(10));
+					long[] longs = new long[length];
+					reader.readLongs(longs, 0, length, width);
+					for (int j = 0; j < length; j++) {
+						assertEquals("long " + j, reverse.getBits(remaining - width * (j + 1), width), longs[j]);
+					}
+					assertEquals(pos + width * length, reader.getPosition());
+					break;
+				}
+				}
+				if (reader.getPosition() == size) break;
+			}
+			try {
+				reader.readBytes(new byte[1], 0, 1);
+				fail();
+			} catch (EndOfBitStreamException e) {
+				/* expected */
+			}
+		}
+	}
+
 	public void testReadUntil() {
 		testReadUntil(true);
 		testReadUntil(false);
@@ -87,6 +87,61 @@ public abstract class AbstractBitWriterTest extends TestCase {
 		if (reader.getPosition() != pos) throw new RuntimeException();
 	}
 
+	public void testWriteBulk() {
+		Random r = new Random(0L);
+		for (int i = 0; i < 20; i++) {
+			BitWriter writer = newBitWriter(65536);
+			// the expected bits and their lengths
+			List<Long> values = new ArrayList<>();
+			List<Integer> counts = new ArrayList<>();
+			for (int j = 0; j < 50; j++) {
+				switch (r.nextInt(3)) {
+				case 0: {
+					// misalign subsequent writes
+					int count = r.nextInt(8);
+					int bits = r.nextInt();
+					writer.write(bits, count);
+					values.add(bits & ((1L << count) - 1L));
+					counts.add(count);
+					break;
+				}
+				case 1: {
+					int length = r.nextInt(40);
+					int offset = r.nextInt(5);
+					byte[] bytes = new byte[offset + length + r.nextInt(5)];
+					r.nextBytes(bytes);
+					assertEquals(8L * length, writer.writeBytes(bytes, offset, length));
+					for (int k = 0; k < length; k++) {
+						values.add(bytes[offset + k] & 0xffL);
+						counts.add(8);
+					}
+					break;
+				}
+				case 2: {
+					int width = r.nextInt(65);
+					int length = r.nextInt(20);
+					long[] longs = new long[length];
+					for (int k = 0; k < length; k++) longs[k] = r.nextLong();
+					assertEquals((long) width * length, writer.writeLongs(longs, 0, length, width));
+					for (int k = 0; k < length; k++) {
+						values.add(width == 64 ? longs[k] : longs[k] & ((1L << width) - 1L));
+						counts.add(width);
+					}
+					break;
+				}
+				}
+			}
+			long pos = writer.getPosition();
+			writer.flush();
+
+			BitReader reader = bitReaderFor(writer);
+			for (int j = 0; j < values.size(); j++) {
+				assertEquals("value " + j, values.get(j).longValue(), reader.readLong(counts.get(j)));
+			}
+			assertEquals(pos, reader.getPosition());
+		}
+	}
+
 	public void testRuns() {
 		int size = 1000;
 		for (long seed = 0; seed < 10; seed++) {
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.tomgibara.bits.FileBitWriterFactory.Mode;
+
+public abstract class AbstractFileBitWriterTest extends AbstractBitWriterTest {
+
+	private final List<BitWriter> writers = new ArrayList<>();
+	private FileBitWriterFactory factory;
+
+	abstract Mode getMode();
+
+	@Override
+	protected void setUp() throws Exception {
+		File file = File.createTempFile("bits-writer-test", ".bits");
+		file.deleteOnExit();
+		// a small buffer so that writes frequently span it
+		factory = new FileBitWriterFactory(file, getMode(), 64);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (BitWriter writer : writers) {
+			factory.closeWriter(writer);
+		}
+		factory.getFile().delete();
+	}
+
+	@Override
+	BitWriter newBitWriter(long size) {
+		BitWriter writer = factory.openWriter();
+		writers.add(writer);
+		return writer;
+	}
+
+	@Override
+	BitReader bitReaderFor(BitWriter writer) {
+		FileBitWriter w = (FileBitWriter) writer;
+		w.flush();
+		ByteBuffer buffer = ByteBuffer.allocate((int) w.getExtent());
+		try {
+			while (buffer.hasRemaining()) {
+				if (w.getChannel().read(buffer, buffer.position()) < 0) break;
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return new ByteArrayBitReader(buffer.array());
+	}
+
+	@Override
+	BitBoundary getBoundary() {
+		return BitBoundary.BYTE;
+	}
+
+	public void testBackPatch() {
+		Random r = new Random(0L);
+		for (int test = 0; test < 20; test++) {
+			BitWriter writer = factory.openWriter(r.nextInt(2000));
+			// a placeholder for a header at an unaligned position
+			writer.write(r.nextInt(), 5);
+			writer.write(0L, 64);
+			BitVector bits = new BitVector(r, r.nextInt(20000));
+			bits.writeTo(writer);
+			long end = writer.getPosition();
+			long header = r.nextLong();
+			writer.setPosition(5);
+			writer.write(header, 64);
+			writer.setPosition(end);
+			factory.forceWriter(writer);
+			factory.closeWriter(writer);
+			// closing again has no effect
+			factory.closeWriter(writer);
+
+			File file = factory.getFile();
+			assertEquals((end + 7) / 8, file.length());
+			FileBitReaderFactory readers = new FileBitReaderFactory(file, FileBitReaderFactory.Mode.MEMORY);
+			BitReader reader = readers.openReader();
+			reader.skipBits(5);
+			assertEquals(header, reader.readLong(64));
+			BitVector read = new BitVector(bits.size());
+			read.readFrom(reader);
+			assertEquals(bits, read);
+		}
+	}
+
+	public void testExistingContentsDiscarded() {
+		BitWriter writer = factory.openWriter();
+		writer.write(-1L, 64);
+		factory.closeWriter(writer);
+		writer = factory.openWriter();
+		writer.write(0, 3);
+		factory.closeWriter(writer);
+		assertEquals(1, factory.getFile().length());
+		BitReader reader = new FileBitReaderFactory(factory.getFile(), FileBitReaderFactory.Mode.MEMORY).openReader();
+		assertEquals(0, reader.read(8));
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class BitMatrixTest extends TestCase {
+
+	private final Random random = new Random(0L);
+
+	private BitMatrix randomMatrix(int maxSize) {
+		return new BitMatrix(random, random.nextInt(maxSize), random.nextInt(maxSize));
+	}
+
+	public void testRows() {
+		BitMatrix matrix = new BitMatrix(3, 70);
+		BitVector row = matrix.row(1);
+		assertEquals(70, row.size());
+		row.setBit(65, true);
+		assertTrue(matrix.getBit(1, 65));
+		matrix.flipBit(1, 3);
+		assertTrue(row.getBit(3));
+		row.fill();
+		assertEquals(70, row.ones().count());
+		assertTrue(matrix.row(0).zeros().isAll());
+		assertTrue(matrix.row(2).zeros().isAll());
+		assertEquals(matrix, BitMatrix.fromRows(matrix.row(0), matrix.row(1), matrix.row(2)));
+		assertEquals(Bits.toStore("010"), matrix.column(69));
+	}
+
+	public void testTranspose() {
+		for (int test = 0; test < 50; test++) {
+			BitMatrix matrix = randomMatrix(200);
+			BitMatrix transpose = matrix.transpose();
+			assertEquals(matrix.columns(), transpose.rows());
+			assertEquals(matrix.rows(), transpose.columns());
+			for (int r = 0; r < matrix.rows(); r++) {
+				for (int c = 0; c < matrix.columns(); c++) {
+					assertEquals(matrix.getBit(r, c), transpose.getBit(c, r));
+				}
+			}
+			assertEquals(matrix, transpose.transpose());
+		}
+	}
+
+	public void testMultiplyVector() {
+		for (int test = 0; test < 50; test++) {
+			BitMatrix matrix = randomMatrix(150);
+			BitVector vector = new BitVector(random, matrix.columns());
+			BitVector product = matrix.multiply(vector);
+			assertEquals(matrix.rows(), product.size());
+			for (int r = 0; r < matrix.rows(); r++) {
+				boolean expected = matrix.row(r).count(Operation.AND, vector) % 2 == 1;
+				assertEquals(expected, product.getBit(r));
+			}
+		}
+	}
+
+	public void testMultiplyMatrix() {
+		for (int test = 0; test < 30; test++) {
+			int n = random.nextInt(100);
+			int k = random.nextInt(100);
+			int m = random.nextInt(100);
+			BitMatrix a = new BitMatrix(random, n, k);
+			BitMatrix b = new BitMatrix(random, k, m);
+			BitMatrix product = a.multiply(b);
+			assertEquals(n, product.rows());
+			assertEquals(m, product.columns());
+			BitMatrix bt = b.transpose();
+			for (int r = 0; r < n; r++) {
+				for (int c = 0; c < m; c++) {
+					boolean expected = a.row(r).count(Operation.AND, bt.row(c)) % 2 == 1;
+					assertEquals(expected, product.getBit(r, c));
+				}
+			}
+			assertEquals(a, a.multiply(BitMatrix.identity(k)));
+			assertEquals(a, BitMatrix.identity(n).multiply(a));
+			// (AB)^T = B^T A^T
+			assertEquals(product.transpose(), bt.multiply(a.transpose()));
+		}
+	}
+
+	public void testElimination() {
+		assertEquals(0, new BitMatrix(10, 10).rank());
+		assertEquals(100, BitMatrix.identity(100).rank());
+		BitMatrix dependent = BitMatrix.fromRows(Bits.toStore("0110"), Bits.toStore("1010"), Bits.toStore("1100"));
+		assertEquals(2, dependent.rank());
+
+		for (int test = 0; test < 30; test++) {
+			BitMatrix matrix = randomMatrix(150);
+			int rank = matrix.rank();
+			assertTrue(rank <= Math.min(matrix.rows(), matrix.columns()));
+			assertEquals(rank, matrix.transpose().rank());
+
+			BitMatrix reduced = matrix.copy();
+			assertEquals(rank, reduced.eliminate());
+			// rows beyond the rank are zero and each pivot is alone in its column
+			for (int r = 0; r < matrix.rows(); r++) {
+				BitVector row = reduced.row(r);
+				if (r >= rank) {
+					assertTrue(row.zeros().isAll());
+				} else {
+					int pivot = row.ones().first();
+					assertEquals(1, reduced.column(pivot).ones().count());
+				}
+			}
+		}
+	}
+
+	public void testInverse() {
+		int size = 80;
+		// a product of elementary matrices is invertible
+		BitMatrix matrix = BitMatrix.identity(size);
+		for (int i = 0; i < 1000; i++) {
+			int a = random.nextInt(size);
+			int b = random.nextInt(size);
+			if (a != b) matrix.row(a).xor().withStore(matrix.row(b));
+		}
+		assertEquals(size, matrix.rank());
+		BitMatrix reduced = matrix.copy();
+		reduced.eliminate();
+		assertEquals(BitMatrix.identity(size), reduced);
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+import junit.framework.TestCase;
+
+public class BitSlicedIndexTest extends TestCase {
+
+	private final Random random = new Random(0L);
+
+	private int randomValue(int spread) {
+		switch (random.nextInt(4)) {
+		case 0: return random.nextInt();
+		case 1: return random.nextInt(spread) - spread / 2;
+		case 2: return random.nextBoolean() ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+		default: return random.nextInt(spread);
+		}
+	}
+
+	public void testComparisons() {
+		for (int test = 0; test < 50; test++) {
+			int size = random.nextInt(500);
+			int spread = 1 + random.nextInt(1000);
+			boolean narrow = random.nextBoolean();
+			int[] values = new int[size];
+			for (int i = 0; i < size; i++) {
+				values[i] = narrow ? random.nextInt(spread) : randomValue(spread);
+			}
+			BitVector existence = new BitVector(random, 0.9f, size);
+			BitSlicedIndex index = BitSlicedIndex.fromValues(values, existence);
+			for (int i = 0; i < size; i++) {
+				if (existence.getBit(i)) assertEquals(values[i], index.value(i));
+			}
+
+			for (int check = 0; check < 20; check++) {
+				int c = size > 0 && random.nextBoolean() ? values[random.nextInt(size)] : randomValue(spread);
+				int d = randomValue(spread);
+				int lo = Math.min(c, d);
+				int hi = Math.max(c, d);
+				check(values, existence, index.equalTo(c), v -> v == c);
+				check(values, existence, index.lessThan(c), v -> v < c);
+				check(values, existence, index.lessThanOrEqualTo(c), v -> v <= c);
+				check(values, existence, index.greaterThan(c), v -> v > c);
+				check(values, existence, index.greaterThanOrEqualTo(c), v -> v >= c);
+				BitVector range = index.between(lo, hi);
+				check(values, existence, range, v -> v >= lo && v <= hi);
+				assertEquals(range.ones().count(), index.countBetween(lo, hi));
+				if (lo < hi) assertEquals(0, index.countBetween(hi, lo));
+
+				long sum = 0L;
+				for (int i = 0; i < size; i++) {
+					if (range.getBit(i)) sum += values[i];
+				}
+				assertEquals(sum, index.sum(range));
+			}
+
+			long sum = 0L;
+			for (int i = 0; i < size; i++) {
+				if (existence.getBit(i)) sum += values[i];
+			}
+			assertEquals(sum, index.sum());
+			assertEquals(sum, index.sum(Bits.oneBits(size)));
+		}
+	}
+
+	public void testSlices() {
+		BitSlicedIndex index = BitSlicedIndex.fromValues(new int[] {100, 103, 101});
+		assertEquals(2, index.sliceCount());
+		assertEquals(2, index.countBetween(101, 200));
+		assertEquals(Bits.toStore("110"), index.greaterThan(100));
+		assertEquals(0, BitSlicedIndex.fromValues(new int[] {5, 5}).sliceCount());
+		assertEquals(0, BitSlicedIndex.fromValues(new int[0]).equalTo(0).size());
+	}
+
+	private void check(int[] values, BitStore existence, BitVector result, IntPredicate predicate) {
+		assertEquals(values.length, result.size());
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(existence.getBit(i) && predicate.test(values[i]), result.getBit(i));
+		}
+	}
+
+}
@@ -17,6 +17,7 @@
 package com.tomgibara.bits;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
@@ -32,6 +33,7 @@ import junit.framework.TestCase;
 
 import org.junit.Assert;
 
+import com.tomgibara.bits.BitStore.BitMatches;
 import com.tomgibara.bits.BitStore.DisjointMatches;
 import com.tomgibara.bits.BitStore.Matches;
 import com.tomgibara.bits.BitStore.Op;
@@ -881,6 +883,65 @@ public abstract class BitStoreTest extends TestCase {
 		}
 	}
 
+	public void testPairwiseCounts() {
+		for (int i = 0; i < 10; i++) {
+			BitStore[] vs = randomStoreFamily(10);
+			for (int j = 0; j < vs.length; j++) {
+				BitStore v = vs[j];
+				int size = v.size();
+				// an unaligned vector range and a store of the same type
+				BitStore w = new BitVector(random, size + 7).range(7, size + 7);
+				testPairwiseCounts(v, w);
+				if (isValidSize(size)) testPairwiseCounts(v, newStore(w));
+				testPairwiseCounts(v, v);
+			}
+		}
+	}
+
+	private void testPairwiseCounts(BitStore a, BitStore b) {
+		for (Operation op : Operation.values) {
+			BitStore c = canon(a).mutableCopy();
+			c.op(op).withStore(b);
+			assertEquals(c.ones().count(), a.count(op, b));
+		}
+		BitStore x = canon(a).mutableCopy();
+		x.xor().withStore(b);
+		assertEquals(x.ones().count(), a.hammingDistance(b));
+		BitStore and = canon(a).mutableCopy();
+		and.and().withStore(b);
+		BitStore or = canon(a).mutableCopy();
+		or.or().withStore(b);
+		double expected = or.ones().isNone() ? 1.0 : (double) and.ones().count() / or.ones().count();
+		assertEquals(expected, a.jaccardSimilarity(b), 0.0);
+	}
+
+	public void testMatchesStream() {
+		for (int i = 0; i < 10; i++) {
+			BitStore[] vs = randomStoreFamily(10);
+			for (int j = 0; j < vs.length; j++) {
+				testMatchesStream(vs[j].ones());
+				testMatchesStream(vs[j].zeros());
+				testMatchesStream(vs[j].immutableView().ones());
+			}
+		}
+	}
+
+	private void testMatchesStream(BitMatches matches) {
+		int count = matches.count();
+		int[] expected = new int[count];
+		Positions positions = matches.positions();
+		for (int i = 0; i < count; i++) {
+			expected[i] = positions.nextPosition();
+		}
+		assertTrue(Arrays.equals(expected, matches.stream().toArray()));
+		assertTrue(Arrays.equals(expected, matches.stream().parallel().toArray()));
+		assertEquals(count, matches.stream().parallel().count());
+		int[] actual = new int[count];
+		int[] index = {0};
+		matches.forEach(p -> actual[index[0]++] = p);
+		assertTrue(Arrays.equals(expected, actual));
+	}
+
 	//TODO clean up
 	public void testStoreMutability2() {
 		BitStore v = newStore(validSize(1)).immutable();
@@ -1351,6 +1412,50 @@ public abstract class BitStoreTest extends TestCase {
 		}
 	}
 
+	public void testMatchesAgainstNaiveSearch() {
+		for (int test = 0; test < 50; test++) {
+			int size = validSize(random.nextInt(1000));
+			if (size == 0) continue;
+			// sparse stores make long runs of matching bits likely
+			BitStore s = newStore(size);
+			for (int i = random.nextInt(20); i > 0; i--) s.setBit(random.nextInt(size), true);
+			int length = 2 + random.nextInt(Math.min(size, 200));
+			if (length > size) continue;
+			int from = random.nextInt(size - length + 1);
+			BitStore seq = s.range(from, from + length).mutableCopy();
+			OverlappingMatches matches = s.match(seq);
+
+			List<Integer> expected = new ArrayList<>();
+			for (int p = 0; p + length <= size; p++) {
+				if (s.range(p, p + length).equals().store(seq)) expected.add(p);
+			}
+			assertEquals(expected.size(), matches.count());
+			assertEquals((int) expected.get(0), matches.first());
+			assertEquals((int) expected.get(expected.size() - 1), matches.last());
+			int position = random.nextInt(size + 1);
+			int next = size;
+			int previous = -1;
+			for (int p : expected) {
+				if (p >= position && next == size) next = p;
+				if (p < position) previous = p;
+			}
+			assertEquals(next, matches.next(position));
+			assertEquals(previous, matches.previous(position));
+
+			// greedy disjoint matches
+			int count = 0;
+			int last = -1;
+			for (int p : expected) {
+				if (last == -1 || p >= last + length) {
+					count ++;
+					last = p;
+				}
+			}
+			assertEquals(count, matches.disjoint().count());
+			assertEquals(last, matches.disjoint().last());
+		}
+	}
+
 	public void testSimpleDisjoint() {
 		if (!isValidSize(8)) return;
 		BitStore s = newStore(Bits.toStore("10101010"));
@@ -1488,6 +1593,24 @@ public abstract class BitStoreTest extends TestCase {
 		}
 	}
 
+	public void testSetBitsPreservesOtherBits() {
+		Random r = new Random(0L);
+		for (int i = 0; i < 1000; i++) {
+			int size = validSize(r.nextInt(200));
+			int length = r.nextInt(Math.min(65, size + 1));
+			int position = r.nextInt(size - length + 1);
+			long value = r.nextLong();
+			BitStore s = randomStore(size);
+			BitStore expected = s.mutableCopy();
+			for (int j = 0; j < length; j++) {
+				expected.setBit(position + j, (value >> j & 1L) != 0L);
+			}
+			s.setBits(position, value, length);
+			assertEquals(expected, s);
+			assertEquals(expected.getBits(position, length), s.getBits(position, length));
+		}
+	}
+
 	public void testSetBitsAsInt() {
 		Random r = new Random(0L);
 		for (int i = 0; i < 1000; i++) {
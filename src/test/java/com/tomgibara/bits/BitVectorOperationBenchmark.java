@@ -25,7 +25,9 @@ public class BitVectorOperationBenchmark {
 	private static final boolean markdown = true;
 	private static final int[] sizes = {10, 100, 1000, 10000};
 	private static final boolean[] aligns = {true, false};
+	private static final boolean[] generics = {false, true};
 	private static final Operation[] ops = Operation.values;
+	private static final BitStore.Test[] tests = BitStore.Test.values;
 
 	private static void out(String str) {
 		if (markdown) {
@@ -38,20 +40,33 @@ public class BitVectorOperationBenchmark {
 	}
 
 	public static void main(String[] args) {
-			out("Reps  ,    Size, Op     , Aligned, Time ms, Call ms, Bit ns   ");
+			out("Reps  ,    Size, Op         , Aligned, Generic, Time ms, Call ms, Bit ns   ");
 		if (markdown)
-			out("------,-------:,--------,--------,-------:,-------:,---------:");
+			out("------,-------:,------------,--------,--------,-------:,-------:,---------:");
 		test(true);
 		test(false);
 	}
 
+	// generic timings stream bits through a writer, bypassing the word kernels
 	private static void test(boolean warmup) {
 		for (int size = 0; size < sizes.length; size++) {
 			for (int op = 0; op < ops.length; op++) {
 				for (int align = 0; align < aligns.length; align++) {
-					test(warmup, sizes[size], ops[op], aligns[align], false);
+					for (int generic = 0; generic < generics.length; generic++) {
+						test(warmup, sizes[size], ops[op], aligns[align], generics[generic]);
+					}
+				}
+			}
+			for (int test = 0; test < tests.length; test++) {
+				for (int align = 0; align < aligns.length; align++) {
+					for (int generic = 0; generic < generics.length; generic++) {
+						test(warmup, sizes[size], tests[test], aligns[align], generics[generic]);
+					}
 				}
 			}
+			for (int align = 0; align < aligns.length; align++) {
+				count(warmup, sizes[size], aligns[align]);
+			}
 		}
 	}
 
@@ -87,7 +102,7 @@ public class BitVectorOperationBenchmark {
 				for (int i = 0; i < reps; i++) {
 					BitVector v = vs[i & 63];
 					BitVector w = ws[i & 63];
-					v.op(op).withStore(0, w);
+					w.writeTo(v.op(op).openWriter(0, size));
 				}
 			} else {
 				switch (op) {
@@ -129,7 +144,95 @@ public class BitVectorOperationBenchmark {
 		if (!warmup) {
 			double opTime = (double) time / reps;
 			double bitTime = 1000000.0 * time / reps / size;
-			out(String.format("%6d, %7d, %7s, %7s, %7d, %7.5f, %9f", reps, size, op, aligned, time, opTime, bitTime));
+			out(String.format("%6d, %7d, %11s, %7s, %7s, %7d, %7.5f, %9f", reps, size, op, aligned, generic, time, opTime, bitTime));
+		}
+	}
+
+	private static void test(boolean warmup, int size, BitStore.Test test, boolean aligned, boolean generic) {
+		Random r = new Random(0);
+
+		// set up vectors, equal so that every word is tested
+		BitVector[] vs = new BitVector[64];
+		BitVector[] ws = new BitVector[64];
+		{
+			BitVector v = new BitVector(r, 0.5f, size + 64);
+			if (test == BitStore.Test.EXCLUDES) v.clear();
+			for (int i = 0; i < 64; i++) {
+				int offset = aligned ? 0 : i;
+				vs[i] = v.range(offset, size + offset);
+				offset = aligned ? 0 : 63 - i;
+				ws[i] = new BitVector(size + 64).range(offset, size + offset);
+				ws[i].setStore(0, vs[i]);
+				if (test == BitStore.Test.COMPLEMENTS) ws[i].flip();
+			}
+		}
+
+		// time test
+		long time;
+		int dummy = 0;
+		{
+			long start = System.currentTimeMillis();
+			if (generic) {
+				for (int i = 0; i < reps; i++) {
+					if (genericTests(vs[i & 63], test).store(ws[i & 63])) dummy++;
+				}
+			} else {
+				for (int i = 0; i < reps; i++) {
+					if (vs[i & 63].test(test).store(ws[i & 63])) dummy++;
+				}
+			}
+			long finish = System.currentTimeMillis();
+			time = finish - start;
+		}
+
+		// record result
+		if (!warmup) {
+			if (dummy != reps) throw new IllegalStateException("test failed");
+			double opTime = (double) time / reps;
+			double bitTime = 1000000.0 * time / reps / size;
+			out(String.format("%6d, %7d, %11s, %7s, %7s, %7d, %7.5f, %9f", reps, size, test, aligned, generic, time, opTime, bitTime));
+		}
+	}
+
+	private static BitStore.Tests genericTests(BitStore store, BitStore.Test test) {
+		switch (test) {
+		case EQUALS:      return new BitStoreTests.Equals(store);
+		case EXCLUDES:    return new BitStoreTests.Excludes(store);
+		case CONTAINS:    return new BitStoreTests.Contains(store);
+		case COMPLEMENTS: return new BitStoreTests.Complements(store);
+		default: throw new IllegalArgumentException();
+		}
+	}
+
+	private static void count(boolean warmup, int size, boolean aligned) {
+		Random r = new Random(0);
+
+		BitVector[] vs = new BitVector[64];
+		{
+			BitVector v = new BitVector(r, 0.5f, size + 64);
+			for (int i = 0; i < 64; i++) {
+				vs[i] = v.range(aligned ? 0 : i, size + (aligned ? 0 : i));
+			}
+		}
+
+		// time count
+		long time;
+		int dummy = 0;
+		{
+			long start = System.currentTimeMillis();
+			for (int i = 0; i < reps; i++) {
+				dummy += vs[i & 63].ones().count();
+			}
+			long finish = System.currentTimeMillis();
+			time = finish - start;
+		}
+
+		// record result
+		if (!warmup) {
+			if (dummy < 0) throw new IllegalStateException();
+			double opTime = (double) time / reps;
+			double bitTime = 1000000.0 * time / reps / size;
+			out(String.format("%6d, %7d, %11s, %7s, %7s, %7d, %7.5f, %9f", reps, size, "COUNT", aligned, false, time, opTime, bitTime));
 		}
 	}
 
@@ -306,6 +306,7 @@ public class BitVectorTest extends BitStoreTest {
 
 		assertTrue(w.complements().store(v));
 		assertTrue(w.complements().bits(v.asNumber().longValue()));
+		assertTrue(w.complements().store(Bits.asStore(v.toBitSet(), v.size())));
 
 		assertTrue(u.range(0, 1).equals().bits(1L));
 		assertTrue(u.range(0, 1).contains().bits(1L));
@@ -463,4 +464,37 @@ public class BitVectorTest extends BitStoreTest {
 		}
 	}
 
+	public void testWordKernels() {
+		for (int n = 0; n < 1000; n++) {
+			int size = 65 + random.nextInt(400);
+			BitVector v = randomVector(size + 64);
+			BitVector w = randomVector(size + 64);
+			int a = random.nextInt(64);
+			int b = random.nextInt(64);
+			BitVector x = v.range(a, a + size);
+			BitVector y = w.range(b, b + size);
+			for (Operation op : Operation.values) {
+				BitStore expected = x.mutableCopy();
+				y.writeTo(expected.op(op).openWriter(0, size));
+				BitVector actual = x.mutableCopy();
+				actual.op(op).withStore(y);
+				assertEquals(expected, actual);
+			}
+			BitVector z = y.mutableCopy();
+			assertTrue(y.equals().store(z));
+			assertTrue(y.contains().store(z));
+			z.flip();
+			assertTrue(y.complements().store(z));
+			assertTrue(y.excludes().store(z));
+			z.flipBit(random.nextInt(size));
+			assertFalse(y.complements().store(z));
+			int one = y.ones().first();
+			if (one < size) {
+				z.setBit(one, true);
+				assertFalse(y.excludes().store(z));
+			}
+			assertEquals(new BitStoreTests.Contains(x).store(y), x.contains().store(y));
+		}
+	}
+
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.Random;
+
+import com.tomgibara.bits.BitStore.Positions;
+
+import junit.framework.TestCase;
+
+public class BitmapIndexTest extends TestCase {
+
+	private final Random random = new Random(0L);
+
+	public void testBasic() {
+		BitmapIndex<String> index = new BitmapIndex<>(100);
+		assertTrue(index.set("even", 0));
+		assertFalse(index.set("even", 0));
+		for (int i = 0; i < 100; i++) {
+			if (i % 2 == 0) index.set("even", i);
+			if (i % 3 == 0) index.set("three", i);
+		}
+		assertEquals(2, index.keys().size());
+		assertNull(index.bitmap("odd"));
+		assertEquals(50, index.bitmap("even").ones().count());
+
+		BitmapIndex.Query even = index.query("even");
+		BitmapIndex.Query three = index.query("three");
+		assertEquals(17, even.and(three).count());
+		assertEquals(67, even.or(three).count());
+		assertEquals(17, three.andNot(even).count());
+		assertEquals(3, three.andNot(even).first());
+		assertEquals(50, even.not().count());
+		assertEquals(1, even.not().first());
+		assertSame(even, even.not().not());
+		assertTrue(index.query("odd").isEmpty());
+		assertTrue(even.and(index.query("odd")).isEmpty());
+		assertEquals(50, even.or(index.query("odd")).count());
+		assertEquals(100, index.all().count());
+		assertEquals(0, index.none().count());
+
+		Positions positions = even.and(three).positions();
+		for (int i = 0; i < 100; i += 6) {
+			assertEquals(i, positions.nextPosition());
+		}
+		assertFalse(positions.hasNext());
+
+		// queries see later changes to the bitmaps
+		BitmapIndex.Query both = even.and(three);
+		index.bitmap("three").setBit(2, true);
+		assertEquals(18, both.count());
+
+		try {
+			new BitmapIndex<String>(100).query("even").and(even);
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+	public void testAgainstMaterialized() {
+		for (int test = 0; test < 50; test++) {
+			int size = random.nextInt(500);
+			BitmapIndex<Integer> index = new BitmapIndex<>(size);
+			int keys = 1 + random.nextInt(6);
+			for (int k = 0; k < keys; k++) {
+				BitVector bitmap = new BitVector(size);
+				// vary the density, including empty and full bitmaps
+				switch (random.nextInt(5)) {
+				case 0: break;
+				case 1: bitmap.fill(); break;
+				case 2: if (size > 0) bitmap.setBit(random.nextInt(size), true); break;
+				default:
+					for (int i = 0; i < size; i++) bitmap.setBit(i, random.nextInt(4) == 0);
+				}
+				index.put(k, bitmap);
+			}
+			for (int q = 0; q < 20; q++) {
+				Object[] pair = randomQuery(index, keys, 4);
+				BitmapIndex.Query query = query(pair);
+				BitVector expected = (BitVector) pair[1];
+				assertEquals(query.toString(), expected, query.evaluate());
+				assertEquals(expected, query.bits());
+				assertEquals(expected.ones().count(), query.count());
+				assertEquals(expected.ones().first(), query.first());
+				assertEquals(expected.ones().last(), query.bits().ones().last());
+				assertEquals(expected.zeros().first(), query.bits().zeros().first());
+				assertEquals(expected.zeros().last(), query.bits().zeros().last());
+			}
+		}
+	}
+
+	// returns a query together with the vector it should evaluate to
+	private Object[] randomQuery(BitmapIndex<Integer> index, int keys, int depth) {
+		int choice = depth == 0 ? 0 : random.nextInt(5);
+		switch (choice) {
+		case 0: {
+			int key = random.nextInt(keys + 1);
+			BitStore bitmap = index.bitmap(key);
+			BitVector vector = bitmap == null ? new BitVector(index.size()) : Bits.evaluate(bitmap);
+			return new Object[] { index.query(key), vector };
+		}
+		case 1: {
+			Object[] a = randomQuery(index, keys, depth - 1);
+			BitVector vector = ((BitVector) a[1]).mutableCopy();
+			vector.flip();
+			return new Object[] { query(a).not(), vector };
+		}
+		case 2: {
+			Object[] a = randomQuery(index, keys, depth - 1);
+			Object[] b = randomQuery(index, keys, depth - 1);
+			BitVector vector = ((BitVector) b[1]).mutableCopy();
+			vector.flip();
+			vector.and().withStore((BitVector) a[1]);
+			return new Object[] { query(a).andNot(query(b)), vector };
+		}
+		default: {
+			int count = 1 + random.nextInt(4);
+			boolean and = choice == 3;
+			BitmapIndex.Query[] queries = new BitmapIndex.Query[count];
+			BitVector vector = new BitVector(index.size());
+			if (and) vector.fill();
+			for (int i = 0; i < count; i++) {
+				Object[] a = randomQuery(index, keys, depth - 1);
+				queries[i] = query(a);
+				if (and) {
+					vector.and().withStore((BitVector) a[1]);
+				} else {
+					vector.or().withStore((BitVector) a[1]);
+				}
+			}
+			return new Object[] { and ? index.and(queries) : index.or(queries), vector };
+		}
+		}
+	}
+
+	private static BitmapIndex.Query query(Object[] pair) {
+		return (BitmapIndex.Query) pair[0];
+	}
+
+}
@@ -66,6 +66,51 @@ public class BitsTest extends TestCase {
 		}
 	}
 
+	public void testFusedOperations() {
+		for (int i = 0; i < 200; i++) {
+			int size = random.nextInt(1000);
+			int count = 1 + random.nextInt(5);
+			BitStore[] stores = new BitStore[count];
+			BitVector and = new BitVector(size);
+			BitVector or = new BitVector(size);
+			BitVector xor = new BitVector(size);
+			and.fill();
+			for (int j = 0; j < count; j++) {
+				BitVector v = new BitVector(random, random.nextFloat(), size);
+				if (random.nextBoolean()) {
+					stores[j] = v;
+				} else {
+					// unaligned and flipped operands
+					BitStore r = new BitVector(random, size + 10).range(10, size + 10);
+					r.flipped().setStore(0, v.flipped());
+					stores[j] = r;
+				}
+				and.and().withStore(v);
+				or.or().withStore(v);
+				xor.xor().withStore(v);
+			}
+			assertEquals(and, Bits.evaluate(Bits.and(stores)));
+			assertEquals(or, Bits.evaluate(Bits.or(stores)));
+			assertEquals(xor, Bits.evaluate(Bits.xor(stores)));
+			assertEquals(and, Bits.and(stores));
+			assertEquals(and.ones().count(), Bits.and(stores).ones().count());
+			assertEquals(or.ones().count(), Bits.or(stores).ones().count());
+			assertEquals(xor.zeros().count(), Bits.xor(stores).zeros().count());
+
+			// (a | b) & ~c
+			BitStore a = stores[0];
+			BitStore b = Bits.toStore(size, random);
+			BitStore c = Bits.toStore(size, random);
+			BitVector expected = BitVector.fromStore(a);
+			expected.or().withStore(b);
+			expected.and().withStore(c.flipped());
+			BitStore expression = Bits.and(Bits.or(a, b), c.flipped());
+			assertEquals(expected, Bits.evaluate(expression));
+			assertEquals(expected.ones().count(), expression.ones().count());
+			assertEquals(expected.flipped(), Bits.evaluate(expression.flipped()));
+		}
+	}
+
 	public void testFreeRangeOf() {
 		testExtendedStore("0001111111000", Bits.freeRangeViewOf(Bits.oneBits(7), -3, 10, false));
 		testExtendedStore("1111000", Bits.freeRangeViewOf(Bits.oneBits(7), 3, 10, false));
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.tomgibara.hashing.Hasher;
+import com.tomgibara.hashing.Hashing;
+import com.tomgibara.streams.StreamBytes;
+import com.tomgibara.streams.Streams;
+
+import junit.framework.TestCase;
+
+public class BloomFilterTest extends TestCase {
+
+	// values are scrambled before hashing so that the test is insensitive to hash quality
+	private static final Hasher<Integer> hasher = Hashing.murmur3Int().hasher((i, s) -> s.writeLong(i * 0x9e3779b97f4a7c15L));
+
+	private static List<Integer> range(int from, int to) {
+		List<Integer> list = new ArrayList<>();
+		for (int i = from; i < to; i++) list.add(i);
+		return list;
+	}
+
+	private static int falsePositives(BloomFilter<Integer> filter, int from, int to) {
+		int count = 0;
+		for (int i = from; i < to; i++) {
+			if (filter.mightContain(i)) count++;
+		}
+		return count;
+	}
+
+	public void testStandard() {
+		testFilter(BloomFilter.standard(hasher, 10000, 7));
+	}
+
+	public void testBlocked() {
+		testFilter(BloomFilter.blocked(hasher, 20, 7));
+	}
+
+	private void testFilter(BloomFilter<Integer> filter) {
+		assertTrue(filter.isEmpty());
+		assertFalse(filter.mightContain(1));
+		assertTrue(filter.add(1));
+		assertFalse(filter.add(1));
+		assertTrue(filter.mightContain(1));
+		assertFalse(filter.isEmpty());
+
+		List<Integer> values = range(0, 1000);
+		assertTrue(filter.addAll(values));
+		assertFalse(filter.addAll(values));
+		assertTrue(filter.mightContainAll(values));
+		for (int value : values) assertTrue(filter.mightContain(value));
+		// about one percent expected at this load
+		int fp = falsePositives(filter, 1000, 11000);
+		assertTrue("false positives: " + fp, fp < 300);
+		assertFalse(filter.mightContainAll(range(1000, 11000)));
+		assertTrue(filter.falsePositiveProbability() < 0.03);
+	}
+
+	public void testCombination() {
+		BloomFilter<Integer> a = BloomFilter.blocked(hasher, 10, 5);
+		BloomFilter<Integer> b = BloomFilter.blocked(hasher, 10, 5);
+		a.addAll(range(0, 100));
+		b.addAll(range(50, 150));
+
+		BloomFilter<Integer> union = BloomFilter.blocked(hasher, 10, 5);
+		union.bits().or().withStore(a.bits());
+		union.addAll(b);
+		assertTrue(union.mightContainAll(range(0, 150)));
+
+		BloomFilter<Integer> intersection = BloomFilter.blocked(hasher, 10, 5);
+		intersection.addAll(a);
+		intersection.retainAll(b);
+		assertTrue(intersection.mightContainAll(range(50, 100)));
+
+		try {
+			a.addAll(BloomFilter.standard(hasher, a.bits().size(), 5));
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+	public void testSerialization() {
+		for (BloomFilter<Integer> filter : new BloomFilter[] {
+				BloomFilter.standard(hasher, 1001, 3),
+				BloomFilter.blocked(hasher, 3, 4),
+		}) {
+			filter.addAll(range(0, 100));
+			StreamBytes bytes = Streams.bytes();
+			filter.writeTo(bytes.writeStream());
+			BloomFilter<Integer> copy = BloomFilter.readFrom(bytes.readStream(), hasher);
+			assertEquals(filter.isBlocked(), copy.isBlocked());
+			assertEquals(filter.hashCount(), copy.hashCount());
+			assertEquals(filter.bits(), copy.bits());
+			assertTrue(copy.mightContainAll(range(0, 100)));
+		}
+	}
+
+}
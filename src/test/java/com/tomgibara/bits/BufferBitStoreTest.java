@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.nio.ByteBuffer;
+
+public class BufferBitStoreTest extends BitStoreTest {
+
+	@Override
+	BitStore newStore(int size) {
+		if (random.nextBoolean()) return Bits.directStore(size);
+		// exercise offset buffers that do not span whole words
+		int offset = random.nextInt(3);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(offset + ((size + 7) >> 3));
+		buffer.position(offset);
+		return Bits.asStore(buffer).range(0, size);
+	}
+
+	@Override
+	BitStore randomStore(int size) {
+		BitStore store = newStore(size);
+		store.setStore(0, new BitVector(random, size));
+		return store;
+	}
+
+	public void testBufferView() {
+		byte[] bytes = new byte[13];
+		random.nextBytes(bytes);
+		BitStore expected = Bits.asStore(bytes);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		BufferBitStore store = Bits.asStore(buffer);
+		assertEquals(expected, store);
+		store.flip();
+		assertEquals(expected, store);
+		assertEquals(0, buffer.position());
+		assertFalse(Bits.asStore(buffer.asReadOnlyBuffer()).isMutable());
+	}
+
+	public void testAgainstBitVector() {
+		for (int test = 0; test < 100; test++) {
+			int size = random.nextInt(1000);
+			BitVector v = new BitVector(random, size);
+			BitStore s = newStore(size);
+			s.setStore(0, v);
+			assertEquals(v, s);
+			assertEquals(v.ones().count(), s.ones().count());
+			assertEquals(v.zeros().first(), s.zeros().first());
+			assertEquals(v.ones().last(), s.ones().last());
+			if (size == 0) continue;
+			int p = random.nextInt(size + 1);
+			assertEquals(v.ones().next(p), s.ones().next(p));
+			assertEquals(v.zeros().previous(p), s.zeros().previous(p));
+
+			int from = random.nextInt(size + 1);
+			int to = from + random.nextInt(size + 1 - from);
+			BitVector w = new BitVector(random, to - from);
+			Operation op = Operation.values[random.nextInt(Operation.values.length)];
+			v.op(op).withStore(from, w);
+			s.op(op).withStore(from, w);
+			assertEquals(v, s);
+
+			// overlapping source
+			int length = random.nextInt(size + 1);
+			int a = random.nextInt(size - length + 1);
+			int b = random.nextInt(size - length + 1);
+			v.op(op).withStore(a, v.range(b, b + length));
+			s.op(op).withStore(a, s.range(b, b + length));
+			assertEquals(v, s);
+		}
+	}
+
+	public void testRelease() {
+		BufferBitStore store = Bits.directStore(100);
+		BitStore range = store.range(10, 20);
+		store.fill();
+		assertEquals(10, range.ones().count());
+		assertFalse(store.isReleased());
+		try (BufferBitStore s = store) {
+			assertEquals(100, s.ones().count());
+		}
+		assertTrue(store.isReleased());
+		try {
+			range.getBit(0);
+			fail();
+		} catch (IllegalStateException e) {
+			/* expected */
+		}
+		store.release();
+	}
+
+}
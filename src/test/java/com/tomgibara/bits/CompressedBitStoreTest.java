@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+public class CompressedBitStoreTest extends BitStoreTest {
+
+	@Override
+	BitStore newStore(int size) {
+		return Bits.compressedStore(size);
+	}
+
+	@Override
+	BitStore randomStore(int size) {
+		BitStore store = newStore(size);
+		store.set().withStore(new BitVector(random, size));
+		return store;
+	}
+
+	// sparse, dense or clustered bits so that every container type is exercised
+	private static BitVector randomVector(int size) {
+		switch (random.nextInt(3)) {
+		case 0:
+			return new BitVector(random, random.nextFloat() * 0.1f, size);
+		case 1:
+			return new BitVector(random, size);
+		default:
+			BitVector v = new BitVector(size);
+			boolean bit = random.nextBoolean();
+			for (int i = 0; i < size; ) {
+				int length = Math.min(size - i, random.nextInt(5000));
+				v.range(i, i + length).setAll(bit);
+				bit = !bit;
+				i += length;
+			}
+			return v;
+		}
+	}
+
+	public void testAgainstBitVector() {
+		for (int test = 0; test < 30; test++) {
+			int size = random.nextInt(300000);
+			BitVector v = randomVector(size);
+			BitStore s = newStore(size);
+			s.set().withStore(v);
+			assertEquals(v, s);
+			assertEquals(v.ones().count(), s.ones().count());
+			assertEquals(v.ones().first(), s.ones().first());
+			assertEquals(v.zeros().first(), s.zeros().first());
+			assertEquals(v.ones().last(), s.ones().last());
+			assertEquals(v.zeros().last(), s.zeros().last());
+			if (size == 0) continue;
+
+			for (int i = 0; i < 100; i++) {
+				int p = random.nextInt(size + 1);
+				assertEquals(v.ones().next(p), s.ones().next(p));
+				assertEquals(v.zeros().next(p), s.zeros().next(p));
+				assertEquals(v.ones().previous(p), s.ones().previous(p));
+				assertEquals(v.zeros().previous(p), s.zeros().previous(p));
+				int index = random.nextInt(size);
+				boolean bit = random.nextBoolean();
+				v.setBit(index, bit);
+				s.setBit(index, bit);
+			}
+			assertEquals(v, s);
+
+			BitVector w = randomVector(size);
+			Operation op = Operation.values[random.nextInt(Operation.values.length)];
+			v.op(op).withStore(w);
+			if (random.nextBoolean()) {
+				s.op(op).withStore(w);
+			} else {
+				BitStore t = newStore(size);
+				t.set().withStore(w);
+				s.op(op).withStore(t);
+			}
+			assertEquals(v, s);
+			assertEquals(v.ones().count(), s.ones().count());
+
+			w = randomVector(size);
+			BitStore t = newStore(size);
+			t.set().withStore(w);
+			v.and().withStore(w.flipped());
+			s.and().withStore(t.flipped());
+			assertEquals(v, s);
+
+			v.flip();
+			s.flip();
+			assertEquals(v, s);
+			assertEquals(v.zeros().count(), s.zeros().count());
+		}
+	}
+
+	public void testRuns() {
+		BitStore s = newStore(200000);
+		s.range(1000, 150000).fill();
+		assertEquals(149000, s.ones().count());
+		assertEquals(1000, s.ones().first());
+		assertEquals(149999, s.ones().last());
+		s.setBit(70000, false);
+		assertEquals(148999, s.ones().count());
+		assertEquals(70001, s.ones().next(70000));
+		assertEquals(70000, s.zeros().next(1000));
+		s.flip();
+		assertEquals(51001, s.ones().count());
+	}
+
+}
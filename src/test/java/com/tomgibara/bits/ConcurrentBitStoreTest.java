@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConcurrentBitStoreTest extends BitStoreTest {
+
+	@Override
+	BitStore newStore(int size) {
+		if (random.nextBoolean()) return Bits.concurrentStore(size);
+		// exercise ranges that do not start on a word boundary
+		int offset = random.nextInt(100);
+		return Bits.concurrentStore(size + offset).range(offset, size + offset);
+	}
+
+	@Override
+	BitStore randomStore(int size) {
+		BitStore store = newStore(size);
+		store.setStore(0, new BitVector(random, size));
+		return store;
+	}
+
+	public void testAgainstBitVector() {
+		for (int test = 0; test < 100; test++) {
+			int size = random.nextInt(1000);
+			BitVector v = new BitVector(random, size);
+			BitStore s = newStore(size);
+			s.setStore(0, v);
+			assertEquals(v, s);
+			if (size == 0) continue;
+
+			int from = random.nextInt(size + 1);
+			int to = from + random.nextInt(size + 1 - from);
+			BitVector w = new BitVector(random, to - from);
+			Operation op = Operation.values[random.nextInt(Operation.values.length)];
+			v.op(op).withStore(from, w);
+			s.op(op).withStore(from, w);
+			assertEquals(v, s);
+
+			int position = random.nextInt(size);
+			boolean bit = random.nextBoolean();
+			assertEquals(v.op(op).getThenWithBit(position, bit), s.op(op).getThenWithBit(position, bit));
+			assertEquals(v, s);
+
+			// overlapping source
+			int length = random.nextInt(size + 1);
+			int a = random.nextInt(size - length + 1);
+			int b = random.nextInt(size - length + 1);
+			v.op(op).withStore(a, v.range(b, b + length));
+			s.op(op).withStore(a, s.range(b, b + length));
+			assertEquals(v, s);
+		}
+	}
+
+	public void testConcurrentSetBits() throws InterruptedException {
+		final int size = 10000;
+		final int threads = 4;
+		ConcurrentBitStore store = Bits.concurrentStore(size);
+		AtomicInteger claimed = new AtomicInteger();
+		runConcurrently(threads, t -> {
+			// every thread attempts to claim every bit
+			for (int i = 0; i < size; i++) {
+				if (!store.getThenSetBit(i, true)) claimed.incrementAndGet();
+			}
+		});
+		assertEquals(size, claimed.get());
+		assertTrue(store.ones().isAll());
+
+		// threads flip adjacent bits that share words
+		runConcurrently(threads, t -> {
+			for (int i = t; i < size; i += threads) store.flipBit(i);
+		});
+		assertTrue(store.zeros().isAll());
+	}
+
+	public void testConcurrentMerges() throws InterruptedException {
+		final int size = 5000;
+		final int threads = 4;
+		BitVector[] vectors = new BitVector[threads];
+		BitVector expected = new BitVector(size);
+		for (int i = 0; i < threads; i++) {
+			vectors[i] = new BitVector(random, size);
+			expected.or().withStore(vectors[i]);
+		}
+		ConcurrentBitStore store = Bits.concurrentStore(size);
+		runConcurrently(threads, t -> {
+			store.or().withStore(vectors[t]);
+			// interleave single bit operations with merges
+			for (int i = t; i < size; i += threads) {
+				if (vectors[t].getBit(i)) store.setBit(i, true);
+			}
+		});
+		assertEquals(expected, store);
+
+		runConcurrently(threads, t -> store.range(1, size).and().withStore(vectors[t].range(1, size)));
+		for (BitVector vector : vectors) expected.and().withStore(vector);
+		assertEquals(expected.range(1, size), store.range(1, size));
+	}
+
+	private interface Work {
+		void perform(int thread);
+	}
+
+	private static void runConcurrently(int count, Work work) throws InterruptedException {
+		Thread[] threads = new Thread[count];
+		for (int i = 0; i < count; i++) {
+			final int t = i;
+			threads[i] = new Thread(() -> work.perform(t));
+		}
+		for (Thread thread : threads) thread.start();
+		for (Thread thread : threads) thread.join();
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import junit.framework.TestCase;
+
+public class EliasFanoSequenceTest extends TestCase {
+
+	private final Random random = new Random(0L);
+
+	private int[] randomValues() {
+		int size = random.nextInt(2000);
+		int bound = 1 + random.nextInt(random.nextBoolean() ? 1000 : 1000000);
+		int[] values = new int[size];
+		for (int i = 0; i < size; i++) {
+			values[i] = random.nextInt(bound);
+		}
+		Arrays.sort(values);
+		return values;
+	}
+
+	public void testFromSorted() {
+		for (int test = 0; test < 100; test++) {
+			int[] values = randomValues();
+			EliasFanoSequence seq = EliasFanoSequence.fromSorted(IntStream.of(values));
+			assertEquals(values.length, seq.size());
+			assertTrue(Arrays.equals(values, seq.toArray()));
+			assertTrue(Arrays.equals(values, seq.stream().toArray()));
+			for (int i = 0; i < values.length; i++) {
+				assertEquals(values[i], seq.get(i));
+			}
+			int max = values.length == 0 ? 0 : values[values.length - 1];
+			for (int i = 0; i < 100; i++) {
+				int x = random.nextInt(max + 2);
+				int j = Arrays.binarySearch(values, x);
+				// locate the first index not less than x
+				if (j < 0) {
+					j = -1 - j;
+				} else {
+					while (j > 0 && values[j - 1] == x) j--;
+				}
+				assertEquals(j == values.length ? -1 : values[j], seq.nextGEQ(x));
+			}
+		}
+	}
+
+	public void testFromOnes() {
+		for (int test = 0; test < 100; test++) {
+			int size = random.nextInt(10000);
+			BitVector v = new BitVector(random, random.nextFloat() * 0.2f, size);
+			EliasFanoSequence seq = EliasFanoSequence.fromOnes(v);
+			assertEquals(v.ones().count(), seq.size());
+			int i = 0;
+			for (int p = v.ones().first(); p < size; p = v.ones().next(p + 1)) {
+				assertEquals(p, seq.get(i++));
+				assertEquals(p, seq.nextGEQ(p));
+			}
+		}
+	}
+
+	public void testCompactness() {
+		int[] values = IntStream.range(0, 10000).map(i -> i * 1000 + random.nextInt(1000)).toArray();
+		EliasFanoSequence seq = EliasFanoSequence.fromSorted(IntStream.of(values));
+		// under 2 + log(1000) bits per value
+		assertTrue(seq.encodedBits() < 12L * values.length);
+		assertEquals(values[5000], seq.nextGEQ(values[4999] + 1));
+	}
+
+	public void testInvalid() {
+		try {
+			EliasFanoSequence.fromSorted(IntStream.of(3, 2));
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+		try {
+			EliasFanoSequence.fromSorted(IntStream.of(-1));
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+		EliasFanoSequence empty = EliasFanoSequence.fromSorted(IntStream.empty());
+		assertEquals(0, empty.size());
+		assertEquals(-1, empty.nextGEQ(0));
+		assertFalse(empty.iterator().hasNext());
+	}
+
+}
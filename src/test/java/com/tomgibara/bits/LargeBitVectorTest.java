@@ -0,0 +1,199 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class LargeBitVectorTest extends TestCase {
+
+	private static final Random random = new Random(0L);
+
+	// tiny pages exercise page boundaries
+	private static LargeBitVector newVector(int size) {
+		return new LargeBitVector(size, 1);
+	}
+
+	private static LargeBitVector copy(BitVector v) {
+		LargeBitVector large = newVector(v.size());
+		large.set().withStore(0L, v);
+		return large;
+	}
+
+	private static void assertMatches(BitVector expected, LargeBitStore actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals("bit " + i, expected.getBit(i), actual.getBit(i));
+		}
+	}
+
+	public void testBasic() {
+		LargeBitStore s = Bits.largeStore(1000L);
+		assertEquals(1000L, s.size());
+		assertTrue(s.zeros().isAll());
+		s.setBit(999L, true);
+		assertTrue(s.getBit(999L));
+		assertEquals(1L, s.ones().count());
+		assertEquals(999L, s.ones().first());
+		assertEquals(999L, s.ones().last());
+		s.flip();
+		assertEquals(999L, s.zeros().first());
+		assertEquals(999L, s.ones().count());
+		s.clear();
+		assertTrue(s.ones().isNone());
+		assertEquals(0L, Bits.largeStore(0L).size());
+	}
+
+	public void testAgainstBitVector() {
+		for (int test = 0; test < 200; test++) {
+			int size = random.nextInt(1000);
+			BitVector v = new BitVector(random, size);
+			LargeBitVector l = copy(v);
+			assertMatches(v, l);
+			assertEquals(v.ones().count(), l.ones().count());
+			assertEquals(v.ones().first(), l.ones().first());
+			assertEquals(v.ones().last(), l.ones().last());
+			assertEquals(v.zeros().first(), l.zeros().first());
+			assertEquals(v.zeros().last(), l.zeros().last());
+			if (size == 0) continue;
+
+			int p = random.nextInt(size + 1);
+			assertEquals(v.ones().next(p), l.ones().next(p));
+			assertEquals(v.zeros().next(p), l.zeros().next(p));
+			assertEquals(v.ones().previous(p), l.ones().previous(p));
+			assertEquals(v.zeros().previous(p), l.zeros().previous(p));
+
+			int length = random.nextInt(Math.min(65, size + 1));
+			int position = random.nextInt(size - length + 1);
+			assertEquals(v.getBits(position, length), l.getBits(position, length));
+			long bits = random.nextLong();
+			Operation op = Operation.values[random.nextInt(Operation.values.length)];
+			v.op(op).withBits(position, bits, length);
+			l.op(op).withBits(position, bits, length);
+			assertMatches(v, l);
+
+			int from = random.nextInt(size + 1);
+			int to = from + random.nextInt(size + 1 - from);
+			v.range(from, to).flip();
+			l.range(from, to).flip();
+			assertMatches(v, l);
+			assertEquals(v.range(from, to), l.range(from, to));
+			assertEquals(v.range(from, to).ones().count(), l.range(from, to).ones().count());
+
+			BitVector w = new BitVector(random, size);
+			op = Operation.values[random.nextInt(Operation.values.length)];
+			v.op(op).withStore(w);
+			l.op(op).withStore(copy(w));
+			assertMatches(v, l);
+		}
+	}
+
+	public void testOverlapping() {
+		for (int test = 0; test < 100; test++) {
+			int size = 1 + random.nextInt(1000);
+			BitVector v = new BitVector(random, size);
+			LargeBitVector l = copy(v);
+			int length = random.nextInt(size);
+			int a = random.nextInt(size - length);
+			int b = a + 1 + random.nextInt(size - length - a);
+			// shifts the source up then down
+			Operation op = Operation.values[random.nextInt(Operation.values.length)];
+			v.op(op).withStore(b, v.range(a, a + length));
+			l.op(op).withStore(b, l.range(a, a + length));
+			assertMatches(v, l);
+			v.op(op).withStore(a, v.range(b, b + length));
+			l.op(op).withStore(a, l.range(b, b + length));
+			assertMatches(v, l);
+			v.setStore(b, v.range(a, a + length));
+			l.range(0L, size).setStore(b, l.range(a, a + length));
+			assertMatches(v, l);
+			v.setStore(a, v.range(b, b + length));
+			l.range(0L, size).setStore(a, l.range(b, b + length));
+			assertMatches(v, l);
+		}
+	}
+
+	public void testTests() {
+		for (int test = 0; test < 100; test++) {
+			int size = random.nextInt(1000);
+			LargeBitVector a = copy(new BitVector(random, size));
+			LargeBitVector b = a.mutableCopy();
+			assertTrue(a.equals().store(b));
+			assertTrue(a.contains().store(b));
+			assertEquals(a, b);
+			assertEquals(a.hashCode(), b.hashCode());
+			b.flip();
+			assertTrue(a.complements().store(b));
+			assertTrue(a.excludes().store(b));
+			assertEquals(size == 0, a.equals().store(b));
+			if (size == 0) continue;
+			b.and().withStore(a);
+			assertTrue(b.ones().isNone());
+			b.setBit(random.nextInt(size), true);
+			b.and().withStore(a);
+			assertTrue(a.contains().store(b));
+		}
+	}
+
+	public void testMutability() {
+		LargeBitVector v = newVector(200);
+		LargeBitVector view = v.immutableView();
+		assertFalse(view.isMutable());
+		v.setBit(100L, true);
+		assertTrue(view.getBit(100L));
+		try {
+			view.setBit(0L, true);
+			fail();
+		} catch (IllegalStateException e) {
+			/* expected */
+		}
+		try {
+			view.range(0L, 10L).setBit(0, true);
+			fail();
+		} catch (IllegalStateException e) {
+			/* expected */
+		}
+		LargeBitVector copy = v.immutableCopy();
+		v.setBit(100L, false);
+		assertTrue(copy.getBit(100L));
+		assertTrue(copy.mutable().isMutable());
+	}
+
+	public void testBounds() {
+		LargeBitVector v = newVector(100);
+		try {
+			v.getBit(100L);
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+		try {
+			v.getBits(40L, 61);
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+		try {
+			v.range(50L, 101L);
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+}
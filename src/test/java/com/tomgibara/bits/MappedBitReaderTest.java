@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+public class MappedBitReaderTest extends AbstractBitReaderTest {
+
+	// readers are used one at a time, so one is reread until the source changes
+	// at which point the single file is rewritten and mapped again
+	private File file = null;
+	private BitStore previousSource = null;
+	private MappedBitReader previousReader = null;
+
+	private static File write(File file, byte[] bytes) throws IOException {
+		if (file == null) {
+			file = File.createTempFile("bits-mapped-test", ".bits");
+			file.deleteOnExit();
+		}
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(bytes);
+		}
+		return file;
+	}
+
+	private static MappedBitReader map(File file, int segmentShift) throws IOException {
+		try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+			return new MappedBitReader(channel, segmentShift);
+		}
+	}
+
+	private static MappedBitReader map(byte[] bytes, int segmentShift) {
+		try {
+			return map(write(null, bytes), segmentShift);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		closePrevious();
+		if (file != null) file.delete();
+	}
+
+	@Override
+	MappedBitReader readerFor(BitStore vector) {
+		if (vector.equals(previousSource)) {
+			// the same bits can be read again from the start
+			previousReader.setPosition(0L);
+			return previousReader;
+		}
+		closePrevious();
+		previousSource = vector.immutableCopy();
+		vector = vector.mutableCopy();
+		vector.permute().reverse();
+		try {
+			file = write(file, vector.toByteArray());
+			// segments of 4KB so that longer reads span several
+			previousReader = map(file, 12);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return previousReader;
+	}
+
+	private void closePrevious() {
+		if (previousReader == null) return;
+		previousReader.close();
+		previousReader = null;
+	}
+
+	public void testUnalignedReads() {
+		Random r = new Random(0L);
+		for (int i = 0; i < 100; i++) {
+			byte[] bytes = new byte[r.nextInt(200)];
+			r.nextBytes(bytes);
+			// small segments so that reads frequently span them
+			MappedBitReader reader = map(bytes, 4);
+			BitReader expected = new ByteArrayBitReader(bytes);
+			assertEquals(bytes.length * 8L, reader.getSize());
+			for (int j = 0; j < 50; j++) {
+				long position = r.nextInt(bytes.length * 8 + 1);
+				int count = r.nextInt(65);
+				assertEquals(position, reader.setPosition(position));
+				expected.setPosition(position);
+				if (position + count > reader.getSize()) {
+					try {
+						reader.readLong(count);
+						fail();
+					} catch (EndOfBitStreamException e) {
+						/* expected */
+					}
+				} else {
+					assertEquals(expected.readLong(count), reader.readLong(count));
+					assertEquals(position + count, reader.getPosition());
+				}
+			}
+		}
+	}
+
+	public void testClose() {
+		MappedBitReader reader = map(new byte[] { (byte) 0xa5, 0x5a }, 4);
+		assertEquals(0xa5, reader.read(8));
+		reader.close();
+		try {
+			reader.read(8);
+			fail();
+		} catch (BitStreamException e) {
+			/* expected */
+		}
+		// closing again has no effect
+		reader.close();
+	}
+
+}
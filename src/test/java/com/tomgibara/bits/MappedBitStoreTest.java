@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class MappedBitStoreTest extends TestCase {
+
+	private static final Random random = new Random(0L);
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("bits", ".map");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	// tiny mappings exercise mapping boundaries
+	private MappedBitStore open(long size, boolean mutable) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, mutable ? "rw" : "r")) {
+			FileChannel channel = raf.getChannel();
+			return new MappedBitStore(channel, size, mutable, 1);
+		}
+	}
+
+	public void testPersistence() throws IOException {
+		BitVector v = new BitVector(random, 1000);
+		try (MappedBitStore store = open(1000, true)) {
+			assertTrue(store.ones().isNone());
+			store.set().withStore(0L, v);
+			store.force();
+		}
+		assertEquals(128L, file.length());
+		try (MappedBitStore store = open(1000, false)) {
+			assertFalse(store.isMutable());
+			assertEquals(v, store.range(0L, 1000L));
+			assertEquals(v.ones().count(), store.ones().count());
+		}
+	}
+
+	public void testAgainstBitVector() throws IOException {
+		for (int test = 0; test < 50; test++) {
+			int size = random.nextInt(1000);
+			BitVector v = new BitVector(random, size);
+			try (MappedBitStore s = open(size, true)) {
+				s.set().withStore(0L, v);
+				assertEquals(v, s.range(0L, size));
+				assertEquals(v.ones().count(), s.ones().count());
+				assertEquals(v.zeros().first(), s.zeros().first());
+				assertEquals(v.ones().last(), s.ones().last());
+				if (size == 0) continue;
+
+				int p = random.nextInt(size + 1);
+				assertEquals(v.ones().next(p), s.ones().next(p));
+				assertEquals(v.zeros().previous(p), s.zeros().previous(p));
+
+				int from = random.nextInt(size + 1);
+				int to = from + random.nextInt(size + 1 - from);
+				BitVector w = new BitVector(random, to - from);
+				Operation op = Operation.values[random.nextInt(Operation.values.length)];
+				v.op(op).withStore(from, w);
+				s.op(op).withStore(from, w);
+				assertEquals(v, s.range(0L, size));
+
+				v.range(from, to).flip();
+				s.range(from, to).flip();
+				assertEquals(v, s.range(0L, size));
+
+				LargeBitVector l = new LargeBitVector(size);
+				l.set().withStore(0L, w.resizedCopy(size, false));
+				op = Operation.values[random.nextInt(Operation.values.length)];
+				v.op(op).withStore(w.resizedCopy(size, false));
+				s.op(op).withStore(l);
+				assertEquals(v, s.range(0L, size));
+				assertTrue(s.equals().store(s.mutableCopy()));
+				assertEquals(s.hashCode(), s.immutableView().hashCode());
+			}
+		}
+	}
+
+	public void testOverlapping() throws IOException {
+		for (int test = 0; test < 50; test++) {
+			int size = 1 + random.nextInt(1000);
+			BitVector v = new BitVector(random, size);
+			try (MappedBitStore s = open(size, true)) {
+				s.set().withStore(0L, v);
+				int length = random.nextInt(size);
+				int a = random.nextInt(size - length);
+				int b = a + 1 + random.nextInt(size - length - a);
+				// shifts the source up then down
+				Operation op = Operation.values[random.nextInt(Operation.values.length)];
+				v.op(op).withStore(b, v.range(a, a + length));
+				s.op(op).withStore(b, s.range(a, a + length));
+				assertEquals(v, s.range(0L, size));
+				v.op(op).withStore(a, v.range(b, b + length));
+				s.op(op).withStore(a, s.range(b, b + length));
+				assertEquals(v, s.range(0L, size));
+				v.setStore(b, v.range(a, a + length));
+				s.range(0L, size).setStore(b, s.range(a, a + length));
+				assertEquals(v, s.range(0L, size));
+				v.setStore(a, v.range(b, b + length));
+				s.range(0L, size).setStore(a, s.range(b, b + length));
+				assertEquals(v, s.range(0L, size));
+			}
+		}
+	}
+
+	public void testClose() throws IOException {
+		MappedBitStore store = open(100, true);
+		BitStore range = store.range(10, 20);
+		range.fill();
+		assertEquals(10L, store.ones().count());
+		store.close();
+		assertTrue(store.isClosed());
+		try {
+			store.getBit(0L);
+			fail();
+		} catch (IllegalStateException e) {
+			/* expected */
+		}
+		try {
+			range.getBit(0);
+			fail();
+		} catch (IllegalStateException e) {
+			/* expected */
+		}
+		store.close();
+	}
+
+}
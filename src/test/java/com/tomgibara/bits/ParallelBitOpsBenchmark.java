@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// times bulk operations over a large vector with increasing parallelism
+public class ParallelBitOpsBenchmark {
+
+	private static final int size = 1 << 27;
+	private static final int reps = 20;
+	private static final boolean markdown = true;
+
+	private static void out(String str) {
+		if (markdown) {
+			System.out.print('|');
+			System.out.print(str.replace(',', '|'));
+			System.out.println('|');
+		} else {
+			System.out.println(str);
+		}
+	}
+
+	public static void main(String[] args) {
+		Random r = new Random(0);
+		BitVector a = new BitVector(r, size);
+		BitVector b = new BitVector(r, size);
+		int cores = Runtime.getRuntime().availableProcessors();
+		time(a, b, cores); // warmup
+			out("Threads, Count ms, Xor ms, Equals ms, Speedup");
+		if (markdown)
+			out("-------:,--------:,------:,---------:,-------:");
+		long base = 0L;
+		for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+			long[] times = time(a, b, threads);
+			long total = times[0] + times[1] + times[2];
+			if (threads == 1) base = total;
+			out(String.format("%7d, %8d, %6d, %9d, %7.2f", threads, times[0], times[1], times[2], (double) base / total));
+			if (threads == cores) break;
+		}
+	}
+
+	private static long[] time(BitVector a, BitVector b, int threads) {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		ParallelBitOps ops = Bits.parallelOps(pool);
+		int dummy = 0;
+
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < reps; i++) dummy += ops.countOnes(a);
+		long count = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		for (int i = 0; i < reps; i++) ops.perform(a, Operation.XOR, b);
+		long xor = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		for (int i = 0; i < reps; i++) if (ops.test(a, BitStore.Test.EQUALS, a)) dummy++;
+		long equals = System.currentTimeMillis() - start;
+
+		pool.shutdown();
+		if (dummy == 0) throw new IllegalStateException();
+		return new long[] {count, xor, equals};
+	}
+
+}
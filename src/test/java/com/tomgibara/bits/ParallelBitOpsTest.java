@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import com.tomgibara.bits.BitStore.Test;
+
+import junit.framework.TestCase;
+
+public class ParallelBitOpsTest extends TestCase {
+
+	private final Random random = new Random(0L);
+
+	private final ForkJoinPool pool = new ForkJoinPool(4);
+
+	// a small threshold forces many splits
+	private final ParallelBitOps ops = Bits.parallelOps(pool).withThreshold(100);
+
+	@Override
+	protected void tearDown() throws Exception {
+		pool.shutdown();
+	}
+
+	// unaligned ranges check that tasks split on word boundaries
+	private BitVector randomVector(int size) {
+		int offset = random.nextInt(64);
+		return new BitVector(random, size + offset).range(offset, size + offset);
+	}
+
+	public void testCounts() {
+		for (int test = 0; test < 50; test++) {
+			int size = random.nextInt(10000);
+			BitVector a = randomVector(size);
+			BitVector b = randomVector(size);
+			assertEquals(a.ones().count(), ops.countOnes(a));
+			for (Operation op : Operation.values) {
+				assertEquals(a.count(op, b), ops.count(a, op, b));
+			}
+		}
+	}
+
+	public void testTests() {
+		for (int test = 0; test < 50; test++) {
+			int size = random.nextInt(10000);
+			BitVector a = randomVector(size);
+			BitVector b = randomVector(size);
+			b.setStore(0, a);
+			for (Test t : Test.values) {
+				assertEquals(a.test(t).store(b), ops.test(a, t, b));
+			}
+			if (size > 0) b.flipBit(random.nextInt(size));
+			for (Test t : Test.values) {
+				assertEquals(a.test(t).store(b), ops.test(a, t, b));
+			}
+		}
+	}
+
+	public void testMutations() {
+		for (int test = 0; test < 50; test++) {
+			int size = random.nextInt(10000);
+			BitVector a = randomVector(size);
+			BitVector b = randomVector(size);
+			BitVector expected = a.mutableCopy();
+
+			for (Operation op : Operation.values) {
+				expected.op(op).withStore(b);
+				ops.perform(a, op, b);
+				assertEquals(expected, a);
+			}
+
+			expected.flip();
+			ops.flip(a);
+			assertEquals(expected, a);
+
+			int distance = size == 0 ? 0 : random.nextInt(2 * size) - size;
+			boolean fill = random.nextBoolean();
+			expected.shift(distance, fill);
+			ops.shift(a, distance, fill);
+			assertEquals(expected, a);
+
+			expected.setAll(fill);
+			ops.setAll(a, fill);
+			assertEquals(expected, a);
+		}
+	}
+
+	public void testImmutable() {
+		try {
+			ops.setAll(new BitVector(1000).immutable(), true);
+			fail();
+		} catch (IllegalStateException e) {
+			/* expected */
+		}
+	}
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import com.tomgibara.bits.FileBitReaderFactory.Mode;
+import com.tomgibara.bits.FileBitReaderFactory.Stats;
+
+public class PrefetchingBitReaderTest extends AbstractBitReaderTest {
+
+	// readers are used one at a time, so one is reread until the source changes
+	// at which point it is closed and the factory's file is rewritten
+	private FileBitReaderFactory previousFactory = null;
+	private BitStore previousSource = null;
+	private BitReader previousReader = null;
+
+	private static File write(File file, byte[] bytes) throws IOException {
+		if (file == null) {
+			file = File.createTempFile("bits-prefetch-test", ".bits");
+			file.deleteOnExit();
+		}
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(bytes);
+		}
+		return file;
+	}
+
+	private static FileBitReaderFactory factory(byte[] bytes, int bufferSize) {
+		try {
+			return new FileBitReaderFactory(write(null, bytes), Mode.PREFETCH, bufferSize);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		closePrevious();
+		if (previousFactory != null) previousFactory.getFile().delete();
+	}
+
+	@Override
+	BitReader readerFor(BitStore vector) {
+		if (vector.equals(previousSource)) {
+			// the same bits can be read again from the start
+			previousReader.setPosition(0L);
+			return previousReader;
+		}
+		closePrevious();
+		previousSource = vector.immutableCopy();
+		vector = vector.mutableCopy();
+		vector.permute().reverse();
+		try {
+			File file = write(previousFactory == null ? null : previousFactory.getFile(), vector.toByteArray());
+			// buffers smaller than most sources so that reads span them
+			previousFactory = new FileBitReaderFactory(file, Mode.PREFETCH, 256);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		previousReader = previousFactory.openReader();
+		return previousReader;
+	}
+
+	private void closePrevious() {
+		if (previousReader == null) return;
+		previousFactory.closeReader(previousReader);
+		previousReader = null;
+	}
+
+	public void testSeeks() {
+		Random r = new Random(0L);
+		for (int i = 0; i < 50; i++) {
+			byte[] bytes = new byte[r.nextInt(500)];
+			r.nextBytes(bytes);
+			FileBitReaderFactory factory = factory(bytes, 1 + r.nextInt(32));
+			BitReader reader = factory.openReader();
+			try {
+				BitReader expected = new ByteArrayBitReader(bytes);
+				for (int j = 0; j < 100; j++) {
+					if (r.nextBoolean()) {
+						long position = r.nextInt(bytes.length * 8 + 1);
+						assertEquals(position, reader.setPosition(position));
+						expected.setPosition(position);
+					} else {
+						long skip = r.nextInt(100);
+						assertEquals(expected.skipBits(skip), reader.skipBits(skip));
+					}
+					int count = (int) Math.min(r.nextInt(65), bytes.length * 8L - expected.getPosition());
+					assertEquals(expected.readLong(count), reader.readLong(count));
+					assertEquals(expected.getPosition(), reader.getPosition());
+				}
+			} finally {
+				factory.closeReader(reader);
+			}
+		}
+	}
+
+	public void testStats() {
+		byte[] bytes = new byte[10000];
+		new Random(0L).nextBytes(bytes);
+		FileBitReaderFactory factory = factory(bytes, 100);
+		BitReader reader = factory.openReader();
+		try {
+			BitVector read = new BitVector(bytes.length * 8);
+			read.readFrom(reader);
+			Stats stats = factory.getStats(reader);
+			// every buffer is filled once, the first fill is made on opening
+			assertEquals(bytes.length / 100, stats.getFillCount());
+			assertTrue(stats.getWaitCount() <= stats.getFillCount());
+			assertTrue(stats.getWaitNanos() >= 0L);
+		} finally {
+			factory.closeReader(reader);
+		}
+		try {
+			factory.getStats(new ByteArrayBitReader(bytes));
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+}
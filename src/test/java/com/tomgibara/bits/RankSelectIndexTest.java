@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class RankSelectIndexTest extends TestCase {
+
+	private final Random random = new Random(0L);
+
+	private BitVector randomVector(int size) {
+		float probability;
+		switch (random.nextInt(4)) {
+		case 0: probability = 0.001f; break;
+		case 1: probability = 0.999f; break;
+		case 2: probability = 0.5f; break;
+		default: probability = random.nextFloat();
+		}
+		return new BitVector(random, probability, size);
+	}
+
+	public void testRankAndSelect() {
+		for (int test = 0; test < 100; test++) {
+			int size = random.nextInt(10000);
+			BitVector v = randomVector(size);
+			// an unaligned range exercises offset adjustment
+			int offset = size == 0 ? 0 : random.nextInt(Math.min(size, 100));
+			BitVector w = v.rangeFrom(offset);
+			RankSelectIndex index = w.rankSelect();
+			assertEquals(w.size(), index.size());
+			assertEquals(w.ones().count(), index.countOnes());
+			assertEquals(w.zeros().count(), index.countZeros());
+
+			int ones = 0;
+			int zeros = 0;
+			for (int i = 0; i < w.size(); i++) {
+				assertEquals(ones, index.rank1(i));
+				assertEquals(zeros, index.rank0(i));
+				if (w.getBit(i)) {
+					assertEquals(i, index.select1(ones++));
+				} else {
+					assertEquals(i, index.select0(zeros++));
+				}
+			}
+			assertEquals(ones, index.rank1(w.size()));
+			assertEquals(w.size(), index.select1(ones));
+			assertEquals(w.size(), index.select0(zeros));
+		}
+	}
+
+	public void testIndexedVector() {
+		for (int test = 0; test < 100; test++) {
+			int size = random.nextInt(5000);
+			BitVector v = randomVector(size);
+			BitVector iv = v.indexedCopy();
+			assertTrue(iv.isIndexed());
+			assertFalse(iv.isMutable());
+			assertSame(iv, iv.indexedCopy());
+			assertFalse(v.isIndexed());
+			assertEquals(v, iv);
+
+			int from = random.nextInt(size + 1);
+			int to = from + random.nextInt(size + 1 - from);
+			BitVector r = v.range(from, to);
+			BitVector ir = iv.range(from, to);
+			assertTrue(ir.isIndexed());
+			assertTrue(ir.immutableView().isIndexed());
+			assertFalse(ir.mutableCopy().isIndexed());
+			assertEquals(r.ones().count(), ir.ones().count());
+			assertEquals(r.zeros().count(), ir.zeros().count());
+			assertEquals(r.ones().first(), ir.ones().first());
+			assertEquals(r.zeros().last(), ir.zeros().last());
+			for (int i = 0; i < 20; i++) {
+				int p = random.nextInt(r.size() + 1);
+				assertEquals(r.ones().next(p), ir.ones().next(p));
+				assertEquals(r.zeros().next(p), ir.zeros().next(p));
+				assertEquals(r.ones().previous(p), ir.ones().previous(p));
+				assertEquals(r.zeros().previous(p), ir.zeros().previous(p));
+				assertEquals(r.ones().range(0, p).count(), ir.ones().range(0, p).count());
+				assertEquals(r.ones().range(0, p).count(), ir.rankSelect().rank1(p));
+			}
+		}
+	}
+
+	public void testIndexIsolation() {
+		BitVector v = new BitVector(1000);
+		v.range(100, 200).fill();
+		BitVector iv = v.indexedCopy();
+		v.fill();
+		assertEquals(100, iv.ones().count());
+		assertEquals(100, iv.ones().first());
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class RunLengthBitStoreTest extends TestCase {
+
+	private final Random random = new Random(0L);
+
+	// vectors with runs of varying lengths interspersed with random bits
+	private BitVector randomVector(int size) {
+		BitVector v = new BitVector(size);
+		for (int i = 0; i < size; ) {
+			int length = Math.min(size - i, random.nextInt(1000));
+			switch (random.nextInt(3)) {
+			case 0: break;
+			case 1: v.range(i, i + length).fill(); break;
+			case 2: v.range(i, i + length).setStore(0, new BitVector(random, length)); break;
+			}
+			i += length;
+		}
+		return v;
+	}
+
+	public void testReads() {
+		for (int test = 0; test < 100; test++) {
+			int size = random.nextInt(5000);
+			BitVector v = randomVector(size);
+			RunLengthBitStore s = Bits.runLengthCopyOf(v);
+			assertFalse(s.isMutable());
+			assertEquals(v, s);
+			assertEquals(s, v);
+			assertEquals(v, s.mutableCopy());
+			assertEquals(v.ones().count(), s.ones().count());
+			assertEquals(v.ones().first(), s.ones().first());
+			assertEquals(v.zeros().first(), s.zeros().first());
+			assertEquals(v.ones().last(), s.ones().last());
+			assertEquals(v.zeros().last(), s.zeros().last());
+			for (int i = 0; i < 20 && size > 0; i++) {
+				int p = random.nextInt(size + 1);
+				assertEquals(v.ones().next(p), s.ones().next(p));
+				assertEquals(v.zeros().next(p), s.zeros().next(p));
+				assertEquals(v.ones().previous(p), s.ones().previous(p));
+				assertEquals(v.zeros().previous(p), s.zeros().previous(p));
+				int index = random.nextInt(size);
+				assertEquals(v.getBit(index), s.getBit(index));
+			}
+			BitVector r = new BitVector(size);
+			r.readFrom(s.openReader());
+			assertEquals(v, r);
+		}
+	}
+
+	public void testOperations() {
+		for (int test = 0; test < 100; test++) {
+			int size = random.nextInt(5000);
+			BitVector a = randomVector(size);
+			BitVector b = randomVector(size);
+			RunLengthBitStore ra = Bits.runLengthCopyOf(a);
+			RunLengthBitStore rb = Bits.runLengthCopyOf(b);
+
+			BitVector and = a.mutableCopy();
+			and.and().withStore(b);
+			assertEquals(and, ra.and(rb));
+
+			BitVector or = a.mutableCopy();
+			or.or().withStore(b);
+			assertEquals(or, ra.or(rb));
+
+			BitVector xor = a.mutableCopy();
+			xor.xor().withStore(b);
+			assertEquals(xor, ra.xor(rb));
+			assertEquals(xor.ones().count(), ra.xor(rb).ones().count());
+
+			BitVector andNot = a.mutableCopy();
+			andNot.and().withStore(b.flipped());
+			assertEquals(andNot, ra.andNot(rb));
+		}
+	}
+
+	public void testCompression() {
+		BitVector v = new BitVector(1000000);
+		v.range(1000, 500000).fill();
+		v.setBit(700000, true);
+		RunLengthBitStore s = Bits.runLengthCopyOf(v);
+		assertTrue(s.encodedWords() < 10);
+		RunLengthBitStore t = s.or(s.xor(s));
+		assertEquals(v, t);
+		assertTrue(t.encodedWords() < 10);
+	}
+
+	public void testImmutable() {
+		RunLengthBitStore s = Bits.runLengthCopyOf(Bits.toStore(100, random));
+		try {
+			s.setBit(0, true);
+			fail();
+		} catch (IllegalStateException e) {
+			/* expected */
+		}
+	}
+
+}
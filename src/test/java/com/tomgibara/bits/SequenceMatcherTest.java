@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.bits;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import com.tomgibara.bits.BitStore.Positions;
+
+import junit.framework.TestCase;
+
+public class SequenceMatcherTest extends TestCase {
+
+	private final Random random = new Random(0L);
+
+	public void testSimple() {
+		SequenceMatcher matcher = Bits.sequenceMatcher(Bits.toStore("101"), Bits.toStore("01"), Bits.toStore("101"));
+		BitStore store = Bits.toStore("0010110101");
+		Set<String> hits = new HashSet<>();
+		matcher.scan(store, (s, p) -> hits.add(s + "@" + p));
+		assertEquals(expected(matcher, store), hits);
+
+		// reading is from the most significant bit
+		Set<String> read = new HashSet<>();
+		matcher.scan(store.openReader(), store.size(), (s, p) -> read.add(s + "@" + p));
+		assertTrue(read.contains("1@1"));
+		assertTrue(read.contains("0@2"));
+		assertTrue(read.contains("2@2"));
+	}
+
+	public void testAgainstMatches() {
+		for (int test = 0; test < 50; test++) {
+			int size = random.nextInt(2000);
+			// sparse stores produce repeated patterns
+			BitVector store = new BitVector(random, random.nextFloat() * 0.2f, size);
+			int count = 1 + random.nextInt(30);
+			BitStore[] sequences = new BitStore[count];
+			for (int i = 0; i < count; i++) {
+				int length = 1 + random.nextInt(40);
+				if (length <= size && random.nextBoolean()) {
+					int from = random.nextInt(size - length + 1);
+					sequences[i] = store.range(from, from + length);
+				} else {
+					sequences[i] = new BitVector(random, random.nextFloat() * 0.2f, length);
+				}
+			}
+			SequenceMatcher matcher = Bits.sequenceMatcher(sequences);
+			Set<String> expected = expected(matcher, store);
+
+			Set<String> hits = new HashSet<>();
+			matcher.scan(store, (s, p) -> assertTrue(hits.add(s + "@" + p)));
+			assertEquals(expected, hits);
+
+			// positions from a reader are measured from the other end
+			Set<String> read = new HashSet<>();
+			matcher.scan(store.openReader(), size, (s, p) -> read.add(s + "@" + (size - p - sequences[s].size())));
+			assertEquals(expected, read);
+
+			Set<String> unbounded = new HashSet<>();
+			long bits = matcher.scan(store.openReader(), (s, p) -> unbounded.add(s + "@" + (size - p - sequences[s].size())));
+			assertEquals(size, bits);
+			assertEquals(expected, unbounded);
+		}
+	}
+
+	public void testInvalidSequences() {
+		try {
+			Bits.sequenceMatcher();
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+		try {
+			Bits.sequenceMatcher(Bits.noBits());
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+	private static Set<String> expected(SequenceMatcher matcher, BitStore store) {
+		Set<String> set = new HashSet<>();
+		for (int i = 0; i < matcher.sequenceCount(); i++) {
+			Positions positions = store.match(matcher.sequence(i)).positions();
+			while (positions.hasNext()) set.add(i + "@" + positions.nextPosition());
+		}
+		return set;
+	}
+
+}